@@ -0,0 +1,144 @@
+package me.moodcat.database.benchmark;
+
+import static me.moodcat.database.entities.QUser.user;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.database.DbModule;
+import me.moodcat.database.entities.User;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+import com.google.inject.persist.UnitOfWork;
+import com.mysema.query.jpa.impl.JPAQuery;
+
+/**
+ * Compares the cost of looking up a user by id through a QueryDSL query, which renders JPQL on
+ * every call, with the cost through the named query that is translated once at startup. The
+ * rendering is also measured on its own, and a query that is new on every call shows the cost of
+ * parsing and planning when Hibernate cannot use its query plan cache.
+ *
+ * <p>
+ * Usage: {@code QueryBenchmark [userId] [iterations]}, by default {@code 1 100000}. Run it
+ * against the database from {@code persistence.properties}, once with
+ * {@code hibernate.c3p0.maxStatementsPerConnection = 0} and once with the statement cache, to
+ * see the effect of reusing prepared statements.
+ * </p>
+ */
+@Slf4j
+public class QueryBenchmark {
+
+    private static final int DEFAULT_USER = 1;
+
+    private static final int DEFAULT_ITERATIONS = 100000;
+
+    /**
+     * The persistence context is cleared after this many queries, so that it does not grow.
+     */
+    private static final int CLEAR_INTERVAL = 1000;
+
+    private final EntityManager entityManager;
+
+    private final int userId;
+
+    private final int iterations;
+
+    public QueryBenchmark(final EntityManager entityManager, final int userId,
+            final int iterations) {
+        this.entityManager = entityManager;
+        this.userId = userId;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Run the benchmark.
+     *
+     * @param args
+     *            Optionally the id of an existing user and the number of iterations.
+     * @throws Exception
+     *             when database communication has failed.
+     */
+    public static void main(final String... args) throws Exception {
+        final int userId = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_USER;
+        final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+
+        final Injector injector = Guice.createInjector(new DbModule());
+        final PersistService persistService = injector.getInstance(PersistService.class);
+        persistService.start();
+        final UnitOfWork unitOfWork = injector.getInstance(UnitOfWork.class);
+        unitOfWork.begin();
+
+        try {
+            new QueryBenchmark(injector.getInstance(EntityManager.class), userId, iterations)
+                    .run();
+        } finally {
+            unitOfWork.end();
+            persistService.stop();
+        }
+    }
+
+    /**
+     * Measure every variant twice, the first round warms up the JIT and the caches.
+     *
+     * @throws Exception
+     *             when a query has failed.
+     */
+    public void run() throws Exception {
+        for (int round = 0; round < 2; round++) {
+            final boolean report = round > 0;
+            measure("Render QueryDSL", report, () -> queryDsl().toString());
+            measure("QueryDSL", report, () -> queryDsl().singleResult(user));
+            measure("Named query", report, () -> entityManager
+                    .createNamedQuery(User.FIND_BY_ID, User.class)
+                    .setParameter("id", userId)
+                    .setMaxResults(1)
+                    .getResultList());
+        }
+        measureUncached();
+    }
+
+    private JPAQuery queryDsl() {
+        return new JPAQuery(entityManager).from(user)
+                .where(user.id.eq(userId));
+    }
+
+    /**
+     * Every query has a different literal, so Hibernate parses and plans every call. This
+     * replaces the plans in the query plan cache, so it runs last.
+     */
+    private void measureUncached() throws Exception {
+        final int[] counter = new int[1];
+        measure("Uncached JPQL", true, () -> {
+            final int literal = counter[0]++;
+            return entityManager
+                    .createQuery("SELECT u FROM User u WHERE u.id = :id AND "
+                            + literal + " = " + literal, User.class)
+                    .setParameter("id", userId)
+                    .getResultList();
+        });
+    }
+
+    private void measure(final String name, final boolean report, final Callable<?> query)
+            throws Exception {
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            query.call();
+            if (i % CLEAR_INTERVAL == 0) {
+                entityManager.clear();
+            }
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        if (report) {
+            log.info("{}: {} calls in {} ms, {} us per call", name, iterations,
+                    TimeUnit.NANOSECONDS.toMillis(elapsed),
+                    TimeUnit.NANOSECONDS.toMicros(elapsed) / (double) iterations);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+package me.moodcat.database.export;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.zip.CRC32;
+
+import javax.persistence.EntityManager;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.database.DbModule;
+import me.moodcat.database.export.CatalogueFormat.Table;
+
+import org.hibernate.Session;
+
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Streams the catalogue ({@link CatalogueFormat#TABLES}) from the database into a file in the
+ * {@link CatalogueFormat}. The file can be loaded into another environment with
+ * {@link CatalogueImportApp}, without access to SoundCloud.
+ */
+@Slf4j
+public class CatalogueExportApp {
+
+    /**
+     * The number of rows the cursor fetches per round trip.
+     */
+    private static final int FETCH_SIZE = 1000;
+
+    /**
+     * The size of the output buffer.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The main method, will export the catalogue.
+     *
+     * @param args
+     *            The path of the file to write, defaults to {@code catalogue.bin}.
+     * @throws Exception
+     *             when database communication has failed.
+     */
+    public static void main(final String[] args) throws Exception {
+        final Path path = Paths.get(args.length > 0 ? args[0] : "catalogue.bin");
+        new CatalogueExportApp().run(path);
+    }
+
+    /**
+     * Run the export.
+     *
+     * @param path
+     *            The file to write.
+     * @throws Exception
+     *             when the export has failed.
+     */
+    public void run(final Path path) throws Exception {
+        final Injector injector = Guice.createInjector(new DbModule());
+        final PersistService persistService = injector.getInstance(PersistService.class);
+        persistService.start();
+
+        final EntityManager entityManager = injector.getInstance(EntityManager.class);
+        final long start = System.currentTimeMillis();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(path), BUFFER_SIZE))) {
+            out.writeInt(CatalogueFormat.MAGIC);
+            out.writeInt(CatalogueFormat.VERSION);
+
+            // The PostgreSQL driver only streams with a cursor inside a transaction.
+            entityManager.getTransaction().begin();
+            try {
+                entityManager.unwrap(Session.class).doWork(connection -> {
+                    for (final Table table : CatalogueFormat.TABLES) {
+                        exportTable(connection, table, out);
+                    }
+                });
+            } finally {
+                entityManager.getTransaction().rollback();
+            }
+        } finally {
+            persistService.stop();
+        }
+
+        log.info("Exported catalogue to {} ({} bytes) in {} ms", path, Files.size(path),
+                System.currentTimeMillis() - start);
+    }
+
+    private static void exportTable(final Connection connection, final Table table,
+            final DataOutputStream out) throws SQLException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        final DataOutputStream payloadOut = new DataOutputStream(payload);
+        final CRC32 checksum = new CRC32();
+        int rows = 0;
+
+        try (PreparedStatement statement = connection.prepareStatement(table.getSelectSql(),
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            statement.setFetchSize(FETCH_SIZE);
+            CatalogueFormat.writeString(out, table.getName());
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    payload.reset();
+                    table.writeRow(resultSet, payloadOut);
+                    writeRecord(payload, checksum, out);
+                    rows++;
+                }
+            }
+
+            out.writeInt(CatalogueFormat.END_OF_TABLE);
+        } catch (final IOException e) {
+            throw new SQLException("Could not write table " + table, e);
+        }
+
+        log.info("Exported {} rows from {}", rows, table);
+    }
+
+    private static void writeRecord(final ByteArrayOutputStream payload, final CRC32 checksum,
+            final DataOutputStream out) throws IOException {
+        final byte[] bytes = payload.toByteArray();
+        checksum.reset();
+        checksum.update(bytes);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt((int) checksum.getValue());
+    }
+
+}
@@ -0,0 +1,424 @@
+package me.moodcat.database.export;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import lombok.Getter;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The binary format of a catalogue export. A file starts with {@link #MAGIC} and
+ * {@link #VERSION}, followed by the tables in {@link #TABLES} order. Every table starts with its
+ * name and consists of records of the form {@code [length][payload][crc32]}, terminated by a
+ * length of {@link #END_OF_TABLE}. Every column in the payload is prefixed with a null marker.
+ */
+public final class CatalogueFormat {
+
+    /**
+     * The first four bytes of a catalogue file ({@code MCAT}).
+     */
+    public static final int MAGIC = 0x4D434154;
+
+    /**
+     * The version of the format.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * The length that marks the end of a table.
+     */
+    public static final int END_OF_TABLE = -1;
+
+    /**
+     * The exported tables, in an order that satisfies their foreign keys. Access tokens of users
+     * are not exported.
+     */
+    public static final List<Table> TABLES = ImmutableList.of(
+            new Table("artist", true,
+                    new Column("id", ColumnType.INTEGER),
+                    new Column("name", ColumnType.STRING)),
+            new Table("song", true,
+                    new Column("id", ColumnType.INTEGER),
+                    new Column("soundcloudID", ColumnType.INTEGER),
+                    new Column("artist", ColumnType.INTEGER),
+                    new Column("name", ColumnType.STRING),
+                    new Column("duration", ColumnType.INTEGER),
+                    new Column("artworkUrl", ColumnType.STRING),
+                    new Column("purchaseUrl", ColumnType.STRING),
+                    new Column("purchaseTitle", ColumnType.STRING),
+                    new Column("location", ColumnType.POINT)),
+            new Table("users", true,
+                    new Column("id", ColumnType.INTEGER),
+                    new Column("soundCloudUserId", ColumnType.INTEGER),
+                    new Column("name", ColumnType.STRING),
+                    new Column("avatar_url", ColumnType.STRING),
+                    new Column("points", ColumnType.INTEGER)),
+            new Table("room", true,
+                    new Column("id", ColumnType.INTEGER),
+                    new Column("name", ColumnType.STRING),
+                    new Column("currentSong", ColumnType.INTEGER),
+                    new Column("history_position", ColumnType.INTEGER),
+                    new Column("location", ColumnType.POINT)),
+            new Table("room_play_queue", false,
+                    new Column("room_id", ColumnType.INTEGER),
+                    new Column("song_id", ColumnType.INTEGER)),
+            new Table("room_history", false,
+                    new Column("room_id", ColumnType.INTEGER),
+                    new Column("slot", ColumnType.INTEGER),
+                    new Column("song_id", ColumnType.INTEGER)),
+            new Table("classification", true,
+                    new Column("id", ColumnType.INTEGER),
+                    new Column("song_id", ColumnType.INTEGER),
+                    new Column("user_id", ColumnType.INTEGER),
+                    new Column("room_id", ColumnType.INTEGER),
+                    new Column("location", ColumnType.POINT)));
+
+    private CatalogueFormat() {
+        // Constants and table definitions only.
+    }
+
+    /**
+     * Find the definition of a table.
+     *
+     * @param name
+     *            The name of the table.
+     * @return The table definition.
+     * @throws IllegalArgumentException
+     *             If the table is not part of the format.
+     */
+    public static Table getTable(final String name) {
+        return TABLES.stream()
+                .filter(table -> table.getName().equals(name))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown table " + name));
+    }
+
+    /**
+     * Write a string as its UTF-8 length followed by its bytes.
+     *
+     * @param out
+     *            The stream to write to.
+     * @param value
+     *            The string to write.
+     * @throws IOException
+     *             When the stream could not be written.
+     */
+    public static void writeString(final DataOutputStream out, final String value)
+            throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in
+     *            The buffer to read from.
+     * @return The string.
+     */
+    public static String readString(final ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A table in the catalogue.
+     */
+    @Getter
+    public static final class Table {
+
+        /**
+         * The name of the table.
+         *
+         * @return The name of the table.
+         */
+        private final String name;
+
+        /**
+         * Whether the table has a serial {@code id} column of which the sequence has to be
+         * reset after an import.
+         *
+         * @return true if the table has a serial id.
+         */
+        private final boolean serialId;
+
+        /**
+         * The exported columns.
+         *
+         * @return The exported columns.
+         */
+        private final List<Column> columns;
+
+        Table(final String name, final boolean serialId, final Column... columns) {
+            this.name = name;
+            this.serialId = serialId;
+            this.columns = ImmutableList.copyOf(columns);
+        }
+
+        /**
+         * Get the query that scrolls through the table in order of its first column.
+         *
+         * @return The select query.
+         */
+        public String getSelectSql() {
+            return "SELECT " + columns.stream().map(Column::getSelectExpression)
+                    .collect(Collectors.joining(", "))
+                    + " FROM " + name + " ORDER BY " + columns.get(0).getName();
+        }
+
+        /**
+         * Get the statement that inserts a single row.
+         *
+         * @return The insert statement.
+         */
+        public String getInsertSql() {
+            return "INSERT INTO " + name + " ("
+                    + columns.stream().map(Column::getName).collect(Collectors.joining(", "))
+                    + ") VALUES ("
+                    + columns.stream().map(Column::getPlaceholder)
+                            .collect(Collectors.joining(", "))
+                    + ")";
+        }
+
+        /**
+         * Encode the current row of a result set.
+         *
+         * @param resultSet
+         *            The result set, positioned on a row selected by {@link #getSelectSql()}.
+         * @param out
+         *            The stream to write the payload to.
+         * @throws SQLException
+         *             When the row could not be read.
+         * @throws IOException
+         *             When the payload could not be written.
+         */
+        public void writeRow(final ResultSet resultSet, final DataOutputStream out)
+                throws SQLException, IOException {
+            int index = 1;
+            for (final Column column : columns) {
+                index = column.getType().write(resultSet, index, out);
+            }
+        }
+
+        /**
+         * Decode a payload and bind it to an insert statement.
+         *
+         * @param in
+         *            The buffer, positioned at the start of a payload.
+         * @param statement
+         *            A statement prepared from {@link #getInsertSql()}.
+         * @throws SQLException
+         *             When a parameter could not be bound.
+         */
+        public void readRow(final ByteBuffer in, final PreparedStatement statement)
+                throws SQLException {
+            int index = 1;
+            for (final Column column : columns) {
+                index = column.getType().read(in, statement, index);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    /**
+     * A column of a table.
+     */
+    @Getter
+    public static final class Column {
+
+        /**
+         * The name of the column.
+         *
+         * @return The name of the column.
+         */
+        private final String name;
+
+        /**
+         * The type of the column.
+         *
+         * @return The type of the column.
+         */
+        private final ColumnType type;
+
+        Column(final String name, final ColumnType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        String getSelectExpression() {
+            return type.getSelectExpression(name);
+        }
+
+        String getPlaceholder() {
+            return type.getPlaceholder();
+        }
+
+    }
+
+    /**
+     * The types of the exported columns. Every value is prefixed with a byte that is 0 for
+     * {@code NULL} and 1 otherwise.
+     */
+    public enum ColumnType {
+
+        /**
+         * A nullable integer, written as four bytes.
+         */
+        INTEGER {
+
+            @Override
+            int write(final ResultSet resultSet, final int index, final DataOutputStream out)
+                    throws SQLException, IOException {
+                final int value = resultSet.getInt(index);
+                if (resultSet.wasNull()) {
+                    out.writeByte(0);
+                } else {
+                    out.writeByte(1);
+                    out.writeInt(value);
+                }
+                return index + 1;
+            }
+
+            @Override
+            int read(final ByteBuffer in, final PreparedStatement statement, final int index)
+                    throws SQLException {
+                if (in.get() == 0) {
+                    statement.setNull(index, Types.INTEGER);
+                } else {
+                    statement.setInt(index, in.getInt());
+                }
+                return index + 1;
+            }
+
+        },
+
+        /**
+         * A nullable string, written as its UTF-8 length and bytes.
+         */
+        STRING {
+
+            @Override
+            int write(final ResultSet resultSet, final int index, final DataOutputStream out)
+                    throws SQLException, IOException {
+                final String value = resultSet.getString(index);
+                if (value == null) {
+                    out.writeByte(0);
+                } else {
+                    out.writeByte(1);
+                    writeString(out, value);
+                }
+                return index + 1;
+            }
+
+            @Override
+            int read(final ByteBuffer in, final PreparedStatement statement, final int index)
+                    throws SQLException {
+                if (in.get() == 0) {
+                    statement.setNull(index, Types.VARCHAR);
+                } else {
+                    statement.setString(index, readString(in));
+                }
+                return index + 1;
+            }
+
+        },
+
+        /**
+         * A nullable PostGIS point, written as its x and y coordinate. Points are selected with
+         * {@code ST_X} and {@code ST_Y} and inserted with {@code ST_MakePoint}, so that no
+         * geometry has to be parsed on either side.
+         */
+        POINT {
+
+            @Override
+            String getSelectExpression(final String column) {
+                return "ST_X(" + column + "), ST_Y(" + column + ")";
+            }
+
+            @Override
+            String getPlaceholder() {
+                return "ST_MakePoint(?, ?)";
+            }
+
+            @Override
+            int write(final ResultSet resultSet, final int index, final DataOutputStream out)
+                    throws SQLException, IOException {
+                final double x = resultSet.getDouble(index);
+                final double y = resultSet.getDouble(index + 1);
+                if (resultSet.wasNull()) {
+                    out.writeByte(0);
+                } else {
+                    out.writeByte(1);
+                    out.writeDouble(x);
+                    out.writeDouble(y);
+                }
+                return index + 2;
+            }
+
+            @Override
+            int read(final ByteBuffer in, final PreparedStatement statement, final int index)
+                    throws SQLException {
+                if (in.get() == 0) {
+                    statement.setNull(index, Types.DOUBLE);
+                    statement.setNull(index + 1, Types.DOUBLE);
+                } else {
+                    statement.setDouble(index, in.getDouble());
+                    statement.setDouble(index + 1, in.getDouble());
+                }
+                return index + 2;
+            }
+
+        };
+
+        String getSelectExpression(final String column) {
+            return column;
+        }
+
+        String getPlaceholder() {
+            return "?";
+        }
+
+        /**
+         * Write the value at the given index of the result set.
+         *
+         * @return The index of the next column in the result set.
+         */
+        abstract int write(ResultSet resultSet, int index, DataOutputStream out)
+                throws SQLException, IOException;
+
+        /**
+         * Read a value and bind it at the given parameter index.
+         *
+         * @return The index of the next parameter.
+         */
+        abstract int read(ByteBuffer in, PreparedStatement statement, int index)
+                throws SQLException;
+
+    }
+
+    /**
+     * The names of all exported tables.
+     *
+     * @return A comma separated list of the table names.
+     */
+    public static String getTableNames() {
+        return TABLES.stream().map(Table::getName).collect(Collectors.joining(", "));
+    }
+
+}
@@ -0,0 +1,184 @@
+package me.moodcat.database.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.zip.CRC32;
+
+import javax.persistence.EntityManager;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.database.DbModule;
+import me.moodcat.database.export.CatalogueFormat.Table;
+
+import org.hibernate.Session;
+
+import com.google.common.base.Preconditions;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.persist.PersistService;
+
+/**
+ * Loads a file written by {@link CatalogueExportApp} into a database. The catalogue tables are
+ * truncated first, so that an environment becomes an exact copy of the exported one. The file
+ * is memory mapped and the rows are inserted in JDBC batches within a single transaction.
+ * <p>
+ * Chat history refers to the users and rooms of the catalogue. The import does not remove it,
+ * so it fails on a database with chat history until the history is removed explicitly.
+ */
+@Slf4j
+public class CatalogueImportApp {
+
+    /**
+     * The number of rows per insert batch.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Tables that are not part of the catalogue, but that refer to catalogue tables and can be
+     * rebuilt by the rooms. They are truncated along with the catalogue.
+     */
+    private static final String DEPENDENT_TABLES = "song_exclusions";
+
+    /**
+     * The main method, will clear the catalogue and import the file.
+     *
+     * @param args
+     *            The path of the file to read, defaults to {@code catalogue.bin}.
+     * @throws Exception
+     *             when database communication has failed.
+     */
+    public static void main(final String[] args) throws Exception {
+        final Path path = Paths.get(args.length > 0 ? args[0] : "catalogue.bin");
+        new CatalogueImportApp().run(path);
+    }
+
+    /**
+     * Run the import.
+     *
+     * @param path
+     *            The file to read.
+     * @throws Exception
+     *             when the import has failed.
+     */
+    public void run(final Path path) throws Exception {
+        final Injector injector = Guice.createInjector(new DbModule());
+        final PersistService persistService = injector.getInstance(PersistService.class);
+        persistService.start();
+
+        final EntityManager entityManager = injector.getInstance(EntityManager.class);
+        final long start = System.currentTimeMillis();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Preconditions.checkArgument(channel.size() <= Integer.MAX_VALUE,
+                    "Catalogue files larger than 2GB can not be mapped");
+            final MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+            readHeader(buffer);
+
+            entityManager.getTransaction().begin();
+            try {
+                entityManager.unwrap(Session.class).doWork(connection -> {
+                    truncate(connection);
+                    while (buffer.hasRemaining()) {
+                        importTable(connection, buffer);
+                    }
+                    resetSequences(connection);
+                });
+                entityManager.getTransaction().commit();
+            } finally {
+                if (entityManager.getTransaction().isActive()) {
+                    entityManager.getTransaction().rollback();
+                }
+            }
+        } finally {
+            persistService.stop();
+        }
+
+        log.info("Imported catalogue from {} in {} ms", path,
+                System.currentTimeMillis() - start);
+    }
+
+    private static void readHeader(final ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != CatalogueFormat.MAGIC) {
+            throw new IOException("Not a catalogue file");
+        }
+
+        final int version = buffer.getInt();
+        if (version != CatalogueFormat.VERSION) {
+            throw new IOException("Unsupported catalogue version " + version);
+        }
+    }
+
+    /**
+     * Truncate the catalogue tables, and {@link #DEPENDENT_TABLES} that only refer to the
+     * catalogue. The truncate does not cascade: if the database has chat history, the chat tables
+     * refer to the users and rooms, and the import fails instead of deleting the history.
+     */
+    private static void truncate(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE " + CatalogueFormat.getTableNames() + ", "
+                    + DEPENDENT_TABLES);
+        }
+    }
+
+    private static void importTable(final Connection connection, final ByteBuffer buffer)
+            throws SQLException {
+        final Table table = CatalogueFormat.getTable(CatalogueFormat.readString(buffer));
+        final CRC32 checksum = new CRC32();
+        int rows = 0;
+
+        try (PreparedStatement statement = connection.prepareStatement(table.getInsertSql())) {
+            for (int length = buffer.getInt(); length != CatalogueFormat.END_OF_TABLE; length =
+                    buffer.getInt()) {
+                final ByteBuffer record = buffer.slice();
+                record.limit(length);
+                buffer.position(buffer.position() + length);
+                verify(record, buffer.getInt(), checksum, table, rows);
+
+                table.readRow(record, statement);
+                statement.addBatch();
+
+                if (++rows % BATCH_SIZE == 0) {
+                    statement.executeBatch();
+                }
+            }
+            statement.executeBatch();
+        }
+
+        log.info("Imported {} rows into {}", rows, table);
+    }
+
+    private static void verify(final ByteBuffer record, final int expected, final CRC32 checksum,
+            final Table table, final int row) throws SQLException {
+        checksum.reset();
+        checksum.update(record.duplicate());
+
+        if ((int) checksum.getValue() != expected) {
+            throw new SQLException(String.format("Checksum mismatch in row %d of %s", row,
+                    table));
+        }
+    }
+
+    private static void resetSequences(final Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (final Table table : CatalogueFormat.TABLES) {
+                if (table.isSerialId()) {
+                    statement.execute(String.format(
+                            "SELECT setval(pg_get_serial_sequence('%1$s', 'id'), "
+                                    + "COALESCE(MAX(id), 0) + 1, false) FROM %1$s",
+                            table.getName()));
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+package me.moodcat.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load test that keeps a number of concurrent clients polling the chat messages of a room and
+ * reports the throughput and latency of the server. Start the server with different values for
+ * {@code -Dmoodcat.server.threads} and {@code -Dmoodcat.worker.threads} and compare the
+ * reported numbers.
+ *
+ * <p>
+ * Usage: {@code ChatPollLoadTest [baseUrl] [pollers] [seconds] [roomId]}, by default
+ * {@code http://localhost:8080 5000 30 1}.
+ * </p>
+ */
+@Slf4j
+public class ChatPollLoadTest {
+
+    private static final String DEFAULT_BASE_URL = "http://localhost:8080";
+
+    private static final int DEFAULT_POLLERS = 5000;
+
+    private static final int DEFAULT_DURATION = 30;
+
+    private static final int DEFAULT_ROOM = 1;
+
+    private static final int TIMEOUT = 30000;
+
+    /**
+     * Latency histogram with buckets of one millisecond, the last bucket holds all slower
+     * requests.
+     */
+    private static final int HISTOGRAM_SIZE = 10000;
+
+    private static final double[] PERCENTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final URL url;
+
+    private final int pollers;
+
+    private final long durationNanos;
+
+    private final AtomicLong succeeded = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_SIZE);
+
+    public ChatPollLoadTest(final URL url, final int pollers, final int seconds) {
+        this.url = url;
+        this.pollers = pollers;
+        this.durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+    }
+
+    /**
+     * Run the load test.
+     *
+     * @param args
+     *            Optionally the base url, number of pollers, duration in seconds and room id.
+     * @throws Exception
+     *             If the test was interrupted.
+     */
+    public static void main(final String... args) throws Exception {
+        final String baseUrl = args.length > 0 ? args[0] : DEFAULT_BASE_URL;
+        final int pollers = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_POLLERS;
+        final int seconds = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DURATION;
+        final int roomId = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_ROOM;
+
+        final URL url = new URL(String.format("%s/api/rooms/%d/messages", baseUrl, roomId));
+        new ChatPollLoadTest(url, pollers, seconds).run();
+    }
+
+    /**
+     * Start the pollers, wait for the test to finish and log the results.
+     *
+     * @throws InterruptedException
+     *             If the test was interrupted.
+     */
+    public void run() throws InterruptedException {
+        log.info("Polling {} with {} concurrent clients for {} seconds", url, pollers,
+                TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(pollers);
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(pollers);
+
+        for (int i = 0; i < pollers; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    poll();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        final long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        final long elapsed = System.nanoTime() - startTime;
+        executor.shutdown();
+
+        report(elapsed);
+    }
+
+    private void poll() {
+        final long deadline = System.nanoTime() + durationNanos;
+
+        while (System.nanoTime() < deadline) {
+            final long requestStart = System.nanoTime();
+
+            if (request()) {
+                succeeded.incrementAndGet();
+                record(System.nanoTime() - requestStart);
+            } else {
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    private boolean request() {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(TIMEOUT);
+            connection.setReadTimeout(TIMEOUT);
+
+            try (InputStream inputStream = connection.getInputStream()) {
+                drain(inputStream);
+            }
+
+            return connection.getResponseCode() == HttpURLConnection.HTTP_OK;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private static void drain(final InputStream inputStream) throws IOException {
+        final byte[] buffer = new byte[4096];
+        while (inputStream.read(buffer) != -1) {
+            continue;
+        }
+    }
+
+    private void record(final long nanos) {
+        final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        histogram.incrementAndGet((int) Math.min(millis, HISTOGRAM_SIZE - 1));
+    }
+
+    private void report(final long elapsedNanos) {
+        final double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+
+        log.info("Completed {} requests, {} failed, in {} seconds", succeeded.get(),
+                failed.get(), String.format("%.1f", seconds));
+        log.info("Throughput: {} requests per second",
+                String.format("%.1f", succeeded.get() / seconds));
+
+        Arrays.stream(PERCENTILES).forEach(percentile ->
+                log.info("p{}: {} ms", percentile * 100, percentile(percentile)));
+    }
+
+    private int percentile(final double percentile) {
+        final long threshold = (long) Math.ceil(succeeded.get() * percentile);
+        long seen = 0;
+
+        for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+            seen += histogram.get(i);
+            if (seen >= threshold) {
+                return i;
+            }
+        }
+
+        return HISTOGRAM_SIZE;
+    }
+
+}
@@ -0,0 +1,111 @@
+package me.moodcat.api;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.NotAuthorizedException;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.core.MediaType;
+
+import me.moodcat.api.models.ClusterNodeModel;
+import me.moodcat.backend.cluster.ClusterMembership;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+
+/**
+ * The API through which nodes join and leave the MoodCat cluster.
+ */
+@Path("/api/cluster/nodes")
+@Produces(MediaType.APPLICATION_JSON)
+public class ClusterAPI {
+
+    /**
+     * The membership of the cluster.
+     */
+    private final ClusterMembership clusterMembership;
+
+    @Inject
+    @VisibleForTesting
+    public ClusterAPI(final ClusterMembership clusterMembership) {
+        this.clusterMembership = clusterMembership;
+    }
+
+    /**
+     * Get the nodes in the cluster.
+     *
+     * @return The nodes in the cluster.
+     */
+    @GET
+    public List<ClusterNodeModel> getNodes() {
+        return clusterMembership.getNodes().stream()
+                .map(ClusterNodeModel::new)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Add a node to the cluster. Rooms are rebalanced over the nodes, and the nodes in the
+     * cluster are returned once the rooms that the node takes over are handed over. The request
+     * does not hold a server thread while the rooms are handed over.
+     *
+     * @param secret
+     *            The shared secret of the cluster.
+     * @param node
+     *            The node that joins.
+     * @param asyncResponse
+     *            The response that receives the nodes in the cluster.
+     */
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void join(@HeaderParam(ClusterMembership.SECRET_HEADER) final String secret,
+            final ClusterNodeModel node, @Suspended final AsyncResponse asyncResponse) {
+        assertSecret(secret);
+        resumeWhenHandled(clusterMembership.join(node.getUrl()), asyncResponse);
+    }
+
+    /**
+     * Remove a node from the cluster. Rooms are rebalanced over the remaining nodes, and the
+     * nodes in the cluster are returned once the rooms are rebalanced.
+     *
+     * @param secret
+     *            The shared secret of the cluster.
+     * @param node
+     *            The node that leaves.
+     * @param asyncResponse
+     *            The response that receives the nodes in the cluster.
+     */
+    @DELETE
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void leave(@HeaderParam(ClusterMembership.SECRET_HEADER) final String secret,
+            final ClusterNodeModel node, @Suspended final AsyncResponse asyncResponse) {
+        assertSecret(secret);
+        resumeWhenHandled(clusterMembership.leave(node.getUrl()), asyncResponse);
+    }
+
+    private void resumeWhenHandled(final CompletableFuture<Void> handled,
+            final AsyncResponse asyncResponse) {
+        handled.whenComplete((result, failure) -> {
+            if (failure == null) {
+                asyncResponse.resume(getNodes());
+            } else {
+                asyncResponse.resume(failure);
+            }
+        });
+    }
+
+    private void assertSecret(final String secret) {
+        if (!clusterMembership.acceptsSecret(secret)) {
+            throw new NotAuthorizedException("Invalid cluster secret");
+        }
+    }
+
+}
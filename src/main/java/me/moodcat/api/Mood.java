@@ -1,6 +1,7 @@
 package me.moodcat.api;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
 import java.util.stream.Collectors;
@@ -92,13 +93,36 @@ public enum Mood {
      * @return The average vector, or the zero-vector if no moods were found.
      */
     public static VAVector createTargetVector(final List<String> moods) {
-        final List<VAVector> actualMoods = moods.stream()
-                .filter(Mood::nameRepresentsMood)
-                .map(mood -> Mood.valueOf(mood.toUpperCase(Locale.ROOT)))
+        return createTargetVector(fromNames(moods));
+    }
+
+    /**
+     * Get the vector that represents the average of the provided moods.
+     *
+     * @param moods
+     *            The moods.
+     * @return The average vector, or the zero-vector if the list is empty.
+     */
+    public static VAVector createTargetVector(final Collection<Mood> moods) {
+        final List<VAVector> vectors = moods.stream()
                 .map(mood -> mood.getVector())
                 .collect(Collectors.toList());
 
-        return VAVector.average(actualMoods);
+        return VAVector.average(vectors);
+    }
+
+    /**
+     * Get the moods for a list of names. Names that do not represent a mood are ignored.
+     *
+     * @param moods
+     *            The textual list of moods.
+     * @return The moods, in the same order.
+     */
+    public static List<Mood> fromNames(final List<String> moods) {
+        return moods.stream()
+                .filter(Mood::nameRepresentsMood)
+                .map(mood -> Mood.valueOf(mood.toUpperCase(Locale.ROOT)))
+                .collect(Collectors.toList());
     }
 
     private static boolean nameRepresentsMood(final String mood) {
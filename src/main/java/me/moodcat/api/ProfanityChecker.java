@@ -6,6 +6,8 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Utility to match messages against a set of patterns to filter out profanity.
@@ -50,7 +52,7 @@ public class ProfanityChecker {
         String[] words = message.split("\\s");
         
         for (String word : words) {
-            String actualWord = word.toLowerCase().replaceAll("\\W+", "");
+            String actualWord = normalize(word);
             
             checkPatterns(word, actualWord, builder);
             
@@ -60,6 +62,32 @@ public class ProfanityChecker {
         return builder.substring(0, builder.length() - 1).toString();
     }
     
+    /**
+     * Split a message into its normalized words, the words that are matched against the
+     * profanity list. Also used to index and search chat messages.
+     *
+     * @param message
+     *            the message to split.
+     * @return the normalized words, without empty words.
+     */
+    public static List<String> tokenize(final String message) {
+        return Arrays.stream(message.split("\\s"))
+                .map(ProfanityChecker::normalize)
+                .filter(word -> !word.isEmpty())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Normalize a word: lowercase it and strip everything that is not a word character.
+     *
+     * @param word
+     *            the word to normalize.
+     * @return the normalized word, can be empty.
+     */
+    public static String normalize(final String word) {
+        return word.toLowerCase().replaceAll("\\W+", "");
+    }
+
     private void checkPatterns(final String word, final String actualWord, final StringBuilder builder) {
         for (String pattern : profanityPatterns) {
             if (actualWord.matches(pattern)) {
@@ -1,16 +1,23 @@
 package me.moodcat.api;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
+import javax.ws.rs.NotFoundException;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.MediaType;
 
 import me.moodcat.api.filters.AwardPoints;
@@ -18,16 +25,19 @@ import me.moodcat.api.models.ChatMessageModel;
 import me.moodcat.api.models.NowPlaying;
 import me.moodcat.api.models.RoomModel;
 import me.moodcat.api.models.SongModel;
+import me.moodcat.api.models.VotesModel;
+import me.moodcat.backend.rooms.ChatSearchIndex;
 import me.moodcat.backend.rooms.RoomBackend;
 import me.moodcat.backend.rooms.RoomInstance;
-import me.moodcat.database.controllers.RoomDAO;
-import me.moodcat.database.embeddables.VAVector;
-import me.moodcat.database.entities.Room;
+import me.moodcat.backend.rooms.RoomRankingCache;
+import me.moodcat.backend.rooms.RoomRankingCache.RankedRoom;
+import me.moodcat.database.controllers.ChatDAO;
 import me.moodcat.database.entities.Song;
 import me.moodcat.database.entities.User;
 import me.moodcat.backend.Vote;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
@@ -44,15 +54,40 @@ public class RoomAPI {
 
     private static final int VOTES_POINTS_AWARD = 2;
 
+    /**
+     * Maximum number of seconds a long poll request waits for new messages.
+     */
+    private static final int MAXIMUM_POLL_TIMEOUT = 60;
+
+    /**
+     * Maximum number of messages that is returned when scrolling back through the chat.
+     */
+    private static final int MAXIMUM_SCROLLBACK_LIMIT = 200;
+
+    /**
+     * Maximum number of messages that is returned by a search.
+     */
+    private static final int MAXIMUM_SEARCH_LIMIT = 100;
+
     /**
      * The backend of the room.
      */
     private final RoomBackend backend;
 
     /**
-     * The database access object for the rooms.
+     * The ranking of rooms by moods.
+     */
+    private final RoomRankingCache roomRankingCache;
+
+    /**
+     * The archive of chat messages that are no longer in the scrollback.
+     */
+    private final ChatDAO chatDAO;
+
+    /**
+     * The index to search chat messages.
      */
-    private final RoomDAO roomDAO;
+    private final ChatSearchIndex chatSearchIndex;
 
     /**
      * Current User provider.
@@ -61,15 +96,19 @@ public class RoomAPI {
 
     @Inject
     @VisibleForTesting
-    public RoomAPI(final RoomBackend backend, final RoomDAO roomDAO,
+    public RoomAPI(final RoomBackend backend, final RoomRankingCache roomRankingCache,
+            final ChatDAO chatDAO, final ChatSearchIndex chatSearchIndex,
             @Named("current.user") final Provider<User> currentUserProvider) {
         this.backend = backend;
-        this.roomDAO = roomDAO;
+        this.roomRankingCache = roomRankingCache;
+        this.chatDAO = chatDAO;
+        this.chatSearchIndex = chatSearchIndex;
         this.currentUserProvider = currentUserProvider;
     }
 
     /**
      * Get all the rooms that are sorted on how close they are to the provided moods.
+     * The rankings are served from memory, so listing rooms does not query the database.
      *
      * @param moods
      *            The moods we want to have rooms for.
@@ -78,20 +117,26 @@ public class RoomAPI {
      * @return The list of rooms that are close to the provided moods.
      */
     @GET
-    @Transactional
     public List<RoomModel> getRooms(@QueryParam("mood") final List<String> moods,
             @QueryParam("limit") @DefaultValue("5") final int limit) {
-        final VAVector targetVector = Mood.createTargetVector(moods);
-
-        return roomDAO.queryRooms(targetVector, limit)
+        return roomRankingCache.getRooms(moods, limit)
                 .stream()
-                .map(this::resolveRoomInstance)
-                .map(RoomAPI::transform)
+                .map(this::transformRoom)
                 .collect(Collectors.toList());
     }
 
-    private RoomInstance resolveRoomInstance(final Room room) {
-        return backend.getRoomInstance(room.getId());
+    private RoomModel transformRoom(final RankedRoom room) {
+        final RoomInstance roomInstance = backend.getRoomInstance(room.getId());
+
+        if (roomInstance == null) {
+            // The room is served by another node in the cluster
+            final RoomModel roomModel = new RoomModel();
+            roomModel.setId(room.getId());
+            roomModel.setName(room.getName());
+            return roomModel;
+        }
+
+        return transform(roomInstance);
     }
 
     /**
@@ -105,7 +150,8 @@ public class RoomAPI {
     public static RoomModel transform(final RoomInstance roomInstance) {
         final RoomModel roomModel = new RoomModel();
         final SongModel songModel = SongModel.transform(roomInstance.getCurrentSong());
-        final NowPlaying nowPlaying = new NowPlaying(roomInstance.getCurrentTime(), songModel);
+        final NowPlaying nowPlaying = new NowPlaying(roomInstance.getCurrentTime(), songModel,
+                transformVotes(roomInstance));
 
         roomModel.setId(roomInstance.getId());
         roomModel.setName(roomInstance.getName());
@@ -113,6 +159,23 @@ public class RoomAPI {
         return roomModel;
     }
 
+    /**
+     * Get the instance of a room that is served by this node.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @return The instance of the room.
+     * @throws NotFoundException
+     *             If the room does not exist, or is served by another node.
+     */
+    private RoomInstance getRoomInstance(final int roomId) {
+        final RoomInstance roomInstance = backend.getRoomInstance(roomId);
+        if (roomInstance == null) {
+            throw new NotFoundException("Room " + roomId + " is not served by this node");
+        }
+        return roomInstance;
+    }
+
     /**
      * Get the room according to the provided id.
      *
@@ -125,20 +188,102 @@ public class RoomAPI {
     @GET
     @Path("{id}")
     public RoomModel getRoom(@PathParam("id") final int roomId) {
-        return transform(backend.getRoomInstance(roomId));
+        return transform(getRoomInstance(roomId));
     }
 
     /**
-     * Get all the messages of the room.
+     * Get the latest messages of the room, or the messages before a message when the client
+     * scrolls back through the chat. Messages that are no longer in the scrollback of the room
+     * are read from the archive in the database.
      *
      * @param roomId
      *            The id of the room to retrieve messages from.
-     * @return The list of messages of the room.
+     * @param before
+     *            The id of the oldest message the client received, or null for the latest
+     *            messages.
+     * @param limit
+     *            The maximum number of older messages.
+     * @return The list of messages of the room, oldest first.
+     * @throws IllegalArgumentException
+     *             If the limit is not positive or exceeds {@link #MAXIMUM_SCROLLBACK_LIMIT}.
      */
     @GET
     @Path("{id}/messages")
-    public List<ChatMessageModel> getMessages(@PathParam("id") final int roomId) {
-        return backend.getRoomInstance(roomId).getMessages();
+    public List<ChatMessageModel> getMessages(@PathParam("id") final int roomId,
+            @QueryParam("before") final Integer before,
+            @QueryParam("limit") @DefaultValue("50") final int limit) {
+        final RoomInstance roomInstance = getRoomInstance(roomId);
+        if (before == null) {
+            return roomInstance.getMessages();
+        }
+
+        if (limit <= 0 || limit > MAXIMUM_SCROLLBACK_LIMIT) {
+            throw new IllegalArgumentException(String.format(
+                    "The limit should be between 1 and %d", MAXIMUM_SCROLLBACK_LIMIT));
+        }
+
+        final List<ChatMessageModel> messages = roomInstance.getMessagesBefore(before, limit);
+        if (messages.size() < limit) {
+            final int oldestId = messages.isEmpty() ? before : messages.get(0).getId();
+            messages.addAll(0, chatDAO.listBefore(roomId, oldestId, limit - messages.size())
+                    .stream()
+                    .map(ChatMessageModel::transform)
+                    .collect(Collectors.toList()));
+        }
+        return messages;
+    }
+
+    /**
+     * Search the messages of the room that contain all words of the query. Words are matched
+     * after the normalization of the {@link ProfanityChecker}, so the search ignores case and
+     * punctuation.
+     *
+     * @param roomId
+     *            The id of the room to search.
+     * @param query
+     *            The words to search for.
+     * @param limit
+     *            The maximum number of messages.
+     * @return The newest matching messages, newest first.
+     * @throws IllegalArgumentException
+     *             If the query is empty, or the limit is not positive or exceeds
+     *             {@link #MAXIMUM_SEARCH_LIMIT}.
+     * @throws NotFoundException
+     *             If the room is not served by this node.
+     */
+    @GET
+    @Path("{id}/messages/search")
+    public List<ChatMessageModel> searchMessages(@PathParam("id") final int roomId,
+            @QueryParam("q") final String query,
+            @QueryParam("limit") @DefaultValue("20") final int limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("The query should not be empty");
+        }
+        if (limit <= 0 || limit > MAXIMUM_SEARCH_LIMIT) {
+            throw new IllegalArgumentException(String.format(
+                    "The limit should be between 1 and %d", MAXIMUM_SEARCH_LIMIT));
+        }
+
+        // Only the node that owns the room has indexed its messages
+        final RoomInstance roomInstance = getRoomInstance(roomId);
+        final List<Integer> ids = chatSearchIndex.search(roomId, query, limit);
+        // Recent messages may not be persisted yet, so they are taken from the room
+        final Map<Integer, ChatMessageModel> messages = Maps.newHashMap();
+        roomInstance.getMessages().stream()
+                .filter(message -> ids.contains(message.getId()))
+                .forEach(message -> messages.put(message.getId(), message));
+
+        final List<Integer> missing = ids.stream()
+                .filter(id -> !messages.containsKey(id))
+                .collect(Collectors.toList());
+        chatDAO.listByIds(roomId, missing)
+                .forEach(message -> messages.put(message.getId(),
+                        ChatMessageModel.transform(message)));
+
+        return ids.stream()
+                .filter(messages::containsKey)
+                .map(messages::get)
+                .collect(Collectors.toList());
     }
 
     /**
@@ -155,11 +300,53 @@ public class RoomAPI {
     @Path("{id}/messages/{chatMessageId}")
     public List<ChatMessageModel> getMessages(@PathParam("id") final int roomId,
             @PathParam("chatMessageId") final int chatMessageId) {
-        return backend.getRoomInstance(roomId).getMessages().stream()
+        return getRoomInstance(roomId).getMessages().stream()
                 .filter((message) -> message.getId() > chatMessageId)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Wait for messages that are posted after the chatmessage with the corresponding messageId.
+     * The request is suspended until a newer message is posted, or until the timeout expires in
+     * which case an empty list is returned. Suspended requests do not hold a server thread.
+     *
+     * @param roomId
+     *            The room the messages were placed in.
+     * @param chatMessageId
+     *            The id of the last message the client received.
+     * @param timeout
+     *            The number of seconds to wait for new messages.
+     * @param asyncResponse
+     *            The response that is resumed with the newer messages.
+     */
+    @GET
+    @Path("{id}/messages/{chatMessageId}/poll")
+    public void pollMessages(@PathParam("id") final int roomId,
+            @PathParam("chatMessageId") final int chatMessageId,
+            @QueryParam("timeout") @DefaultValue("30") final int timeout,
+            @Suspended final AsyncResponse asyncResponse) {
+        final RoomInstance roomInstance = getRoomInstance(roomId);
+        final AtomicReference<RoomInstance.MessagePoller> poller = new AtomicReference<>();
+
+        // The handler is registered before the timeout starts, so a short timeout finds it, and
+        // both before the poller, which may resume the response as soon as it is registered
+        asyncResponse.setTimeoutHandler(response -> {
+            final RoomInstance.MessagePoller registered = poller.get();
+            if (registered == null || registered.cancel()) {
+                response.resume(Collections.<ChatMessageModel> emptyList());
+            }
+        });
+        asyncResponse.setTimeout(Math.max(1, Math.min(timeout, MAXIMUM_POLL_TIMEOUT)),
+                TimeUnit.SECONDS);
+
+        poller.set(roomInstance.pollMessages(chatMessageId,
+                messages -> asyncResponse.resume(messages)));
+        if (asyncResponse.isDone()) {
+            // The timeout expired before the poller was registered
+            poller.get().cancel();
+        }
+    }
+
     /**
      * Post a message to a room.
      *
@@ -179,7 +366,7 @@ public class RoomAPI {
                     + MAXIMUM_CHAT_MESSAGE_LENGTH + " characters.");
         }
         
-        return backend.getRoomInstance(roomId).sendMessage(msg, currentUserProvider.get());
+        return getRoomInstance(roomId).sendMessage(msg, currentUserProvider.get());
     }
 
     /**
@@ -194,15 +381,33 @@ public class RoomAPI {
     @Path("{id}/now-playing")
     @Transactional
     public NowPlaying getCurrentTime(@PathParam("id") final int roomId) {
-        final RoomInstance roomInstance = backend.getRoomInstance(roomId);
+        final RoomInstance roomInstance = getRoomInstance(roomId);
         final Song song = roomInstance.getCurrentSong();
 
         final NowPlaying nowPlaying = new NowPlaying();
         nowPlaying.setSong(SongModel.transform(song));
         nowPlaying.setTime(roomInstance.getCurrentTime());
+        nowPlaying.setVotes(transformVotes(roomInstance));
         return nowPlaying;
     }
 
+    /**
+     * Retrieve the live vote totals for the current song.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @return The votes for the song that is currently playing.
+     */
+    @GET
+    @Path("{id}/votes")
+    public VotesModel getVotes(@PathParam("id") final int roomId) {
+        return transformVotes(getRoomInstance(roomId));
+    }
+
+    private static VotesModel transformVotes(final RoomInstance roomInstance) {
+        return new VotesModel(roomInstance.getLikes(), roomInstance.getDislikes());
+    }
+
     /**
      * Process a vote to a song. A vote is either "like" or "dislike".
      *
@@ -216,7 +421,7 @@ public class RoomAPI {
     @AwardPoints(VOTES_POINTS_AWARD)
     public RoomModel voteSong(@PathParam("id") final int roomId,
             @PathParam("vote") final String vote) {
-        final RoomInstance roomInstance = this.backend.getRoomInstance(roomId);
+        final RoomInstance roomInstance = getRoomInstance(roomId);
 
         Vote voteValue = Vote.valueOf(vote.toUpperCase());
 
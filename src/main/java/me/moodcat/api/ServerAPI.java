@@ -0,0 +1,49 @@
+package me.moodcat.api;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+
+import me.moodcat.api.models.ConnectionStatisticsModel;
+
+import org.eclipse.jetty.server.ConnectorStatistics;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.inject.Inject;
+
+/**
+ * The API that reports on the state of this node.
+ */
+@Path("/api/server/")
+@Produces(MediaType.APPLICATION_JSON)
+public class ServerAPI {
+
+    /**
+     * The statistics of the connections to this node.
+     */
+    private final ConnectorStatistics connectorStatistics;
+
+    @Inject
+    @VisibleForTesting
+    public ServerAPI(final ConnectorStatistics connectorStatistics) {
+        this.connectorStatistics = connectorStatistics;
+    }
+
+    /**
+     * Get the statistics of the connections to this node.
+     *
+     * @return The connection statistics.
+     */
+    @GET
+    @Path("connections")
+    public ConnectionStatisticsModel getConnections() {
+        return new ConnectionStatisticsModel(connectorStatistics.getConnectionsOpen(),
+                connectorStatistics.getConnectionsOpenMax(),
+                connectorStatistics.getConnections(),
+                connectorStatistics.getMessagesIn(),
+                connectorStatistics.getMessagesInPerConnectionMean(),
+                connectorStatistics.getConnectionDurationMean());
+    }
+
+}
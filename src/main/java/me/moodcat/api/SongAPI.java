@@ -2,28 +2,46 @@ package me.moodcat.api;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import javax.persistence.PersistenceException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import me.moodcat.api.filters.AwardPoints;
+import me.moodcat.api.models.ConsensusModel;
 import me.moodcat.api.models.SongModel;
-import me.moodcat.database.controllers.ClassificationDAO;
+import me.moodcat.backend.ClassificationBackend;
+import me.moodcat.backend.ClassificationIndex;
+import me.moodcat.backend.ClassificationIndex.SongAggregate;
+import me.moodcat.backend.SongSearchIndex;
+import me.moodcat.backend.SongVectorUpdateQueue;
 import me.moodcat.database.controllers.SongDAO;
 import me.moodcat.database.embeddables.VAVector;
 import me.moodcat.database.entities.Classification;
 import me.moodcat.database.entities.Song;
 import me.moodcat.database.entities.User;
 
+import org.hibernate.exception.ConstraintViolationException;
+
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
@@ -54,6 +72,16 @@ public class SongAPI {
      */
     private static final double CLASSIFICATION_WEIGHT = 0.01;
 
+    /**
+     * The maximum number of classifications in a batch.
+     */
+    private static final int MAXIMUM_BATCH_SIZE = 50;
+
+    /**
+     * The error of a classification of a song that the user already classified.
+     */
+    private static final String ALREADY_CLASSIFIED = "Already classified this song";
+
     /**
      * The accepted valence and arousal values.
      */
@@ -66,43 +94,102 @@ public class SongAPI {
      */
     private final SongDAO songDAO;
 
-    private final ClassificationDAO classificationDAO;
+    /**
+     * Backend that stores classifications together with the points they award.
+     */
+    private final ClassificationBackend classificationBackend;
 
     private final Provider<User> currentUserProvider;
 
+    /**
+     * Queue through which the vectors of songs are adjusted.
+     */
+    private final SongVectorUpdateQueue songVectorUpdateQueue;
+
+    /**
+     * Index of the classifications per song.
+     */
+    private final ClassificationIndex classificationIndex;
+
+    /**
+     * Prefix index of the names of songs and artists.
+     */
+    private final SongSearchIndex songSearchIndex;
+
     @Inject
     @VisibleForTesting
-    public SongAPI(final SongDAO songDAO, final ClassificationDAO classificationDAO,
-            @Named("current.user") final Provider<User> currentUserProvider) {
+    public SongAPI(final SongDAO songDAO, final ClassificationBackend classificationBackend,
+            @Named("current.user") final Provider<User> currentUserProvider,
+            final SongVectorUpdateQueue songVectorUpdateQueue,
+            final ClassificationIndex classificationIndex,
+            final SongSearchIndex songSearchIndex) {
         this.songDAO = songDAO;
-        this.classificationDAO = classificationDAO;
+        this.classificationBackend = classificationBackend;
         this.currentUserProvider = currentUserProvider;
+        this.songVectorUpdateQueue = songVectorUpdateQueue;
+        this.classificationIndex = classificationIndex;
+        this.songSearchIndex = songSearchIndex;
     }
 
     @GET
     @Transactional
     public List<SongModel> getSongs() {
-        return transformSongs(songDAO.listSongs());
+        return songDAO.listSongModels();
+    }
+
+    /**
+     * Search songs for typeahead. Songs match if a word of their name, or of the name of their
+     * artist, starts with the prefix, ignoring case and accents. Songs of which the name starts
+     * with the prefix are returned first.
+     *
+     * @param prefix
+     *            The typed prefix.
+     * @param limit
+     *            The maximum number of songs.
+     * @return The best matching songs.
+     */
+    @GET
+    @Path("search")
+    public List<SongModel> searchSongs(@QueryParam("prefix") final String prefix,
+            @QueryParam("limit") @DefaultValue("10") final int limit) {
+        if (prefix == null || prefix.trim().isEmpty()) {
+            throw new IllegalArgumentException("The prefix should not be empty");
+        }
+        if (limit <= 0 || limit > SongSearchIndex.MAXIMUM_RESULTS) {
+            throw new IllegalArgumentException(String.format(
+                    "The limit should be between 1 and %d", SongSearchIndex.MAXIMUM_RESULTS));
+        }
+        return songSearchIndex.search(prefix, limit);
     }
 
     @GET
     @Path("{id}")
     @Transactional
     public SongModel getSongById(@PathParam("id") final int id) {
-        return SongModel.transform(songDAO.findById(id));
+        return songDAO.findModelById(id);
+    }
+
+    /**
+     * Get the consensus of the users about a song.
+     *
+     * @param id
+     *            The id of the song.
+     * @return The consensus vector, number of classifications and confidence.
+     */
+    @GET
+    @Path("{id}/consensus")
+    public ConsensusModel getConsensus(@PathParam("id") final int id) {
+        final SongAggregate aggregate = classificationIndex.getAggregate(id);
+        final VAVector consensus = aggregate.getConsensus();
+        return new ConsensusModel(consensus.getValence(), consensus.getArousal(),
+                aggregate.getCount(), aggregate.getConfidence());
     }
 
     @GET
     @Path("toclassify")
     @Transactional
     public List<SongModel> toClassify() {
-        return transformSongs(songDAO.listRandomsongs(NUMBER_OF_CLASSIFICATION_SONGS));
-    }
-
-    private List<SongModel> transformSongs(final List<Song> songs) {
-        return songs.stream()
-                .map(SongModel::transform)
-                .collect(Collectors.toList());
+        return songDAO.listRandomSongModels(NUMBER_OF_CLASSIFICATION_SONGS);
     }
 
     /*
@@ -115,7 +202,8 @@ public class SongAPI {
      * classifications on the same song, we ignore duplicate classifications.
      */
     /**
-     * Process a user classification for the given songId.
+     * Process a user classification for the given songId. The points are awarded in the
+     * transaction that persists the classification.
      *
      * @param id
      *            The id of the song.
@@ -127,8 +215,6 @@ public class SongAPI {
      */
     @POST
     @Path("{id}/classify")
-    @Transactional
-    @AwardPoints(CLASSIFICATION_POINTS_AWARD)
     public ClassificationRequest classifySong(@PathParam("id") final int id,
             final ClassificationRequest classification)
             throws InvalidClassificationException {
@@ -139,41 +225,173 @@ public class SongAPI {
                 classification.getValence(),
                 classification.getArousal());
 
-        if (classificationDAO.exists(user, song)) {
-            throw new IllegalArgumentException("Already classified this song");
-        }
-
         assertDimensionIsValid(classification.getValence());
         assertDimensionIsValid(classification.getArousal());
 
-        updateVectorFromClassification(user, song, classificationVector);
+        if (classificationIndex.isClassified(user, song)
+                || persistClassifications(user, Lists.newArrayList(
+                        createClassification(user, song, classificationVector))).isEmpty()) {
+            throw new IllegalArgumentException(ALREADY_CLASSIFIED);
+        }
 
         return classification;
     }
 
-    private void updateVectorFromClassification(final User user, final Song song,
-            final VAVector classificationVector) {
-        final VAVector vector;
-        if (song.getValenceArousal().distance(VAVector.ZERO) < VECTOR_DELTA) {
-            // If near origin set the vector
-            vector = classificationVector;
-        } else {
-            // otherwise adjust the vector
-            vector = adjustSongVector(classificationVector, song);
+    /**
+     * Process a batch of user classifications in a single transaction. Every classification is
+     * validated on its own, and the points for all accepted classifications are awarded in the
+     * same transaction. The accepted classifications are applied to the index and the song
+     * vectors once the transaction is committed.
+     *
+     * @param classifications
+     *            The classifications of the user.
+     * @return The result for every classification, in the same order.
+     */
+    @POST
+    @Path("classify/batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public List<ClassificationResult> classifySongs(
+            final List<SongClassification> classifications) {
+        if (classifications == null || classifications.isEmpty()
+                || classifications.contains(null)) {
+            throw new IllegalArgumentException("A batch should contain classifications");
+        }
+        if (classifications.size() > MAXIMUM_BATCH_SIZE) {
+            throw new IllegalArgumentException("A batch may contain at most "
+                    + MAXIMUM_BATCH_SIZE + " classifications");
+        }
+
+        final User user = this.currentUserProvider.get();
+        final Map<Integer, Song> songs = this.songDAO.findBySoundCloudIds(
+                classifications.stream()
+                        .map(SongClassification::getId)
+                        .collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Song::getSoundCloudId, Function.identity(),
+                        (first, second) -> first));
+
+        final List<ClassificationResult> results = Lists.newArrayList();
+        final List<Classification> candidates = Lists.newArrayList();
+
+        for (final SongClassification classification : classifications) {
+            final Song song = songs.get(classification.getId());
+            final String error = validate(user, song, classification);
+            results.add(new ClassificationResult(classification.getId(), error == null, error));
+            candidates.add(error == null ? createClassification(user, song, new VAVector(
+                    classification.getValence(), classification.getArousal())) : null);
+        }
+
+        // Classifications are only equal by id, so compare the persisted ones by identity
+        final Set<Classification> persisted = Sets.newIdentityHashSet();
+        persisted.addAll(persistClassifications(user, candidates.stream()
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList())));
+
+        for (int i = 0; i < candidates.size(); i++) {
+            final Classification candidate = candidates.get(i);
+            if (candidate != null && !persisted.contains(candidate)) {
+                // A song that occurs more than once in the batch is classified once
+                results.set(i, new ClassificationResult(results.get(i).getId(), false,
+                        ALREADY_CLASSIFIED));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Validate a classification in a batch.
+     *
+     * @param user
+     *            The user that classifies.
+     * @param song
+     *            The classified song, {@code null} if it does not exist.
+     * @param classification
+     *            The classification of the user.
+     * @return The reason the classification is rejected, {@code null} if it is valid.
+     */
+    private String validate(final User user, final Song song,
+            final SongClassification classification) {
+        if (song == null) {
+            return "Unknown song";
+        }
+
+        if (!isValidDimension(classification.getValence())
+                || !isValidDimension(classification.getArousal())) {
+            return "Invalid classification";
+        }
+
+        if (classificationIndex.isClassified(user, song)) {
+            return ALREADY_CLASSIFIED;
+        }
+
+        return null;
+    }
+
+    /**
+     * Persist classifications and award their points in a single transaction, and once it is
+     * committed, add them to the {@link ClassificationIndex} and queue the adjustments of the song
+     * vectors. Classifications of songs that the user already classified are not persisted.
+     *
+     * @param user
+     *            The user that classifies.
+     * @param classifications
+     *            The classifications of the user.
+     * @return The persisted classifications.
+     * @throws IllegalArgumentException
+     *             If the user classified one of the songs concurrently.
+     */
+    private List<Classification> persistClassifications(final User user,
+            final List<Classification> classifications) {
+        final List<Classification> persisted;
+        try {
+            persisted = this.classificationBackend.classify(user, classifications,
+                    CLASSIFICATION_POINTS_AWARD);
+        } catch (final PersistenceException e) {
+            if (Throwables.getCausalChain(e).stream()
+                    .anyMatch(ConstraintViolationException.class::isInstance)) {
+                throw new IllegalArgumentException(ALREADY_CLASSIFIED, e);
+            }
+            throw e;
         }
 
-        song.setValenceArousal(vector);
-        this.persistClassification(user, song, classificationVector);
-        this.songDAO.merge(song);
+        persisted.forEach(this::classified);
+        return persisted;
     }
 
-    private void persistClassification(final User user, final Song song,
+    /**
+     * Apply a committed classification to the {@link ClassificationIndex} and the vector of its
+     * song.
+     *
+     * @param classification
+     *            The committed classification.
+     */
+    private void classified(final Classification classification) {
+        final int songId = classification.getSong().getId();
+        final VAVector classificationVector = classification.getValenceArousal();
+        this.classificationIndex.record(classification.getUser().getId(), songId,
+                classificationVector);
+        this.songVectorUpdateQueue.enqueue(songId,
+                vector -> classifyVector(classificationVector, vector));
+    }
+
+    private static VAVector classifyVector(final VAVector classificationVector,
+            final VAVector songVector) {
+        if (songVector.distance(VAVector.ZERO) < VECTOR_DELTA) {
+            // If near origin set the vector
+            return classificationVector;
+        }
+        // otherwise adjust the vector
+        return adjustSongVector(classificationVector, songVector);
+    }
+
+    private static Classification createClassification(final User user, final Song song,
             final VAVector classificationVector) {
         final Classification classificationEntity = new Classification();
         classificationEntity.setValenceArousal(classificationVector);
         classificationEntity.setSong(song);
         classificationEntity.setUser(user);
-        this.classificationDAO.persist(classificationEntity);
+        return classificationEntity;
     }
 
     /**
@@ -199,22 +417,25 @@ public class SongAPI {
         assertDimensionIsValid(classification.getValence());
         assertDimensionIsValid(classification.getArousal());
 
-        song.setValenceArousal(new VAVector(classification.getValence(), classification
-                .getArousal()));
-        songDAO.merge(song);
+        final VAVector classificationVector = new VAVector(classification.getValence(),
+                classification.getArousal());
+        songVectorUpdateQueue.enqueue(song.getId(), vector -> classificationVector);
 
         return classification;
     }
 
     private void assertDimensionIsValid(final double value) throws InvalidClassificationException {
-        if (!Arrays.asList(ACCEPTED_DIMENSION_VALUES).contains(value)) {
+        if (!isValidDimension(value)) {
             throw new InvalidClassificationException();
         }
     }
 
-    private VAVector adjustSongVector(final VAVector classificationVector, final Song song) {
-        final VAVector songVector = song.getValenceArousal();
+    private static boolean isValidDimension(final double value) {
+        return Arrays.asList(ACCEPTED_DIMENSION_VALUES).contains(value);
+    }
 
+    private static VAVector adjustSongVector(final VAVector classificationVector,
+            final VAVector songVector) {
         final VAVector scaledDistance = classificationVector.subtract(songVector)
                 .multiply(CLASSIFICATION_WEIGHT);
 
@@ -249,6 +470,78 @@ public class SongAPI {
         private double arousal;
     }
 
+    /**
+     * A classification of a song in a batch.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class SongClassification {
+
+        /**
+         * The SoundCloud id of the song.
+         *
+         * @param id
+         *            The id to set.
+         * @return The SoundCloud id of the song.
+         */
+        private int id;
+
+        /**
+         * The valence for the song.
+         *
+         * @param valence
+         *            The valence to set.
+         * @return The valence that was classified.
+         */
+        private double valence;
+
+        /**
+         * The arousal for the song.
+         *
+         * @param arousal
+         *            The arousal to set.
+         * @return The arousal that was classified.
+         */
+        private double arousal;
+    }
+
+    /**
+     * The result of a classification in a batch.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ClassificationResult {
+
+        /**
+         * The SoundCloud id of the song.
+         *
+         * @param id
+         *            The id to set.
+         * @return The SoundCloud id of the song.
+         */
+        private int id;
+
+        /**
+         * Whether the classification was stored.
+         *
+         * @param accepted
+         *            Whether the classification was stored.
+         * @return true if the classification was stored.
+         */
+        private boolean accepted;
+
+        /**
+         * The reason the classification was rejected.
+         *
+         * @param error
+         *            The reason to set.
+         * @return The reason the classification was rejected, {@code null} if accepted.
+         */
+        private String error;
+    }
+
     /**
      * Thrown if the classification was invalid.
      */
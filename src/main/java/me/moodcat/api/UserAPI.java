@@ -15,7 +15,6 @@ import me.moodcat.database.controllers.UserDAO;
 import me.moodcat.database.entities.User;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
@@ -49,7 +48,7 @@ public class UserAPI {
     @GET
     @Transactional
     public List<UserModel> getUsers() {
-        return Lists.transform(userDAO.getAll(), UserModel::transform);
+        return userDAO.listUserModels();
     }
 
     /**
@@ -65,7 +64,7 @@ public class UserAPI {
     @Path("{id}")
     @Transactional
     public UserModel getUser(@PathParam("id") final int userId) {
-        return UserModel.transform(userDAO.findById(userId));
+        return userDAO.findModelById(userId);
     }
 
     /**
@@ -77,7 +76,7 @@ public class UserAPI {
     @Path("me")
     @Transactional
     public UserModel getMe() {
-        return UserModel.transform(currentUserProvider.get());
+        return userDAO.findModelById(getCurrentUserId());
     }
 
     /**
@@ -89,13 +88,20 @@ public class UserAPI {
     @Path("me/points")
     @Transactional
     public Integer getPoints() {
-        return currentUserProvider.get().getPoints();
+        return userDAO.findPoints(getCurrentUserId());
+    }
+
+    /**
+     * The current user may be restored from a session token, which only holds its id and name.
+     */
+    private int getCurrentUserId() {
+        return currentUserProvider.get().getId();
     }
 
     @GET
     @Path("leaderboard")
     @Transactional
     public List<UserModel> getLeaderboard(@QueryParam("limit") @DefaultValue("10") final long limit) {
-        return Lists.transform(userDAO.getLeaderboard(limit), UserModel::transform);
+        return userDAO.getLeaderboardModels(limit);
     }
 }
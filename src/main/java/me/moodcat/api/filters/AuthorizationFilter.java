@@ -5,11 +5,14 @@ import java.io.IOException;
 import javax.ws.rs.NotAuthorizedException;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
 import javax.ws.rs.container.PreMatching;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.Provider;
 
+import me.moodcat.backend.SessionTokens;
 import me.moodcat.backend.UserBackend;
 import me.moodcat.core.mappers.NotAuthorizedExceptionMapper;
 import me.moodcat.database.entities.User;
@@ -21,26 +24,40 @@ import com.google.inject.name.Names;
 
 /**
  * The {@code AuthorizationFilter} ensures that a current user can be injected
- * in the current request scope, given that the request provides a SoundCloud
- * OAuth token through its query parameters and the token can be verified against
- * the SoundCloud services.
+ * in the current request scope, given that the request provides a token through
+ * its query parameters. The token is either a SoundCloud OAuth token, which is
+ * verified against the SoundCloud services, or a {@link SessionTokens session token},
+ * which is verified without any database access. When a user logs in with a
+ * SoundCloud token, a session token is returned in the {@value #SESSION_TOKEN_HEADER}
+ * header for subsequent requests.
  */
 @Provider
 @PreMatching
-public class AuthorizationFilter implements ContainerRequestFilter {
+public class AuthorizationFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    /**
+     * The header in which a session token is issued.
+     */
+    public static final String SESSION_TOKEN_HEADER = "X-Session-Token";
 
     protected static final String TOKEN_PARAMETER = "token";
 
     private static final String CURRENT_USER_NAME = "current.user";
 
+    protected static final String ISSUED_TOKEN_PROPERTY = "issued.session.token";
+
     private final UserBackend userBackend;
 
+    private final SessionTokens sessionTokens;
+
     private final NotAuthorizedExceptionMapper notAuthorizedExceptionMapper;
 
     @Inject
     public AuthorizationFilter(final UserBackend userBackend,
+            final SessionTokens sessionTokens,
             final NotAuthorizedExceptionMapper notAuthorizedExceptionMapper) {
         this.userBackend = userBackend;
+        this.sessionTokens = sessionTokens;
         this.notAuthorizedExceptionMapper = notAuthorizedExceptionMapper;
     }
 
@@ -52,7 +69,7 @@ public class AuthorizationFilter implements ContainerRequestFilter {
 
         if (!Strings.isNullOrEmpty(token)) {
             try {
-                final User user = userBackend.loginUsingSoundCloud(token);
+                final User user = authenticate(containerRequestContext, token);
                 containerRequestContext.setProperty(
                         Key.get(User.class, Names.named(CURRENT_USER_NAME))
                                 .toString(), user);
@@ -64,4 +81,25 @@ public class AuthorizationFilter implements ContainerRequestFilter {
 
     }
 
+    private User authenticate(final ContainerRequestContext containerRequestContext,
+            final String token) {
+        if (SessionTokens.isSessionToken(token)) {
+            return sessionTokens.verify(token);
+        }
+
+        final User user = userBackend.loginUsingSoundCloud(token);
+        containerRequestContext.setProperty(ISSUED_TOKEN_PROPERTY, sessionTokens.issue(user));
+        return user;
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext containerRequestContext,
+            final ContainerResponseContext containerResponseContext) throws IOException {
+        final Object issuedToken = containerRequestContext.getProperty(ISSUED_TOKEN_PROPERTY);
+
+        if (issuedToken != null) {
+            containerResponseContext.getHeaders().putSingle(SESSION_TOKEN_HEADER, issuedToken);
+        }
+    }
+
 }
@@ -0,0 +1,63 @@
+package me.moodcat.api.filters;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import javax.ws.rs.ext.Provider;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.backend.cluster.ClusterMembership;
+
+import com.google.inject.Inject;
+
+/**
+ * The {@code RoomOwnershipFilter} redirects requests for a specific room to the node in the
+ * cluster that owns the room. A {@code 307 Temporary Redirect} is used, so that clients repeat
+ * the request with the same method and body on the owning node.
+ */
+@Slf4j
+@Provider
+@PreMatching
+public class RoomOwnershipFilter implements ContainerRequestFilter {
+
+    /**
+     * Matches the paths of resources that belong to a single room.
+     */
+    private static final Pattern ROOM_PATH_PATTERN = Pattern.compile("^/?api/rooms/(\\d{1,9})(/.*)?$");
+
+    private final ClusterMembership clusterMembership;
+
+    @Inject
+    public RoomOwnershipFilter(final ClusterMembership clusterMembership) {
+        this.clusterMembership = clusterMembership;
+    }
+
+    @Override
+    public void filter(final ContainerRequestContext containerRequestContext) throws IOException {
+        final URI requestUri = containerRequestContext.getUriInfo().getRequestUri();
+        final Matcher matcher = ROOM_PATH_PATTERN.matcher(requestUri.getPath());
+
+        if (!matcher.matches()) {
+            return;
+        }
+
+        final int roomId = Integer.parseInt(matcher.group(1));
+
+        if (!clusterMembership.isLocal(roomId)) {
+            final URI location = UriBuilder.fromUri(clusterMembership.getOwner(roomId))
+                    .path(requestUri.getRawPath())
+                    .replaceQuery(requestUri.getRawQuery())
+                    .build();
+            log.debug("Redirecting request for room {} to {}", roomId, location);
+            containerRequestContext.abortWith(Response.temporaryRedirect(location).build());
+        }
+    }
+
+}
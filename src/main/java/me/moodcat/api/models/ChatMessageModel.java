@@ -1,6 +1,8 @@
 package me.moodcat.api.models;
 
 import lombok.Data;
+import me.moodcat.database.entities.ChatMessage;
+
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 /**
@@ -43,6 +45,22 @@ public class ChatMessageModel implements Comparable<ChatMessageModel> {
      */
     private Long timestamp;
 
+    /**
+     * Transform a database {@link ChatMessage} into a {@code ChatMessageModel}.
+     *
+     * @param chatMessage
+     *            Message to transform
+     * @return Transformed model
+     */
+    public static ChatMessageModel transform(final ChatMessage chatMessage) {
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setId(chatMessage.getId());
+        model.setMessage(chatMessage.getMessage());
+        model.setAuthor(chatMessage.getUser().getName());
+        model.setTimestamp(chatMessage.getTimestamp());
+        return model;
+    }
+
     @Override
     public int compareTo(final ChatMessageModel other) {
         return getTimestamp().compareTo(other.getTimestamp());
@@ -0,0 +1,27 @@
+package me.moodcat.api.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * A node in the MoodCat cluster.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ClusterNodeModel {
+
+    /**
+     * The public base url of the node.
+     *
+     * @param url
+     *            The base url to set.
+     * @return The base url of the node.
+     */
+    private String url;
+
+}
@@ -0,0 +1,72 @@
+package me.moodcat.api.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * Statistics of the connections to this node.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ConnectionStatisticsModel {
+
+    /**
+     * The number of connections that are currently open.
+     *
+     * @param open
+     *            The number of open connections to set.
+     * @return The number of open connections.
+     */
+    private int open;
+
+    /**
+     * The maximum number of connections that were open at the same time.
+     *
+     * @param openMax
+     *            The maximum number of open connections to set.
+     * @return The maximum number of open connections.
+     */
+    private int openMax;
+
+    /**
+     * The number of connections that were opened since the statistics were started.
+     *
+     * @param total
+     *            The number of connections to set.
+     * @return The number of connections.
+     */
+    private int total;
+
+    /**
+     * The number of requests received over all connections.
+     *
+     * @param requests
+     *            The number of requests to set.
+     * @return The number of requests.
+     */
+    private int requests;
+
+    /**
+     * The mean number of requests per connection, which shows how well connections are reused.
+     *
+     * @param requestsPerConnection
+     *            The mean number of requests per connection to set.
+     * @return The mean number of requests per connection.
+     */
+    private double requestsPerConnection;
+
+    /**
+     * The mean duration of a connection in milliseconds.
+     *
+     * @param meanDuration
+     *            The mean duration to set.
+     * @return The mean duration of a connection.
+     */
+    private double meanDuration;
+
+}
@@ -0,0 +1,54 @@
+package me.moodcat.api.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The consensus of the users about the valence and arousal of a song.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ConsensusModel {
+
+    /**
+     * The mean classified valence.
+     *
+     * @param valence
+     *            the valence to set
+     * @return the mean classified valence
+     */
+    private double valence;
+
+    /**
+     * The mean classified arousal.
+     *
+     * @param arousal
+     *            the arousal to set
+     * @return the mean classified arousal
+     */
+    private double arousal;
+
+    /**
+     * The number of classifications.
+     *
+     * @param classifications
+     *            the number of classifications to set
+     * @return the number of classifications
+     */
+    private long classifications;
+
+    /**
+     * The confidence in the consensus, between 0 and 1.
+     *
+     * @param confidence
+     *            the confidence to set
+     * @return the confidence in the consensus
+     */
+    private double confidence;
+
+}
@@ -30,4 +30,13 @@ public class NowPlaying {
      */
     private SongModel song;
 
+    /**
+     * The votes for the current song.
+     *
+     * @param votes
+     *            the votes for the current song
+     * @return the votes for the current song
+     */
+    private VotesModel votes;
+
 }
@@ -42,7 +42,7 @@ public class RoomModel {
      */
     @Deprecated
     public SongModel getSong() {
-        return nowPlaying.getSong();
+        return nowPlaying == null ? null : nowPlaying.getSong();
     }
 
     /**
@@ -53,7 +53,7 @@ public class RoomModel {
      */
     @Deprecated
     public Long getTime() {
-        return nowPlaying.getTime();
+        return nowPlaying == null ? null : nowPlaying.getTime();
     }
 
 }
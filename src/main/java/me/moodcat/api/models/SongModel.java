@@ -2,14 +2,18 @@ package me.moodcat.api.models;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 import me.moodcat.database.entities.Artist;
 import me.moodcat.database.entities.Song;
 
+import com.vividsolutions.jts.geom.Point;
+
 /**
  * Song Model.
  */
 @Data
 @EqualsAndHashCode
+@NoArgsConstructor
 public class SongModel {
 
     /**
@@ -90,6 +94,54 @@ public class SongModel {
      */
     private String purchaseTitle;
 
+    /**
+     * Create a song model from the selected columns of a song and its artist. Used to project
+     * queries into models without loading the entities.
+     *
+     * @param id
+     *            The id of the song.
+     * @param soundCloudId
+     *            The SoundCloud id of the song.
+     * @param artistId
+     *            The id of the artist, {@code null} if the song has no artist.
+     * @param artistName
+     *            The name of the artist.
+     * @param name
+     *            The name of the song.
+     * @param duration
+     *            The duration of the song.
+     * @param artworkUrl
+     *            The link to the artwork.
+     * @param location
+     *            The valence-arousal vector of the song, may be {@code null}.
+     * @param purchaseUrl
+     *            The link to purchase the song.
+     * @param purchaseTitle
+     *            The title of the purchase link.
+     */
+    public SongModel(final Integer id, final Integer soundCloudId, final Integer artistId,
+            final String artistName, final String name, final Integer duration,
+            final String artworkUrl, final Point location, final String purchaseUrl,
+            final String purchaseTitle) {
+        this.id = id;
+        this.soundCloudId = soundCloudId;
+        this.name = name;
+        this.duration = duration;
+        this.artworkUrl = artworkUrl;
+        this.purchaseUrl = purchaseUrl;
+        this.purchaseTitle = purchaseTitle;
+
+        if (artistId != null) {
+            this.artist = new Artist();
+            this.artist.setId(artistId);
+            this.artist.setName(artistName);
+        }
+        if (location != null) {
+            this.valence = location.getX();
+            this.arousal = location.getY();
+        }
+    }
+
     /**
      * Transform a database {@link Song} into a {@code SongModel}.
      *
@@ -108,8 +160,10 @@ public class SongModel {
         songModel.setArtworkUrl(song.getArtworkUrl());
         songModel.setDuration(song.getDuration());
         songModel.setSoundCloudId(song.getSoundCloudId());
-        songModel.setValence(song.getValenceArousal().getValence());
-        songModel.setArousal(song.getValenceArousal().getArousal());
+        if (song.getValenceArousal() != null) {
+            songModel.setValence(song.getValenceArousal().getValence());
+            songModel.setArousal(song.getValenceArousal().getArousal());
+        }
         songModel.setPurchaseUrl(song.getPurchaseUrl());
         songModel.setPurchaseTitle(song.getPurchaseTitle());
         return songModel;
@@ -1,6 +1,7 @@
 package me.moodcat.api.models;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import me.moodcat.database.entities.User;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -9,6 +10,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
  * User model for the PAI.
  */
 @Data
+@NoArgsConstructor
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class UserModel {
 
@@ -60,6 +62,30 @@ public class UserModel {
     @JsonProperty("points")
     private int points;
 
+    /**
+     * Create a user model from the selected columns of a user. Used to project queries into
+     * models without loading the entities.
+     *
+     * @param id
+     *            The id of the user.
+     * @param soundCloudUserId
+     *            The SoundCloud id of the user.
+     * @param name
+     *            The name of the user.
+     * @param avatarUrl
+     *            The avatar of the user.
+     * @param points
+     *            The points of the user.
+     */
+    public UserModel(final Integer id, final Integer soundCloudUserId, final String name,
+            final String avatarUrl, final Integer points) {
+        this.id = id;
+        this.soundCloudUserId = soundCloudUserId;
+        this.name = name;
+        this.avatarUrl = avatarUrl;
+        this.points = points;
+    }
+
     /**
      * Transform a {@code User} into a {@code UserModel}.
      * 
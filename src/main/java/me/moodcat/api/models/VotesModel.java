@@ -0,0 +1,45 @@
+package me.moodcat.api.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * The votes for the song that is currently playing in a room.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class VotesModel {
+
+    /**
+     * The number of likes.
+     *
+     * @param likes
+     *            the number of likes
+     * @return the number of likes
+     */
+    private long likes;
+
+    /**
+     * The number of dislikes.
+     *
+     * @param dislikes
+     *            the number of dislikes
+     * @return the number of dislikes
+     */
+    private long dislikes;
+
+    /**
+     * The net score of the votes.
+     *
+     * @return the number of likes minus the number of dislikes
+     */
+    public long getScore() {
+        return likes - dislikes;
+    }
+
+}
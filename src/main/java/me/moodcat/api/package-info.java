@@ -1,7 +1,6 @@
 /**
- * APIs are annotated with {@link javax.ws.rs.Path @Path} which are bound at
- * {@link me.moodcat.core.MoodcatServletModule#configure(com.google.inject.Binder) configuration
- * with bindAPIclasses}.
+ * APIs are annotated with {@link javax.ws.rs.Path @Path} and are listed in the
+ * {@link me.moodcat.core.ApiRegistry} through which they are bound.
  * APIs use {@link me.moodcat.database.controllers DAOs} which define the database connection
  * interface.
  *
@@ -0,0 +1,57 @@
+package me.moodcat.backend;
+
+import java.util.List;
+
+import me.moodcat.database.controllers.ClassificationDAO;
+import me.moodcat.database.controllers.UserDAO;
+import me.moodcat.database.entities.Classification;
+import me.moodcat.database.entities.User;
+
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+
+/**
+ * The {@code ClassificationBackend} stores the classifications of a user together with the
+ * points they award, so that either both or neither are committed.
+ */
+public class ClassificationBackend {
+
+    private final Provider<ClassificationDAO> classificationDAOProvider;
+
+    private final Provider<UserDAO> userDAOProvider;
+
+    @Inject
+    public ClassificationBackend(final Provider<ClassificationDAO> classificationDAOProvider,
+            final Provider<UserDAO> userDAOProvider) {
+        this.classificationDAOProvider = classificationDAOProvider;
+        this.userDAOProvider = userDAOProvider;
+    }
+
+    /**
+     * Persist the classifications of a user and award the points for the persisted
+     * classifications in a single transaction. Classifications of songs that the user already
+     * classified are not persisted and award no points. Callers should only apply the returned
+     * classifications to in-memory state once this method returned, as the transaction is only
+     * committed then.
+     *
+     * @param user
+     *            The user that classifies.
+     * @param classifications
+     *            The classifications of the user.
+     * @param points
+     *            The points awarded per persisted classification.
+     * @return The persisted classifications.
+     */
+    @Transactional
+    public List<Classification> classify(final User user,
+            final List<Classification> classifications, final int points) {
+        final List<Classification> persisted = classificationDAOProvider.get()
+                .persistUnclassified(user, classifications);
+        if (!persisted.isEmpty()) {
+            userDAOProvider.get().incrementPoints(user, persisted.size() * points);
+        }
+        return persisted;
+    }
+
+}
@@ -0,0 +1,263 @@
+package me.moodcat.backend;
+
+import static me.moodcat.database.entities.QClassification.classification;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.database.controllers.ClassificationDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Song;
+import me.moodcat.database.entities.User;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.mysema.query.Tuple;
+import com.vividsolutions.jts.geom.Point;
+
+/**
+ * The {@code ClassificationIndex} keeps a running aggregate of the
+ * {@link me.moodcat.database.entities.Classification classifications} of every song, and the set
+ * of user and song pairs that have been classified. The classification table is append-only, so
+ * the index is rebuilt by streaming it in order of insertion once the server has started, and is
+ * kept up to date as new classifications are committed.
+ */
+@Slf4j
+@Singleton
+public class ClassificationIndex implements DefaultLifceCycleListener {
+
+    /**
+     * Number of classifications fetched per query during a rebuild.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * The aggregates by song id.
+     */
+    private final ConcurrentMap<Integer, SongAggregate> aggregates;
+
+    /**
+     * The classified user and song pairs, see {@link #key(int, int)}.
+     */
+    private final Set<Long> classified;
+
+    private final Provider<ClassificationDAO> classificationDAOProvider;
+
+    private final UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    /**
+     * Whether the index contains all persisted classifications.
+     *
+     * @return true if the index has been rebuilt.
+     */
+    @Getter
+    private volatile boolean loaded;
+
+    @Inject
+    public ClassificationIndex(final Provider<ClassificationDAO> classificationDAOProvider,
+            final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
+            final LifeCycle lifeCycle) {
+        this.classificationDAOProvider = classificationDAOProvider;
+        this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
+        this.aggregates = Maps.newConcurrentMap();
+        this.classified = ConcurrentHashMap.newKeySet();
+        lifeCycle.addLifeCycleListener(this);
+    }
+
+    @Override
+    public void lifeCycleStarted(final LifeCycle lifeCycle) {
+        rebuild();
+    }
+
+    /**
+     * Rebuild the index from the classification table in a unit of work.
+     *
+     * @return a future that completes once the index is loaded
+     */
+    public Future<?> rebuild() {
+        return unitOfWorkSchedulingService.performInUnitOfWork(this::load);
+    }
+
+    /**
+     * Stream all classifications into the index. Should be called in a unit of work.
+     */
+    protected void load() {
+        final ClassificationDAO classificationDAO = classificationDAOProvider.get();
+        int lastId = 0;
+        int count = 0;
+        List<Tuple> batch;
+
+        do {
+            batch = classificationDAO.listAfter(lastId, BATCH_SIZE);
+
+            for (final Tuple row : batch) {
+                lastId = row.get(classification.id);
+                final int songId = row.get(classification.song.id);
+                final Point location = row.get(classification.valenceArousal.location);
+
+                // Classifications recorded while loading are already aggregated
+                if (classified.add(key(row.get(classification.user.id), songId))) {
+                    aggregate(songId, location.getX(), location.getY());
+                    count++;
+                }
+            }
+        } while (batch.size() == BATCH_SIZE);
+
+        loaded = true;
+        log.info("Loaded {} classifications for {} songs", count, aggregates.size());
+    }
+
+    /**
+     * Check whether a user classified a song. Until the index is loaded, the database is checked
+     * as well. This is a fast check only, the uniqueness of classifications is enforced by the
+     * database.
+     *
+     * @param user
+     *            The user that classifies.
+     * @param song
+     *            The song that is classified.
+     * @return true if the user already classified the song.
+     */
+    public boolean isClassified(final User user, final Song song) {
+        return classified.contains(key(user.getId(), song.getId()))
+                || !loaded && classificationDAOProvider.get().exists(user, song);
+    }
+
+    /**
+     * Add a committed classification to the aggregate of its song. Classifications that are
+     * already in the index, because they were loaded concurrently, are ignored.
+     *
+     * @param userId
+     *            The id of the user.
+     * @param songId
+     *            The id of the song.
+     * @param vector
+     *            The classified vector.
+     */
+    public void record(final int userId, final int songId, final VAVector vector) {
+        if (classified.add(key(userId, songId))) {
+            aggregate(songId, vector.getValence(), vector.getArousal());
+        }
+    }
+
+    private void aggregate(final int songId, final double valence, final double arousal) {
+        aggregates.computeIfAbsent(songId, id -> new SongAggregate()).add(valence, arousal);
+    }
+
+    /**
+     * Get the aggregate of the classifications of a song.
+     *
+     * @param songId
+     *            The id of the song.
+     * @return The aggregate, empty if the song has not been classified.
+     */
+    public SongAggregate getAggregate(final int songId) {
+        final SongAggregate aggregate = aggregates.get(songId);
+        return aggregate == null ? new SongAggregate() : aggregate;
+    }
+
+    private static long key(final int userId, final int songId) {
+        return ((long) userId << Integer.SIZE) | (songId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Running aggregate of the classifications of a song.
+     */
+    public static class SongAggregate {
+
+        /**
+         * Number of classifications after which the confidence is one half, for consistent
+         * classifications.
+         */
+        private static final int CONFIDENCE_PRIOR = 5;
+
+        /**
+         * Variance of classifications that are spread uniformly over the valence-arousal space.
+         */
+        private static final double MAXIMUM_VARIANCE = 2.0 / 3.0;
+
+        private long count;
+
+        private double valenceSum;
+
+        private double arousalSum;
+
+        private double squaredSum;
+
+        /**
+         * Add a classification.
+         *
+         * @param valence
+         *            The classified valence.
+         * @param arousal
+         *            The classified arousal.
+         */
+        public synchronized void add(final double valence, final double arousal) {
+            count++;
+            valenceSum += valence;
+            arousalSum += arousal;
+            squaredSum += valence * valence + arousal * arousal;
+        }
+
+        /**
+         * Get the number of classifications.
+         *
+         * @return The number of classifications.
+         */
+        public synchronized long getCount() {
+            return count;
+        }
+
+        /**
+         * Get the consensus vector, the mean of all classifications.
+         *
+         * @return The consensus vector, or the zero vector if there are no classifications.
+         */
+        public synchronized VAVector getConsensus() {
+            if (count == 0) {
+                return VAVector.ZERO;
+            }
+            return new VAVector(valenceSum / count, arousalSum / count);
+        }
+
+        /**
+         * Get the variance of the classifications, the mean squared distance to the consensus.
+         *
+         * @return The variance of the classifications.
+         */
+        public synchronized double getVariance() {
+            if (count == 0) {
+                return 0;
+            }
+            final double meanValence = valenceSum / count;
+            final double meanArousal = arousalSum / count;
+            final double variance = squaredSum / count
+                    - (meanValence * meanValence + meanArousal * meanArousal);
+            // Guard against rounding errors
+            return Math.max(0, variance);
+        }
+
+        /**
+         * Get the confidence in the consensus vector, which grows with the number of
+         * classifications and shrinks with their variance.
+         *
+         * @return A confidence between 0 and 1.
+         */
+        public synchronized double getConfidence() {
+            final double agreement = 1 - Math.min(1, getVariance() / MAXIMUM_VARIANCE);
+            return agreement * count / (count + CONFIDENCE_PRIOR);
+        }
+
+    }
+
+}
@@ -0,0 +1,185 @@
+package me.moodcat.backend;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.ws.rs.NotAuthorizedException;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.backend.cluster.ClusterConfiguration;
+import me.moodcat.database.entities.User;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+
+/**
+ * {@code SessionTokens} issues and verifies signed session tokens. A session token holds the id
+ * and name of a user and an expiry time, signed with HMAC-SHA256. It is verified without
+ * database access or server side session state, so every node that shares the secret can
+ * serve the requests of a user.
+ */
+@Slf4j
+@Singleton
+public class SessionTokens {
+
+    /**
+     * System property that holds the secret that nodes share to sign session tokens.
+     */
+    public static final String SECRET_PROPERTY = "moodcat.session.secret";
+
+    /**
+     * Prefix that distinguishes session tokens from SoundCloud tokens.
+     */
+    public static final String PREFIX = "mc1.";
+
+    /**
+     * The time a session token is valid.
+     */
+    public static final long TIME_TO_LIVE = TimeUnit.HOURS.toMillis(24);
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final int PAYLOAD_FIELDS = 3;
+
+    private static final int GENERATED_SECRET_LENGTH = 32;
+
+    private final SecretKeySpec key;
+
+    /**
+     * Create the session tokens of this node.
+     *
+     * @param secret
+     *            The shared secret, empty to generate a secret for this node only.
+     * @param clusterConfiguration
+     *            The configuration of the cluster.
+     * @throws IllegalStateException
+     *             If no secret is configured, but the node is part of a cluster.
+     */
+    @Inject
+    public SessionTokens(@Named(SECRET_PROPERTY) final String secret,
+            final ClusterConfiguration clusterConfiguration) {
+        if (Strings.isNullOrEmpty(secret) && isClustered(clusterConfiguration)) {
+            throw new IllegalStateException(String.format(
+                    "%s must be set when peers are configured, or nodes could not verify the "
+                            + "session tokens of each other", SECRET_PROPERTY));
+        }
+        this.key = new SecretKeySpec(getSecret(secret), ALGORITHM);
+    }
+
+    private static boolean isClustered(final ClusterConfiguration clusterConfiguration) {
+        // A node with a cluster secret may be joined at runtime
+        return clusterConfiguration.getNodes().size() > 1
+                || clusterConfiguration.getSecret() != null;
+    }
+
+    private static byte[] getSecret(final String secret) {
+        if (!Strings.isNullOrEmpty(secret)) {
+            return secret.getBytes(StandardCharsets.UTF_8);
+        }
+
+        log.warn("No {} configured, session tokens are only valid on this node until it restarts",
+                SECRET_PROPERTY);
+        final byte[] generated = new byte[GENERATED_SECRET_LENGTH];
+        new SecureRandom().nextBytes(generated);
+        return generated;
+    }
+
+    /**
+     * Check whether a token is a session token, rather than a SoundCloud token.
+     *
+     * @param token
+     *            The token.
+     * @return true if the token has the session token prefix.
+     */
+    public static boolean isSessionToken(final String token) {
+        return token.startsWith(PREFIX);
+    }
+
+    /**
+     * Issue a session token for a user.
+     *
+     * @param user
+     *            The user that logged in.
+     * @return The session token.
+     */
+    public String issue(final User user) {
+        return issue(user, System.currentTimeMillis() + TIME_TO_LIVE);
+    }
+
+    @VisibleForTesting
+    String issue(final User user, final long expiresAt) {
+        final String payload = encode((user.getId() + "|" + expiresAt + "|" + user.getName())
+                .getBytes(StandardCharsets.UTF_8));
+        return PREFIX + payload + "." + encode(sign(payload));
+    }
+
+    /**
+     * Verify a session token.
+     *
+     * @param token
+     *            The session token.
+     * @return A user that only holds the id and name stored in the token.
+     * @throws NotAuthorizedException
+     *             If the token is malformed, tampered with or expired.
+     */
+    public User verify(final String token) {
+        final int separator = token.lastIndexOf('.');
+        if (!isSessionToken(token) || separator < PREFIX.length()) {
+            throw new NotAuthorizedException("Malformed session token");
+        }
+
+        final String payload = token.substring(PREFIX.length(), separator);
+        final byte[] signature = decode(token.substring(separator + 1));
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            throw new NotAuthorizedException("Invalid session token");
+        }
+
+        final String claims = new String(decode(payload), StandardCharsets.UTF_8);
+        final List<String> fields = Splitter.on('|').limit(PAYLOAD_FIELDS).splitToList(claims);
+        if (fields.size() != PAYLOAD_FIELDS) {
+            throw new NotAuthorizedException("Malformed session token");
+        }
+        if (Long.parseLong(fields.get(1)) < System.currentTimeMillis()) {
+            throw new NotAuthorizedException("Session token expired");
+        }
+
+        final User user = new User();
+        user.setId(Integer.valueOf(fields.get(0)));
+        user.setName(fields.get(2));
+        return user;
+    }
+
+    private byte[] sign(final String payload) {
+        try {
+            final Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException("Could not sign session token", e);
+        }
+    }
+
+    private static String encode(final byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static byte[] decode(final String value) {
+        try {
+            return Base64.getUrlDecoder().decode(value);
+        } catch (final IllegalArgumentException e) {
+            throw new NotAuthorizedException("Malformed session token");
+        }
+    }
+
+}
@@ -0,0 +1,404 @@
+package me.moodcat.backend;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.api.models.SongModel;
+import me.moodcat.database.controllers.SongDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Song;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * The {@code SongSearchIndex} is an in-memory prefix index over the names of songs and their
+ * artists, used for typeahead search. Names are folded to lowercase without accents and
+ * punctuation, and every word of a name starts a key in a trie. Every node of the trie keeps the
+ * best {@link #MAXIMUM_RESULTS} songs below it, so a search only walks the prefix and does not
+ * visit the songs below it.
+ * <p>
+ * The index is loaded from the song table in a unit of work once the server has started. Songs
+ * that are created while the server runs should be {@link #add(Song) added} by the caller once
+ * the transaction that persisted them committed, so that the index never serves songs that were
+ * rolled back. The catalogue import runs in a separate process, and is picked up by the next
+ * {@link #rebuild()}. The deprecated valence and arousal of the returned models are refreshed
+ * after every committed flush of the {@link SongVectorUpdateQueue}.
+ */
+@Slf4j
+@Singleton
+public class SongSearchIndex implements DefaultLifceCycleListener {
+
+    /**
+     * The maximum number of songs that is returned by a search.
+     */
+    public static final int MAXIMUM_RESULTS = 50;
+
+    /**
+     * The maximum depth of the trie. Songs for longer prefixes are filtered from the node at this
+     * depth.
+     */
+    private static final int MAXIMUM_KEY_LENGTH = 32;
+
+    /**
+     * Rank of a song of which the name starts with the prefix.
+     */
+    private static final int NAME_PREFIX = 0;
+
+    /**
+     * Rank of a song of which a later word of the name starts with the prefix.
+     */
+    private static final int NAME_WORD = 1;
+
+    /**
+     * Rank of a song of which the name of the artist starts with the prefix.
+     */
+    private static final int ARTIST_PREFIX = 2;
+
+    /**
+     * Rank of a song of which a later word of the name of the artist starts with the prefix.
+     */
+    private static final int ARTIST_WORD = 3;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern PUNCTUATION = Pattern.compile("[^\\p{L}\\p{N}\\s]+");
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * Orders matches by rank, then shorter names first, then alphabetically.
+     */
+    private static final Comparator<Match> RANKING = Comparator
+            .comparingInt((final Match match) -> match.rank)
+            .thenComparingInt(match -> match.entry.name.length())
+            .thenComparing(match -> match.entry.name)
+            .thenComparingInt(match -> match.entry.model.getId());
+
+    private final Provider<SongDAO> songDAOProvider;
+
+    private final UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    /**
+     * The indexed songs by id.
+     */
+    private final Map<Integer, Entry> songs;
+
+    private final Node root;
+
+    /**
+     * Guards the trie, searches only read it.
+     */
+    private final ReadWriteLock lock;
+
+    @Inject
+    public SongSearchIndex(final Provider<SongDAO> songDAOProvider,
+            final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
+            final SongVectorUpdateQueue songVectorUpdateQueue,
+            final LifeCycle lifeCycle) {
+        this.songDAOProvider = songDAOProvider;
+        this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
+        this.songs = Maps.newHashMap();
+        this.root = new Node();
+        this.lock = new ReentrantReadWriteLock();
+        lifeCycle.addLifeCycleListener(this);
+        songVectorUpdateQueue.addListener(this::vectorsUpdated);
+    }
+
+    @Override
+    public void lifeCycleStarted(final LifeCycle lifeCycle) {
+        rebuild();
+    }
+
+    /**
+     * Load the songs from the song table in a unit of work.
+     *
+     * @return a future that completes once the songs are indexed
+     */
+    public Future<?> rebuild() {
+        return unitOfWorkSchedulingService.performInUnitOfWork(this::load);
+    }
+
+    /**
+     * Add all songs to the index. Should be called in a unit of work.
+     */
+    protected void load() {
+        final List<Song> catalogue = songDAOProvider.get().listSongs();
+        catalogue.forEach(this::add);
+        log.info("Indexed {} song names", catalogue.size());
+    }
+
+    /**
+     * Add a song to the index. Songs that are already indexed are ignored.
+     *
+     * @param song
+     *            The persisted song.
+     */
+    public void add(final Song song) {
+        final Entry entry = new Entry(SongModel.transform(song));
+
+        lock.writeLock().lock();
+        try {
+            if (songs.putIfAbsent(entry.model.getId(), entry) != null) {
+                return;
+            }
+            insert(entry.name, entry, NAME_PREFIX, NAME_WORD);
+            insert(entry.artist, entry, ARTIST_PREFIX, ARTIST_WORD);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(final String name, final Entry entry, final int prefixRank,
+            final int wordRank) {
+        if (name.isEmpty()) {
+            return;
+        }
+
+        int start = 0;
+        do {
+            final Match match = new Match(start == 0 ? prefixRank : wordRank, entry);
+            final int end = Math.min(name.length(), start + MAXIMUM_KEY_LENGTH);
+
+            Node node = root;
+            for (int i = start; i < end; i++) {
+                node = node.child(name.charAt(i));
+                node.offer(match);
+            }
+            start = name.indexOf(' ', start) + 1;
+        } while (start > 0);
+    }
+
+    /**
+     * Replace the models of indexed songs with models that have the new vectors. The models are
+     * replaced rather than modified, as returned models may still be serialized.
+     *
+     * @param vectors
+     *            The new vectors by song id.
+     */
+    protected void vectorsUpdated(final Map<Integer, VAVector> vectors) {
+        lock.writeLock().lock();
+        try {
+            vectors.forEach((songId, vector) -> {
+                final Entry entry = songs.get(songId);
+                if (entry != null) {
+                    entry.model = withVector(entry.model, vector);
+                }
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static SongModel withVector(final SongModel model, final VAVector vector) {
+        final SongModel result = new SongModel();
+        result.setId(model.getId());
+        result.setSoundCloudId(model.getSoundCloudId());
+        result.setArtist(model.getArtist());
+        result.setName(model.getName());
+        result.setDuration(model.getDuration());
+        result.setArtworkUrl(model.getArtworkUrl());
+        result.setValence(vector.getValence());
+        result.setArousal(vector.getArousal());
+        result.setPurchaseUrl(model.getPurchaseUrl());
+        result.setPurchaseTitle(model.getPurchaseTitle());
+        return result;
+    }
+
+    /**
+     * Search the songs of which the name, or the name of the artist, has a word that starts with
+     * the prefix.
+     *
+     * @param prefix
+     *            The typed prefix.
+     * @param limit
+     *            The maximum number of songs, at most {@link #MAXIMUM_RESULTS}.
+     * @return The best matching songs, best first.
+     */
+    public List<SongModel> search(final String prefix, final int limit) {
+        final String key = fold(prefix);
+        if (key.isEmpty()) {
+            return Lists.newArrayList();
+        }
+
+        final List<Match> matches;
+        lock.readLock().lock();
+        try {
+            Node node = root;
+            for (int i = 0; i < Math.min(key.length(), MAXIMUM_KEY_LENGTH) && node != null; i++) {
+                node = node.find(key.charAt(i));
+            }
+            matches = node == null ? Lists.newArrayList() : Lists.newArrayList(node.matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return matches.stream()
+                .filter(match -> key.length() <= MAXIMUM_KEY_LENGTH || match.entry.matches(key))
+                .limit(limit)
+                .map(match -> match.entry.model)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the number of indexed songs.
+     *
+     * @return The number of songs.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return songs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Fold a name for searching: accents and punctuation are removed, the name is lowercased and
+     * words are separated by a single space.
+     *
+     * @param name
+     *            The name to fold.
+     * @return The folded name, empty if the name is {@code null}.
+     */
+    public static String fold(final String name) {
+        if (name == null) {
+            return "";
+        }
+        final String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD);
+        final String stripped = PUNCTUATION.matcher(
+                COMBINING_MARKS.matcher(decomposed).replaceAll("")).replaceAll("");
+        return WHITESPACE.matcher(stripped.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    /**
+     * An indexed song with its folded names.
+     */
+    private static final class Entry {
+
+        /**
+         * The model of the song, replaced when its vector is updated.
+         */
+        private volatile SongModel model;
+
+        private final String name;
+
+        private final String artist;
+
+        private Entry(final SongModel model) {
+            this.model = model;
+            this.name = fold(model.getName());
+            this.artist = model.getArtist() == null ? "" : fold(model.getArtist().getName());
+        }
+
+        private boolean matches(final String key) {
+            return startsWithWord(name, key) || startsWithWord(artist, key);
+        }
+
+        private static boolean startsWithWord(final String name, final String key) {
+            return name.startsWith(key) || name.contains(" " + key);
+        }
+
+    }
+
+    /**
+     * A song below a node and the rank of the key through which it was reached.
+     */
+    private static final class Match {
+
+        private final int rank;
+
+        private final Entry entry;
+
+        private Match(final int rank, final Entry entry) {
+            this.rank = rank;
+            this.entry = entry;
+        }
+
+    }
+
+    /**
+     * A node of the trie. The children are kept sorted by character, the matches by
+     * {@link #RANKING}.
+     */
+    private static final class Node {
+
+        private char[] characters = new char[0];
+
+        private Node[] children = new Node[0];
+
+        private final List<Match> matches = Lists.newArrayListWithCapacity(1);
+
+        private Node find(final char character) {
+            final int index = Arrays.binarySearch(characters, character);
+            return index < 0 ? null : children[index];
+        }
+
+        private Node child(final char character) {
+            int index = Arrays.binarySearch(characters, character);
+            if (index < 0) {
+                index = -index - 1;
+                characters = insertAt(characters, index, character);
+                children = Arrays.copyOf(children, children.length + 1);
+                System.arraycopy(children, index, children, index + 1,
+                        children.length - index - 1);
+                children[index] = new Node();
+            }
+            return children[index];
+        }
+
+        private static char[] insertAt(final char[] characters, final int index,
+                final char character) {
+            final char[] result = Arrays.copyOf(characters, characters.length + 1);
+            System.arraycopy(characters, index, result, index + 1, characters.length - index);
+            result[index] = character;
+            return result;
+        }
+
+        /**
+         * Keep a match if it is among the best matches of this node. A song that is reached
+         * through several keys keeps its best rank.
+         */
+        private void offer(final Match match) {
+            for (int i = 0; i < matches.size(); i++) {
+                if (matches.get(i).entry == match.entry) {
+                    if (match.rank >= matches.get(i).rank) {
+                        return;
+                    }
+                    matches.remove(i);
+                    break;
+                }
+            }
+
+            int index = 0;
+            while (index < matches.size() && RANKING.compare(matches.get(index), match) <= 0) {
+                index++;
+            }
+            if (index < MAXIMUM_RESULTS) {
+                matches.add(index, match);
+                if (matches.size() > MAXIMUM_RESULTS) {
+                    matches.remove(MAXIMUM_RESULTS);
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,221 @@
+package me.moodcat.backend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.database.controllers.SongDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Song;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+import com.google.inject.persist.UnitOfWork;
+
+/**
+ * The {@code SongVectorUpdateQueue} batches adjustments to the {@link VAVector vectors} of
+ * {@link Song songs}. Adjustments from votes and classifications are coalesced per song and
+ * written in a single transaction per flush interval, instead of merging the full entity
+ * for every adjustment. Pending adjustments are flushed when the server stops.
+ */
+@Slf4j
+@Singleton
+public class SongVectorUpdateQueue implements DefaultLifceCycleListener {
+
+    /**
+     * Number of seconds between two flushes.
+     */
+    private static final int FLUSH_INTERVAL = 5;
+
+    /**
+     * The pending adjustments by song id.
+     */
+    private final ConcurrentMap<Integer, List<UnaryOperator<VAVector>>> pending;
+
+    /**
+     * Listeners that are notified of flushed vectors.
+     */
+    private final List<SongVectorListener> listeners;
+
+    private final UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    private final Provider<UnitOfWork> unitOfWorkProvider;
+
+    private final Provider<SongDAO> songDAOProvider;
+
+    @Inject
+    public SongVectorUpdateQueue(final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
+            final Provider<UnitOfWork> unitOfWorkProvider,
+            final Provider<SongDAO> songDAOProvider,
+            final LifeCycle lifeCycle) {
+        this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
+        this.unitOfWorkProvider = unitOfWorkProvider;
+        this.songDAOProvider = songDAOProvider;
+        this.pending = Maps.newConcurrentMap();
+        this.listeners = new CopyOnWriteArrayList<>();
+
+        lifeCycle.addLifeCycleListener(this);
+        unitOfWorkSchedulingService.scheduleAtFixedRate(this::scheduleFlush, FLUSH_INTERVAL,
+                FLUSH_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queue an adjustment of the vector of a song. Adjustments for the same song are applied in
+     * the order in which they were queued.
+     *
+     * @param songId
+     *            The id of the song.
+     * @param adjustment
+     *            Function that computes the new vector from the current vector.
+     */
+    public void enqueue(final int songId, final UnaryOperator<VAVector> adjustment) {
+        // Compute is atomic per key, so the list is not modified after flush removed it
+        pending.compute(songId, (id, adjustments) -> {
+            final List<UnaryOperator<VAVector>> result = adjustments == null
+                    ? Lists.newArrayList() : adjustments;
+            result.add(adjustment);
+            return result;
+        });
+    }
+
+    /**
+     * Get the number of songs with pending adjustments.
+     *
+     * @return The number of songs with pending adjustments.
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    /**
+     * Add a listener that is notified of the new vectors after every flush.
+     *
+     * @param listener
+     *            The listener to add.
+     */
+    public void addListener(final SongVectorListener listener) {
+        listeners.add(listener);
+    }
+
+    private void scheduleFlush() {
+        if (!pending.isEmpty()) {
+            unitOfWorkSchedulingService.performInUnitOfWork(this::flush);
+        }
+    }
+
+    /**
+     * Write all pending adjustments to the database in a single transaction. Should be called in
+     * a {@link UnitOfWork}. If the transaction fails, the adjustments are queued again in front of
+     * adjustments that were queued in the meantime.
+     *
+     * @return The new vectors by song id.
+     */
+    protected Map<Integer, VAVector> flush() {
+        final Set<Integer> songIds = ImmutableSet.copyOf(pending.keySet());
+        final Map<Integer, VAVector> updated = Maps.newHashMap();
+
+        if (songIds.isEmpty()) {
+            return updated;
+        }
+
+        final SongDAO songDAO = songDAOProvider.get();
+        final Map<Integer, List<UnaryOperator<VAVector>>> flushed = Maps.newHashMap();
+
+        for (final Song song : songDAO.findByIds(songIds)) {
+            // Adjustments queued after this point are picked up in the next flush
+            final List<UnaryOperator<VAVector>> adjustments = pending.remove(song.getId());
+            if (adjustments == null) {
+                continue;
+            }
+
+            VAVector vector = song.getValenceArousal();
+            for (final UnaryOperator<VAVector> adjustment : adjustments) {
+                vector = adjustment.apply(vector);
+            }
+            flushed.put(song.getId(), adjustments);
+            updated.put(song.getId(), vector);
+        }
+
+        // Drop adjustments for songs that no longer exist
+        pending.keySet().removeIf(songId -> songIds.contains(songId)
+                && !updated.containsKey(songId));
+
+        if (updated.isEmpty()) {
+            return updated;
+        }
+
+        try {
+            songDAO.updateVectors(updated);
+        } catch (final RuntimeException e) {
+            flushed.forEach(this::requeue);
+            throw e;
+        }
+
+        log.debug("Flushed vector updates for {} songs", updated.size());
+        listeners.forEach(listener -> listener.vectorsUpdated(updated));
+        return updated;
+    }
+
+    /**
+     * Queue adjustments again that failed to flush, in front of adjustments that were queued
+     * after they were taken from the queue.
+     *
+     * @param songId
+     *            The id of the song.
+     * @param adjustments
+     *            The adjustments that failed to flush.
+     */
+    private void requeue(final int songId, final List<UnaryOperator<VAVector>> adjustments) {
+        pending.compute(songId, (id, newer) -> {
+            final List<UnaryOperator<VAVector>> result = Lists.newArrayList(adjustments);
+            if (newer != null) {
+                result.addAll(newer);
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void lifeCycleStopping(final LifeCycle lifeCycle) {
+        // Flush on the stopping thread, the scheduler may already be shutting down
+        final UnitOfWork unitOfWork = unitOfWorkProvider.get();
+        unitOfWork.begin();
+        try {
+            log.info("Flushing vector updates for {} songs", pending.size());
+            flush();
+        } catch (final RuntimeException e) {
+            log.error("Failed to flush vector updates: " + e.getMessage(), e);
+        } finally {
+            unitOfWork.end();
+        }
+    }
+
+    /**
+     * Listener for flushed vector updates.
+     */
+    @FunctionalInterface
+    public interface SongVectorListener {
+
+        /**
+         * Called after vectors were written to the database.
+         *
+         * @param vectors
+         *            The new vectors by song id.
+         */
+        void vectorsUpdated(Map<Integer, VAVector> vectors);
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package me.moodcat.backend.cluster;
+
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Configuration of the cluster of MoodCat nodes. When no peers are configured, the node
+ * runs stand-alone and owns every room.
+ */
+@Data
+@AllArgsConstructor
+public class ClusterConfiguration {
+
+    /**
+     * System property that holds the public base url of this node.
+     */
+    public static final String SELF_PROPERTY = "moodcat.cluster.self";
+
+    /**
+     * System property that holds a comma separated list of base urls of the initial nodes.
+     */
+    public static final String NODES_PROPERTY = "moodcat.cluster.nodes";
+
+    /**
+     * System property that holds the shared secret nodes use to announce themselves.
+     */
+    public static final String SECRET_PROPERTY = "moodcat.cluster.secret";
+
+    private static final String LOCAL_URL_FORMAT = "http://localhost:%d";
+
+    /**
+     * The public base url of this node, for example {@code http://10.0.0.1:8080}.
+     *
+     * @param self
+     *            The base url to set.
+     * @return The base url of this node.
+     */
+    private String self;
+
+    /**
+     * The base urls of the nodes that are initially part of the cluster.
+     *
+     * @param nodes
+     *            The nodes to set.
+     * @return The initial nodes of the cluster.
+     */
+    private Set<String> nodes;
+
+    /**
+     * Secret nodes have to provide in order to join or leave the cluster.
+     * {@code null} if nodes may not join at runtime.
+     *
+     * @param secret
+     *            The secret to set.
+     * @return The shared secret of the cluster.
+     */
+    private String secret;
+
+    /**
+     * Create a stand-alone configuration.
+     *
+     * @param port
+     *            The port this node listens on.
+     * @return A configuration in which this node owns every room.
+     */
+    public static ClusterConfiguration standAlone(final int port) {
+        final String self = String.format(LOCAL_URL_FORMAT, port);
+        return new ClusterConfiguration(self, ImmutableSet.of(self), null);
+    }
+
+    /**
+     * Read the configuration from the system properties, falling back to a stand-alone
+     * configuration.
+     *
+     * @param port
+     *            The port this node listens on.
+     * @return The cluster configuration.
+     */
+    public static ClusterConfiguration fromSystemProperties(final int port) {
+        final String self = System.getProperty(SELF_PROPERTY,
+                String.format(LOCAL_URL_FORMAT, port));
+        final String nodes = System.getProperty(NODES_PROPERTY);
+
+        final ImmutableSet.Builder<String> builder = ImmutableSet.<String> builder().add(self);
+        if (!Strings.isNullOrEmpty(nodes)) {
+            builder.addAll(Splitter.on(',').trimResults().omitEmptyStrings().split(nodes));
+        }
+
+        return new ClusterConfiguration(self, builder.build(),
+                System.getProperty(SECRET_PROPERTY));
+    }
+
+}
@@ -0,0 +1,344 @@
+package me.moodcat.backend.cluster;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.api.models.ClusterNodeModel;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * The {@code ClusterMembership} keeps track of the nodes in the cluster and decides which node
+ * owns a room. Ownership is partitioned with a {@link ConsistentHashRing}, so that a joining or
+ * leaving node only moves the rooms of its own partition.
+ * <p>
+ * A starting node announces itself to the configured nodes and learns the members they know.
+ * A node that learns about a new member relays the join to the other members it knows, so that
+ * every node ends up with the same ring even if it was not configured as a seed. Joins are
+ * relayed asynchronously, and membership changes return a future that completes once the
+ * listeners and the relayed nodes handled the change, so no thread waits for the rooms to be
+ * handed over.
+ */
+@Slf4j
+@Singleton
+public class ClusterMembership implements DefaultLifceCycleListener {
+
+    /**
+     * Header in which nodes provide the cluster secret.
+     */
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    /**
+     * Path on which nodes expose their membership.
+     */
+    public static final String NODES_PATH = "api/cluster/nodes";
+
+    /**
+     * The base url of this node.
+     *
+     * @return The base url of this node.
+     */
+    @Getter
+    private final String self;
+
+    /**
+     * The shared secret of the cluster.
+     */
+    private final String secret;
+
+    /**
+     * The ring that partitions the rooms.
+     */
+    private final ConsistentHashRing<String> ring;
+
+    /**
+     * Listeners to notify when nodes join or leave.
+     */
+    private final List<MembershipListener> listeners;
+
+    /**
+     * Create a new {@code ClusterMembership}.
+     *
+     * @param configuration
+     *            The cluster configuration.
+     */
+    public ClusterMembership(final ClusterConfiguration configuration) {
+        Preconditions.checkNotNull(configuration.getSelf());
+        this.self = configuration.getSelf();
+        this.secret = configuration.getSecret();
+        this.ring = new ConsistentHashRing<>();
+        this.ring.add(self);
+        this.ring.addAll(configuration.getNodes());
+        this.listeners = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Create a new {@code ClusterMembership} that announces itself to the other nodes once the
+     * lifecycle has started.
+     *
+     * @param configuration
+     *            The cluster configuration.
+     * @param lifeCycle
+     *            The program lifecycle.
+     */
+    @Inject
+    public ClusterMembership(final ClusterConfiguration configuration,
+            final LifeCycle lifeCycle) {
+        this(configuration);
+        lifeCycle.addLifeCycleListener(this);
+    }
+
+    /**
+     * Check whether this node owns the given room.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @return true if the room should be served by this node.
+     */
+    public boolean isLocal(final int roomId) {
+        return self.equals(getOwner(roomId));
+    }
+
+    /**
+     * Get the base url of the node that owns the given room.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @return The base url of the owning node.
+     */
+    public String getOwner(final int roomId) {
+        return ring.get(roomId);
+    }
+
+    /**
+     * Get the nodes of the cluster.
+     *
+     * @return The base urls of all nodes.
+     */
+    public Set<String> getNodes() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Check if the provided secret allows a node to change the membership.
+     *
+     * @param providedSecret
+     *            The secret provided by the node.
+     * @return true if membership changes are allowed.
+     */
+    public boolean acceptsSecret(final String providedSecret) {
+        return secret != null && secret.equals(providedSecret);
+    }
+
+    /**
+     * Add a node to the cluster. If the node is new, the join is relayed to the other known
+     * nodes. Nodes that already know the node do not relay it again, so the relaying stops once
+     * every node knows the new node.
+     *
+     * @param node
+     *            Base url of the node.
+     * @return a future that completes when the listeners and the other nodes handled the join
+     */
+    public CompletableFuture<Void> join(final String node) {
+        return joinAll(ImmutableList.of(node));
+    }
+
+    /**
+     * Add several nodes to the cluster at once, for example the nodes that are known by a seed.
+     * The listeners are notified once, so rooms do not move to a node that only owns them until
+     * the next node is added.
+     *
+     * @param nodes
+     *            Base urls of the nodes.
+     * @return a future that completes when the listeners and the other nodes handled the join
+     */
+    public CompletableFuture<Void> joinAll(final Collection<String> nodes) {
+        final List<String> joined = nodes.stream()
+                .filter(ring::add)
+                .collect(Collectors.toList());
+
+        if (joined.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        log.info("Nodes {} joined the cluster", joined);
+        final List<CompletableFuture<Void>> handled = Lists.newArrayList(notifyListeners());
+        joined.forEach(node -> handled.addAll(relayJoin(node)));
+        return CompletableFuture.allOf(handled.toArray(new CompletableFuture[handled.size()]));
+    }
+
+    /**
+     * Remove a node from the cluster.
+     *
+     * @param node
+     *            Base url of the node.
+     * @return a future that completes when the listeners handled the leave
+     */
+    public CompletableFuture<Void> leave(final String node) {
+        Preconditions.checkArgument(!self.equals(node), "A node can not remove itself");
+        if (!ring.remove(node)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        log.info("Node {} left the cluster", node);
+        return notifyListeners();
+    }
+
+    /**
+     * Add a listener that is notified when the membership changes.
+     *
+     * @param listener
+     *            The listener to add.
+     */
+    public void addListener(final MembershipListener listener) {
+        this.listeners.add(listener);
+    }
+
+    private CompletableFuture<Void> notifyListeners() {
+        return CompletableFuture.allOf(listeners.stream()
+                .map(MembershipListener::membershipChanged)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    @Override
+    public void lifeCycleStarted(final LifeCycle lifeCycle) {
+        if (secret == null) {
+            return;
+        }
+
+        getNodes().stream()
+                .filter(node -> !self.equals(node))
+                .forEach(this::announceTo);
+    }
+
+    private void announceTo(final String node) {
+        try {
+            joinAll(postJoin(node, self).stream()
+                    .map(ClusterNodeModel::getUrl)
+                    .collect(Collectors.toList()))
+                    .whenComplete((result, failure) -> {
+                        if (failure != null) {
+                            log.warn("Could not rebalance after announcing to {}", node, failure);
+                        }
+                    });
+        } catch (final RuntimeException e) {
+            log.warn("Could not announce to node {}: {}", node, e.getMessage());
+        }
+    }
+
+    private List<CompletableFuture<Void>> relayJoin(final String joined) {
+        if (secret == null) {
+            return Collections.emptyList();
+        }
+
+        return getNodes().stream()
+                .filter(node -> !self.equals(node) && !joined.equals(node))
+                .map(node -> relayJoin(node, joined))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Tell a node that another node joined the cluster, without holding a thread while the node
+     * hands over its rooms. A node that can not be reached does not fail the join.
+     *
+     * @param node
+     *            The node to tell.
+     * @param joined
+     *            The node that joined.
+     * @return a future that completes when the node answered, or could not be reached
+     */
+    private CompletableFuture<Void> relayJoin(final String node, final String joined) {
+        final CompletableFuture<Void> answered = new CompletableFuture<>();
+        final Client client = ResteasyClientBuilder.newBuilder().build();
+        try {
+            client.target(node)
+                    .path(NODES_PATH)
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(SECRET_HEADER, secret)
+                    .async()
+                    .post(Entity.json(new ClusterNodeModel(joined)),
+                            new InvocationCallback<Response>() {
+
+                                @Override
+                                public void completed(final Response response) {
+                                    response.close();
+                                    client.close();
+                                    answered.complete(null);
+                                }
+
+                                @Override
+                                public void failed(final Throwable throwable) {
+                                    log.warn("Could not relay join of {} to node {}: {}",
+                                            joined, node, throwable.getMessage());
+                                    client.close();
+                                    answered.complete(null);
+                                }
+                            });
+        } catch (final RuntimeException e) {
+            log.warn("Could not relay join of {} to node {}: {}", joined, node, e.getMessage());
+            client.close();
+            answered.complete(null);
+        }
+        return answered;
+    }
+
+    /**
+     * Tell a node that another node joined the cluster.
+     *
+     * @param node
+     *            The node to tell.
+     * @param joined
+     *            The node that joined.
+     * @return The nodes known by the told node.
+     */
+    private List<ClusterNodeModel> postJoin(final String node, final String joined) {
+        final Client client = ResteasyClientBuilder.newBuilder().build();
+        try {
+            return client.target(node)
+                    .path(NODES_PATH)
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(SECRET_HEADER, secret)
+                    .post(Entity.json(new ClusterNodeModel(joined)),
+                            new GenericType<List<ClusterNodeModel>>() {
+                            });
+        } finally {
+            client.close();
+        }
+    }
+
+    /**
+     * Listener for membership changes.
+     */
+    @FunctionalInterface
+    public interface MembershipListener {
+
+        /**
+         * Called when a node joined or left the cluster.
+         *
+         * @return a future that completes when the change is handled
+         */
+        CompletableFuture<?> membershipChanged();
+
+    }
+
+}
@@ -0,0 +1,157 @@
+package me.moodcat.backend.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * A consistent hash ring that maps keys onto a set of nodes. Every node is placed on the ring
+ * a number of times (its virtual nodes), so that adding or removing a node only moves the keys
+ * that hashed into its own segments.
+ * <p>
+ * When virtual nodes of two nodes collide, the point belongs to the node with the smallest
+ * string representation, so that every member of a cluster agrees on the owner regardless of
+ * the order in which the nodes joined.
+ *
+ * @param <T>
+ *            Type of the nodes on the ring.
+ */
+public class ConsistentHashRing<T> {
+
+    /**
+     * Default number of virtual nodes per node.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+    /**
+     * Number of points each node occupies on the ring.
+     */
+    private final int virtualNodes;
+
+    /**
+     * The ring itself, sorted by hash.
+     */
+    private final NavigableMap<Integer, T> ring;
+
+    /**
+     * The nodes on the ring.
+     */
+    private final Set<T> nodes;
+
+    /**
+     * Create a new {@code ConsistentHashRing} with {@link #DEFAULT_VIRTUAL_NODES}.
+     */
+    public ConsistentHashRing() {
+        this(DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Create a new {@code ConsistentHashRing}.
+     *
+     * @param virtualNodes
+     *            The number of virtual nodes per node.
+     */
+    public ConsistentHashRing(final int virtualNodes) {
+        Preconditions.checkArgument(virtualNodes > 0, "At least one virtual node is required");
+        this.virtualNodes = virtualNodes;
+        this.ring = Maps.newTreeMap();
+        this.nodes = Sets.newLinkedHashSet();
+    }
+
+    /**
+     * Add a node to the ring.
+     *
+     * @param node
+     *            Node to add.
+     * @return true if the node was not yet on the ring.
+     */
+    public synchronized boolean add(final T node) {
+        Preconditions.checkNotNull(node);
+        if (!nodes.add(node)) {
+            return false;
+        }
+        place(node);
+        return true;
+    }
+
+    private void place(final T node) {
+        for (int i = 0; i < virtualNodes; i++) {
+            ring.merge(hashVirtualNode(node, i), node, ConsistentHashRing::precede);
+        }
+    }
+
+    /**
+     * Break a tie between two nodes of which virtual nodes collide.
+     */
+    private static <T> T precede(final T current, final T node) {
+        return node.toString().compareTo(current.toString()) < 0 ? node : current;
+    }
+
+    /**
+     * Add multiple nodes to the ring.
+     *
+     * @param nodesToAdd
+     *            Nodes to add.
+     */
+    public synchronized void addAll(final Collection<T> nodesToAdd) {
+        nodesToAdd.forEach(this::add);
+    }
+
+    /**
+     * Remove a node from the ring.
+     *
+     * @param node
+     *            Node to remove.
+     * @return true if the node was on the ring.
+     */
+    public synchronized boolean remove(final T node) {
+        if (!nodes.remove(node)) {
+            return false;
+        }
+        // Points that the node won in a collision go back to the other node
+        ring.clear();
+        nodes.forEach(this::place);
+        return true;
+    }
+
+    /**
+     * Get the node that owns a key.
+     *
+     * @param key
+     *            The key to look up.
+     * @return The owning node, or {@code null} if the ring is empty.
+     */
+    public synchronized T get(final int key) {
+        if (ring.isEmpty()) {
+            return null;
+        }
+        final Map.Entry<Integer, T> entry = ring.ceilingEntry(HASH_FUNCTION.hashInt(key).asInt());
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * Get the nodes on this ring.
+     *
+     * @return An immutable copy of the nodes on this ring.
+     */
+    public synchronized Set<T> getNodes() {
+        return ImmutableSet.copyOf(nodes);
+    }
+
+    private static int hashVirtualNode(final Object node, final int index) {
+        return HASH_FUNCTION.hashString(node.toString() + '#' + index, StandardCharsets.UTF_8)
+                .asInt();
+    }
+
+}
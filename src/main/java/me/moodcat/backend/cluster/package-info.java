@@ -0,0 +1,7 @@
+/**
+ * The cluster package partitions the {@link me.moodcat.backend.rooms rooms} over multiple nodes
+ * through the {@link me.moodcat.backend.cluster.ClusterMembership}.
+ *
+ * @author MoodCat
+ */
+package me.moodcat.backend.cluster;
@@ -0,0 +1,188 @@
+package me.moodcat.backend.rooms;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.backend.UnitOfWorkSchedulingService;
+import me.moodcat.database.controllers.ChatDAO;
+import me.moodcat.database.entities.ArchivedChatMessage;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * Periodically moves old chat messages of the rooms of this node to the archive, and deletes
+ * archived messages of expired months. Every batch of at most
+ * {@link ChatRetentionConfiguration#getBatchSize()} messages runs in its own unit of work, and
+ * the next batch is only scheduled once the previous batch committed. Rows are therefore only
+ * locked briefly, and other work on the scheduler is interleaved with the compaction.
+ * <p>
+ * Only the rooms owned by this node are compacted, so nodes do not compact the same rows.
+ * Archived messages are removed from the {@link ChatSearchIndex} once their batch committed.
+ */
+@Slf4j
+@Singleton
+public class ChatCompactionJob implements DefaultLifceCycleListener {
+
+    private final ChatRetentionConfiguration configuration;
+
+    private final UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    private final Provider<ChatDAO> chatDAOProvider;
+
+    private final RoomBackend roomBackend;
+
+    private final ChatSearchIndex chatSearchIndex;
+
+    /**
+     * Set while a compaction is running, so that compactions do not overlap.
+     */
+    private final AtomicBoolean running;
+
+    @Inject
+    public ChatCompactionJob(final ChatRetentionConfiguration configuration,
+            final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
+            final Provider<ChatDAO> chatDAOProvider,
+            final RoomBackend roomBackend,
+            final ChatSearchIndex chatSearchIndex,
+            final LifeCycle lifeCycle) {
+        this.configuration = configuration;
+        this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
+        this.chatDAOProvider = chatDAOProvider;
+        this.roomBackend = roomBackend;
+        this.chatSearchIndex = chatSearchIndex;
+        this.running = new AtomicBoolean(false);
+        lifeCycle.addLifeCycleListener(this);
+    }
+
+    @Override
+    public void lifeCycleStarted(final LifeCycle lifeCycle) {
+        final long interval = configuration.getInterval();
+        unitOfWorkSchedulingService.scheduleWithFixedDelay(this::compact, interval, interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start a compaction of the rooms of this node, unless one is still running.
+     */
+    public void compact() {
+        if (running.getAndSet(true)) {
+            log.info("Previous chat compaction is still running");
+            return;
+        }
+
+        boolean scheduled = false;
+        try {
+            final long now = System.currentTimeMillis();
+            final Compaction compaction = new Compaction(
+                    Lists.newLinkedList(roomBackend.getRoomIds()),
+                    now - configuration.getArchiveAfter(),
+                    ArchivedChatMessage.monthOf(ZonedDateTime.now(ZoneOffset.UTC)
+                            .minusMonths(configuration.getArchiveRetention())
+                            .toInstant().toEpochMilli()));
+            log.info("Compacting chat of {} rooms", compaction.roomIds.size());
+            scheduled = compaction.schedule();
+        } finally {
+            if (!scheduled) {
+                running.set(false);
+            }
+        }
+    }
+
+    /**
+     * A single run of the compaction, that processes one batch per unit of work.
+     */
+    private final class Compaction {
+
+        /**
+         * The rooms that are not yet compacted, the first room is compacted next.
+         */
+        private final Deque<Integer> roomIds;
+
+        /**
+         * Messages posted before this time are archived.
+         */
+        private final long archiveBefore;
+
+        /**
+         * Archived messages posted before this month are deleted.
+         */
+        private final int deleteBefore;
+
+        private int archived;
+
+        private int deleted;
+
+        private Compaction(final Deque<Integer> roomIds, final long archiveBefore,
+                final int deleteBefore) {
+            this.roomIds = roomIds;
+            this.archiveBefore = archiveBefore;
+            this.deleteBefore = deleteBefore;
+        }
+
+        /**
+         * Schedule the next batch.
+         *
+         * @return True if a batch was scheduled, false if all rooms are compacted.
+         */
+        private boolean schedule() {
+            if (roomIds.isEmpty()) {
+                log.info("Archived {} and deleted {} chat messages", archived, deleted);
+                return false;
+            }
+            unitOfWorkSchedulingService.performInUnitOfWork(this::runBatch);
+            return true;
+        }
+
+        private void runBatch() {
+            boolean scheduled = false;
+            try {
+                compactBatch();
+                scheduled = schedule();
+            } finally {
+                // Also release the compaction when an error escapes, or the job never runs again
+                if (!scheduled) {
+                    running.set(false);
+                }
+            }
+        }
+
+        private void compactBatch() {
+            final int roomId = roomIds.peek();
+            final int batchSize = configuration.getBatchSize();
+
+            try {
+                final ChatDAO chatDAO = chatDAOProvider.get();
+                final List<Integer> archivedIds = chatDAO.archive(roomId, archiveBefore,
+                        batchSize);
+                if (!archivedIds.isEmpty()) {
+                    chatSearchIndex.removeUpTo(roomId, archivedIds.get(archivedIds.size() - 1));
+                }
+                final int archivedInBatch = archivedIds.size();
+                final int deletedInBatch = chatDAO.deleteArchived(roomId, deleteBefore,
+                        batchSize);
+                archived += archivedInBatch;
+                deleted += deletedInBatch;
+
+                if (archivedInBatch < batchSize && deletedInBatch < batchSize) {
+                    roomIds.poll();
+                }
+            } catch (final RuntimeException e) {
+                log.warn("Could not compact chat of room {}", roomId, e);
+                roomIds.poll();
+            }
+        }
+
+    }
+
+}
@@ -1,35 +1,22 @@
 package me.moodcat.backend.rooms;
 
-import java.util.Collection;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import me.moodcat.database.entities.ChatMessage;
-import me.moodcat.database.entities.Room;
-
 /**
  * The ChatMessageIdGenerator generates ids for chat messages in a room.
  */
 public class ChatMessageIdGenerator {
 
-    private static final int START_CHAT_MESSAGE_INDEX = 0;
-
     private final AtomicInteger messageIndex;
 
     /**
      * Create a new {@code ChatMessageIdGenerator}.
      *
-     * @param room
-     *            Room to generate.
+     * @param lastId
+     *            The id of the latest persisted message of the room, or 0 if there is none.
      */
-    public ChatMessageIdGenerator(final Room room) {
-        this.messageIndex = getAtomicInteger(room.getChatMessages());
-    }
-
-    private static AtomicInteger getAtomicInteger(final Collection<ChatMessage> messages) {
-        assert messages != null : "Messages should not be null";
-        return new AtomicInteger(messages.stream()
-                .mapToInt(ChatMessage::getId)
-                .max().orElse(START_CHAT_MESSAGE_INDEX));
+    public ChatMessageIdGenerator(final int lastId) {
+        this.messageIndex = new AtomicInteger(lastId);
     }
 
     /**
@@ -41,4 +28,23 @@ public class ChatMessageIdGenerator {
         return this.messageIndex.incrementAndGet();
     }
 
+    /**
+     * Get the last id that was generated.
+     *
+     * @return the last generated id.
+     */
+    public int getLastId() {
+        return this.messageIndex.get();
+    }
+
+    /**
+     * Ensure that the generated ids are larger than the given id.
+     *
+     * @param id
+     *            An id that was generated before, for example by a previous run of the node.
+     */
+    public void advanceTo(final int id) {
+        this.messageIndex.accumulateAndGet(id, Math::max);
+    }
+
 }
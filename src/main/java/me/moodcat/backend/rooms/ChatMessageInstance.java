@@ -69,14 +69,8 @@ class ChatMessageInstance implements Comparable<ChatMessageInstance>,
      * @return the created ChatMessageInstance.
      */
     public static ChatMessageInstance create(final ChatMessage chatMessage) {
-        final ChatMessageModel model = new ChatMessageModel();
-        model.setMessage(chatMessage.getMessage());
-        model.setAuthor(chatMessage.getUser().getName());
-        model.setTimestamp(chatMessage.getTimestamp());
-        model.setId(chatMessage.getId());
-
-        int userId = chatMessage.getUser().getId();
-        return new ChatMessageInstance(userId, model);
+        return new ChatMessageInstance(chatMessage.getUser().getId(),
+                ChatMessageModel.transform(chatMessage));
     }
 
 }
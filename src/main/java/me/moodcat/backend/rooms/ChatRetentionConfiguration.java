@@ -0,0 +1,94 @@
+package me.moodcat.backend.rooms;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Configuration of the retention of chat messages in the database. Messages are moved to the
+ * archive after some days, and archived messages are deleted after some months.
+ */
+@Data
+@AllArgsConstructor
+public class ChatRetentionConfiguration {
+
+    /**
+     * System property that holds the number of days after which messages are archived.
+     */
+    public static final String ARCHIVE_AFTER_PROPERTY = "moodcat.chat.archive.after";
+
+    /**
+     * System property that holds the number of months that archived messages are kept.
+     */
+    public static final String ARCHIVE_RETENTION_PROPERTY = "moodcat.chat.archive.retention";
+
+    /**
+     * System property that holds the maximum number of messages that is moved in one transaction.
+     */
+    public static final String BATCH_SIZE_PROPERTY = "moodcat.chat.compaction.batch";
+
+    /**
+     * System property that holds the number of minutes between two compactions.
+     */
+    public static final String INTERVAL_PROPERTY = "moodcat.chat.compaction.interval";
+
+    private static final long DEFAULT_ARCHIVE_AFTER = 90;
+
+    private static final int DEFAULT_ARCHIVE_RETENTION = 24;
+
+    private static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final long DEFAULT_INTERVAL = 60;
+
+    /**
+     * The age in milliseconds after which messages are moved to the archive.
+     *
+     * @param archiveAfter
+     *            The age to set.
+     * @return The age in milliseconds.
+     */
+    private long archiveAfter;
+
+    /**
+     * The number of months that archived messages are kept, besides the current month.
+     *
+     * @param archiveRetention
+     *            The number of months to set.
+     * @return The number of months.
+     */
+    private int archiveRetention;
+
+    /**
+     * The maximum number of messages that is archived or deleted in one transaction.
+     *
+     * @param batchSize
+     *            The batch size to set.
+     * @return The batch size.
+     */
+    private int batchSize;
+
+    /**
+     * The time in milliseconds between the end of a compaction and the start of the next.
+     *
+     * @param interval
+     *            The interval to set.
+     * @return The interval in milliseconds.
+     */
+    private long interval;
+
+    /**
+     * Read the configuration from the system properties, falling back to the defaults.
+     *
+     * @return The retention configuration.
+     */
+    public static ChatRetentionConfiguration fromSystemProperties() {
+        return new ChatRetentionConfiguration(
+                TimeUnit.DAYS.toMillis(Long.getLong(ARCHIVE_AFTER_PROPERTY,
+                        DEFAULT_ARCHIVE_AFTER)),
+                Integer.getInteger(ARCHIVE_RETENTION_PROPERTY, DEFAULT_ARCHIVE_RETENTION),
+                Integer.getInteger(BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE),
+                TimeUnit.MINUTES.toMillis(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL)));
+    }
+
+}
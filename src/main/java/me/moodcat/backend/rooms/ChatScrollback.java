@@ -0,0 +1,204 @@
+package me.moodcat.backend.rooms;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.backend.UnitOfWorkSchedulingService;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * The warm tier of the chat history. The newest messages of a room are kept on heap by the
+ * {@link RoomInstance}, and the messages it evicts are appended to the segment files of the room
+ * on the local disk. Segments are read through memory mappings, so that scrolling back through
+ * the last days does not query the database. Segments with only messages older than the
+ * retention are deleted; those messages are only stored in the database.
+ * <p>
+ * The segments of a room are opened when the room is first accessed, so that the startup time
+ * does not depend on the size of the history.
+ */
+@Slf4j
+@Singleton
+public class ChatScrollback implements DefaultLifceCycleListener {
+
+    private static final String SEGMENT_FILE_FORMAT = "%010d.seg";
+
+    private static final String SEGMENT_GLOB = "*.seg";
+
+    private static final long EXPIRE_INTERVAL = 1;
+
+    private final ChatScrollbackConfiguration configuration;
+
+    private final UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    /**
+     * The segments by room id, oldest first. The list of a room also guards its segments.
+     */
+    private final Map<Integer, List<ChatSegment>> rooms;
+
+    @Inject
+    public ChatScrollback(final ChatScrollbackConfiguration configuration,
+            final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
+            final LifeCycle lifeCycle) {
+        this.configuration = configuration;
+        this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
+        this.rooms = Maps.newConcurrentMap();
+        lifeCycle.addLifeCycleListener(this);
+    }
+
+    @Override
+    public void lifeCycleStarted(final LifeCycle lifeCycle) {
+        unitOfWorkSchedulingService.scheduleAtFixedRate(this::expire, EXPIRE_INTERVAL,
+                EXPIRE_INTERVAL, TimeUnit.HOURS);
+    }
+
+    /**
+     * Append a message that is evicted from the messages on heap. Messages that are already in
+     * the warm tier, for example after the room was restored, are ignored.
+     *
+     * @param roomId
+     *            The room the message was sent in.
+     * @param message
+     *            The message.
+     */
+    public void append(final int roomId, final ChatMessageInstance message) {
+        final List<ChatSegment> segments = getSegments(roomId);
+
+        synchronized (segments) {
+            try {
+                ChatSegment current = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+                if (current != null && message.getId() <= current.getLastId()) {
+                    return;
+                }
+
+                if (current == null || current.getSize() >= configuration.getSegmentSize()) {
+                    current = ChatSegment.open(getDirectory(roomId).resolve(
+                            String.format(SEGMENT_FILE_FORMAT, message.getId())));
+                    segments.add(current);
+                }
+                current.append(message);
+            } catch (final IOException e) {
+                log.warn("Could not append message {} of room {} to the scrollback",
+                        message.getId(), roomId, e);
+            }
+        }
+    }
+
+    /**
+     * Get the newest messages in the warm tier that were sent before the given message.
+     *
+     * @param roomId
+     *            The room the messages were sent in.
+     * @param before
+     *            The id before which messages are returned.
+     * @param limit
+     *            The maximum number of messages.
+     * @return The messages, oldest first. Can be empty if the messages are older than the
+     *         retention.
+     */
+    public List<ChatMessageModel> getMessagesBefore(final int roomId, final int before,
+            final int limit) {
+        final List<ChatSegment> segments = getSegments(roomId);
+        final List<ChatMessageModel> messages = Lists.newArrayList();
+
+        synchronized (segments) {
+            try {
+                for (int i = segments.size() - 1; i >= 0 && messages.size() < limit; i--) {
+                    messages.addAll(0, segments.get(i).readBefore(before,
+                            limit - messages.size()));
+                }
+            } catch (final IOException e) {
+                log.warn("Could not read the scrollback of room {}", roomId, e);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Delete the segments of which all messages are older than the retention. The newest
+     * segment of every room is kept, because messages are appended to it.
+     */
+    public void expire() {
+        final long threshold = System.currentTimeMillis() - configuration.getRetention();
+
+        rooms.forEach((roomId, segments) -> {
+            synchronized (segments) {
+                final Iterator<ChatSegment> iterator = segments.iterator();
+                for (int i = segments.size(); i > 1 && iterator.hasNext(); i--) {
+                    final ChatSegment segment = iterator.next();
+                    if (segment.getLastTimestamp() >= threshold) {
+                        break;
+                    }
+
+                    try {
+                        segment.delete();
+                        iterator.remove();
+                        log.info("Expired scrollback segment {}", segment.getPath());
+                    } catch (final IOException e) {
+                        log.warn("Could not delete segment {}", segment.getPath(), e);
+                    }
+                }
+            }
+        });
+    }
+
+    private Path getDirectory(final int roomId) throws IOException {
+        return Files.createDirectories(
+                configuration.getDirectory().toPath().resolve(Integer.toString(roomId)));
+    }
+
+    private List<ChatSegment> getSegments(final int roomId) {
+        return rooms.computeIfAbsent(roomId, this::openSegments);
+    }
+
+    private List<ChatSegment> openSegments(final int roomId) {
+        final List<ChatSegment> segments = Lists.newArrayList();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(getDirectory(roomId),
+                SEGMENT_GLOB)) {
+            final List<Path> paths = Lists.newArrayList(files);
+            // The names are the zero padded id of the first message
+            Collections.sort(paths);
+
+            for (final Path path : paths) {
+                segments.add(ChatSegment.open(path));
+            }
+        } catch (final IOException e) {
+            log.warn("Could not open the scrollback of room {}", roomId, e);
+        }
+        return segments;
+    }
+
+    @Override
+    public void lifeCycleStopped(final LifeCycle lifeCycle) {
+        rooms.forEach((roomId, segments) -> {
+            synchronized (segments) {
+                for (final ChatSegment segment : segments) {
+                    try {
+                        segment.close();
+                    } catch (final IOException e) {
+                        log.warn("Could not close segment {}", segment.getPath(), e);
+                    }
+                }
+                segments.clear();
+            }
+        });
+        rooms.clear();
+    }
+
+}
@@ -0,0 +1,82 @@
+package me.moodcat.backend.rooms;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Configuration of the warm tier of the chat history, which holds the messages of the last days
+ * in segment files on the local disk.
+ */
+@Data
+@AllArgsConstructor
+public class ChatScrollbackConfiguration {
+
+    /**
+     * System property that holds the directory of the segment files.
+     */
+    public static final String DIRECTORY_PROPERTY = "moodcat.chat.directory";
+
+    /**
+     * System property that holds the size in bytes after which a new segment is started.
+     */
+    public static final String SEGMENT_SIZE_PROPERTY = "moodcat.chat.segment.size";
+
+    /**
+     * System property that holds the number of days that messages are kept in the warm tier.
+     */
+    public static final String RETENTION_PROPERTY = "moodcat.chat.retention";
+
+    private static final String DEFAULT_DIRECTORY_FORMAT = "chat-%d";
+
+    private static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    private static final long DEFAULT_RETENTION = 7;
+
+    /**
+     * The directory that contains a directory of segment files for every room.
+     *
+     * @param directory
+     *            The directory to set.
+     * @return The directory.
+     */
+    private File directory;
+
+    /**
+     * The size in bytes after which a new segment is started.
+     *
+     * @param segmentSize
+     *            The segment size to set.
+     * @return The segment size in bytes.
+     */
+    private int segmentSize;
+
+    /**
+     * The time in milliseconds that messages are kept in the warm tier. Older messages are only
+     * stored in the database.
+     *
+     * @param retention
+     *            The retention to set.
+     * @return The retention in milliseconds.
+     */
+    private long retention;
+
+    /**
+     * Read the configuration from the system properties, falling back to the defaults. Every
+     * port has its own directory, so that nodes in the same process do not share one.
+     *
+     * @param port
+     *            The port the node listens on.
+     * @return The scrollback configuration.
+     */
+    public static ChatScrollbackConfiguration fromSystemProperties(final int port) {
+        return new ChatScrollbackConfiguration(
+                new File(System.getProperty(DIRECTORY_PROPERTY,
+                        String.format(DEFAULT_DIRECTORY_FORMAT, port))),
+                Integer.getInteger(SEGMENT_SIZE_PROPERTY, DEFAULT_SEGMENT_SIZE),
+                TimeUnit.DAYS.toMillis(Long.getLong(RETENTION_PROPERTY, DEFAULT_RETENTION)));
+    }
+
+}
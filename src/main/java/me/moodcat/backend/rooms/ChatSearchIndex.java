@@ -0,0 +1,283 @@
+package me.moodcat.backend.rooms;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.api.ProfanityChecker;
+import me.moodcat.database.controllers.ChatDAO;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * An in-memory inverted index of the chat messages of the rooms of this node, for moderators
+ * that search messages by keyword. Messages are split into words with the same normalization as
+ * the {@link ProfanityChecker}, and every word maps to a {@link PostingList} of the ids of the
+ * messages that contain it. A search intersects the posting lists of the words of the query, so
+ * it does not scan the messages.
+ * <p>
+ * Messages are added when they are sent. The index of a room is rebuilt from the
+ * {@link ChatDAO} when the room is instantiated on this node; messages that were added while
+ * the room was rebuilt are kept.
+ * <p>
+ * The index only covers the retained messages: messages that are moved to the archive by the
+ * {@link ChatCompactionJob} are removed, and at most {@link #DEFAULT_CAPACITY} of the newest
+ * messages of a room are indexed, so that a busy room does not grow the index without bound.
+ */
+@Slf4j
+@Singleton
+public class ChatSearchIndex {
+
+    /**
+     * The maximum number of messages of a room that is indexed.
+     */
+    public static final int DEFAULT_CAPACITY = 100000;
+
+    /**
+     * The number of messages that is read per query while rebuilding.
+     */
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    private final Provider<ChatDAO> chatDAOProvider;
+
+    /**
+     * The maximum number of messages of a room that is indexed.
+     */
+    private final int capacity;
+
+    /**
+     * The index of every room by room id.
+     */
+    private final Map<Integer, RoomIndex> rooms;
+
+    @Inject
+    public ChatSearchIndex(final Provider<ChatDAO> chatDAOProvider) {
+        this(chatDAOProvider, DEFAULT_CAPACITY);
+    }
+
+    ChatSearchIndex(final Provider<ChatDAO> chatDAOProvider, final int capacity) {
+        this.chatDAOProvider = chatDAOProvider;
+        this.capacity = capacity;
+        this.rooms = Maps.newConcurrentMap();
+    }
+
+    /**
+     * Add a message to the index. Messages are cheapest to add in the order of their ids, but a
+     * message that arrives late is still inserted. Messages that fall outside the capacity of the
+     * index are ignored.
+     *
+     * @param roomId
+     *            The room the message was sent in.
+     * @param messageId
+     *            The id of the message.
+     * @param message
+     *            The text of the message.
+     */
+    public void add(final int roomId, final int messageId, final String message) {
+        getRoomIndex(roomId).add(messageId, ProfanityChecker.tokenize(message));
+    }
+
+    /**
+     * Search the messages of a room that contain all words of the query.
+     *
+     * @param roomId
+     *            The room to search.
+     * @param query
+     *            The words to search for.
+     * @param limit
+     *            The maximum number of results.
+     * @return The ids of the newest matching messages, newest first.
+     */
+    public List<Integer> search(final int roomId, final String query, final int limit) {
+        final Set<String> tokens = ImmutableSet.copyOf(ProfanityChecker.tokenize(query));
+        if (tokens.isEmpty()) {
+            return Lists.newArrayList();
+        }
+
+        final int[] matches = getRoomIndex(roomId).search(tokens);
+        final List<Integer> ids = Lists.newArrayListWithCapacity(Math.min(limit, matches.length));
+        for (int i = matches.length - 1; i >= 0 && ids.size() < limit; i--) {
+            ids.add(matches[i]);
+        }
+        return ids;
+    }
+
+    /**
+     * Remove the messages of a room up to and including the given id, for instance because they
+     * were moved to the archive.
+     *
+     * @param roomId
+     *            The room of the messages.
+     * @param messageId
+     *            The id of the newest message to remove.
+     */
+    public void removeUpTo(final int roomId, final int messageId) {
+        getRoomIndex(roomId).removeUpTo(messageId);
+    }
+
+    /**
+     * Rebuild the index of a room from the retained messages in the database, reading only the
+     * messages that fit in the capacity of the index. Should be called in a unit of work.
+     *
+     * @param roomId
+     *            The room to rebuild.
+     */
+    public void rebuild(final int roomId) {
+        final ChatDAO chatDAO = chatDAOProvider.get();
+        final int afterId = Math.max(0, chatDAO.findLastId(roomId) - capacity);
+        final Map<String, PostingList> postings = Maps.newHashMap();
+        final int lastId = chatDAO.scanMessages(roomId, afterId, REBUILD_PAGE_SIZE,
+                (id, message) -> RoomIndex.add(postings, id,
+                        ProfanityChecker.tokenize(message)));
+
+        getRoomIndex(roomId).replace(postings, afterId, lastId);
+        log.info("Rebuilt search index of room {} with {} words", roomId, postings.size());
+    }
+
+    private RoomIndex getRoomIndex(final int roomId) {
+        return rooms.computeIfAbsent(roomId, id -> new RoomIndex(capacity));
+    }
+
+    /**
+     * The posting lists of a room, guarded by the room index itself. Only ids above the floor
+     * are indexed. Ids of room messages are consecutive, so the floor trails the newest id by
+     * the capacity. Removed ids are skipped by searches right away, and are dropped from the
+     * posting lists once the floor moved by a quarter of the capacity, or when messages are
+     * removed explicitly.
+     */
+    private static final class RoomIndex {
+
+        private final int capacity;
+
+        private Map<String, PostingList> postings = Maps.newHashMap();
+
+        /**
+         * The largest id that is no longer indexed.
+         */
+        private int floor;
+
+        /**
+         * The floor when the posting lists were last pruned.
+         */
+        private int prunedFloor;
+
+        private RoomIndex(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        private synchronized void add(final int id, final Collection<String> tokens) {
+            if (id <= floor) {
+                return;
+            }
+            add(postings, id, tokens);
+
+            if (id - capacity > floor) {
+                floor = id - capacity;
+                if (floor - prunedFloor >= capacity / 4) {
+                    prune();
+                }
+            }
+        }
+
+        private synchronized void removeUpTo(final int id) {
+            if (id > floor) {
+                floor = id;
+                prune();
+            }
+        }
+
+        private static void add(final Map<String, PostingList> postings, final int id,
+                final Collection<String> tokens) {
+            for (final String token : tokens) {
+                postings.computeIfAbsent(token, t -> new PostingList()).add(id);
+            }
+        }
+
+        /**
+         * Replace the posting lists by rebuilt posting lists, keeping the ids that were added
+         * after the last rebuilt message.
+         */
+        private synchronized void replace(final Map<String, PostingList> rebuilt,
+                final int rebuiltAfterId, final int rebuiltLastId) {
+            postings.forEach((token, list) -> Arrays.stream(list.toArray())
+                    .filter(id -> id > rebuiltLastId)
+                    .forEach(id -> rebuilt.computeIfAbsent(token, t -> new PostingList())
+                            .add(id)));
+            postings = rebuilt;
+            floor = Math.max(floor, rebuiltAfterId);
+            prune();
+        }
+
+        /**
+         * Drop the ids up to the floor from the posting lists, and the lists that become empty.
+         */
+        private void prune() {
+            final Map<String, PostingList> pruned = Maps.newHashMap();
+            postings.forEach((token, list) -> {
+                final int[] ids = list.toArray();
+                if (ids[0] > floor) {
+                    pruned.put(token, list);
+                    return;
+                }
+                Arrays.stream(ids)
+                        .filter(id -> id > floor)
+                        .forEach(id -> pruned.computeIfAbsent(token, t -> new PostingList())
+                                .add(id));
+            });
+            postings = pruned;
+            prunedFloor = floor;
+        }
+
+        /**
+         * Intersect the posting lists of the tokens, starting with the shortest list.
+         */
+        private synchronized int[] search(final Collection<String> tokens) {
+            final List<PostingList> lists = Lists.newArrayListWithCapacity(tokens.size());
+            for (final String token : tokens) {
+                final PostingList list = postings.get(token);
+                if (list == null) {
+                    return new int[0];
+                }
+                lists.add(list);
+            }
+            lists.sort(Comparator.comparingInt(PostingList::getCount));
+
+            int[] matches = lists.get(0).toArray();
+            for (int i = 1; i < lists.size() && matches.length > 0; i++) {
+                matches = intersect(matches, lists.get(i).toArray());
+            }
+            return Arrays.stream(matches)
+                    .filter(id -> id > floor)
+                    .toArray();
+        }
+
+        private static int[] intersect(final int[] first, final int[] second) {
+            final int[] result = new int[Math.min(first.length, second.length)];
+            int count = 0;
+
+            for (int i = 0, j = 0; i < first.length && j < second.length;) {
+                if (first[i] < second[j]) {
+                    i++;
+                } else if (first[i] > second[j]) {
+                    j++;
+                } else {
+                    result[count++] = first[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+    }
+
+}
@@ -0,0 +1,255 @@
+package me.moodcat.backend.rooms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.api.models.ChatMessageModel;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An append-only file of chat messages of a single room, in the order of their ids. The ids and
+ * file offsets of the messages are kept in memory, so that the messages before an id are found
+ * with a binary search and read from a memory mapping of the file.
+ * <p>
+ * Every record consists of its length, the id and author id of the message, its timestamp,
+ * author name and text. A record that was torn by a crash is truncated when the segment is
+ * opened. Segments are not thread safe, {@link ChatScrollback} synchronizes on the room.
+ */
+@Slf4j
+class ChatSegment {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final int INT_LENGTH = 4;
+
+    /**
+     * The segment file.
+     */
+    @Getter
+    private final Path path;
+
+    /**
+     * The channel through which messages are appended.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The ids of the messages in the segment, ascending.
+     */
+    private int[] ids;
+
+    /**
+     * The offsets of the records of the messages in the segment.
+     */
+    private int[] offsets;
+
+    /**
+     * The number of messages in the segment.
+     */
+    private int count;
+
+    /**
+     * The size of the segment file in bytes.
+     */
+    @Getter
+    private int size;
+
+    /**
+     * The timestamp of the newest message in the segment.
+     */
+    @Getter
+    private long lastTimestamp;
+
+    /**
+     * Mapping of the file, remapped when messages were appended since it was mapped.
+     */
+    private ByteBuffer mapping;
+
+    private ChatSegment(final Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.ids = new int[INITIAL_CAPACITY];
+        this.offsets = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Open an existing segment, or create it if it does not exist.
+     *
+     * @param path
+     *            The segment file.
+     * @return The segment.
+     * @throws IOException
+     *             If the segment could not be opened.
+     */
+    static ChatSegment open(final Path path) throws IOException {
+        final ChatSegment segment = new ChatSegment(path);
+        segment.index();
+        return segment;
+    }
+
+    private void index() throws IOException {
+        final ByteBuffer records = map(channel.size());
+
+        try {
+            while (records.remaining() >= INT_LENGTH) {
+                final int offset = records.position();
+                final int length = records.getInt();
+                if (length <= 0 || records.remaining() < length) {
+                    break;
+                }
+
+                final ChatMessageInstance message = read(records);
+                add(message.getId(), offset, INT_LENGTH + length, message.getTimestamp());
+                records.position(offset + INT_LENGTH + length);
+            }
+        } catch (final BufferUnderflowException e) {
+            log.warn("Segment {} contains a corrupt record", path);
+        }
+
+        if (size < channel.size()) {
+            log.warn("Truncating torn record in segment {}", path);
+            channel.truncate(size);
+        }
+    }
+
+    /**
+     * Append a message. Its id must be larger than the id of every message in the segment.
+     *
+     * @param message
+     *            The message.
+     * @throws IOException
+     *             If the message could not be written.
+     */
+    void append(final ChatMessageInstance message) throws IOException {
+        final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(payload);
+        out.writeInt(message.getId());
+        out.writeInt(message.getUserId());
+        out.writeLong(message.getTimestamp());
+        RoomSnapshotStore.writeString(out, message.getModel().getAuthor());
+        RoomSnapshotStore.writeString(out, message.getMessage());
+
+        final ByteBuffer record = ByteBuffer.allocate(INT_LENGTH + payload.size());
+        record.putInt(payload.size()).put(payload.toByteArray()).flip();
+
+        final int offset = size;
+        while (record.hasRemaining()) {
+            channel.write(record, offset + record.position());
+        }
+        add(message.getId(), offset, record.capacity(), message.getTimestamp());
+    }
+
+    private void add(final int id, final int offset, final int length, final long timestamp) {
+        if (count == ids.length) {
+            ids = Arrays.copyOf(ids, count * 2);
+            offsets = Arrays.copyOf(offsets, count * 2);
+        }
+
+        ids[count] = id;
+        offsets[count] = offset;
+        count++;
+        lastTimestamp = timestamp;
+        size = offset + length;
+    }
+
+    /**
+     * Read the newest messages with an id smaller than the given id.
+     *
+     * @param before
+     *            The id before which messages are read.
+     * @param limit
+     *            The maximum number of messages.
+     * @return The messages, oldest first.
+     * @throws IOException
+     *             If the segment could not be read.
+     */
+    List<ChatMessageModel> readBefore(final int before, final int limit) throws IOException {
+        final int insertion = Arrays.binarySearch(ids, 0, count, before);
+        final int end = insertion < 0 ? -insertion - 1 : insertion;
+        final int start = Math.max(0, end - limit);
+
+        final List<ChatMessageModel> messages = Lists.newArrayListWithCapacity(end - start);
+        if (end == start) {
+            return messages;
+        }
+
+        if (mapping == null || mapping.capacity() < size) {
+            mapping = map(size);
+        }
+
+        final ByteBuffer records = mapping.duplicate();
+        for (int i = start; i < end; i++) {
+            records.position(offsets[i] + INT_LENGTH);
+            messages.add(read(records).transform());
+        }
+        return messages;
+    }
+
+    private ByteBuffer map(final long length) throws IOException {
+        return channel.map(MapMode.READ_ONLY, 0, length);
+    }
+
+    private static ChatMessageInstance read(final ByteBuffer records) {
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setId(records.getInt());
+        final int userId = records.getInt();
+        model.setTimestamp(records.getLong());
+        model.setAuthor(RoomSnapshotStore.readString(records));
+        model.setMessage(RoomSnapshotStore.readString(records));
+        return new ChatMessageInstance(userId, model);
+    }
+
+    /**
+     * Get the number of messages in the segment.
+     *
+     * @return The number of messages.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the id of the newest message in the segment.
+     *
+     * @return The id, or 0 if the segment is empty.
+     */
+    int getLastId() {
+        return count == 0 ? 0 : ids[count - 1];
+    }
+
+    /**
+     * Close the segment.
+     *
+     * @throws IOException
+     *             If the segment could not be closed.
+     */
+    void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Close and delete the segment.
+     *
+     * @throws IOException
+     *             If the segment could not be deleted.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+}
@@ -0,0 +1,339 @@
+package me.moodcat.backend.rooms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * A {@link RoomJournal} that appends to a local file with group commit. Appended entries are
+ * buffered, and a single writer thread writes and syncs all buffered entries every commit
+ * interval. Threads that append wait for the sync of their batch, so many concurrent changes
+ * share one sync, and a change is durable before the request that made it completes. If the
+ * batch could not be written, the threads that appended it fail.
+ * <p>
+ * Every record consists of its length, the entry, and a CRC32 of the entry. A record that was
+ * torn by a crash ends the replay.
+ */
+@Slf4j
+@Singleton
+public class FileRoomJournal implements RoomJournal, DefaultLifceCycleListener {
+
+    private static final int INT_LENGTH = 4;
+
+    /**
+     * The journal that entries are appended to.
+     */
+    private final Path file;
+
+    /**
+     * The journal before the last rotation, deleted once the snapshot is written.
+     */
+    private final Path rotatedFile;
+
+    /**
+     * The thread that writes and syncs the buffered entries.
+     */
+    private final ScheduledExecutorService writer;
+
+    /**
+     * Guards the current batch.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The records that are appended, but not yet written.
+     */
+    private Batch batch;
+
+    /**
+     * Set once the journal is closed, after which appends are no longer durable.
+     */
+    private boolean closed;
+
+    /**
+     * The open journal file, only used by the writer thread.
+     */
+    private FileChannel channel;
+
+    @Inject
+    public FileRoomJournal(final RoomSnapshotConfiguration configuration,
+            final LifeCycle lifeCycle) throws IOException {
+        this.file = configuration.getJournalFile().toPath().toAbsolutePath();
+        this.rotatedFile = file.resolveSibling(file.getFileName() + ".old");
+        this.batch = new Batch();
+        this.channel = open(file);
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("moodcat-journal").setDaemon(true).build());
+        this.writer.scheduleWithFixedDelay(this::commit, configuration.getCommitInterval(),
+                configuration.getCommitInterval(), TimeUnit.MILLISECONDS);
+        lifeCycle.addLifeCycleListener(this);
+    }
+
+    private static FileChannel open(final Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void append(final JournalEntry entry) {
+        final byte[] record = encode(entry);
+
+        synchronized (lock) {
+            if (closed) {
+                log.warn("Journal is closed, {} is not durable", entry);
+                return;
+            }
+            final Batch appendedTo = batch;
+            appendedTo.records.add(record);
+
+            while (!appendedTo.done && !closed) {
+                try {
+                    lock.wait();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            if (appendedTo.failure != null) {
+                throw new UncheckedIOException("Could not write " + entry, appendedTo.failure);
+            }
+        }
+    }
+
+    private static byte[] encode(final JournalEntry entry) {
+        try {
+            final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            entry.write(new DataOutputStream(payload));
+
+            final CRC32 checksum = new CRC32();
+            checksum.update(payload.toByteArray());
+
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(payload.size());
+            payload.writeTo(out);
+            out.writeInt((int) checksum.getValue());
+            return bytes.toByteArray();
+        } catch (final IOException e) {
+            throw new IllegalStateException("Could not encode " + entry, e);
+        }
+    }
+
+    /**
+     * Write and sync the buffered records, and release the threads that appended them. If the
+     * records could not be written, the threads that appended them fail. Only called by the
+     * writer thread.
+     */
+    private void commit() {
+        final Batch written;
+
+        synchronized (lock) {
+            if (batch.records.isEmpty()) {
+                return;
+            }
+            written = batch;
+            batch = new Batch();
+        }
+
+        IOException failure = null;
+        long start = -1;
+        try {
+            start = channel.size();
+            final ByteBuffer[] records = written.records.stream().map(ByteBuffer::wrap)
+                    .toArray(ByteBuffer[]::new);
+            while (records[records.length - 1].hasRemaining()) {
+                channel.write(records);
+            }
+            channel.force(false);
+        } catch (final IOException e) {
+            log.error("Could not write {} journal entries", written.records.size(), e);
+            failure = e;
+            discardPartialWrite(start);
+        }
+
+        synchronized (lock) {
+            written.done = true;
+            written.failure = failure;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Cut off the records of a batch that failed, so that a torn record does not end the replay
+     * before the records that are appended after it.
+     *
+     * @param start
+     *            The size of the journal before the batch was written, or -1 if unknown.
+     */
+    private void discardPartialWrite(final long start) {
+        if (start < 0) {
+            return;
+        }
+        try {
+            channel.truncate(start);
+        } catch (final IOException e) {
+            log.error("Could not discard the failed journal entries", e);
+        }
+    }
+
+    @Override
+    public void rotate() throws IOException {
+        runOnWriter(() -> {
+            commit();
+            // If the previous snapshot failed, keep appending: replaying twice is harmless
+            if (!Files.exists(rotatedFile)) {
+                channel.close();
+                Files.move(file, rotatedFile, StandardCopyOption.ATOMIC_MOVE);
+                channel = open(file);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedFile);
+    }
+
+    private void runOnWriter(final WriterTask task) throws IOException {
+        try {
+            writer.submit(task::run).get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the journal", e);
+        } catch (final ExecutionException e) {
+            throw new IOException("Could not rotate the journal", e.getCause());
+        }
+    }
+
+    @Override
+    public List<JournalEntry> replay() {
+        final ImmutableList.Builder<JournalEntry> entries = ImmutableList.builder();
+        replay(rotatedFile, entries);
+        replay(file, entries);
+        return entries.build();
+    }
+
+    private static void replay(final Path path, final ImmutableList.Builder<JournalEntry> entries) {
+        if (!Files.isRegularFile(path)) {
+            return;
+        }
+
+        try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer records = input.map(MapMode.READ_ONLY, 0, input.size());
+            int count = 0;
+
+            while (records.remaining() >= INT_LENGTH) {
+                final int length = records.getInt();
+                if (length <= 0 || records.remaining() < length + INT_LENGTH) {
+                    log.warn("Journal {} ends with a torn record", path);
+                    break;
+                }
+
+                final ByteBuffer payload = records.slice();
+                payload.limit(length);
+                records.position(records.position() + length);
+
+                final CRC32 checksum = new CRC32();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != records.getInt()) {
+                    log.warn("Journal {} ends with a corrupt record", path);
+                    break;
+                }
+
+                entries.add(JournalEntry.read(payload));
+                count++;
+            }
+            log.info("Replayed {} entries from {}", count, path);
+        } catch (final IOException | BufferUnderflowException e) {
+            log.warn("Could not replay journal {}: {}", path, e.getMessage());
+        }
+    }
+
+    @Override
+    public void lifeCycleStopped(final LifeCycle lifeCycle) {
+        try {
+            runOnWriter(() -> {
+                commit();
+                channel.close();
+                return null;
+            });
+        } catch (final IOException e) {
+            log.warn("Could not close journal {}", file, e);
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Records that are written and synced together.
+     */
+    private static final class Batch {
+
+        /**
+         * The records in the order in which they were appended.
+         */
+        private final List<byte[]> records = Lists.newArrayList();
+
+        /**
+         * Set once the records were written, or failed to be written.
+         */
+        private boolean done;
+
+        /**
+         * The reason the records could not be written, {@code null} if they are durable.
+         */
+        private IOException failure;
+
+    }
+
+    /**
+     * A task that runs on the writer thread.
+     */
+    @FunctionalInterface
+    private interface WriterTask {
+
+        /**
+         * Run the task.
+         *
+         * @return nothing
+         * @throws IOException
+         *             If the journal file could not be accessed.
+         */
+        Void run() throws IOException;
+
+    }
+
+}
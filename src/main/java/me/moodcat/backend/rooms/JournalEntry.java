@@ -0,0 +1,255 @@
+package me.moodcat.backend.rooms;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.backend.Vote;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+/**
+ * A change to the live state of a room that is appended to the {@link RoomJournal}.
+ */
+@Getter
+@ToString
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public final class JournalEntry {
+
+    /**
+     * The kind of change.
+     */
+    public enum Type {
+
+        /**
+         * A chat message was sent.
+         */
+        MESSAGE,
+
+        /**
+         * A vote was cast for the playing song.
+         */
+        VOTE,
+
+        /**
+         * A song started playing.
+         */
+        SONG
+
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    private static final Vote[] VOTES = Vote.values();
+
+    private final Type type;
+
+    /**
+     * The id of the room that changed.
+     */
+    private final int roomId;
+
+    /**
+     * The time of the change.
+     */
+    private final long time;
+
+    /**
+     * The song that started playing, or that was voted for.
+     */
+    private final int songId;
+
+    /**
+     * The user that voted.
+     */
+    private final int userId;
+
+    /**
+     * The vote, only set for {@link Type#VOTE}.
+     */
+    private final Vote vote;
+
+    /**
+     * The message, only set for {@link Type#MESSAGE}.
+     */
+    private final ChatMessageInstance message;
+
+    /**
+     * Create an entry for a chat message.
+     *
+     * @param roomId
+     *            The room the message was sent in.
+     * @param message
+     *            The message.
+     * @return The entry.
+     */
+    public static JournalEntry message(final int roomId, final ChatMessageInstance message) {
+        return new JournalEntry(Type.MESSAGE, roomId, message.getTimestamp(), 0,
+                message.getUserId(), null, message);
+    }
+
+    /**
+     * Create an entry for a vote.
+     *
+     * @param roomId
+     *            The room the vote was cast in.
+     * @param songId
+     *            The song that was voted for.
+     * @param userId
+     *            The user that voted.
+     * @param vote
+     *            The vote.
+     * @return The entry.
+     */
+    public static JournalEntry vote(final int roomId, final int songId, final int userId,
+            final Vote vote) {
+        return new JournalEntry(Type.VOTE, roomId, System.currentTimeMillis(), songId, userId,
+                vote, null);
+    }
+
+    /**
+     * Create an entry for a song that started playing.
+     *
+     * @param roomId
+     *            The room the song plays in.
+     * @param songId
+     *            The song.
+     * @return The entry.
+     */
+    public static JournalEntry song(final int roomId, final int songId) {
+        return new JournalEntry(Type.SONG, roomId, System.currentTimeMillis(), songId, 0, null,
+                null);
+    }
+
+    /**
+     * Apply this change to the state of a room. Entries may already be contained in the state,
+     * if they were appended while the snapshot was taken, so applying them twice has no effect.
+     *
+     * @param state
+     *            The state of the room before the change.
+     * @return The state of the room after the change.
+     */
+    public RoomState applyTo(final RoomState state) {
+        switch (type) {
+            case MESSAGE:
+                return applyMessage(state);
+            case VOTE:
+                return applyVote(state);
+            case SONG:
+                return new RoomState(state.getRoomId(), time, songId, 0,
+                        state.getLastMessageId(), state.getMessages(), ImmutableMap.of());
+            default:
+                throw new IllegalStateException("Unknown journal entry " + type);
+        }
+    }
+
+    private RoomState applyMessage(final RoomState state) {
+        final List<ChatMessageInstance> messages = Lists.newArrayList(state.getMessages());
+        final int id = message.getId();
+
+        // The last message id of a snapshot may be generated before its message was cached, so
+        // only the messages that are actually in the state are skipped
+        if (messages.stream().anyMatch(cached -> cached.getId() == id)
+                || messages.size() >= RoomInstance.MAXIMAL_NUMBER_OF_CHAT_MESSAGES
+                && id < messages.get(0).getId()) {
+            return state;
+        }
+
+        int position = messages.size();
+        while (position > 0 && messages.get(position - 1).getId() > id) {
+            position--;
+        }
+        messages.add(position, message);
+        final int excess = messages.size() - RoomInstance.MAXIMAL_NUMBER_OF_CHAT_MESSAGES;
+
+        return new RoomState(state.getRoomId(), state.getTakenAt(), state.getSongId(),
+                state.getSongTime(), Math.max(id, state.getLastMessageId()),
+                ImmutableList.copyOf(messages.subList(Math.max(0, excess), messages.size())),
+                state.getVotes());
+    }
+
+    private RoomState applyVote(final RoomState state) {
+        if (songId != state.getSongId() || state.getVotes().containsKey(userId)) {
+            return state;
+        }
+
+        final Map<Integer, Vote> votes = Maps.newHashMap(state.getVotes());
+        votes.put(userId, vote);
+
+        return new RoomState(state.getRoomId(), state.getTakenAt(), state.getSongId(),
+                state.getSongTime(), state.getLastMessageId(), state.getMessages(),
+                ImmutableMap.copyOf(votes));
+    }
+
+    /**
+     * Write this entry.
+     *
+     * @param out
+     *            The stream to write to.
+     * @throws IOException
+     *             If the entry could not be written.
+     */
+    void write(final DataOutputStream out) throws IOException {
+        out.writeByte(type.ordinal());
+        out.writeInt(roomId);
+        out.writeLong(time);
+
+        switch (type) {
+            case MESSAGE:
+                out.writeInt(message.getId());
+                out.writeInt(message.getUserId());
+                RoomSnapshotStore.writeString(out, message.getModel().getAuthor());
+                RoomSnapshotStore.writeString(out, message.getMessage());
+                break;
+            case VOTE:
+                out.writeInt(songId);
+                out.writeInt(userId);
+                out.writeByte(vote.ordinal());
+                break;
+            default:
+                out.writeInt(songId);
+                break;
+        }
+    }
+
+    /**
+     * Read an entry.
+     *
+     * @param buffer
+     *            The buffer to read from.
+     * @return The entry.
+     */
+    static JournalEntry read(final ByteBuffer buffer) {
+        final Type type = TYPES[buffer.get()];
+        final int roomId = buffer.getInt();
+        final long time = buffer.getLong();
+
+        switch (type) {
+            case MESSAGE:
+                final ChatMessageModel model = new ChatMessageModel();
+                model.setId(buffer.getInt());
+                model.setTimestamp(time);
+                final int userId = buffer.getInt();
+                model.setAuthor(RoomSnapshotStore.readString(buffer));
+                model.setMessage(RoomSnapshotStore.readString(buffer));
+                return new JournalEntry(type, roomId, time, 0, userId, null,
+                        new ChatMessageInstance(userId, model));
+            case VOTE:
+                return new JournalEntry(type, roomId, time, buffer.getInt(), buffer.getInt(),
+                        VOTES[buffer.get()], null);
+            default:
+                return new JournalEntry(type, roomId, time, buffer.getInt(), 0, null, null);
+        }
+    }
+
+}
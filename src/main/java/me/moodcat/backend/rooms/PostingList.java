@@ -0,0 +1,141 @@
+package me.moodcat.backend.rooms;
+
+import java.util.Arrays;
+
+/**
+ * An ascending list of message ids in which a token occurs. The ids are stored as the
+ * differences between consecutive ids, encoded as variable length integers, so that the ids of
+ * a frequent token in a busy room mostly take a single byte each. Posting lists are not thread
+ * safe, {@link ChatSearchIndex} synchronizes on the room.
+ */
+class PostingList {
+
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static final int VALUE_BITS = 7;
+
+    private static final int VALUE_MASK = 0x7F;
+
+    private static final int CONTINUATION_BIT = 0x80;
+
+    /**
+     * The encoded differences.
+     */
+    private byte[] bytes;
+
+    /**
+     * The number of used bytes.
+     */
+    private int length;
+
+    /**
+     * The number of ids in the list.
+     */
+    private int count;
+
+    /**
+     * The last id in the list.
+     */
+    private int lastId;
+
+    PostingList() {
+        this.bytes = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Add an id to the list. Ids are normally added in ascending order and appended; an id that
+     * arrives late is inserted at its position, which re-encodes the list.
+     *
+     * @param id
+     *            The id.
+     * @return false if the id was already in the list, and is not added.
+     */
+    boolean add(final int id) {
+        if (count == 0 || id > lastId) {
+            append(id);
+            return true;
+        }
+
+        final int[] ids = toArray();
+        final int position = Arrays.binarySearch(ids, id);
+        if (position >= 0) {
+            return false;
+        }
+
+        final int insertAt = -position - 1;
+        length = 0;
+        count = 0;
+        lastId = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == insertAt) {
+                append(id);
+            }
+            append(ids[i]);
+        }
+        return true;
+    }
+
+    private void append(final int id) {
+        int delta = id - lastId;
+        while (delta >= CONTINUATION_BIT) {
+            write((byte) (delta & VALUE_MASK | CONTINUATION_BIT));
+            delta >>>= VALUE_BITS;
+        }
+        write((byte) delta);
+
+        lastId = id;
+        count++;
+    }
+
+    private void write(final byte value) {
+        if (length == bytes.length) {
+            bytes = Arrays.copyOf(bytes, length * 2);
+        }
+        bytes[length++] = value;
+    }
+
+    /**
+     * Decode the list.
+     *
+     * @return The ids, ascending.
+     */
+    int[] toArray() {
+        final int[] ids = new int[count];
+        int position = 0;
+        int id = 0;
+
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte value;
+            do {
+                value = bytes[position++];
+                delta |= (value & VALUE_MASK) << shift;
+                shift += VALUE_BITS;
+            } while ((value & CONTINUATION_BIT) != 0);
+
+            id += delta;
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * Get the number of ids in the list.
+     *
+     * @return The number of ids.
+     */
+    int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of bytes the encoded ids take.
+     *
+     * @return The size in bytes.
+     */
+    int getSize() {
+        return length;
+    }
+
+}
@@ -1,26 +1,55 @@
 package me.moodcat.backend.rooms;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
 import me.moodcat.backend.UnitOfWorkSchedulingService;
+import me.moodcat.backend.cluster.ClusterMembership;
 import me.moodcat.database.controllers.RoomDAO;
+import me.moodcat.database.entities.Room;
 
 import org.eclipse.jetty.util.component.AbstractLifeCycle.AbstractLifeCycleListener;
 import org.eclipse.jetty.util.component.LifeCycle;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
 
 /**
  * The backend of rooms, initializes room instances and keeps track of time and messages.
+ * Only the rooms that are owned by this node according to the {@link ClusterMembership} are
+ * instantiated. When nodes join or leave, the rooms are rebalanced.
+ * <p>
+ * The live state of the rooms is periodically written to a {@link RoomSnapshotStore snapshot},
+ * and once more when the server stops. Changes in between are appended to the
+ * {@link RoomJournal}. When the server starts, rooms continue from a recent snapshot and the
+ * journal rather than only from their state in the database.
  */
 @Slf4j
 @Singleton
-public class RoomBackend extends AbstractLifeCycleListener {
+public class RoomBackend extends AbstractLifeCycleListener implements
+        ClusterMembership.MembershipListener {
+
+    /**
+     * The maximum time in milliseconds to wait for the rooms that are handed over to be merged.
+     */
+    private static final long HANDOVER_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
 
     /**
      * UnitOfWorkSchedulingService.
@@ -37,11 +66,38 @@ public class RoomBackend extends AbstractLifeCycleListener {
      */
     private final Provider<RoomDAO> roomDAOProvider;
 
+    /**
+     * The membership of the cluster, which decides which rooms are owned by this node.
+     */
+    private final ClusterMembership clusterMembership;
+
+    /**
+     * The store of snapshots of the live room state.
+     */
+    private final RoomSnapshotStore roomSnapshotStore;
+
+    /**
+     * The configuration of the snapshots.
+     */
+    private final RoomSnapshotConfiguration roomSnapshotConfiguration;
+
+    /**
+     * The journal of the changes since the last snapshot.
+     */
+    private final RoomJournal roomJournal;
+
     /**
      * A map of room instances.
      */
     private final Map<Integer, RoomInstance> roomInstances;
 
+    /**
+     * The thread that initializes and rebalances the rooms, so that these never run at the same
+     * time and a room is never instantiated twice. It waits for handovers, so that the threads
+     * of the {@link UnitOfWorkSchedulingService} are not blocked.
+     */
+    private final ExecutorService rebalancer;
+
     /**
      * The constructor of the chat's backend, initializes fields and rooms.
      *
@@ -51,6 +107,14 @@ public class RoomBackend extends AbstractLifeCycleListener {
      *            RoomInstanceFactory to instantiate RoomInstances
      * @param roomDAOProvider
      *            Provider to create RoomDAOs when in a unit of work
+     * @param clusterMembership
+     *            ClusterMembership to determine which rooms are owned by this node
+     * @param roomSnapshotStore
+     *            RoomSnapshotStore to write and restore the live state of rooms
+     * @param roomSnapshotConfiguration
+     *            RoomSnapshotConfiguration that determines how often snapshots are written
+     * @param roomJournal
+     *            RoomJournal that holds the changes since the last snapshot
      * @param lifeCycle
      *            The program lifecycle, to instantiate the initial rooms
      *            when the program has started
@@ -59,8 +123,13 @@ public class RoomBackend extends AbstractLifeCycleListener {
     public RoomBackend(final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
             final RoomInstanceFactory roomInstanceFactory,
             final Provider<RoomDAO> roomDAOProvider,
+            final ClusterMembership clusterMembership,
+            final RoomSnapshotStore roomSnapshotStore,
+            final RoomSnapshotConfiguration roomSnapshotConfiguration,
+            final RoomJournal roomJournal,
             final LifeCycle lifeCycle) {
-        this(unitOfWorkSchedulingService, roomInstanceFactory, roomDAOProvider);
+        this(unitOfWorkSchedulingService, roomInstanceFactory, roomDAOProvider,
+                clusterMembership, roomSnapshotStore, roomSnapshotConfiguration, roomJournal);
         lifeCycle.addLifeCycleListener(this);
     }
 
@@ -73,14 +142,33 @@ public class RoomBackend extends AbstractLifeCycleListener {
      *            RoomInstanceFactory to instantiate RoomInstances
      * @param roomDAOProvider
      *            Provider to create RoomDAOs when in a unit of work
+     * @param clusterMembership
+     *            ClusterMembership to determine which rooms are owned by this node
+     * @param roomSnapshotStore
+     *            RoomSnapshotStore to write and restore the live state of rooms
+     * @param roomSnapshotConfiguration
+     *            RoomSnapshotConfiguration that determines how often snapshots are written
+     * @param roomJournal
+     *            RoomJournal that holds the changes since the last snapshot
      */
     public RoomBackend(final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
             final RoomInstanceFactory roomInstanceFactory,
-            final Provider<RoomDAO> roomDAOProvider) {
+            final Provider<RoomDAO> roomDAOProvider,
+            final ClusterMembership clusterMembership,
+            final RoomSnapshotStore roomSnapshotStore,
+            final RoomSnapshotConfiguration roomSnapshotConfiguration,
+            final RoomJournal roomJournal) {
         this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
         this.roomInstanceFactory = roomInstanceFactory;
         this.roomDAOProvider = roomDAOProvider;
-        this.roomInstances = Maps.newTreeMap();
+        this.clusterMembership = clusterMembership;
+        this.roomSnapshotStore = roomSnapshotStore;
+        this.roomSnapshotConfiguration = roomSnapshotConfiguration;
+        this.roomJournal = roomJournal;
+        this.roomInstances = Maps.newConcurrentMap();
+        this.rebalancer = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("moodcat-rebalancer").setDaemon(true).build());
+        clusterMembership.addListener(this);
     }
 
     /**
@@ -94,27 +182,188 @@ public class RoomBackend extends AbstractLifeCycleListener {
         return roomInstances.get(id);
     }
 
+    /**
+     * Get the ids of the rooms that are served by this node.
+     *
+     * @return the ids of the local rooms
+     */
+    public Set<Integer> getRoomIds() {
+        return ImmutableSet.copyOf(roomInstances.keySet());
+    }
+
+    /**
+     * Check whether a room is served by this node.
+     *
+     * @param id
+     *            the room's id
+     * @return true if this node owns the room
+     */
+    public boolean isLocal(final int id) {
+        return clusterMembership.isLocal(id);
+    }
+
     /**
      * Initialize the rooms from the db.
      */
-    public Future<?> initializeRooms() {
-        return unitOfWorkSchedulingService
+    public CompletableFuture<Void> initializeRooms() {
+        return initializeRooms(Collections.emptyMap());
+    }
+
+    /**
+     * Initialize the rooms from the db, continuing from the state in a snapshot.
+     *
+     * @param snapshot
+     *            The state of the rooms in the snapshot, by room id.
+     * @return a future that completes when the rooms have been initialized
+     */
+    public CompletableFuture<Void> initializeRooms(final Map<Integer, RoomState> snapshot) {
+        return CompletableFuture.runAsync(() -> await(unitOfWorkSchedulingService
                 .performInUnitOfWork(() -> {
                     final RoomDAO roomDAO = roomDAOProvider.get();
                     roomDAO.listRooms()
                             .stream()
-                            .map(roomInstanceFactory::create)
-                            .forEach(
-                                    roomInstance -> roomInstances.put(roomInstance.getId(),
-                                            roomInstance));
-                });
+                            .filter(room -> clusterMembership.isLocal(room.getId()))
+                            .forEach(room -> roomInstances.computeIfAbsent(room.getId(),
+                                    id -> snapshot.containsKey(id)
+                                            ? roomInstanceFactory.create(room, snapshot.get(id))
+                                            : roomInstanceFactory.create(room)));
+                })), rebalancer);
+    }
+
+    /**
+     * Read the state of the rooms in the last snapshot, and apply the changes in the journal.
+     * Rooms that are not in the snapshot, for example because no snapshot was written before
+     * the node crashed, start from an {@link RoomState#empty(int, long) empty state}, so that
+     * their journaled messages are restored as well.
+     *
+     * @return The state of the rooms by room id.
+     */
+    public Map<Integer, RoomState> readSnapshot() {
+        final Map<Integer, RoomState> states = Maps.newHashMap(roomSnapshotStore.read());
+
+        for (final JournalEntry entry : roomJournal.replay()) {
+            states.compute(entry.getRoomId(), (id, state) -> entry.applyTo(state == null
+                    ? RoomState.empty(id, entry.getTime()) : state));
+        }
+        return states;
+    }
+
+    /**
+     * Write a snapshot of the live state of the rooms of this node. The journal is rotated
+     * before the state is taken, so every change is either in the snapshot or in the new journal.
+     */
+    public void writeSnapshot() {
+        try {
+            roomJournal.rotate();
+            final List<RoomState> states = roomInstances.values().stream()
+                    .map(RoomInstance::snapshot)
+                    .collect(Collectors.toList());
+
+            roomSnapshotStore.write(states);
+            roomJournal.discardRotated();
+        } catch (final IOException | RuntimeException e) {
+            // The scheduler cancels later snapshots if an exception escapes
+            log.warn("Could not write room snapshot", e);
+        }
+    }
+
+    /**
+     * Rebalance the rooms after the cluster membership changed. Rooms that are no longer owned
+     * by this node are closed, and rooms that moved to this node are instantiated.
+     * <p>
+     * The new owner loads a room from the database, so the rooms that moved to this node are
+     * only instantiated once the pending changes of the closed rooms are merged, or
+     * {@link #HANDOVER_TIMEOUT} has passed. The rebalance runs after earlier initializations and
+     * rebalances.
+     *
+     * @return a future that completes when the rooms that moved to this node are instantiated
+     */
+    public CompletableFuture<Void> rebalance() {
+        return CompletableFuture.runAsync(this::rebalanceRooms, rebalancer);
+    }
+
+    private void rebalanceRooms() {
+        final List<Future<?>> handovers = roomInstances.values().stream()
+                .filter(roomInstance -> !clusterMembership.isLocal(roomInstance.getId()))
+                .map(roomInstance -> {
+                    log.info("Handing over room {} to {}", roomInstance.getId(),
+                            clusterMembership.getOwner(roomInstance.getId()));
+                    roomInstances.remove(roomInstance.getId());
+                    return roomInstance.close();
+                })
+                .collect(Collectors.toList());
+        awaitHandovers(handovers);
+
+        await(unitOfWorkSchedulingService
+                .performInUnitOfWork(() -> {
+                    final List<Room> rooms = roomDAOProvider.get().listRooms();
+                    rooms.stream()
+                            .filter(room -> clusterMembership.isLocal(room.getId()))
+                            .filter(room -> !roomInstances.containsKey(room.getId()))
+                            .forEach(room -> roomInstances.computeIfAbsent(room.getId(), id -> {
+                                log.info("Taking over room {}", id);
+                                return roomInstanceFactory.create(room);
+                            }));
+                }));
+    }
+
+    /**
+     * Wait on the rebalancer thread for a task in a unit of work.
+     */
+    private static void await(final Future<?> future) {
+        try {
+            future.get();
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        } catch (final ExecutionException e) {
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    private void awaitHandovers(final List<Future<?>> handovers) {
+        final long deadline = System.currentTimeMillis() + HANDOVER_TIMEOUT;
+
+        for (final Future<?> handover : handovers) {
+            try {
+                handover.get(Math.max(0, deadline - System.currentTimeMillis()),
+                        TimeUnit.MILLISECONDS);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (final ExecutionException | TimeoutException e) {
+                log.warn("Could not merge a room before handing it over", e);
+            }
+        }
+    }
+
+    /**
+     * Rebalance the rooms in the background. The node that caused the change, for example a
+     * joining node, is only answered once the returned future completes, so once the rooms it
+     * takes over are merged.
+     */
+    @Override
+    public CompletableFuture<Void> membershipChanged() {
+        return rebalance();
     }
 
     @Override
     public void lifeCycleStarted(final LifeCycle event) {
         super.lifeCycleStarted(event);
         log.info("[Lifecycle started] Creating initial rooms for {}", this);
-        initializeRooms();
+        initializeRooms(readSnapshot());
+
+        final long interval = roomSnapshotConfiguration.getInterval();
+        unitOfWorkSchedulingService.scheduleAtFixedRate(this::writeSnapshot, interval, interval,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void lifeCycleStopping(final LifeCycle event) {
+        super.lifeCycleStopping(event);
+        log.info("[Lifecycle stopping] Writing snapshot of rooms for {}", this);
+        rebalancer.shutdown();
+        writeSnapshot();
     }
 
 }
@@ -1,23 +1,31 @@
 package me.moodcat.backend.rooms;
 
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import me.moodcat.api.ProfanityChecker;
 import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.backend.SongVectorUpdateQueue;
 import me.moodcat.backend.UnitOfWorkSchedulingService;
 import me.moodcat.backend.Vote;
-import me.moodcat.database.controllers.SongDAO;
+import me.moodcat.database.controllers.ChatDAO;
 import me.moodcat.database.embeddables.VAVector;
 import me.moodcat.database.entities.ChatMessage;
 import me.moodcat.database.entities.Room;
@@ -25,8 +33,9 @@ import me.moodcat.database.entities.Song;
 import me.moodcat.database.entities.User;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Futures;
 import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
 import com.google.inject.assistedinject.AssistedInject;
@@ -52,6 +61,11 @@ public class RoomInstance {
      */
     public static final double CLASSIFY_GROW_FACTOR = 0.02;
 
+    /**
+     * How long before the end of a song the next song is resolved, in milliseconds.
+     */
+    public static final long PREFETCH_LEAD_TIME = TimeUnit.SECONDS.toMillis(30);
+
     private static final int MESSAGE_FLOODING_TIMEOUT = 10;
 
     private static final int MESSAGE_FLOODING_MESSAGE_AMOUNT = 4;
@@ -97,13 +111,45 @@ public class RoomInstance {
      */
     private final ChatMessageIdGenerator chatMessageIdGenerator;
     
-    private Provider<SongDAO> songDAOProvider;
+    /**
+     * The queue through which song vectors are adjusted.
+     */
+    private final SongVectorUpdateQueue songVectorUpdateQueue;
 
     /**
-     * The cached messages in order to speed up retrieval.
+     * The journal to which changes are appended before they are applied.
+     */
+    private final RoomJournal roomJournal;
+
+    /**
+     * The warm tier to which messages are moved when they are evicted from the cache.
+     */
+    private final ChatScrollback chatScrollback;
+
+    /**
+     * The index through which moderators search the messages of the room.
+     */
+    private final ChatSearchIndex chatSearchIndex;
+
+    /**
+     * The cached messages in order to speed up retrieval. Requests, timers and snapshots iterate
+     * the messages while they are sent, so the deque is concurrent.
      */
     private final Deque<ChatMessageInstance> messages;
 
+    /**
+     * Sent messages that have an id, but that are not yet durable, in the order of their ids.
+     * Messages are only added to {@link #messages} in this order, so that the cache, the
+     * scrollback, the search index and the pollers never see a message before an older one.
+     * Guarded by itself.
+     */
+    private final Deque<PendingMessage> pendingMessages;
+
+    /**
+     * Clients that wait for messages newer than the last message they received.
+     */
+    private final Queue<MessagePoller> pollers;
+
     /**
      * The current song.
      */
@@ -114,42 +160,139 @@ public class RoomInstance {
      */
     private final AtomicBoolean hasChanged;
 
+    /**
+     * Closed flag, set when the room is handed over to another node.
+     */
+    private final AtomicBoolean closed;
+
+    /**
+     * The task that periodically syncs the room to the database.
+     */
+    private final ScheduledFuture<?> syncTimer;
+
     /**
      * The votes of the users for the current song.
      */
-    private final Map<User, Vote> votes;
+    private final AtomicReference<VoteAggregator> votes;
+
+    /**
+     * The song that is resolved to play after the current song, if any.
+     */
+    private final AtomicReference<PrefetchedSong> prefetchedSong;
 
     @AssistedInject
     public RoomInstance(final SongInstanceFactory songInstanceFactory,
             final RoomInstanceInUnitOfWorkFactory roomInstanceInUnitOfWorkFactory,
             final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
             final ProfanityChecker profanityChecker,
-            final Provider<SongDAO> songDAOProvider,
+            final SongVectorUpdateQueue songVectorUpdateQueue,
+            final RoomJournal roomJournal,
+            final ChatScrollback chatScrollback,
+            final ChatSearchIndex chatSearchIndex,
+            final Provider<ChatDAO> chatDAOProvider,
             @Assisted final Room room) {
+        this(songInstanceFactory, roomInstanceInUnitOfWorkFactory, unitOfWorkSchedulingService,
+                profanityChecker, songVectorUpdateQueue, roomJournal, chatScrollback,
+                chatSearchIndex, chatDAOProvider, room, null);
+    }
+
+    /**
+     * Create a room instance that continues from a snapshot of its state. The chat messages that
+     * were not yet persisted, the votes, and the progress of the song are restored. The votes
+     * and progress are only restored if the room still plays the same song.
+     */
+    @AssistedInject
+    public RoomInstance(final SongInstanceFactory songInstanceFactory,
+            final RoomInstanceInUnitOfWorkFactory roomInstanceInUnitOfWorkFactory,
+            final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
+            final ProfanityChecker profanityChecker,
+            final SongVectorUpdateQueue songVectorUpdateQueue,
+            final RoomJournal roomJournal,
+            final ChatScrollback chatScrollback,
+            final ChatSearchIndex chatSearchIndex,
+            final Provider<ChatDAO> chatDAOProvider,
+            @Assisted final Room room,
+            @Assisted final RoomState state) {
         Preconditions.checkNotNull(room);
         this.profanityChecker = profanityChecker;
         this.songInstanceFactory = songInstanceFactory;
         this.roomInstanceInUnitOfWorkFactory = roomInstanceInUnitOfWorkFactory;
         this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
-        this.songDAOProvider = songDAOProvider;
-        this.votes = Maps.newConcurrentMap();
+        this.songVectorUpdateQueue = songVectorUpdateQueue;
+        this.roomJournal = roomJournal;
+        this.chatScrollback = chatScrollback;
+        this.chatSearchIndex = chatSearchIndex;
+        this.votes = new AtomicReference<>(new VoteAggregator());
+        this.prefetchedSong = new AtomicReference<>();
 
         this.id = room.getId();
         this.name = room.getName();
-        this.chatMessageIdGenerator = new ChatMessageIdGenerator(room);
-        this.messages = getChatMessageModels(room.getChatMessages());
+        // Only the latest messages are cached, older messages are paged from the ChatDAO
+        final ChatDAO chatDAO = chatDAOProvider.get();
+        this.messages = getChatMessageModels(chatDAO.listLatest(this.id,
+                MAXIMAL_NUMBER_OF_CHAT_MESSAGES));
+        this.chatMessageIdGenerator = new ChatMessageIdGenerator(chatDAO.findLastId(this.id));
+        this.pendingMessages = new ArrayDeque<>();
+        this.pollers = new ConcurrentLinkedQueue<>();
         this.currentSong = new AtomicReference<SongInstance>();
         this.hasChanged = new AtomicBoolean(false);
+        this.closed = new AtomicBoolean(false);
 
-        this.scheduleSyncTimer();
-        this.startPlaying(room.getCurrentSong());
+        this.syncTimer = this.scheduleSyncTimer();
+
+        if (state == null) {
+            this.startPlaying(room.getCurrentSong());
+        } else {
+            this.restore(room.getCurrentSong(), state);
+        }
+
+        // Restored messages may not be persisted yet, so they are indexed before the rebuild
+        this.messages.forEach(message -> chatSearchIndex.add(this.id, message.getId(),
+                message.getMessage()));
+        this.unitOfWorkSchedulingService.performInUnitOfWork(
+                () -> chatSearchIndex.rebuild(this.id));
         log.info("Initialized room instance {}", this);
     }
 
-    private static LinkedList<ChatMessageInstance> getChatMessageModels(
+    private void restore(final Song song, final RoomState state) {
+        final int lastMessageId = messages.isEmpty() ? 0 : messages.getLast().getId();
+        state.getMessages().stream()
+                .filter(message -> message.getId() > lastMessageId)
+                .forEach(messages::addLast);
+        trimMessages();
+        chatMessageIdGenerator.advanceTo(state.getLastMessageId());
+        hasChanged.set(state.getLastMessageId() > lastMessageId);
+
+        if (song.getId() != state.getSongId()) {
+            log.info("Room {} plays another song than in {}", this.id, state);
+            startPlaying(song);
+            return;
+        }
+
+        final VoteAggregator restoredVotes = this.votes.get();
+        state.getVotes().forEach(restoredVotes::addVote);
+        // The song kept playing for the listeners while the node restarted
+        startPlaying(song, state.getSongTime() + System.currentTimeMillis() - state.getTakenAt());
+        log.info("Restored room {} from {}", this.id, state);
+    }
+
+    /**
+     * Take a snapshot of the state of this room that is not yet persisted.
+     *
+     * @return The state of the room.
+     */
+    public RoomState snapshot() {
+        final SongInstance songInstance = this.currentSong.get();
+        return new RoomState(this.id, System.currentTimeMillis(), songInstance.getSongId(),
+                songInstance.getTime(), chatMessageIdGenerator.getLastId(),
+                ImmutableList.copyOf(this.messages), this.votes.get().getVotes());
+    }
+
+    private static Deque<ChatMessageInstance> getChatMessageModels(
             final Collection<ChatMessage> messages) {
-        return Lists.newLinkedList(messages.stream()
-                .map(ChatMessageInstance::create).collect(Collectors.toList()));
+        return messages.stream()
+                .map(ChatMessageInstance::create)
+                .collect(Collectors.toCollection(ConcurrentLinkedDeque::new));
     }
 
     protected Future<?> interactWithRoom(final RoomInstanceInUnitOfWorkHandler handler) {
@@ -160,19 +303,67 @@ public class RoomInstance {
     }
 
     /**
-     * Play a next song. Will fetch from the history if no songs can be found.
+     * Play a next song. If the next song was prefetched, it starts playing immediately and the
+     * switch is persisted in the background. Otherwise the next song is resolved first, which
+     * will fetch from the history if no songs can be found.
+     *
+     * @return a future that completes when the switch has been persisted
      */
     public Future<?> playNext() {
+        if (closed.get()) {
+            return Futures.immediateFuture(null);
+        }
+
+        final PrefetchedSong prefetched = this.prefetchedSong.getAndSet(null);
+        if (prefetched == null || prefetched.getPlaying() != this.currentSong.get()) {
+            return interactWithRoom(instance -> {
+                processVotes(instance, this.votes.getAndSet(new VoteAggregator()));
+                Song song = instance.nextSong();
+                startPlaying(song);
+                instance.merge();
+            });
+        }
+
+        // Start a new tally for the next song, so votes for it are not counted for this one
+        final VoteAggregator finishedVotes = this.votes.getAndSet(new VoteAggregator());
+        startPlaying(prefetched.getNext());
+
         return interactWithRoom(instance -> {
-            processVotes(instance);
-            Song song = instance.nextSong();
-            startPlaying(song);
+            processVotes(instance, finishedVotes);
+            instance.playSong(prefetched.getNext());
+            instance.merge();
+        });
+    }
+
+    /**
+     * Resolve the song that plays after the current song, so that {@link #playNext()} does not
+     * have to query for new songs when the current song ends. Scheduled
+     * {@link #PREFETCH_LEAD_TIME} before the end of every song.
+     *
+     * @return a future that completes when the next song has been resolved
+     */
+    protected Future<?> prefetchNextSong() {
+        return prefetchNextSong(this.currentSong.get());
+    }
+
+    private Future<?> prefetchNextSong(final SongInstance playing) {
+        if (closed.get() || this.currentSong.get() != playing) {
+            return Futures.immediateFuture(null);
+        }
+
+        return interactWithRoom(instance -> {
+            final Song next = instance.peekNextSong();
             instance.merge();
+
+            if (next != null && this.currentSong.get() == playing) {
+                this.prefetchedSong.set(new PrefetchedSong(playing, next));
+                log.info("Room {} prefetched {}", this.id, next);
+            }
         });
     }
 
     /**
-     * Start playing a song. Should only be called in a {@code UnitOfWork}.
+     * Start playing a song.
      * Used in the constructor to start playing the initial song.
      * Then used in the {@link RoomInstance#playNext()} to start playing
      * new songs.
@@ -180,35 +371,47 @@ public class RoomInstance {
      * @param song
      *            Song to be played.
      */
-    @RunInUnitOfWork
     protected void startPlaying(final Song song) {
+        appendApplied(JournalEntry.song(this.id, song.getId()));
+        startPlaying(song, 0);
+    }
+
+    private void startPlaying(final Song song, final long time) {
         final SongInstance songInstance = songInstanceFactory.create(song);
+        if (time > 0) {
+            songInstance.seek(time);
+        }
         this.currentSong.set(songInstance);
         log.info("Room {} now playing {}", this.id, song);
 
         // Observer: Play the next song when the song is finished
         songInstance.addObserver(this::playNext);
+        schedulePrefetch(songInstance, song.getDuration() - time);
+    }
+
+    private void schedulePrefetch(final SongInstance songInstance, final long duration) {
+        final long delay = Math.max(0, duration - PREFETCH_LEAD_TIME);
+        final ScheduledFuture<?> future = this.unitOfWorkSchedulingService.schedule(
+                () -> prefetchNextSong(songInstance), delay, TimeUnit.MILLISECONDS);
+
+        // Observer: Do not prefetch when the song is stopped early
+        songInstance.addObserver(() -> future.cancel(false));
     }
 
     @RunInUnitOfWork
-    private void processVotes(final RoomInstanceInUnitOfWork instance) {
-        int nettoVotes = this.votes.values().stream()
-                .mapToInt(Vote::getValue)
-                .sum();
+    private void processVotes(final RoomInstanceInUnitOfWork instance,
+            final VoteAggregator finishedVotes) {
+        final long nettoVotes = finishedVotes.getNetScore();
 
         if (nettoVotes < 0) {
             instance.excludeRoomFromSong();
         } else if (nettoVotes > 0) {
-            Song previousSong = instance.getCurrentSong();
-            
-            final VAVector adjusted = adjustSongVectorToRoomVector(instance.getVector(),
-                previousSong.getValenceArousal());
-            
-            previousSong.setValenceArousal(adjusted);
-            songDAOProvider.get().merge(previousSong);
-        }
+            final Song previousSong = instance.getCurrentSong();
+            final VAVector roomVector = instance.getVector();
 
-        this.votes.clear();
+            songVectorUpdateQueue.enqueue(previousSong.getId(),
+                    vector -> adjustSongVectorToRoomVector(roomVector, vector));
+        }
     }
 
     private VAVector adjustSongVectorToRoomVector(final VAVector roomVector, final VAVector songVector) {
@@ -223,35 +426,164 @@ public class RoomInstance {
     /**
      * Sync room messages to the database.
      */
-    private void scheduleSyncTimer() {
-        this.unitOfWorkSchedulingService.scheduleAtFixedRate(this::merge, 1, 1,
+    private ScheduledFuture<?> scheduleSyncTimer() {
+        return this.unitOfWorkSchedulingService.scheduleAtFixedRate(this::merge, 1, 1,
                 TimeUnit.MINUTES);
     }
 
     /**
-     * Store a message in the instance.
+     * Close this room instance, for example because the room is handed over to another node.
+     * Stops the timers of the room and persists its pending changes.
+     *
+     * @return a future that completes when the pending changes have been persisted
+     */
+    public Future<?> close() {
+        if (closed.getAndSet(true)) {
+            return Futures.immediateFuture(null);
+        }
+        log.info("Closing room instance {}", this);
+        this.syncTimer.cancel(false);
+        this.currentSong.get().stop();
+        // Release waiting clients, so that they poll the new owner of the room
+        this.releasePollers();
+        return merge();
+    }
+
+    /**
+     * Store a message in the instance. The message gets its id when it is sent, but it is only
+     * added to the room once it is durable and all older messages are durable or failed, so
+     * that concurrent messages are added in the order of their ids. The journal is not waited
+     * for while other messages are sent.
      *
      * @param model
      *            the message to send.
+     * @throws UncheckedIOException
+     *             If the message could not be made durable, in which case it is not sent.
      */
     public ChatMessageModel sendMessage(final ChatMessageModel model,
             final User user) {
         Preconditions.checkNotNull(model);
         verifyNonSpamming(user);
 
-        updateAndSetModel(model, user);
+        final PendingMessage pending;
+        synchronized (pendingMessages) {
+            updateAndSetModel(model, user);
+            pending = new PendingMessage(new ChatMessageInstance(user.getId(), model));
+            pendingMessages.addLast(pending);
+        }
 
-        ChatMessageInstance chatMessage = new ChatMessageInstance(user.getId(),
-                model);
-        messages.addLast(chatMessage);
+        try {
+            roomJournal.append(JournalEntry.message(this.id, pending.message));
+        } catch (final RuntimeException e) {
+            complete(pending, false);
+            throw e;
+        }
+        complete(pending, true);
+
+        log.info("Sending message {} in room {}", pending.message, this);
+        notifyPollers();
+        return model;
+    }
 
-        if (messages.size() > MAXIMAL_NUMBER_OF_CHAT_MESSAGES) {
-            messages.removeFirst();
+    /**
+     * Complete a pending message, and add the messages that are completed in the order of their
+     * ids to the room. Waits until a durable message is added, which is right away unless an
+     * older message is still being written.
+     */
+    private void complete(final PendingMessage pending, final boolean durable) {
+        synchronized (pendingMessages) {
+            pending.completed = true;
+            pending.durable = durable;
+
+            while (!pendingMessages.isEmpty() && pendingMessages.getFirst().completed) {
+                final PendingMessage next = pendingMessages.removeFirst();
+                if (next.durable) {
+                    addMessage(next.message);
+                }
+            }
+            pendingMessages.notifyAll();
+
+            while (durable && pendingMessages.contains(pending)) {
+                try {
+                    pendingMessages.wait();
+                } catch (final InterruptedException e) {
+                    // The message is added when the older messages complete
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
         }
+    }
 
+    private void addMessage(final ChatMessageInstance chatMessage) {
+        messages.addLast(chatMessage);
+        trimMessages();
+        chatSearchIndex.add(this.id, chatMessage.getId(), chatMessage.getMessage());
         hasChanged.set(true);
-        log.info("Sending message {} in room {}", chatMessage, this);
-        return model;
+    }
+
+    /**
+     * Wait for messages that are newer than the given message. The callback is invoked once, as
+     * soon as newer messages are available. No thread is held while waiting.
+     *
+     * @param chatMessageId
+     *            The id of the last message the client received.
+     * @param callback
+     *            Callback that receives the newer messages.
+     * @return The poller, which can be cancelled when the client stops waiting.
+     */
+    public MessagePoller pollMessages(final int chatMessageId,
+            final Consumer<List<ChatMessageModel>> callback) {
+        final MessagePoller poller = new MessagePoller(chatMessageId, callback);
+        pollers.add(poller);
+
+        // A message may have been sent before the poller was registered
+        final List<ChatMessageModel> newerMessages = getMessagesAfter(chatMessageId);
+        if (!newerMessages.isEmpty() && pollers.remove(poller)) {
+            poller.deliver(newerMessages);
+        }
+
+        return poller;
+    }
+
+    private void trimMessages() {
+        while (messages.size() > MAXIMAL_NUMBER_OF_CHAT_MESSAGES) {
+            chatScrollback.append(this.id, messages.removeFirst());
+        }
+    }
+
+    private void notifyPollers() {
+        final List<MessagePoller> waiting = Lists.newArrayList();
+        MessagePoller poller;
+
+        while ((poller = pollers.poll()) != null) {
+            final MessagePoller current = poller;
+            final List<ChatMessageModel> newerMessages = getMessagesAfter(current.chatMessageId);
+
+            if (newerMessages.isEmpty()) {
+                waiting.add(current);
+            } else {
+                // Delivery only writes messages that are in memory, it needs no unit of work
+                deliver(current, newerMessages);
+            }
+        }
+
+        pollers.addAll(waiting);
+    }
+
+    private void deliver(final MessagePoller poller, final List<ChatMessageModel> newerMessages) {
+        try {
+            poller.deliver(newerMessages);
+        } catch (final RuntimeException e) {
+            log.warn("Could not deliver messages of room {} to a poller", this.id, e);
+        }
+    }
+
+    private void releasePollers() {
+        MessagePoller poller;
+        while ((poller = pollers.poll()) != null) {
+            poller.deliver(Collections.emptyList());
+        }
     }
 
     private void verifyNonSpamming(final User user) {
@@ -306,6 +638,49 @@ public class RoomInstance {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Get the cached messages that were posted after the given message.
+     *
+     * @param chatMessageId
+     *            The id of the last message the client received.
+     * @return The newer messages, can be empty.
+     */
+    public List<ChatMessageModel> getMessagesAfter(final int chatMessageId) {
+        return this.messages.stream()
+                .filter(message -> message.getId() > chatMessageId)
+                .map(ChatMessageInstance::transform)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the messages that were posted before the given message, for clients that scroll back
+     * through the chat. The cached messages are used first, older messages are read from the
+     * {@link ChatScrollback}.
+     *
+     * @param chatMessageId
+     *            The id of the oldest message the client received.
+     * @param limit
+     *            The maximum number of messages.
+     * @return The older messages, oldest first. Can be empty.
+     */
+    public List<ChatMessageModel> getMessagesBefore(final int chatMessageId, final int limit) {
+        final List<ChatMessageInstance> cached = this.messages.stream()
+                .filter(message -> message.getId() < chatMessageId)
+                .collect(Collectors.toList());
+        final List<ChatMessageModel> older = Lists.newArrayList();
+
+        if (cached.size() < limit) {
+            final int oldestId = cached.isEmpty() ? chatMessageId : cached.get(0).getId();
+            older.addAll(chatScrollback.getMessagesBefore(this.id, oldestId,
+                    limit - cached.size()));
+        }
+
+        cached.subList(Math.max(0, cached.size() - limit), cached.size()).stream()
+                .map(ChatMessageInstance::transform)
+                .forEach(older::add);
+        return older;
+    }
+
     /**
      * Get the instance's current song.
      *
@@ -333,10 +708,132 @@ public class RoomInstance {
      *            Vote value.
      */
     public void addVote(final User user, final Vote valueOf) {
-        if (this.votes.containsKey(user)) {
+        if (!this.votes.get().addVote(user.getId(), valueOf)) {
             throw new IllegalArgumentException("User should only vote once!");
         }
-        this.votes.put(user, valueOf);
+        appendApplied(JournalEntry.vote(this.id, this.currentSong.get().getSongId(),
+                user.getId(), valueOf));
+    }
+
+    /**
+     * Append a change to the journal that is applied even if it can not be made durable, such as
+     * a vote that is already counted or a song that starts playing. The change is still merged
+     * into the database, it is only lost if the node crashes before that.
+     *
+     * @param entry
+     *            The change.
+     */
+    private void appendApplied(final JournalEntry entry) {
+        try {
+            roomJournal.append(entry);
+        } catch (final UncheckedIOException e) {
+            log.warn("Change {} of room {} is not durable", entry, this.id, e);
+        }
+    }
+
+    /**
+     * Get the number of likes for the current song.
+     *
+     * @return the number of likes.
+     */
+    public long getLikes() {
+        return this.votes.get().getLikes();
+    }
+
+    /**
+     * Get the number of dislikes for the current song.
+     *
+     * @return the number of dislikes.
+     */
+    public long getDislikes() {
+        return this.votes.get().getDislikes();
+    }
+
+    /**
+     * A song that is resolved to play after a specific song instance.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class PrefetchedSong {
+
+        /**
+         * The song instance that was playing when the next song was resolved.
+         */
+        private final SongInstance playing;
+
+        /**
+         * The song to play next.
+         */
+        private final Song next;
+
+    }
+
+    /**
+     * A message that is sent, but not yet added to the room.
+     */
+    private static final class PendingMessage {
+
+        private final ChatMessageInstance message;
+
+        /**
+         * Set once the message was written to the journal, or failed to be written.
+         */
+        private boolean completed;
+
+        /**
+         * Set if the message was written to the journal.
+         */
+        private boolean durable;
+
+        private PendingMessage(final ChatMessageInstance message) {
+            this.message = message;
+        }
+
+    }
+
+    /**
+     * A client that waits for new messages in this room.
+     */
+    public final class MessagePoller {
+
+        /**
+         * The id of the last message the client received.
+         */
+        private final int chatMessageId;
+
+        /**
+         * The callback that receives the newer messages.
+         */
+        private final Consumer<List<ChatMessageModel>> callback;
+
+        /**
+         * Set once the poller is either delivered or cancelled.
+         */
+        private final AtomicBoolean done;
+
+        private MessagePoller(final int chatMessageId,
+                final Consumer<List<ChatMessageModel>> callback) {
+            this.chatMessageId = chatMessageId;
+            this.callback = callback;
+            this.done = new AtomicBoolean(false);
+        }
+
+        private void deliver(final List<ChatMessageModel> newerMessages) {
+            if (!done.getAndSet(true)) {
+                callback.accept(newerMessages);
+            }
+        }
+
+        /**
+         * Stop waiting for new messages.
+         *
+         * @return true if the poller was cancelled before messages were delivered.
+         */
+        public boolean cancel() {
+            pollers.remove(this);
+            return !done.getAndSet(true);
+        }
+
     }
 
     /**
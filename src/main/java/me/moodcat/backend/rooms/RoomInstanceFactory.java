@@ -16,4 +16,15 @@ public interface RoomInstanceFactory {
      */
     RoomInstance create(Room room);
 
+    /**
+     * Create a {@link RoomInstance} that continues from a snapshot of its previous state.
+     *
+     * @param room
+     *          Room to instantiate a RoomInstance for.
+     * @param state
+     *          The state of the room in the snapshot.
+     * @return instantiated RoomInstance.
+     */
+    RoomInstance create(Room room, RoomState state);
+
 }
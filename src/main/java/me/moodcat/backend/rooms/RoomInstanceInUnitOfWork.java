@@ -1,16 +1,16 @@
 package me.moodcat.backend.rooms;
 
 import java.util.Collection;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import lombok.extern.slf4j.Slf4j;
+import me.moodcat.database.controllers.ChatDAO;
 import me.moodcat.database.controllers.RoomDAO;
 import me.moodcat.database.controllers.SongDAO;
 import me.moodcat.database.embeddables.VAVector;
-import me.moodcat.database.entities.ChatMessage;
 import me.moodcat.database.entities.Room;
 import me.moodcat.database.entities.Song;
 
@@ -35,18 +35,25 @@ public class RoomInstanceInUnitOfWork {
 
     private final SongDAO songDAO;
 
+    private final ChatDAO chatDAO;
+
     private final ChatMessageFactory chatMessageFactory;
 
+    private final RoomRankingCache roomRankingCache;
+
     private final Room room;
 
     private final AtomicBoolean changed;
 
     @Inject
     public RoomInstanceInUnitOfWork(final RoomDAO roomDAO, final SongDAO songDAO,
-            final ChatMessageFactory chatMessageFactory, @Assisted final Integer id) {
+            final ChatDAO chatDAO, final ChatMessageFactory chatMessageFactory,
+            final RoomRankingCache roomRankingCache, @Assisted final Integer id) {
         this.roomDAO = roomDAO;
         this.songDAO = songDAO;
+        this.chatDAO = chatDAO;
         this.chatMessageFactory = chatMessageFactory;
+        this.roomRankingCache = roomRankingCache;
         this.room = roomDAO.findById(id);
         this.changed = new AtomicBoolean(false);
     }
@@ -59,14 +66,7 @@ public class RoomInstanceInUnitOfWork {
      */
     @Transactional
     public void addSongToHistory(final Song song) {
-        final LinkedList<Song> history = Lists.newLinkedList(room.getPlayHistory());
-        
-        if (history.size() > HISTORY_SIZE - 1) {
-            history.removeFirst();
-        }
-        
-        history.add(song);
-        room.setPlayHistory(history);
+        room.addToPlayHistory(song, HISTORY_SIZE);
         log.info("Added song {} to history for room {}", song, room);
         this.changed.set(true);
     }
@@ -107,6 +107,36 @@ public class RoomInstanceInUnitOfWork {
         return next;
     }
 
+    /**
+     * Resolve the song that will be played next, without starting it. The play queue is
+     * updated through {@link RoomInstanceInUnitOfWork#updateSongQueue()} if it is empty.
+     *
+     * @return the song at the head of the play queue, or {@code null} if there is none.
+     */
+    @Transactional
+    public Song peekNextSong() {
+        updateSongQueue();
+        final List<Song> queue = room.getPlayQueue();
+        return queue.isEmpty() ? null : queue.get(0);
+    }
+
+    /**
+     * Play a song that was resolved by {@link RoomInstanceInUnitOfWork#peekNextSong()}. The
+     * current song is added to the history and the song is removed from the play queue.
+     *
+     * @param song
+     *            the song that started playing.
+     */
+    @Transactional
+    public void playSong(final Song song) {
+        addSongToHistory(this.room.getCurrentSong());
+        final Song next = songDAO.findById(song.getId());
+        room.getPlayQueue().remove(next);
+        room.setCurrentSong(next);
+        log.info("Setting current song for {} to {}", room, next);
+        this.changed.set(true);
+    }
+
     /**
      * If the play queue for this {@link Room} is empty, query new songs from the {@link SongDAO}.
      * If no results are found, reschedule the history.
@@ -120,38 +150,43 @@ public class RoomInstanceInUnitOfWork {
             playQueue.addAll(newSongs);
         }
         if (playQueue.isEmpty()) {
-            final List<Song> playHistory = room.getPlayHistory();
-            playQueue.addAll(playHistory);
+            playQueue.addAll(room.getOrderedPlayHistory());
             log.warn("No new songs found, replaying history for {}", room);
-            playHistory.clear();
+            room.clearPlayHistory();
         }
         this.changed.set(true);
     }
 
     /**
-     * Persist chat messages.
+     * Persist chat messages. Only the ids of the given messages are looked up to skip the
+     * messages that are already persisted, so that the history of the room does not have to be
+     * loaded. A message is persisted even if a newer message was persisted before it.
      *
      * @param messages
      *            Messages to persist.
      */
     @Transactional
     public void persistMessages(final Collection<ChatMessageInstance> messages) {
-        Collection<ChatMessage> newMessages = messages.stream()
+        final List<ChatMessageInstance> batch = Lists.newArrayList(messages);
+        final Set<Integer> persisted = chatDAO.findPersistedIds(room.getId(), batch.stream()
+                .map(ChatMessageInstance::getId)
+                .collect(Collectors.toList()));
+        log.info("Persisting {} messages for room {}", batch.size() - persisted.size(), room);
+        batch.stream()
+                .filter(message -> !persisted.contains(message.getId()))
                 .map(message -> chatMessageFactory.create(room, message))
-                .collect(Collectors.toList());
-        log.info("Persisting messages for room {}", room);
-        room.getChatMessages().addAll(newMessages);
-        this.changed.set(true);
+                .forEach(chatDAO::persist);
     }
 
     /**
-     * Persist changes to this Room instance.
+     * Persist changes to this Room instance. Once they are committed, the
+     * {@link RoomRankingCache} is updated with the vector of the room.
      */
-    @Transactional
     public void merge() {
         if (this.changed.getAndSet(false)) {
             log.info("Persisting changes for room {}", room);
             this.roomDAO.merge(room);
+            this.roomRankingCache.roomChanged(room);
         } else {
             log.debug("Room not changed");
         }
@@ -0,0 +1,53 @@
+package me.moodcat.backend.rooms;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Write-ahead log of the changes to the live state of rooms since the last snapshot. Changes are
+ * appended before they are applied in memory, so that they survive a crash of the node before
+ * they are merged into the database.
+ */
+@ImplementedBy(FileRoomJournal.class)
+public interface RoomJournal {
+
+    /**
+     * Append a change, and wait until it is durable.
+     *
+     * @param entry
+     *            The change.
+     * @throws UncheckedIOException
+     *             If the change could not be made durable.
+     */
+    void append(JournalEntry entry);
+
+    /**
+     * Start a new journal before a snapshot is taken. The previous journal is kept until
+     * {@link #discardRotated()} is called, so that it is still replayed if the snapshot is not
+     * written.
+     *
+     * @throws IOException
+     *             If the journal could not be rotated.
+     */
+    void rotate() throws IOException;
+
+    /**
+     * Discard the previous journal once the snapshot that contains its changes is written.
+     *
+     * @throws IOException
+     *             If the previous journal could not be deleted.
+     */
+    void discardRotated() throws IOException;
+
+    /**
+     * Read the changes that were appended since the last snapshot, in the order in which they
+     * were appended.
+     *
+     * @return The changes.
+     */
+    List<JournalEntry> replay();
+
+}
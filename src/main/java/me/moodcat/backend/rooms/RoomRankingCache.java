@@ -0,0 +1,211 @@
+package me.moodcat.backend.rooms;
+
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.api.Mood;
+import me.moodcat.backend.UnitOfWorkSchedulingService;
+import me.moodcat.database.controllers.RoomDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Room;
+import me.moodcat.util.DefaultLifceCycleListener;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.Singleton;
+
+/**
+ * The {@code RoomRankingCache} ranks the rooms by their distance to a combination of
+ * {@link Mood moods}. There are only {@code 2^10} combinations of moods, so the ranking for every
+ * combination is memoized, keyed by a bitmask of the moods. The rooms are loaded from the
+ * database once, and the rankings are invalidated when a room changes.
+ */
+@Slf4j
+@Singleton
+public class RoomRankingCache implements DefaultLifceCycleListener {
+
+    /**
+     * Number of minutes after which the rooms are reloaded, to pick up rooms that were added to
+     * the database by other processes.
+     */
+    private static final int REFRESH_INTERVAL = 5;
+
+    private final Provider<RoomDAO> roomDAOProvider;
+
+    private final UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    /**
+     * The rooms and their rankings, or {@code null} if the rooms have not been loaded. The
+     * snapshot is replaced as a whole, so rankings are never computed from stale rooms.
+     */
+    private volatile Snapshot snapshot;
+
+    @Inject
+    public RoomRankingCache(final Provider<RoomDAO> roomDAOProvider,
+            final UnitOfWorkSchedulingService unitOfWorkSchedulingService,
+            final LifeCycle lifeCycle) {
+        this.roomDAOProvider = roomDAOProvider;
+        this.unitOfWorkSchedulingService = unitOfWorkSchedulingService;
+        lifeCycle.addLifeCycleListener(this);
+    }
+
+    @Override
+    public void lifeCycleStarted(final LifeCycle lifeCycle) {
+        unitOfWorkSchedulingService.scheduleAtFixedRate(
+                () -> unitOfWorkSchedulingService.performInUnitOfWork(this::reload),
+                0, REFRESH_INTERVAL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Get the rooms that are closest to the given moods.
+     *
+     * @param moodNames
+     *            The names of the moods, names that do not represent a mood are ignored.
+     * @param limit
+     *            The maximum number of rooms.
+     * @return The rooms, sorted by their distance to the average of the moods.
+     */
+    public List<RankedRoom> getRooms(final List<String> moodNames, final int limit) {
+        final List<Mood> moods = Mood.fromNames(moodNames);
+        final EnumSet<Mood> moodSet = moods.isEmpty() ? EnumSet.noneOf(Mood.class)
+                : EnumSet.copyOf(moods);
+
+        final Snapshot current = getSnapshot();
+        final List<RankedRoom> ranking;
+        if (moodSet.size() == moods.size()) {
+            ranking = current.rankings.computeIfAbsent(bitmask(moodSet),
+                    mask -> current.rank(Mood.createTargetVector(moodSet)));
+        } else {
+            // Repeated moods weigh the average, so the ranking is not shared
+            ranking = current.rank(Mood.createTargetVector(moods));
+        }
+
+        return ranking.subList(0, Math.min(Math.max(0, limit), ranking.size()));
+    }
+
+    /**
+     * Update the vector of a room and invalidate the rankings.
+     *
+     * @param room
+     *            The room that changed.
+     */
+    public synchronized void roomChanged(final Room room) {
+        final RankedRoom changed = RankedRoom.of(room);
+
+        this.snapshot = new Snapshot(ImmutableList.<RankedRoom> builder()
+                .addAll(getSnapshot().rooms.stream()
+                        .filter(rankedRoom -> rankedRoom.getId() != changed.getId())
+                        .iterator())
+                .add(changed)
+                .build());
+    }
+
+    /**
+     * Reload the rooms from the database and invalidate the rankings. Should be called in a
+     * unit of work.
+     */
+    public synchronized void reload() {
+        final List<Room> loaded = roomDAOProvider.get().listRooms();
+        this.snapshot = new Snapshot(ImmutableList.copyOf(loaded.stream()
+                .map(RankedRoom::of)
+                .iterator()));
+        log.debug("Loaded {} rooms for ranking", loaded.size());
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = this.snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (this.snapshot == null) {
+                    reload();
+                }
+                current = this.snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static int bitmask(final EnumSet<Mood> moods) {
+        int mask = 0;
+        for (final Mood mood : moods) {
+            mask |= 1 << mood.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * The rooms at a point in time, with the rankings computed from them.
+     */
+    private static final class Snapshot {
+
+        private final List<RankedRoom> rooms;
+
+        private final ConcurrentMap<Integer, List<RankedRoom>> rankings;
+
+        private Snapshot(final List<RankedRoom> rooms) {
+            this.rooms = rooms;
+            this.rankings = Maps.newConcurrentMap();
+        }
+
+        private List<RankedRoom> rank(final VAVector target) {
+            return ImmutableList.copyOf(rooms.stream()
+                    .sorted(Comparator.<RankedRoom> comparingDouble(
+                            room -> room.getVector().distance(target))
+                            .thenComparingInt(RankedRoom::getId))
+                    .iterator());
+        }
+
+    }
+
+    /**
+     * The properties of a room that are needed to rank and list it.
+     */
+    @Data
+    @AllArgsConstructor
+    public static class RankedRoom {
+
+        /**
+         * The id of the room.
+         *
+         * @return the id of the room
+         */
+        private final int id;
+
+        /**
+         * The name of the room.
+         *
+         * @return the name of the room
+         */
+        private final String name;
+
+        /**
+         * The vector of the room.
+         *
+         * @return the vector of the room
+         */
+        private final VAVector vector;
+
+        /**
+         * Create a {@code RankedRoom} from a room entity.
+         *
+         * @param room
+         *            The room.
+         * @return The ranked room.
+         */
+        public static RankedRoom of(final Room room) {
+            return new RankedRoom(room.getId(), room.getName(), room.getVaVector());
+        }
+
+    }
+
+}
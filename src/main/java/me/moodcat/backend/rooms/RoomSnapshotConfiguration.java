@@ -0,0 +1,118 @@
+package me.moodcat.backend.rooms;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Configuration of the snapshots of the live room state that are used to warm restart a node,
+ * and of the journal of the changes since the last snapshot.
+ */
+@Data
+@AllArgsConstructor
+public class RoomSnapshotConfiguration {
+
+    /**
+     * System property that holds the path of the snapshot file.
+     */
+    public static final String FILE_PROPERTY = "moodcat.snapshot.file";
+
+    /**
+     * System property that holds the interval between snapshots in seconds.
+     */
+    public static final String INTERVAL_PROPERTY = "moodcat.snapshot.interval";
+
+    /**
+     * System property that holds the age in seconds after which a snapshot is no longer restored.
+     */
+    public static final String MAX_AGE_PROPERTY = "moodcat.snapshot.max.age";
+
+    /**
+     * System property that holds the path of the journal file.
+     */
+    public static final String JOURNAL_FILE_PROPERTY = "moodcat.journal.file";
+
+    /**
+     * System property that holds the interval between commits of the journal in milliseconds.
+     */
+    public static final String COMMIT_INTERVAL_PROPERTY = "moodcat.journal.commit.interval";
+
+    private static final String DEFAULT_FILE_FORMAT = "rooms-%d.snapshot";
+
+    private static final String DEFAULT_JOURNAL_FILE_FORMAT = "rooms-%d.wal";
+
+    private static final long DEFAULT_COMMIT_INTERVAL = 5;
+
+    private static final long DEFAULT_INTERVAL = 10;
+
+    private static final long DEFAULT_MAX_AGE = TimeUnit.MINUTES.toSeconds(5);
+
+    /**
+     * The file the snapshots are written to.
+     *
+     * @param file
+     *            The file to set.
+     * @return The snapshot file.
+     */
+    private File file;
+
+    /**
+     * The interval between snapshots in milliseconds.
+     *
+     * @param interval
+     *            The interval to set.
+     * @return The interval in milliseconds.
+     */
+    private long interval;
+
+    /**
+     * The age in milliseconds after which a snapshot is stale, and the rooms are restored from
+     * the database instead.
+     *
+     * @param maxAge
+     *            The maximum age to set.
+     * @return The maximum age in milliseconds.
+     */
+    private long maxAge;
+
+    /**
+     * The file the changes since the last snapshot are appended to.
+     *
+     * @param journalFile
+     *            The journal file to set.
+     * @return The journal file.
+     */
+    private File journalFile;
+
+    /**
+     * The interval in milliseconds at which appended changes are forced to disk. Changes that
+     * are appended within the same interval share a single sync.
+     *
+     * @param commitInterval
+     *            The commit interval to set.
+     * @return The commit interval in milliseconds.
+     */
+    private long commitInterval;
+
+    /**
+     * Read the configuration from the system properties, falling back to the defaults. Every
+     * port has its own snapshot file, so that nodes in the same process do not share one.
+     *
+     * @param port
+     *            The port the node listens on.
+     * @return The snapshot configuration.
+     */
+    public static RoomSnapshotConfiguration fromSystemProperties(final int port) {
+        return new RoomSnapshotConfiguration(
+                new File(System.getProperty(FILE_PROPERTY,
+                        String.format(DEFAULT_FILE_FORMAT, port))),
+                TimeUnit.SECONDS.toMillis(Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL)),
+                TimeUnit.SECONDS.toMillis(Long.getLong(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE)),
+                new File(System.getProperty(JOURNAL_FILE_PROPERTY,
+                        String.format(DEFAULT_JOURNAL_FILE_FORMAT, port))),
+                Long.getLong(COMMIT_INTERVAL_PROPERTY, DEFAULT_COMMIT_INTERVAL));
+    }
+
+}
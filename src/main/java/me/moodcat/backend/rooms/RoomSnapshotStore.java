@@ -0,0 +1,263 @@
+package me.moodcat.backend.rooms;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import lombok.extern.slf4j.Slf4j;
+import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.backend.Vote;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Writes the {@link RoomState} of all rooms of this node to a compact binary snapshot file, and
+ * reads it back when the node restarts. The file consists of a header with the time the
+ * snapshot was taken, the state of every room, and a CRC32 of all preceding bytes. Snapshots
+ * are written to a temporary file that atomically replaces the previous snapshot, so a crash
+ * while writing leaves the previous snapshot intact.
+ */
+@Slf4j
+@Singleton
+public class RoomSnapshotStore {
+
+    /**
+     * Magic number at the start of a snapshot file: "MCRS".
+     */
+    @VisibleForTesting
+    static final int MAGIC = 0x4D435253;
+
+    /**
+     * The version of the snapshot format.
+     */
+    @VisibleForTesting
+    static final int VERSION = 1;
+
+    private static final int NULL_STRING = -1;
+
+    private static final int CHECKSUM_LENGTH = 4;
+
+    private static final Vote[] VOTES = Vote.values();
+
+    private final RoomSnapshotConfiguration configuration;
+
+    @Inject
+    public RoomSnapshotStore(final RoomSnapshotConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Write a snapshot of the given rooms, replacing the previous snapshot.
+     *
+     * @param states
+     *            The state of the rooms.
+     * @throws IOException
+     *             If the snapshot could not be written.
+     */
+    public void write(final Collection<RoomState> states) throws IOException {
+        final Path file = configuration.getFile().toPath().toAbsolutePath();
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        Files.write(temporary, encode(System.currentTimeMillis(), states));
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Wrote snapshot of {} rooms to {}", states.size(), file);
+    }
+
+    /**
+     * Read the last snapshot.
+     *
+     * @return The state of the rooms by room id. Empty if there is no snapshot, or if it is
+     *         stale or corrupt, in which case the rooms are restored from the database.
+     */
+    public Map<Integer, RoomState> read() {
+        final Path file = configuration.getFile().toPath();
+        if (!Files.isRegularFile(file)) {
+            return Collections.emptyMap();
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final Map<Integer, RoomState> states = decode(
+                    channel.map(MapMode.READ_ONLY, 0, channel.size()),
+                    System.currentTimeMillis() - configuration.getMaxAge());
+            log.info("Read snapshot of {} rooms from {}", states.size(), file);
+            return states;
+        } catch (final IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("Ignoring snapshot {}: {}", file, e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Encode the state of rooms.
+     *
+     * @param takenAt
+     *            The time at which the states were taken.
+     * @param states
+     *            The states of the rooms.
+     * @return The snapshot.
+     * @throws IOException
+     *             If the states could not be encoded.
+     */
+    @VisibleForTesting
+    static byte[] encode(final long takenAt, final Collection<RoomState> states)
+            throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(takenAt);
+        out.writeInt(states.size());
+
+        for (final RoomState state : states) {
+            out.writeInt(state.getRoomId());
+            out.writeInt(state.getSongId());
+            out.writeLong(state.getSongTime());
+            out.writeInt(state.getLastMessageId());
+
+            out.writeInt(state.getMessages().size());
+            for (final ChatMessageInstance message : state.getMessages()) {
+                out.writeInt(message.getId());
+                out.writeInt(message.getUserId());
+                out.writeLong(message.getTimestamp());
+                writeString(out, message.getModel().getAuthor());
+                writeString(out, message.getMessage());
+            }
+
+            out.writeInt(state.getVotes().size());
+            for (final Map.Entry<Integer, Vote> vote : state.getVotes().entrySet()) {
+                out.writeInt(vote.getKey());
+                out.writeByte(vote.getValue().ordinal());
+            }
+        }
+
+        final CRC32 checksum = new CRC32();
+        checksum.update(bytes.toByteArray());
+        out.writeInt((int) checksum.getValue());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode a snapshot.
+     *
+     * @param buffer
+     *            The snapshot.
+     * @param notBefore
+     *            Snapshots taken before this time are stale.
+     * @return The states of the rooms by room id, empty if the snapshot is stale.
+     * @throws IOException
+     *             If the snapshot is corrupt.
+     */
+    @VisibleForTesting
+    static Map<Integer, RoomState> decode(final ByteBuffer buffer, final long notBefore)
+            throws IOException {
+        verifyChecksum(buffer);
+
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a room snapshot");
+        }
+        final int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        final long takenAt = buffer.getLong();
+        if (takenAt < notBefore) {
+            log.info("Snapshot is stale, restoring rooms from the database");
+            return Collections.emptyMap();
+        }
+
+        final Map<Integer, RoomState> states = Maps.newHashMap();
+        for (int rooms = buffer.getInt(); rooms > 0; rooms--) {
+            final RoomState state = readState(buffer, takenAt);
+            states.put(state.getRoomId(), state);
+        }
+        return states;
+    }
+
+    private static RoomState readState(final ByteBuffer buffer, final long takenAt) {
+        final int roomId = buffer.getInt();
+        final int songId = buffer.getInt();
+        final long songTime = buffer.getLong();
+        final int lastMessageId = buffer.getInt();
+
+        final ImmutableList.Builder<ChatMessageInstance> messages = ImmutableList.builder();
+        for (int count = buffer.getInt(); count > 0; count--) {
+            final ChatMessageModel model = new ChatMessageModel();
+            model.setId(buffer.getInt());
+            final int userId = buffer.getInt();
+            model.setTimestamp(buffer.getLong());
+            model.setAuthor(readString(buffer));
+            model.setMessage(readString(buffer));
+            messages.add(new ChatMessageInstance(userId, model));
+        }
+
+        final ImmutableMap.Builder<Integer, Vote> votes = ImmutableMap.builder();
+        for (int count = buffer.getInt(); count > 0; count--) {
+            votes.put(buffer.getInt(), VOTES[buffer.get()]);
+        }
+
+        return new RoomState(roomId, takenAt, songId, songTime, lastMessageId,
+                messages.build(), votes.build());
+    }
+
+    private static void verifyChecksum(final ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < CHECKSUM_LENGTH) {
+            throw new IOException("Truncated snapshot");
+        }
+
+        final ByteBuffer content = buffer.duplicate();
+        content.limit(buffer.limit() - CHECKSUM_LENGTH);
+        final CRC32 checksum = new CRC32();
+        checksum.update(content);
+
+        if ((int) checksum.getValue() != buffer.getInt(buffer.limit() - CHECKSUM_LENGTH)) {
+            throw new IOException("Checksum mismatch");
+        }
+        buffer.limit(buffer.limit() - CHECKSUM_LENGTH);
+    }
+
+    static void writeString(final DataOutputStream out, final String value)
+            throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(final ByteBuffer buffer) {
+        final int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,72 @@
+package me.moodcat.backend.rooms;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import me.moodcat.backend.Vote;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The live state of a {@link RoomInstance} that is not stored in the database, or only once a
+ * minute. It is written to a snapshot, so that a restarted node continues where it left off.
+ */
+@Getter
+@ToString(of = { "roomId", "songId", "songTime" })
+@AllArgsConstructor
+public class RoomState {
+
+    /**
+     * The id of the room.
+     */
+    private final int roomId;
+
+    /**
+     * The time at which the state was taken.
+     */
+    private final long takenAt;
+
+    /**
+     * The id of the song that was playing.
+     */
+    private final int songId;
+
+    /**
+     * The progress of the song that was playing in milliseconds.
+     */
+    private final long songTime;
+
+    /**
+     * The last chat message id that was generated.
+     */
+    private final int lastMessageId;
+
+    /**
+     * The cached chat messages, oldest first.
+     */
+    private final List<ChatMessageInstance> messages;
+
+    /**
+     * The votes for the song that was playing, by user id.
+     */
+    private final Map<Integer, Vote> votes;
+
+    /**
+     * Create the state of a room that is not in the snapshot, to which the journal is applied.
+     * The song is unknown until the journal records a song that starts playing.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param takenAt
+     *            The time of the first change in the journal.
+     * @return The state of a room without messages, votes or song.
+     */
+    public static RoomState empty(final int roomId, final long takenAt) {
+        return new RoomState(roomId, takenAt, 0, 0, 0, ImmutableList.of(), ImmutableMap.of());
+    }
+
+}
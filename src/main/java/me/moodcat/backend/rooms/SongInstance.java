@@ -103,6 +103,15 @@ public class SongInstance {
         this.observers.add(stopObserver);
     }
 
+    /**
+     * Get the id of the song for this song instance, without loading the song.
+     *
+     * @return The id of the song that is playing
+     */
+    public int getSongId() {
+        return this.songId;
+    }
+
     /**
      * Get the song for this song instance.
      *
@@ -137,6 +146,18 @@ public class SongInstance {
         }
     }
 
+    /**
+     * Continue the song from the given progress, for example when a room is restored from a
+     * snapshot.
+     *
+     * @param time
+     *            The progress in milliseconds.
+     */
+    public void seek(final long time) {
+        this.lastUpdate.set(System.currentTimeMillis());
+        this.currentTime.set(time);
+    }
+
     /**
      * Check if the song has completed.
      *
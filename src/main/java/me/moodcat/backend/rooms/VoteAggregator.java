@@ -0,0 +1,101 @@
+package me.moodcat.backend.rooms;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import me.moodcat.backend.Vote;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+/**
+ * The {@code VoteAggregator} collects the votes for a single song in a room. Votes are keyed by
+ * user id, so that every user votes at most once, and are tallied in striped counters, so that
+ * adding a vote and reading the totals are constant time operations under contention.
+ */
+public class VoteAggregator {
+
+    /**
+     * The votes by user id.
+     */
+    private final ConcurrentMap<Integer, Vote> votes;
+
+    /**
+     * The number of likes.
+     */
+    private final LongAdder likes;
+
+    /**
+     * The number of dislikes.
+     */
+    private final LongAdder dislikes;
+
+    /**
+     * Create a new, empty {@code VoteAggregator}.
+     */
+    public VoteAggregator() {
+        this.votes = Maps.newConcurrentMap();
+        this.likes = new LongAdder();
+        this.dislikes = new LongAdder();
+    }
+
+    /**
+     * Add a vote.
+     *
+     * @param userId
+     *            The id of the user that votes.
+     * @param vote
+     *            The vote.
+     * @return false if the user already voted.
+     */
+    public boolean addVote(final int userId, final Vote vote) {
+        if (votes.putIfAbsent(userId, vote) != null) {
+            return false;
+        }
+
+        if (vote == Vote.LIKE) {
+            likes.increment();
+        } else {
+            dislikes.increment();
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the votes.
+     *
+     * @return A copy of the votes by user id.
+     */
+    public ImmutableMap<Integer, Vote> getVotes() {
+        return ImmutableMap.copyOf(votes);
+    }
+
+    /**
+     * Get the number of likes.
+     *
+     * @return The number of likes.
+     */
+    public long getLikes() {
+        return likes.sum();
+    }
+
+    /**
+     * Get the number of dislikes.
+     *
+     * @return The number of dislikes.
+     */
+    public long getDislikes() {
+        return dislikes.sum();
+    }
+
+    /**
+     * Get the net score of the votes.
+     *
+     * @return The number of likes minus the number of dislikes.
+     */
+    public long getNetScore() {
+        return getLikes() - getDislikes();
+    }
+
+}
@@ -0,0 +1,66 @@
+package me.moodcat.core;
+
+import java.util.List;
+
+import me.moodcat.api.ClusterAPI;
+import me.moodcat.api.MoodAPI;
+import me.moodcat.api.RoomAPI;
+import me.moodcat.api.ServerAPI;
+import me.moodcat.api.SongAPI;
+import me.moodcat.api.UserAPI;
+import me.moodcat.api.filters.AuthorizationFilter;
+import me.moodcat.api.filters.RoomOwnershipFilter;
+import me.moodcat.core.mappers.EntityNotFoundExceptionMapper;
+import me.moodcat.core.mappers.GuiceProvisionExceptionMapper;
+import me.moodcat.core.mappers.IllegalArgumentExceptionMapper;
+import me.moodcat.core.mappers.NotAuthorizedExceptionMapper;
+import me.moodcat.core.mappers.NotFoundExceptionMapper;
+import me.moodcat.core.mappers.ThrowableMapper;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The classes that are bound by the {@link MoodcatServletModule}. Listing them here, rather than
+ * scanning the classpath on every boot, keeps the startup time independent of the size of the
+ * classpath. {@code ApiRegistryTest} fails when a class is added to one of the packages without
+ * being registered here.
+ */
+public final class ApiRegistry {
+
+    /**
+     * The classes in {@code me.moodcat.api} that are annotated with
+     * {@link javax.ws.rs.Path @Path}.
+     */
+    public static final List<Class<?>> RESOURCES = ImmutableList.of(
+            ClusterAPI.class,
+            MoodAPI.class,
+            RoomAPI.class,
+            ServerAPI.class,
+            SongAPI.class,
+            UserAPI.class);
+
+    /**
+     * The classes in {@code me.moodcat.core.mappers} that are annotated with
+     * {@link javax.ws.rs.ext.Provider @Provider}.
+     */
+    public static final List<Class<?>> MAPPERS = ImmutableList.of(
+            EntityNotFoundExceptionMapper.class,
+            GuiceProvisionExceptionMapper.class,
+            IllegalArgumentExceptionMapper.class,
+            NotAuthorizedExceptionMapper.class,
+            NotFoundExceptionMapper.class,
+            ThrowableMapper.class);
+
+    /**
+     * The classes in {@code me.moodcat.api.filters} that are annotated with
+     * {@link javax.ws.rs.ext.Provider @Provider}.
+     */
+    public static final List<Class<?>> FILTERS = ImmutableList.of(
+            AuthorizationFilter.class,
+            RoomOwnershipFilter.class);
+
+    private ApiRegistry() {
+        // Registry of constants
+    }
+
+}
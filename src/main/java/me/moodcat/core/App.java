@@ -10,14 +10,18 @@ import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.ws.rs.core.MediaType;
+
 import lombok.extern.slf4j.Slf4j;
 
+import org.eclipse.jetty.server.ConnectorStatistics;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
-import org.eclipse.jetty.server.handler.ResourceHandler;
-import org.eclipse.jetty.server.session.HashSessionIdManager;
-import org.eclipse.jetty.server.session.HashSessionManager;
-import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.servlets.gzip.GzipHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
 /**
@@ -28,14 +32,40 @@ import org.slf4j.bridge.SLF4JBridgeHandler;
 public class App {
 
     /**
-     * The time that sessions are kept in the cache.
+     * Default TCP port.
      */
-    private static final int SESSION_KEEP_ALIVE = 1800;
+    private static final int SERVER_PORT = 8080;
 
     /**
-     * Default TCP port.
+     * System property that holds the maximum number of request threads.
      */
-    private static final int SERVER_PORT = 8080;
+    public static final String SERVER_THREADS_PROPERTY = "moodcat.server.threads";
+
+    /**
+     * Default maximum number of request threads.
+     */
+    private static final int DEFAULT_MAX_THREADS = 200;
+
+    /**
+     * Minimum number of request threads that are kept alive.
+     */
+    private static final int MIN_THREADS = 8;
+
+    /**
+     * Time in milliseconds after which idle request threads are stopped.
+     */
+    private static final int THREAD_IDLE_TIMEOUT = 60000;
+
+    /**
+     * API responses smaller than this number of bytes are not compressed.
+     */
+    private static final int MIN_GZIP_SIZE = 1024;
+
+    /**
+     * The port the server listens on.
+     */
+    @Getter
+    private final int port;
 
     /**
      * The server that handles the requests.
@@ -43,6 +73,20 @@ public class App {
     @Getter(value = AccessLevel.PACKAGE)
     private final Server server;
 
+    /**
+     * The statistics of the connections to the server.
+     *
+     * @return The connection statistics.
+     */
+    @Getter
+    private final ConnectorStatistics connectorStatistics;
+
+    /**
+     * Logs the duration of the phases of the startup.
+     */
+    @Getter(value = AccessLevel.PACKAGE)
+    private final StartupTimer startupTimer;
+
     /**
      * Reference for injector in order to have concurrent transactions to our database.
      */
@@ -50,12 +94,28 @@ public class App {
     private final AtomicReference<Injector> injectorAtomicReference = new AtomicReference<>();
 
     /**
-     * Instantiates the server and adds handlers for the requests.
+     * Instantiates the server on the default port and adds handlers for the requests.
      *
      * @throws IOException
      *             If the statics folder threw an IOException.
      */
     public App(final Module... overrides) throws IOException {
+        this(SERVER_PORT, overrides);
+    }
+
+    /**
+     * Instantiates the server and adds handlers for the requests. Multiple apps can run in the
+     * same process on different ports, for example to form a cluster.
+     *
+     * @param port
+     *            The port to listen on.
+     * @param overrides
+     *            Zero or more modules that override the default bindings.
+     * @throws IOException
+     *             If the statics folder threw an IOException.
+     */
+    public App(final int port, final Module... overrides) throws IOException {
+        this.startupTimer = new StartupTimer();
         final File staticsFolder = new File("src/main/resources/static/app");
 
         // Make sure the folder is available, else we can't start the server.
@@ -64,12 +124,17 @@ public class App {
         }
 
         for (final String file : staticsFolder.list()) {
-            log.info("Found resource {}", file);
+            log.debug("Found resource {}", file);
         }
+        this.startupTimer.phase("static folder");
 
-        this.server = new Server(SERVER_PORT);
-        this.server.setSessionIdManager(new HashSessionIdManager());
+        this.port = port;
+        this.server = new Server(createThreadPool());
+        this.connectorStatistics = new ConnectorStatistics();
+        this.server.addConnector(createConnector(this.server, port,
+                ConnectorConfiguration.fromSystemProperties(), this.connectorStatistics));
         this.server.setHandler(this.attachHandlers(staticsFolder, overrides));
+        this.startupTimer.phase("server");
     }
 
     /**
@@ -89,21 +154,61 @@ public class App {
         app.joinThread();
     }
 
+    /**
+     * Create the pool of request threads. Request threads block on the database and on
+     * SoundCloud, so the pool can be enlarged through {@value #SERVER_THREADS_PROPERTY}. Every
+     * request thread that uses the database holds a connection, so the pool should not be much
+     * larger than {@code hibernate.c3p0.max_size}, or requests queue inside c3p0 instead of in
+     * the connector.
+     *
+     * @return The thread pool for the server.
+     */
+    private static QueuedThreadPool createThreadPool() {
+        final int maxThreads = Integer.getInteger(SERVER_THREADS_PROPERTY, DEFAULT_MAX_THREADS);
+        final QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads,
+                Math.min(MIN_THREADS, maxThreads), THREAD_IDLE_TIMEOUT);
+        threadPool.setName("moodcat-http");
+        log.info("Serving requests with at most {} threads", maxThreads);
+        return threadPool;
+    }
+
+    /**
+     * Create the HTTP/1.1 connector. Connections are persistent, and are kept open for the
+     * configured idle timeout so that the polls of a browser tab reuse them.
+     *
+     * @return The connector for the server.
+     */
+    private static ServerConnector createConnector(final Server server, final int port,
+            final ConnectorConfiguration configuration, final ConnectorStatistics statistics) {
+        final HttpConfiguration httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setSendServerVersion(false);
+        httpConfiguration.setSendXPoweredBy(false);
+
+        final ServerConnector connector = new ServerConnector(server,
+                new HttpConnectionFactory(httpConfiguration));
+        connector.setPort(port);
+        connector.setIdleTimeout(configuration.getIdleTimeout());
+        connector.setAcceptQueueSize(configuration.getAcceptQueueSize());
+        connector.addBean(statistics);
+        log.info("Closing connections after {} ms idle", configuration.getIdleTimeout());
+        return connector;
+    }
+
     private ContextHandlerCollection attachHandlers(final File staticsFolder, final Module... overrides) {
         final MoodcatHandler moodcatHandler = new MoodcatHandler(this, staticsFolder, overrides);
 
-        final ResourceHandler resources = new ResourceHandler();
-        resources.setBaseResource(Resource.newResource(staticsFolder));
-        resources.setDirectoriesListed(false);
-        resources.setCacheControl("max-age=3600");
+        final StaticResourceHandler resources = new StaticResourceHandler(staticsFolder);
 
-        final HashSessionManager hashSessionManager = new HashSessionManager();
-        hashSessionManager.setMaxInactiveInterval(SESSION_KEEP_ALIVE);
+        // Static files are compressed at build time, API responses on the fly
+        final GzipHandler apiCompression = new GzipHandler();
+        apiCompression.setMimeTypes(MediaType.APPLICATION_JSON);
+        apiCompression.setMinGzipSize(MIN_GZIP_SIZE);
+        apiCompression.setHandler(moodcatHandler);
 
         final ContextHandlerCollection handlers = new ContextHandlerCollection();
         // CHECKSTYLE:OFF
         handlers.addContext("/", "/").setHandler(resources);
-        handlers.addContext("/", "/").setHandler(moodcatHandler);
+        handlers.addContext("/", "/").setHandler(apiCompression);
         // CHECKSTYLE:ON
 
         return handlers;
@@ -117,6 +222,8 @@ public class App {
      */
     public void startServer() throws Exception {
         this.server.start();
+        this.startupTimer.phase("lifecycle listeners");
+        this.startupTimer.finish();
         Runtime.getRuntime().addShutdownHook(new Thread(this::stopServer));
     }
 
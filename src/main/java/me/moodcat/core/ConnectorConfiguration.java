@@ -0,0 +1,67 @@
+package me.moodcat.core;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Configuration of the HTTP connector. Browsers keep their connections open between the
+ * polls of a tab, so the idle timeout determines how well connections are reused.
+ */
+@Data
+@AllArgsConstructor
+public class ConnectorConfiguration {
+
+    /**
+     * System property that holds the idle timeout of connections in milliseconds.
+     */
+    public static final String IDLE_TIMEOUT_PROPERTY = "moodcat.server.idle.timeout";
+
+    /**
+     * System property that holds the number of connections the operating system may queue
+     * before they are accepted.
+     */
+    public static final String ACCEPT_QUEUE_SIZE_PROPERTY = "moodcat.server.accept.queue";
+
+    /**
+     * The default idle timeout. Longer than the longest chat poll, so that a connection that
+     * waits for messages is not closed.
+     */
+    private static final int DEFAULT_IDLE_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(65);
+
+    /**
+     * The default size of the accept queue.
+     */
+    private static final int DEFAULT_ACCEPT_QUEUE_SIZE = 256;
+
+    /**
+     * The time in milliseconds after which an idle connection is closed.
+     *
+     * @param idleTimeout
+     *            The idle timeout to set.
+     * @return The idle timeout in milliseconds.
+     */
+    private int idleTimeout;
+
+    /**
+     * The number of connections the operating system may queue before they are accepted.
+     *
+     * @param acceptQueueSize
+     *            The accept queue size to set.
+     * @return The accept queue size.
+     */
+    private int acceptQueueSize;
+
+    /**
+     * Read the configuration from the system properties, falling back to the defaults.
+     *
+     * @return The connector configuration.
+     */
+    public static ConnectorConfiguration fromSystemProperties() {
+        return new ConnectorConfiguration(
+                Integer.getInteger(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT),
+                Integer.getInteger(ACCEPT_QUEUE_SIZE_PROPERTY, DEFAULT_ACCEPT_QUEUE_SIZE));
+    }
+
+}
@@ -9,8 +9,9 @@ import javax.servlet.ServletContext;
 
 import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
 import org.jboss.resteasy.plugins.guice.GuiceResteasyBootstrapServletContextListener;
-import org.jboss.resteasy.plugins.server.servlet.HttpServletDispatcher;
+import org.jboss.resteasy.plugins.server.servlet.HttpServlet30Dispatcher;
 
 import com.google.common.collect.ImmutableList;
 import com.google.inject.Injector;
@@ -25,7 +26,7 @@ import com.google.inject.util.Modules;
  * <li>Initializing a GuiceResteasyBootstrapServletContextListener, which is used to handle
  * requests through Resteasy in combination with Google Guice dependency injection</li>
  * <li>Adding a Guice requiest Filter for Guice servlet tools</li>
- * <li>Adding the HttpServletDispatcher which dispatches the incoming requests through the set
+ * <li>Adding the HttpServlet30Dispatcher which dispatches the incoming requests through the set
  * up filters and listeners</li>
  * </ul>
  */
@@ -46,7 +47,9 @@ public class MoodcatHandler extends ServletContextHandler {
         this.app = app;
         this.addEventListener(new AppContextListener(rootFolder, overrides));
 
-        this.addServlet(HttpServletDispatcher.class, "/");
+        // The Servlet 3.0 dispatcher allows suspended requests to release their thread
+        final ServletHolder dispatcher = this.addServlet(HttpServlet30Dispatcher.class, "/");
+        dispatcher.setAsyncSupported(true);
     }
 
     /**
@@ -72,14 +75,17 @@ public class MoodcatHandler extends ServletContextHandler {
 
         @Override
         protected List<Module> getModules(final ServletContext context) {
+            MoodcatHandler.this.app.getStartupTimer().phase("servlet context");
             final MoodcatServletModule module = new MoodcatServletModule(MoodcatHandler.this.app, rootFolder);
             return ImmutableList.<Module>of(Modules.override(module).with(overrides));
         }
 
         @Override
         protected void withInjector(final Injector injector) {
+            MoodcatHandler.this.app.getStartupTimer().phase("injector");
             final FilterHolder guiceFilterHolder = new FilterHolder(
                     injector.getInstance(GuiceFilter.class));
+            guiceFilterHolder.setAsyncSupported(true);
             MoodcatHandler.this.addFilter(guiceFilterHolder, "/*",
                     EnumSet.allOf(DispatcherType.class));
             MoodcatHandler.this.app.getInjectorAtomicReference().set(injector);
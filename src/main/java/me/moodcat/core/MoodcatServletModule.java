@@ -1,30 +1,38 @@
 package me.moodcat.core;
 
 import java.io.File;
-import java.lang.annotation.Annotation;
+import java.util.List;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.ws.rs.NotAuthorizedException;
-import javax.ws.rs.Path;
-import javax.ws.rs.ext.Provider;
 
 import lombok.extern.slf4j.Slf4j;
+import me.moodcat.backend.ClassificationIndex;
+import me.moodcat.backend.SessionTokens;
+import me.moodcat.backend.SongSearchIndex;
+import me.moodcat.backend.SongVectorUpdateQueue;
 import me.moodcat.backend.UnitOfWorkSchedulingServiceImpl;
+import me.moodcat.backend.cluster.ClusterConfiguration;
+import me.moodcat.backend.rooms.ChatCompactionJob;
+import me.moodcat.backend.rooms.ChatRetentionConfiguration;
+import me.moodcat.backend.rooms.ChatScrollbackConfiguration;
 import me.moodcat.backend.rooms.RoomBackend;
 import me.moodcat.backend.rooms.RoomBackendModule;
+import me.moodcat.backend.rooms.RoomRankingCache;
+import me.moodcat.backend.rooms.RoomSnapshotConfiguration;
 import me.moodcat.database.DbModule;
+import me.moodcat.database.LazyUnitOfWorkFilter;
 import me.moodcat.database.entities.User;
 
+import org.eclipse.jetty.server.ConnectorStatistics;
 import org.eclipse.jetty.util.component.LifeCycle;
 import org.jboss.resteasy.plugins.guice.ext.JaxrsModule;
-import org.reflections.Reflections;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.Provides;
 import com.google.inject.name.Named;
 import com.google.inject.name.Names;
-import com.google.inject.persist.PersistFilter;
 import com.google.inject.servlet.RequestScoped;
 import com.google.inject.servlet.ServletModule;
 
@@ -36,14 +44,13 @@ import com.google.inject.servlet.ServletModule;
 @Slf4j
 public class MoodcatServletModule extends ServletModule {
 
-    private static final String API_PACKAGE_NAME = "me.moodcat.api";
-
-    private static final String MAPPER_PACKAGE_NAME = "me.moodcat.core.mappers";
-
-    private static final String FILTER_PACKAGE_NAME = "me.moodcat.api.filters";
-
     private static final int THREAD_POOL_SIZE = 4;
 
+    /**
+     * System property that overrides the number of threads that run units of work.
+     */
+    private static final String THREAD_POOL_SIZE_PROPERTY = "moodcat.worker.threads";
+
     private final App app;
 
     /**
@@ -69,37 +76,52 @@ public class MoodcatServletModule extends ServletModule {
         this.install(new RoomBackendModule());
         // Bind eager singletons
         this.bind(UnitOfWorkSchedulingServiceImpl.class).asEagerSingleton();
+        this.bind(SessionTokens.class).asEagerSingleton();
+        this.bind(SongVectorUpdateQueue.class).asEagerSingleton();
+        this.bind(ClassificationIndex.class).asEagerSingleton();
+        this.bind(SongSearchIndex.class).asEagerSingleton();
         this.bind(RoomBackend.class).asEagerSingleton();
+        this.bind(RoomRankingCache.class).asEagerSingleton();
+        this.bind(ChatCompactionJob.class).asEagerSingleton();
     }
 
     private void bindConstants() {
         // Provide a way to access the resources folder from other classes
         this.bind(File.class).annotatedWith(Names.named("root.folder"))
                 .toInstance(this.rootFolder);
-        this.bindConstant().annotatedWith(Names.named("thread.pool.size")).to(THREAD_POOL_SIZE);
+        this.bindConstant().annotatedWith(Names.named("thread.pool.size"))
+                .to(Integer.getInteger(THREAD_POOL_SIZE_PROPERTY, THREAD_POOL_SIZE));
         this.bind(LifeCycle.class).toInstance(this.app.getServer());
+        this.bind(ConnectorStatistics.class).toInstance(this.app.getConnectorStatistics());
+        this.bindConstant().annotatedWith(Names.named(SessionTokens.SECRET_PROPERTY))
+                .to(System.getProperty(SessionTokens.SECRET_PROPERTY, ""));
+        this.bind(ClusterConfiguration.class).toInstance(
+                ClusterConfiguration.fromSystemProperties(this.app.getPort()));
+        this.bind(RoomSnapshotConfiguration.class).toInstance(
+                RoomSnapshotConfiguration.fromSystemProperties(this.app.getPort()));
+        this.bind(ChatScrollbackConfiguration.class).toInstance(
+                ChatScrollbackConfiguration.fromSystemProperties(this.app.getPort()));
+        this.bind(ChatRetentionConfiguration.class).toInstance(
+                ChatRetentionConfiguration.fromSystemProperties());
     }
 
     private void bindDatabaseModule() {
         install(new DbModule());
-        filter("/*").through(PersistFilter.class);
+        filter("/*").through(LazyUnitOfWorkFilter.class);
         requireBinding(EntityManager.class);
         requireBinding(EntityManagerFactory.class);
     }
 
     private void bindAPI() {
-        this.bindClassesAnnotatedWithInPackage(API_PACKAGE_NAME, Path.class);
-        this.bindClassesAnnotatedWithInPackage(MAPPER_PACKAGE_NAME, Provider.class);
-        this.bindClassesAnnotatedWithInPackage(FILTER_PACKAGE_NAME, Provider.class);
+        this.bindClasses(ApiRegistry.RESOURCES);
+        this.bindClasses(ApiRegistry.MAPPERS);
+        this.bindClasses(ApiRegistry.FILTERS);
     }
 
-    private void bindClassesAnnotatedWithInPackage(final String packageName,
-            final Class<? extends Annotation> annotation) {
-        final Reflections reflections = new Reflections(packageName);
-
-        for (final Class<?> clazz : reflections.getTypesAnnotatedWith(annotation)) {
+    private void bindClasses(final List<Class<?>> classes) {
+        for (final Class<?> clazz : classes) {
             this.bind(clazz);
-            log.info("Registering class {}", clazz);
+            log.debug("Registering class {}", clazz);
         }
     }
 
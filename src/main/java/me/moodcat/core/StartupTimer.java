@@ -0,0 +1,58 @@
+package me.moodcat.core;
+
+import java.util.concurrent.TimeUnit;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Logs how long each phase of the startup of an {@link App} takes, so that regressions in the
+ * time to restart a node show up in the logs of a deploy.
+ */
+@Slf4j
+public class StartupTimer {
+
+    /**
+     * The time at which the startup began.
+     */
+    private final long start;
+
+    /**
+     * The time at which the previous phase ended.
+     */
+    private long mark;
+
+    /**
+     * Start timing the startup.
+     */
+    public StartupTimer() {
+        this.start = System.nanoTime();
+        this.mark = this.start;
+    }
+
+    /**
+     * Log the duration of the phase that has just ended.
+     *
+     * @param name
+     *            The name of the phase.
+     * @return The duration of the phase in milliseconds.
+     */
+    public synchronized long phase(final String name) {
+        final long now = System.nanoTime();
+        final long duration = TimeUnit.NANOSECONDS.toMillis(now - mark);
+        mark = now;
+        log.info("Startup phase {} took {} ms", name, duration);
+        return duration;
+    }
+
+    /**
+     * Log the duration of the complete startup.
+     *
+     * @return The time since the startup began in milliseconds.
+     */
+    public long finish() {
+        final long total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info("Started in {} ms", total);
+        return total;
+    }
+
+}
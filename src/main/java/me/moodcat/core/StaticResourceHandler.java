@@ -0,0 +1,287 @@
+package me.moodcat.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
+
+/**
+ * Serves the static front-end files. Compared to Jetty's {@code ResourceHandler} it:
+ * <ul>
+ * <li>Serves the precompressed {@code .br} or {@code .gz} variant of a file that is produced at
+ * build time, if the client accepts it.</li>
+ * <li>Marks files with a content hash in their name (for example {@code app.3f2a9c1b.js}) as
+ * immutable, and lets clients revalidate all other files through their {@code ETag}.</li>
+ * <li>Memory maps large files once and sends them straight from the mapping.</li>
+ * </ul>
+ * Requests for files that do not exist are left unhandled, so that the next handler can
+ * serve them.
+ */
+@Slf4j
+public class StaticResourceHandler extends AbstractHandler {
+
+    /**
+     * Cache control for files of which the name changes with their content.
+     */
+    public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+
+    /**
+     * Cache control for all other files, which clients revalidate with their {@code ETag}.
+     */
+    public static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+
+    /**
+     * Files of at least this size are memory mapped.
+     */
+    public static final long DEFAULT_MAPPED_FILE_SIZE = 64 * 1024;
+
+    /**
+     * Matches names that contain a content hash of at least eight hexadecimal characters.
+     */
+    private static final Pattern HASHED_NAME_PATTERN = Pattern
+            .compile("^.+[.-][0-9a-fA-F]{8,}\\.[^.]+$");
+
+    private static final String WELCOME_FILE = "index.html";
+
+    private static final MimeTypes MIME_TYPES = new MimeTypes();
+
+    /**
+     * The folder that contains the static files.
+     */
+    private final Path root;
+
+    /**
+     * Files of at least this size are memory mapped.
+     */
+    private final long mappedFileSize;
+
+    /**
+     * The files that have been memory mapped.
+     */
+    private final ConcurrentMap<Path, MappedFile> mappedFiles;
+
+    /**
+     * Create a handler that serves the files in the given folder.
+     *
+     * @param root
+     *            The folder that contains the static files.
+     */
+    public StaticResourceHandler(final File root) {
+        this(root, DEFAULT_MAPPED_FILE_SIZE);
+    }
+
+    @VisibleForTesting
+    StaticResourceHandler(final File root, final long mappedFileSize) {
+        this.root = root.toPath().toAbsolutePath().normalize();
+        this.mappedFileSize = mappedFileSize;
+        this.mappedFiles = new ConcurrentHashMap<>();
+    }
+
+    @Override
+    public void handle(final String target, final Request baseRequest,
+            final HttpServletRequest request, final HttpServletResponse response)
+            throws IOException {
+        final boolean head = HttpMethod.HEAD.is(request.getMethod());
+        if (!head && !HttpMethod.GET.is(request.getMethod())) {
+            return;
+        }
+
+        final Path file = resolve(target);
+        if (file == null) {
+            return;
+        }
+
+        final Variant variant = selectVariant(file,
+                request.getHeader(HttpHeader.ACCEPT_ENCODING.asString()));
+        final String etag = createETag(variant.getPath());
+        baseRequest.setHandled(true);
+
+        response.setHeader(HttpHeader.VARY.asString(), HttpHeader.ACCEPT_ENCODING.asString());
+        response.setHeader(HttpHeader.ETAG.asString(), etag);
+        response.setHeader(HttpHeader.CACHE_CONTROL.asString(), getCacheControl(file));
+
+        if (matches(request.getHeader(HttpHeader.IF_NONE_MATCH.asString()), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        final String mimeType = MIME_TYPES.getMimeByExtension(file.getFileName().toString());
+        if (mimeType != null) {
+            response.setContentType(mimeType);
+        }
+        if (variant.getEncoding() != null) {
+            response.setHeader(HttpHeader.CONTENT_ENCODING.asString(), variant.getEncoding());
+        }
+
+        final long size = Files.size(variant.getPath());
+        response.setContentLengthLong(size);
+
+        if (head) {
+            return;
+        }
+
+        if (size >= mappedFileSize) {
+            baseRequest.getResponse().getHttpOutput().sendContent(map(variant.getPath()));
+        } else {
+            Files.copy(variant.getPath(), response.getOutputStream());
+        }
+    }
+
+    /**
+     * Find the file for a request path.
+     *
+     * @param target
+     *            The request path.
+     * @return The file, or {@code null} if the path does not point to a readable file in the
+     *         static folder.
+     */
+    @VisibleForTesting
+    Path resolve(final String target) {
+        Path file = root.resolve(target.replaceFirst("^/+", "")).normalize();
+        if (!file.startsWith(root)) {
+            return null;
+        }
+
+        if (Files.isDirectory(file)) {
+            file = file.resolve(WELCOME_FILE);
+        }
+
+        if (!Files.isRegularFile(file) || !Files.isReadable(file)) {
+            return null;
+        }
+        return file;
+    }
+
+    private static Variant selectVariant(final Path file, final String acceptEncoding) {
+        if (acceptEncoding != null) {
+            final Path brotli = file.resolveSibling(file.getFileName() + ".br");
+            if (accepts(acceptEncoding, "br") && Files.isRegularFile(brotli)) {
+                return new Variant(brotli, "br");
+            }
+
+            final Path gzip = file.resolveSibling(file.getFileName() + ".gz");
+            if (accepts(acceptEncoding, "gzip") && Files.isRegularFile(gzip)) {
+                return new Variant(gzip, "gzip");
+            }
+        }
+        return new Variant(file, null);
+    }
+
+    /**
+     * Check whether an {@code Accept-Encoding} header accepts the given encoding.
+     *
+     * @param acceptEncoding
+     *            The value of the header.
+     * @param encoding
+     *            The encoding.
+     * @return true if the encoding is listed and does not have a quality of zero.
+     */
+    @VisibleForTesting
+    static boolean accepts(final String acceptEncoding, final String encoding) {
+        for (final String value : Splitter.on(',').trimResults().split(acceptEncoding)) {
+            final int separator = value.indexOf(';');
+            final String coding = separator < 0 ? value : value.substring(0, separator).trim();
+
+            if (coding.equalsIgnoreCase(encoding)) {
+                return separator < 0 || !value.substring(separator + 1)
+                        .replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static String getCacheControl(final Path file) {
+        if (HASHED_NAME_PATTERN.matcher(file.getFileName().toString()).matches()) {
+            return IMMUTABLE_CACHE_CONTROL;
+        }
+        return REVALIDATE_CACHE_CONTROL;
+    }
+
+    private static String createETag(final Path file) throws IOException {
+        return '"' + Long.toHexString(Files.getLastModifiedTime(file).toMillis()) + '-'
+                + Long.toHexString(Files.size(file)) + '"';
+    }
+
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (final String value : Splitter.on(',').trimResults().split(ifNoneMatch)) {
+            if ("*".equals(value) || etag.equals(value.replaceFirst("^W/", ""))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ByteBuffer map(final Path file) throws IOException {
+        final long lastModified = Files.getLastModifiedTime(file).toMillis();
+        MappedFile mapped = mappedFiles.get(file);
+
+        if (mapped == null || mapped.getLastModified() != lastModified) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                mapped = new MappedFile(lastModified,
+                        channel.map(MapMode.READ_ONLY, 0, channel.size()));
+            }
+            mappedFiles.put(file, mapped);
+            log.debug("Memory mapped {}", file);
+        }
+
+        // Every response needs its own position in the shared mapping
+        return mapped.getBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * A file, or one of its precompressed variants.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class Variant {
+
+        private final Path path;
+
+        /**
+         * The content encoding of the variant, {@code null} if it is not compressed.
+         */
+        private final String encoding;
+
+    }
+
+    /**
+     * A memory mapped file.
+     */
+    @Getter
+    @AllArgsConstructor
+    private static final class MappedFile {
+
+        private final long lastModified;
+
+        private final ByteBuffer buffer;
+
+    }
+
+}
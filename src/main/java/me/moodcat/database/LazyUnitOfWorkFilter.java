@@ -0,0 +1,65 @@
+package me.moodcat.database;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.google.inject.persist.PersistService;
+import com.google.inject.persist.UnitOfWork;
+
+/**
+ * Replacement for the {@link com.google.inject.persist.PersistFilter} that does not begin a
+ * {@link UnitOfWork} for every request. The unit of work of a request is begun by the
+ * {@code JpaPersistService} the first time an {@link javax.persistence.EntityManager} is
+ * requested, which the DAOs only do when they query the database, or by the first
+ * {@link com.google.inject.persist.Transactional} method. Requests that do not use the database
+ * therefore do not create an entity manager at all. A transactional method that begins the unit
+ * of work ends it again once it returns, which is why the read methods of the DAOs are not
+ * transactional, and resources that start with a write should be transactional themselves.
+ * <p>
+ * Units of work that were begun while handling the request are ended once the response is
+ * written, so that entity managers are not leaked to the next request on the thread. Ending a
+ * unit of work that was not begun has no effect.
+ */
+@Singleton
+public class LazyUnitOfWorkFilter implements Filter {
+
+    private final UnitOfWork unitOfWork;
+
+    private final PersistService persistService;
+
+    @Inject
+    public LazyUnitOfWorkFilter(final UnitOfWork unitOfWork,
+            final PersistService persistService) {
+        this.unitOfWork = unitOfWork;
+        this.persistService = persistService;
+    }
+
+    @Override
+    public void init(final FilterConfig filterConfig) throws ServletException {
+        persistService.start();
+    }
+
+    @Override
+    public void doFilter(final ServletRequest request, final ServletResponse response,
+            final FilterChain chain) throws IOException, ServletException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            unitOfWork.end();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        persistService.stop();
+    }
+
+}
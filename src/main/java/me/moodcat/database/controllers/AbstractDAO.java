@@ -1,15 +1,31 @@
 package me.moodcat.database.controllers;
 
+import java.util.List;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.TypedQuery;
 
 import lombok.extern.slf4j.Slf4j;
 
+import org.hibernate.FlushMode;
+import org.hibernate.jpa.QueryHints;
+
+import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
 import com.mysema.query.jpa.impl.JPAQuery;
 
 /**
  * Manages data to be retrieved or inserted into the database.
+ * <p>
+ * The {@link EntityManager} is obtained from the unit of work of the current thread when a query
+ * is made, not when the DAO is constructed. Injecting a DAO therefore does not begin a unit of
+ * work, which is only begun once the database is actually used, see
+ * {@link me.moodcat.database.LazyUnitOfWorkFilter}.
+ * <p>
+ * Only methods that write are {@link Transactional}. A transactional method that begins the unit
+ * of work also ends it, so a read in a transaction of its own would create an entity manager for
+ * every call. Reads without a transaction join the unit of work of the request instead.
  * 
  * @param <T>
  *            The type to be saved.
@@ -18,16 +34,16 @@ import com.mysema.query.jpa.impl.JPAQuery;
 public class AbstractDAO<T> {
 
     /**
-     * Manager that can talk to the actual database.
+     * Provider of the manager that can talk to the actual database.
      */
-    private final EntityManager entityManager;
+    private final Provider<EntityManager> entityManagerProvider;
 
-    protected AbstractDAO(final EntityManager entityManager) {
-        this.entityManager = entityManager;
+    protected AbstractDAO(final Provider<EntityManager> entityManagerProvider) {
+        this.entityManagerProvider = entityManagerProvider;
     }
 
     protected EntityManager getManager() {
-        return entityManager;
+        return entityManagerProvider.get();
     }
 
     /**
@@ -36,7 +52,53 @@ public class AbstractDAO<T> {
      * @return a {@link JPAQuery} for the current {@link EntityManager}
      */
     protected JPAQuery query() {
-        return new JPAQuery(this.entityManager);
+        return new JPAQuery(getManager());
+    }
+
+    /**
+     * Query the database for reading only. Hibernate does not flush the persistence context
+     * before the query, and entities that are selected are not dirty-checked. Read paths should
+     * project into models, so that nothing is added to the persistence context at all.
+     *
+     * @return a read-only {@link JPAQuery} for the current {@link EntityManager}
+     */
+    protected JPAQuery readOnlyQuery() {
+        return query()
+                .setHint(QueryHints.HINT_READONLY, true)
+                .setHint(QueryHints.HINT_FLUSH_MODE, FlushMode.MANUAL);
+    }
+
+    /**
+     * Create a named query. Named queries are parsed and translated to SQL once, when the
+     * persistence unit starts, so hot queries do not pay for rendering and translating the query
+     * on every call.
+     *
+     * @param name
+     *            The name of the query.
+     * @param type
+     *            The type of the results.
+     * @param <R>
+     *            The type of the results.
+     * @return a {@link TypedQuery} for the current {@link EntityManager}
+     */
+    protected <R> TypedQuery<R> namedQuery(final String name, final Class<R> type) {
+        return getManager().createNamedQuery(name, type);
+    }
+
+    /**
+     * Get the first result of a query.
+     *
+     * @param query
+     *            The query to execute.
+     * @param <R>
+     *            The type of the results.
+     * @return The first result
+     * @throws EntityNotFoundException
+     *             if the query has no results
+     */
+    protected <R> R ensureFirstResult(final TypedQuery<R> query) {
+        final List<R> results = query.setMaxResults(1).getResultList();
+        return ensureExists(results.isEmpty() ? null : results.get(0));
     }
 
     /**
@@ -49,7 +111,7 @@ public class AbstractDAO<T> {
     @Transactional
     public T persist(final T object) {
         log.debug("Persisting {}", object);
-        this.entityManager.persist(object);
+        getManager().persist(object);
         return object;
     }
 
@@ -63,7 +125,7 @@ public class AbstractDAO<T> {
     @Transactional
     public T merge(final T object) {
         log.debug("Merging {}", object);
-        return this.entityManager.merge(object);
+        return getManager().merge(object);
     }
 
     /**
@@ -75,21 +137,23 @@ public class AbstractDAO<T> {
      */
     @Transactional
     public T remove(final T object) {
-        this.entityManager.remove(object);
+        getManager().remove(object);
         log.debug("Removed {}", object);
         return object;
     }
 
     /**
-     * Check that an entity is not null.
+     * Check that an entity, or a projection of it, is not null.
      *
      * @param entity
      *            entity that should not be null
+     * @param <V>
+     *            The type of the entity or projection.
      * @return the entity
      * @throws EntityNotFoundException
      *             if the entity could not be found
      */
-    protected T ensureExists(final T entity) {
+    protected <V> V ensureExists(final V entity) {
         if (entity == null) {
             throw new EntityNotFoundException();
         }
@@ -9,7 +9,7 @@ import javax.persistence.EntityManager;
 import me.moodcat.database.entities.Artist;
 
 import com.google.inject.Inject;
-import com.google.inject.persist.Transactional;
+import com.google.inject.Provider;
 
 /**
  * Used to retrieve artists from the database.
@@ -17,8 +17,8 @@ import com.google.inject.persist.Transactional;
 public class ArtistDAO extends AbstractDAO<Artist> {
 
     @Inject
-    public ArtistDAO(final EntityManager entityManager) {
-        super(entityManager);
+    public ArtistDAO(final Provider<EntityManager> entityManagerProvider) {
+        super(entityManagerProvider);
     }
 
     /**
@@ -26,7 +26,6 @@ public class ArtistDAO extends AbstractDAO<Artist> {
      *
      * @return A list of all artists.
      */
-    @Transactional
     public List<Artist> listArtists() {
         return this.query().from(artist)
                 .list(artist);
@@ -39,7 +38,6 @@ public class ArtistDAO extends AbstractDAO<Artist> {
      *            The (case-ignored) name of the artist.
      * @return The artist, if found.
      */
-    @Transactional
     public Artist findByName(final String name) {
         return this.query().from(artist)
                 .where(artist.name.equalsIgnoreCase(name))
@@ -53,7 +51,6 @@ public class ArtistDAO extends AbstractDAO<Artist> {
      *            The id of the artist.
      * @return The artist, if found.
      */
-    @Transactional
     public Artist findById(final int id) {
         return ensureExists(this.query().from(artist)
                 .where(artist.id.eq(id))
@@ -1,17 +1,260 @@
 package me.moodcat.database.controllers;
 
+import static me.moodcat.database.entities.QArchivedChatMessage.archivedChatMessage;
+import static me.moodcat.database.entities.QChatMessage.chatMessage;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import javax.persistence.EntityManager;
 
+import me.moodcat.database.entities.ArchivedChatMessage;
 import me.moodcat.database.entities.ChatMessage;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
+import com.google.inject.persist.Transactional;
+import com.mysema.query.Tuple;
 
 /**
  * Manager that can fetch messages from the database.
+ * <p>
+ * The history of a room is read with keyset pagination on the id of the messages, which is
+ * backed by the index on {@code (room_id, id)}. Reading a page therefore costs the same for
+ * recent and old messages, regardless of the size of the history.
+ * <p>
+ * Old messages are moved to the {@link ArchivedChatMessage archive} in small batches, each in
+ * its own transaction, so that the chat table stays small and rows are only locked briefly.
  */
 public class ChatDAO extends AbstractDAO<ChatMessage> {
 
     @Inject
-    public ChatDAO(final EntityManager entityManager) {
-        super(entityManager);
+    public ChatDAO(final Provider<EntityManager> entityManagerProvider) {
+        super(entityManagerProvider);
+    }
+
+    /**
+     * Get the latest messages of a room.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param limit
+     *            The maximum number of messages.
+     * @return The messages, oldest first.
+     */
+    public List<ChatMessage> listLatest(final int roomId, final int limit) {
+        return Lists.reverse(query().from(chatMessage)
+                .innerJoin(chatMessage.user).fetch()
+                .where(chatMessage.compoundId.roomId.eq(roomId))
+                .orderBy(chatMessage.compoundId.id.desc())
+                .limit(limit)
+                .list(chatMessage));
+    }
+
+    /**
+     * Get the messages of a room that were posted before the given message.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param before
+     *            The id before which messages are returned.
+     * @param limit
+     *            The maximum number of messages.
+     * @return The newest messages before the given message, oldest first.
+     */
+    public List<ChatMessage> listBefore(final int roomId, final int before, final int limit) {
+        return Lists.reverse(query().from(chatMessage)
+                .innerJoin(chatMessage.user).fetch()
+                .where(chatMessage.compoundId.roomId.eq(roomId),
+                        chatMessage.compoundId.id.lt(before))
+                .orderBy(chatMessage.compoundId.id.desc())
+                .limit(limit)
+                .list(chatMessage));
+    }
+
+    /**
+     * Get messages of a room by their ids.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param ids
+     *            The ids of the messages.
+     * @return The messages that exist, in no particular order.
+     */
+    public List<ChatMessage> listByIds(final int roomId, final Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return query().from(chatMessage)
+                .innerJoin(chatMessage.user).fetch()
+                .where(chatMessage.compoundId.roomId.eq(roomId),
+                        chatMessage.compoundId.id.in(ids))
+                .list(chatMessage);
+    }
+
+    /**
+     * Find which of the given messages of a room are persisted, either in the chat table or in
+     * the archive. Only the ids are selected.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param ids
+     *            The ids of the messages.
+     * @return The ids of the messages that are persisted.
+     */
+    public Set<Integer> findPersistedIds(final int roomId, final Collection<Integer> ids) {
+        if (ids.isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        final Set<Integer> persisted = Sets.newHashSet(query().from(chatMessage)
+                .where(chatMessage.compoundId.roomId.eq(roomId),
+                        chatMessage.compoundId.id.in(ids))
+                .list(chatMessage.compoundId.id));
+        persisted.addAll(query().from(archivedChatMessage)
+                .where(archivedChatMessage.compoundId.roomId.eq(roomId),
+                        archivedChatMessage.compoundId.id.in(ids))
+                .list(archivedChatMessage.compoundId.id));
+        return persisted;
+    }
+
+    /**
+     * Visit the id and text of the messages of a room after the given id, in the order of their
+     * ids. The messages are read in pages with keyset queries, and only the id and text are
+     * selected, so that the history is streamed without loading it into the persistence context.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param afterId
+     *            Only messages with a larger id are visited.
+     * @param pageSize
+     *            The number of messages that is read per query.
+     * @param visitor
+     *            The visitor that receives the messages.
+     * @return The id of the last visited message, or {@code afterId} if no message was visited.
+     */
+    public int scanMessages(final int roomId, final int afterId, final int pageSize,
+            final MessageVisitor visitor) {
+        int lastId = afterId;
+        List<Tuple> page;
+
+        do {
+            page = query().from(chatMessage)
+                    .where(chatMessage.compoundId.roomId.eq(roomId),
+                            chatMessage.compoundId.id.gt(lastId))
+                    .orderBy(chatMessage.compoundId.id.asc())
+                    .limit(pageSize)
+                    .list(chatMessage.compoundId.id, chatMessage.message);
+
+            for (final Tuple row : page) {
+                lastId = row.get(chatMessage.compoundId.id);
+                visitor.visit(lastId, row.get(chatMessage.message));
+            }
+        } while (page.size() == pageSize);
+
+        return lastId;
+    }
+
+    /**
+     * Get the id of the latest persisted message of a room. Archived messages are included, so
+     * that ids are not reused after all messages of a room were archived.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @return The id of the latest message, or 0 if the room has no messages.
+     */
+    public int findLastId(final int roomId) {
+        final Integer lastId = query().from(chatMessage)
+                .where(chatMessage.compoundId.roomId.eq(roomId))
+                .singleResult(chatMessage.compoundId.id.max());
+        if (lastId != null) {
+            return lastId;
+        }
+
+        final Integer lastArchivedId = query().from(archivedChatMessage)
+                .where(archivedChatMessage.compoundId.roomId.eq(roomId))
+                .singleResult(archivedChatMessage.compoundId.id.max());
+        return lastArchivedId == null ? 0 : lastArchivedId;
+    }
+
+    /**
+     * Move the oldest messages of a room that were posted before the given time to the archive.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param postedBefore
+     *            Messages posted before this time are archived.
+     * @param limit
+     *            The maximum number of messages to archive.
+     * @return The ids of the archived messages in ascending order, fewer than the limit if none
+     *         are left.
+     */
+    @Transactional
+    public List<Integer> archive(final int roomId, final long postedBefore, final int limit) {
+        final List<ChatMessage> expired = query().from(chatMessage)
+                .innerJoin(chatMessage.user).fetch()
+                .where(chatMessage.compoundId.roomId.eq(roomId),
+                        chatMessage.timestamp.lt(postedBefore))
+                .orderBy(chatMessage.compoundId.id.asc())
+                .limit(limit)
+                .list(chatMessage);
+
+        for (final ChatMessage message : expired) {
+            getManager().persist(ArchivedChatMessage.of(message));
+            getManager().remove(message);
+        }
+        return expired.stream()
+                .map(ChatMessage::getId)
+                .collect(Collectors.toList());
     }
+
+    /**
+     * Delete the oldest archived messages of a room that were posted before the given month.
+     *
+     * @param roomId
+     *            The id of the room.
+     * @param month
+     *            Messages posted before this month are deleted, see
+     *            {@link ArchivedChatMessage#monthOf(long)}.
+     * @param limit
+     *            The maximum number of messages to delete.
+     * @return The number of deleted messages, less than the limit if none are left.
+     */
+    @Transactional
+    public int deleteArchived(final int roomId, final int month, final int limit) {
+        final List<ArchivedChatMessage> expired = query().from(archivedChatMessage)
+                .where(archivedChatMessage.compoundId.roomId.eq(roomId),
+                        archivedChatMessage.month.lt(month))
+                .orderBy(archivedChatMessage.compoundId.id.asc())
+                .limit(limit)
+                .list(archivedChatMessage);
+
+        expired.forEach(getManager()::remove);
+        return expired.size();
+    }
+
+    /**
+     * Receives the messages of {@link ChatDAO#scanMessages(int, int, int, MessageVisitor)}.
+     */
+    @FunctionalInterface
+    public interface MessageVisitor {
+
+        /**
+         * Visit a message.
+         *
+         * @param id
+         *            The id of the message.
+         * @param message
+         *            The text of the message.
+         */
+        void visit(int id, String message);
+
+    }
+
 }
@@ -2,16 +2,23 @@ package me.moodcat.database.controllers;
 
 import static me.moodcat.database.entities.QClassification.classification;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 import javax.persistence.EntityManager;
 
 import me.moodcat.database.entities.Classification;
 import me.moodcat.database.entities.Song;
 import me.moodcat.database.entities.User;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
-
-;
+import com.mysema.query.Tuple;
 
 /**
  * Data-access object for classification objects.
@@ -19,8 +26,8 @@ import com.google.inject.persist.Transactional;
 public class ClassificationDAO extends AbstractDAO<Classification> {
 
     @Inject
-    public ClassificationDAO(final EntityManager entityManager) {
-        super(entityManager);
+    public ClassificationDAO(final Provider<EntityManager> entityManagerProvider) {
+        super(entityManagerProvider);
     }
 
     /**
@@ -32,7 +39,6 @@ public class ClassificationDAO extends AbstractDAO<Classification> {
      *            Song for the classificatoin.
      * @return true if a classification exists.
      */
-    @Transactional
     public boolean exists(final User user, final Song song) {
         return query().from(classification)
                 .where(classification.user.eq(user)
@@ -40,4 +46,60 @@ public class ClassificationDAO extends AbstractDAO<Classification> {
                 .exists();
     }
 
+    /**
+     * Persist classifications of a user in a single transaction, except for classifications of
+     * songs that the user already classified. The unique constraint on the song and user rejects
+     * classifications that were committed concurrently, on this or another node, in which case
+     * the transaction is rolled back.
+     *
+     * @param user
+     *            User for the classifications.
+     * @param classifications
+     *            The classifications to persist.
+     * @return The persisted classifications.
+     */
+    @Transactional
+    public List<Classification> persistUnclassified(final User user,
+            final List<Classification> classifications) {
+        if (classifications.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final Set<Integer> classified = Sets.newHashSet(query().from(classification)
+                .where(classification.user.eq(user)
+                        .and(classification.song.in(classifications.stream()
+                                .map(Classification::getSong)
+                                .collect(Collectors.toSet()))))
+                .list(classification.song.id));
+
+        final List<Classification> persisted = Lists.newArrayList();
+        for (final Classification candidate : classifications) {
+            if (classified.add(candidate.getSong().getId())) {
+                persist(candidate);
+                persisted.add(candidate);
+            }
+        }
+        return persisted;
+    }
+
+    /**
+     * List classifications in order of insertion, starting after the given id. Only the ids and
+     * vector are fetched, so that the classifications can be streamed in batches without loading
+     * the users and songs.
+     *
+     * @param afterId
+     *            The id of the last classification of the previous batch, or 0 to start.
+     * @param limit
+     *            The maximum number of classifications to fetch.
+     * @return Tuples of the classification id, user id, song id and vector location.
+     */
+    public List<Tuple> listAfter(final int afterId, final long limit) {
+        return query().from(classification)
+                .where(classification.id.gt(afterId))
+                .orderBy(classification.id.asc())
+                .limit(limit)
+                .list(classification.id, classification.user.id, classification.song.id,
+                        classification.valenceArousal.location);
+    }
+
 }
@@ -5,12 +5,11 @@ import static me.moodcat.database.entities.QRoom.room;
 import java.util.List;
 
 import javax.persistence.EntityManager;
-import javax.transaction.Transactional;
 
-import me.moodcat.database.embeddables.VAVector;
 import me.moodcat.database.entities.Room;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 
 /**
  * The DAO for rooms.
@@ -18,8 +17,8 @@ import com.google.inject.Inject;
 public class RoomDAO extends AbstractDAO<Room> {
 
     @Inject
-    public RoomDAO(final EntityManager entityManager) {
-        super(entityManager);
+    public RoomDAO(final Provider<EntityManager> entityManagerProvider) {
+        super(entityManagerProvider);
     }
 
     /**
@@ -29,11 +28,9 @@ public class RoomDAO extends AbstractDAO<Room> {
      *            the id of the room
      * @return the {@link Room}
      */
-    @Transactional
     public Room findById(final int id) {
-        return ensureExists(this.query().from(room)
-                .where(room.id.eq(id))
-                .singleResult(room));
+        return ensureFirstResult(namedQuery(Room.FIND_BY_ID, Room.class)
+                .setParameter("id", id));
     }
 
     /**
@@ -41,7 +38,6 @@ public class RoomDAO extends AbstractDAO<Room> {
      *
      * @return The list of all rooms.
      */
-    @Transactional
     public List<Room> listRooms() {
         return this.query().from(room).list(room);
     }
@@ -53,26 +49,8 @@ public class RoomDAO extends AbstractDAO<Room> {
      *            The number of rooms to return.
      * @return The list of lim rooms.
      */
-    @Transactional
     public List<Room> listRooms(final int lim) {
         return this.query().from(room).limit(lim).list(room);
     }
 
-    /**
-     * Query rooms in space.
-     * 
-     * @param vector
-     *            Vector to compare with
-     * @param limit
-     *            Limit results
-     * @return a list of rooms
-     */
-    @Transactional
-    public List<Room> queryRooms(final VAVector vector, final int limit) {
-        return query().from(room)
-                .orderBy(room.vaVector.location.distance(vector.getLocation()).asc())
-                .limit(limit)
-                .list(room);
-    }
-
 }
@@ -1,17 +1,26 @@
 package me.moodcat.database.controllers;
 
+import static me.moodcat.database.entities.QArtist.artist;
 import static me.moodcat.database.entities.QSong.song;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.persistence.EntityManager;
 
+import me.moodcat.api.models.SongModel;
 import me.moodcat.database.embeddables.VAVector;
 import me.moodcat.database.entities.Room;
 import me.moodcat.database.entities.Song;
 
 import com.google.inject.Inject;
+import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
+import com.mysema.query.jpa.impl.JPAQuery;
+import com.mysema.query.jpa.impl.JPAUpdateClause;
+import com.mysema.query.types.ConstructorExpression;
+import com.mysema.query.types.Projections;
 import com.mysema.query.types.expr.NumberExpression;
 
 /**
@@ -23,9 +32,18 @@ public class SongDAO extends AbstractDAO<Song> {
 
     private static final double VECTOR_DISTANCE_DELTA = 0.1;
 
+    /**
+     * Projection of a song and its artist into a {@link SongModel}, for queries from
+     * {@link #selectSongModels()}.
+     */
+    private static final ConstructorExpression<SongModel> SONG_MODEL = Projections.constructor(
+            SongModel.class, song.id, song.soundCloudId, artist.id, artist.name, song.name,
+            song.duration, song.artworkUrl, song.valenceArousal.location, song.purchaseUrl,
+            song.purchaseTitle);
+
     @Inject
-    public SongDAO(final EntityManager entityManager) {
-        super(entityManager);
+    public SongDAO(final Provider<EntityManager> entityManagerProvider) {
+        super(entityManagerProvider);
     }
 
     /**
@@ -33,7 +51,6 @@ public class SongDAO extends AbstractDAO<Song> {
      *
      * @return The list of songs stored in the database.
      */
-    @Transactional
     public List<Song> listSongs() {
         return this.query().from(song)
                 .list(song);
@@ -46,7 +63,6 @@ public class SongDAO extends AbstractDAO<Song> {
      *            The number of songs to retrieve.
      * @return A list of random songs.
      */
-    @Transactional
     public List<Song> listRandomsongs(final int limit) {
         return query()
                 .from(song)
@@ -57,6 +73,50 @@ public class SongDAO extends AbstractDAO<Song> {
                 .list(song);
     }
 
+    /**
+     * Get all songs as models, without loading the entities.
+     *
+     * @return The models of the songs stored in the database.
+     */
+    public List<SongModel> listSongModels() {
+        return selectSongModels()
+                .list(SONG_MODEL);
+    }
+
+    /**
+     * Get random unclassified songs as models, without loading the entities.
+     *
+     * @param limit
+     *            The number of songs to retrieve.
+     * @return The models of random songs.
+     */
+    public List<SongModel> listRandomSongModels(final int limit) {
+        return selectSongModels()
+                .where(song.valenceArousal.location.distance(VAVector.ZERO.getLocation()).lt(
+                        VECTOR_DISTANCE_DELTA))
+                .orderBy(NumberExpression.random().asc())
+                .limit(limit)
+                .list(SONG_MODEL);
+    }
+
+    /**
+     * Get the model of a song by id, without loading the entity.
+     *
+     * @param id
+     *            The id of the song.
+     * @return The model of the song, if found.
+     */
+    public SongModel findModelById(final int id) {
+        return ensureExists(selectSongModels()
+                .where(song.id.eq(id))
+                .singleResult(SONG_MODEL));
+    }
+
+    private JPAQuery selectSongModels() {
+        return readOnlyQuery().from(song)
+                .leftJoin(song.artist, artist);
+    }
+
     /**
      * Get a song by name.
      *
@@ -64,7 +124,6 @@ public class SongDAO extends AbstractDAO<Song> {
      *            The (case-ignored) name of the song.
      * @return The song, if found.
      */
-    @Transactional
     public Song findByName(final String name) {
         return ensureExists(this.query().from(song)
                 .where(song.name.equalsIgnoreCase(name))
@@ -78,11 +137,9 @@ public class SongDAO extends AbstractDAO<Song> {
      *            The id of song.
      * @return The song, if found.
      */
-    @Transactional
     public Song findById(final int id) {
-        return ensureExists(this.query().from(song)
-                .where(song.id.eq(id))
-                .singleResult(song));
+        return ensureFirstResult(namedQuery(Song.FIND_BY_ID, Song.class)
+                .setParameter("id", id));
     }
 
     /**
@@ -92,11 +149,22 @@ public class SongDAO extends AbstractDAO<Song> {
      *            The SoundCloud id of the song.
      * @return The song, if found.
      */
-    @Transactional
     public Song findBySoundCloudId(final int id) {
-        return ensureExists(this.query().from(song)
-                .where(song.soundCloudId.eq(id))
-                .singleResult(song));
+        return ensureFirstResult(namedQuery(Song.FIND_BY_SOUNDCLOUD_ID, Song.class)
+                .setParameter("soundCloudId", id));
+    }
+
+    /**
+     * Get songs by SoundCloud id.
+     *
+     * @param ids
+     *            The SoundCloud ids of the songs.
+     * @return The songs that were found.
+     */
+    public List<Song> findBySoundCloudIds(final Collection<Integer> ids) {
+        return query().from(song)
+                .where(song.soundCloudId.in(ids))
+                .list(song);
     }
 
     /**
@@ -108,7 +176,6 @@ public class SongDAO extends AbstractDAO<Song> {
      *            limit of results
      * @return List of songs
      */
-    @Transactional
     public List<Song> findForDistance(final VAVector vector, final long limit) {
         return query().from(song)
                 .orderBy(song.valenceArousal.location.distance(vector.getLocation()).asc())
@@ -123,16 +190,54 @@ public class SongDAO extends AbstractDAO<Song> {
      *            Room to search for.
      * @return List of songs
      */
-    @Transactional
     public List<Song> findNewSongsFor(final Room fetchingRoom) {
-        return query()
-                .from(song)
-                .where(song.exclusions.contains(fetchingRoom).not())
-                .orderBy(
-                        song.valenceArousal.location.distance(
-                                fetchingRoom.getVaVector().getLocation()).asc())
-                .limit(AMOUNT_OF_SONGS)
+        return namedQuery(Song.FIND_NEW_FOR_ROOM, Song.class)
+                .setParameter("room", fetchingRoom)
+                .setParameter("location", fetchingRoom.getVaVector().getLocation())
+                .setMaxResults(AMOUNT_OF_SONGS)
+                .getResultList();
+    }
+
+    /**
+     * Get songs by id.
+     *
+     * @param ids
+     *            The ids of the songs.
+     * @return The songs that were found.
+     */
+    public List<Song> findByIds(final Collection<Integer> ids) {
+        return query().from(song)
+                .where(song.id.in(ids))
                 .list(song);
     }
 
+    /**
+     * Update the vector of a song with a single UPDATE statement, without merging the entity.
+     *
+     * @param id
+     *            The id of the song.
+     * @param vector
+     *            The new vector of the song.
+     * @return The number of updated rows.
+     */
+    @Transactional
+    public long updateVector(final int id, final VAVector vector) {
+        return new JPAUpdateClause(getManager(), song)
+                .where(song.id.eq(id))
+                .set(song.valenceArousal.location, vector.getLocation())
+                .execute();
+    }
+
+    /**
+     * Update the vectors of several songs in a single transaction. Either all vectors are
+     * updated, or none of them are.
+     *
+     * @param vectors
+     *            The new vectors by song id.
+     */
+    @Transactional
+    public void updateVectors(final Map<Integer, VAVector> vectors) {
+        vectors.forEach(this::updateVector);
+    }
+
 }
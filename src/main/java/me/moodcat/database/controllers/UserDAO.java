@@ -7,24 +7,36 @@ import java.util.List;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 
+import me.moodcat.api.models.UserModel;
 import me.moodcat.database.entities.User;
 
+import com.google.inject.Provider;
 import com.google.inject.persist.Transactional;
+import com.mysema.query.jpa.impl.JPAUpdateClause;
+import com.mysema.query.types.ConstructorExpression;
+import com.mysema.query.types.Projections;
 
 /**
  * Data access object for user entities.
  */
 public class UserDAO extends AbstractDAO<User> {
 
+    /**
+     * Projection of a user into a {@link UserModel}.
+     */
+    private static final ConstructorExpression<UserModel> USER_MODEL = Projections.constructor(
+            UserModel.class, user.id, user.soundCloudUserId, user.name, user.avatarUrl,
+            user.points);
+
     /**
      * Construct a new user data access object.
      *
-     * @param entityManager
-     *            current entity manager
+     * @param entityManagerProvider
+     *            provider of the entity manager of the current unit of work
      */
     @Inject
-    public UserDAO(final EntityManager entityManager) {
-        super(entityManager);
+    public UserDAO(final Provider<EntityManager> entityManagerProvider) {
+        super(entityManagerProvider);
     }
 
     /**
@@ -34,11 +46,9 @@ public class UserDAO extends AbstractDAO<User> {
      *            id for the user
      * @return The user entity
      */
-    @Transactional
     public User findById(final int id) {
-        return ensureExists(query().from(user)
-                .where(user.id.eq(id))
-                .singleResult(user));
+        return ensureFirstResult(namedQuery(User.FIND_BY_ID, User.class)
+                .setParameter("id", id));
     }
 
     /**
@@ -48,7 +58,6 @@ public class UserDAO extends AbstractDAO<User> {
      *            Soundcloud id for the user
      * @return The user entity
      */
-    @Transactional
     public User findBySoundcloudId(final Integer soundCloudId) {
         return ensureExists(query().from(user)
                 .where(user.soundCloudUserId.eq(soundCloudId))
@@ -62,11 +71,9 @@ public class UserDAO extends AbstractDAO<User> {
      *            Soundcloud token for the user
      * @return The user entity
      */
-    @Transactional
     public User findByAccessToken(final String accessToken) {
-        return ensureExists(query().from(user)
-                .where(user.accessToken.eq(accessToken))
-                .singleResult(user));
+        return ensureFirstResult(namedQuery(User.FIND_BY_ACCESS_TOKEN, User.class)
+                .setParameter("accessToken", accessToken));
     }
 
     /**
@@ -74,22 +81,67 @@ public class UserDAO extends AbstractDAO<User> {
      * 
      * @return A list of all users.
      */
-    @Transactional
     public List<User> getAll() {
         return this.query().from(user).list(user);
     }
 
     /**
-     * Updates the user the set amount.
+     * Retrieve all users as models, without loading the entities.
+     *
+     * @return The models of all users.
+     */
+    public List<UserModel> listUserModels() {
+        return readOnlyQuery().from(user)
+                .list(USER_MODEL);
+    }
+
+    /**
+     * Find the model of a user by its id, without loading the entity.
+     *
+     * @param id
+     *            id for the user
+     * @return The model of the user
+     */
+    public UserModel findModelById(final int id) {
+        return ensureExists(readOnlyQuery().from(user)
+                .where(user.id.eq(id))
+                .singleResult(USER_MODEL));
+    }
+
+    /**
+     * Find the points of a user, without loading the entity.
+     *
+     * @param id
+     *            id for the user
+     * @return The amount of points of the user
+     */
+    public Integer findPoints(final int id) {
+        return ensureExists(readOnlyQuery().from(user)
+                .where(user.id.eq(id))
+                .singleResult(user.points));
+    }
+
+    /**
+     * Updates the user the set amount. The points are incremented in the database, so the
+     * user does not have to be loaded, and concurrent increments are not lost.
      * 
-     * @param user
-     *            The user to update.
+     * @param target
+     *            The user to update, only its id is required.
      * @param amount
      *            The amount of points to award the user.
      */
-    public void incrementPoints(final User user, final int amount) {
-        user.increment(amount);
-        this.merge(user);
+    @Transactional
+    public void incrementPoints(final User target, final int amount) {
+        new JPAUpdateClause(getManager(), user)
+                .where(user.id.eq(target.getId()))
+                .set(user.points, user.points.add(amount))
+                .execute();
+
+        if (getManager().contains(target)) {
+            getManager().refresh(target);
+        } else {
+            target.increment(amount);
+        }
     }
 
     /**
@@ -99,7 +151,6 @@ public class UserDAO extends AbstractDAO<User> {
      *            The number of users to retrieve.
      * @return A list of the most awarded users.
      */
-    @Transactional
     public List<User> getLeaderboard(final long limit) {
         return this.query()
                 .from(user)
@@ -108,4 +159,18 @@ public class UserDAO extends AbstractDAO<User> {
                 .list(user);
     }
 
+    /**
+     * Retrieves the models of a list of {limit} users, sorted on their score, without loading
+     * the entities.
+     *
+     * @param limit
+     *            The number of users to retrieve.
+     * @return The models of the most awarded users.
+     */
+    public List<UserModel> getLeaderboardModels(final long limit) {
+        return namedQuery(User.LEADERBOARD, UserModel.class)
+                .setMaxResults((int) limit)
+                .getResultList();
+    }
+
 }
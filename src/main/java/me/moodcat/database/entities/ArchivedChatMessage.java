@@ -0,0 +1,119 @@
+package me.moodcat.database.entities;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * A chat message that was moved out of the {@link ChatMessage chatmessage} table because it is
+ * older than the archive threshold. Archived messages are bucketed by the month in which they
+ * were posted, so that expired months are deleted through the index on the bucket. The author is
+ * stored by id only, so that the archive has no foreign key to the user table.
+ */
+@Data
+@Entity
+@Table(name = "chatmessage_archive", indexes = {
+        @Index(name = "chatmessage_archive_room_id_id_idx", columnList = "room_id, id"),
+        @Index(name = "chatmessage_archive_month_idx", columnList = "room_id, posted_month")
+})
+@ToString(of = {
+        "compoundId", "month"
+})
+@EqualsAndHashCode(of = "compoundId")
+@NoArgsConstructor
+public class ArchivedChatMessage {
+
+    private static final int YEAR_SHIFT = 100;
+
+    /**
+     * The id of the message and the room it was posted in.
+     *
+     * @param compoundId
+     *            The id to set.
+     * @return The id of the message.
+     */
+    @EmbeddedId
+    private ChatMessageEmbeddable compoundId;
+
+    /**
+     * The id of the author.
+     *
+     * @param userId
+     *            The author to set.
+     * @return The id of the user that posted the message.
+     */
+    @Column(name = "user_id", nullable = false)
+    private int userId;
+
+    /**
+     * The actual message.
+     *
+     * @param message
+     *            The message to set.
+     * @return The actual message.
+     */
+    @Column(name = "message", nullable = false)
+    private String message;
+
+    /**
+     * The timestamp the message was posted.
+     *
+     * @param timestamp
+     *            The timestamp to set.
+     * @return The timestamp at which the message was received by the server.
+     */
+    @Column(name = "timestamp", nullable = false)
+    private long timestamp;
+
+    /**
+     * The month in which the message was posted, see {@link #monthOf(long)}.
+     *
+     * @param month
+     *            The month to set.
+     * @return The month as {@code yyyyMM}.
+     */
+    @Column(name = "posted_month", nullable = false)
+    private int month;
+
+    /**
+     * Create the archived copy of a chat message.
+     *
+     * @param chatMessage
+     *            The message to archive.
+     * @return The archived message.
+     */
+    public static ArchivedChatMessage of(final ChatMessage chatMessage) {
+        final ArchivedChatMessage archived = new ArchivedChatMessage();
+        archived.setCompoundId(new ChatMessageEmbeddable(chatMessage.getRoom().getId(),
+                chatMessage.getId()));
+        archived.setUserId(chatMessage.getUser().getId());
+        archived.setMessage(chatMessage.getMessage());
+        archived.setTimestamp(chatMessage.getTimestamp());
+        archived.setMonth(monthOf(chatMessage.getTimestamp()));
+        return archived;
+    }
+
+    /**
+     * Get the bucket of a timestamp.
+     *
+     * @param timestamp
+     *            The timestamp in milliseconds.
+     * @return The month of the timestamp in UTC, as {@code yyyyMM}.
+     */
+    public static int monthOf(final long timestamp) {
+        final ZonedDateTime time = Instant.ofEpochMilli(timestamp).atZone(ZoneOffset.UTC);
+        return time.getYear() * YEAR_SHIFT + time.getMonthValue();
+    }
+
+}
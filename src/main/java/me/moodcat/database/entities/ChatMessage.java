@@ -3,6 +3,7 @@ package me.moodcat.database.entities;
 import javax.persistence.Column;
 import javax.persistence.EmbeddedId;
 import javax.persistence.Entity;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
 import javax.persistence.MapsId;
@@ -15,11 +16,16 @@ import lombok.NonNull;
 import lombok.ToString;
 
 /**
- * A chat message for a room.
+ * A chat message for a room. The history of a room is read through the index on the room and id
+ * of the messages, and expired messages are found through the index on the room and timestamp,
+ * see {@link me.moodcat.database.controllers.ChatDAO}.
  */
 @Data
 @Entity
-@Table(name = "chatmessage")
+@Table(name = "chatmessage", indexes = {
+        @Index(name = "chatmessage_room_id_id_idx", columnList = "room_id, id"),
+        @Index(name = "chatmessage_room_id_timestamp_idx", columnList = "room_id, timestamp")
+})
 @ToString(of = {
         "compoundId", "room", "message", "user"
 })
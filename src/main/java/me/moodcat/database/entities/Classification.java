@@ -24,7 +24,7 @@ import me.moodcat.database.embeddables.VAVector;
 @ToString
 @Table(name = "classification", uniqueConstraints = {
         @UniqueConstraint(name = "UNIQUE_CLASSIFICATION_SONG_USER", columnNames = {
-                "song_id", "user_id", "room_id"
+                "song_id", "user_id"
         })
 })
 @EqualsAndHashCode(of = {
@@ -17,8 +17,10 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
-import javax.persistence.OrderBy;
+import javax.persistence.OrderColumn;
 import javax.persistence.Table;
 
 import lombok.Data;
@@ -26,6 +28,8 @@ import lombok.EqualsAndHashCode;
 import lombok.ToString;
 import me.moodcat.database.embeddables.VAVector;
 
+import com.google.common.collect.ImmutableList;
+
 /**
  * A representation for a room, the room mainly supplies which song is currently listened by users
  * of the room and then position of the room.
@@ -33,12 +37,20 @@ import me.moodcat.database.embeddables.VAVector;
 @Data
 @Entity
 @Table(name = "room")
+@NamedQueries({
+        @NamedQuery(name = Room.FIND_BY_ID, query = "SELECT r FROM Room r WHERE r.id = :id")
+})
 @ToString(of = {
         "id",
 })
 @EqualsAndHashCode(of = "id")
 public class Room {
 
+    /**
+     * Named query that finds a room by its {@code id}.
+     */
+    public static final String FIND_BY_ID = "Room.findById";
+
     /**
      * The unique identifier for the room.
      */
@@ -94,20 +106,29 @@ public class Room {
     private String name;
 
     /**
-     * The songs recently played in the roomProvider&lt;ChatDAO&gt; chatDAOProvider.
+     * The songs recently played in the room. Once the history is full it is used as a ring:
+     * every slot is a row that is overwritten in place, see {@link #addToPlayHistory(Song, int)}.
+     * Use {@link #getOrderedPlayHistory()} to get the songs in the order they were played.
      */
     @ManyToMany(fetch = LAZY, cascade = ALL)
-    @JoinTable(name = "room_play_history", joinColumns = {
+    @JoinTable(name = "room_history", joinColumns = {
             @JoinColumn(name = "room_id", referencedColumnName = "id")
     }, inverseJoinColumns = {
             @JoinColumn(name = "song_id", referencedColumnName = "id")
     })
+    @OrderColumn(name = "slot")
     private List<Song> playHistory;
 
     /**
-     * The chat messages in the room.
+     * The slot of the play history that holds the oldest song, and is overwritten next.
+     */
+    @Column(name = "history_position", columnDefinition = "int4 default 0 not null")
+    private int historyPosition;
+
+    /**
+     * The chat messages in the room. Accessing them loads the whole history of the room, use
+     * {@link me.moodcat.database.controllers.ChatDAO} to read pages of the history instead.
      */
-    @OrderBy("timestamp asc")
     @OneToMany(fetch = LAZY, cascade = ALL, mappedBy = "room")
     private Set<ChatMessage> chatMessages;
 
@@ -121,4 +142,53 @@ public class Room {
         getExclusions().add(exclusion);
     }
 
+    /**
+     * Add a song to the play history. Until the history holds {@code capacity} songs, the song
+     * is appended. After that, the oldest song is replaced, so that a single row changes
+     * instead of the whole history being rewritten.
+     *
+     * @param song
+     *      Song that was played.
+     * @param capacity
+     *      The maximum number of songs in the history.
+     */
+    public void addToPlayHistory(final Song song, final int capacity) {
+        final List<Song> history = getPlayHistory();
+
+        if (history.size() < capacity) {
+            history.add(song);
+            setHistoryPosition(history.size() % capacity);
+        } else {
+            history.set(getHistoryPosition(), song);
+            setHistoryPosition((getHistoryPosition() + 1) % capacity);
+        }
+    }
+
+    /**
+     * Remove all songs from the play history.
+     */
+    public void clearPlayHistory() {
+        getPlayHistory().clear();
+        setHistoryPosition(0);
+    }
+
+    /**
+     * Get the play history in the order the songs were played.
+     *
+     * @return The songs in the history, from the oldest to the most recently played.
+     */
+    public List<Song> getOrderedPlayHistory() {
+        final List<Song> history = getPlayHistory();
+        final int position = getHistoryPosition();
+
+        if (position <= 0 || position >= history.size()) {
+            return ImmutableList.copyOf(history);
+        }
+
+        return ImmutableList.<Song> builder()
+                .addAll(history.subList(position, history.size()))
+                .addAll(history.subList(0, position))
+                .build();
+    }
+
 }
@@ -16,6 +16,8 @@ import javax.persistence.JoinColumn;
 import javax.persistence.JoinTable;
 import javax.persistence.ManyToMany;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
 import lombok.Data;
@@ -28,11 +30,35 @@ import me.moodcat.database.embeddables.VAVector;
 @Data
 @Entity
 @Table(name = "song")
+@NamedQueries({
+        @NamedQuery(name = Song.FIND_BY_ID, query = "SELECT s FROM Song s WHERE s.id = :id"),
+        @NamedQuery(name = Song.FIND_BY_SOUNDCLOUD_ID,
+                query = "SELECT s FROM Song s WHERE s.soundCloudId = :soundCloudId"),
+        @NamedQuery(name = Song.FIND_NEW_FOR_ROOM, query = "SELECT s FROM Song s"
+                + " WHERE :room NOT MEMBER OF s.exclusions"
+                + " ORDER BY distance(s.valenceArousal.location, :location) ASC")
+})
 @EqualsAndHashCode(of = {
         "id"
 })
 public class Song {
 
+    /**
+     * Named query that finds a song by its {@code id}.
+     */
+    public static final String FIND_BY_ID = "Song.findById";
+
+    /**
+     * Named query that finds a song by its {@code soundCloudId}.
+     */
+    public static final String FIND_BY_SOUNDCLOUD_ID = "Song.findBySoundCloudId";
+
+    /**
+     * Named query that orders the songs that are not excluded from a {@code room} by their
+     * distance to a {@code location}.
+     */
+    public static final String FIND_NEW_FOR_ROOM = "Song.findNewForRoom";
+
     /**
      * The unique id of the song.
      *
@@ -7,22 +7,53 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.QueryHint;
 import javax.persistence.Table;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+import org.hibernate.jpa.QueryHints;
+
 /**
  * User entity.
  */
 @Data
 @Entity
 @Table(name = "users")
+@NamedQueries({
+        @NamedQuery(name = User.FIND_BY_ID, query = "SELECT u FROM User u WHERE u.id = :id"),
+        @NamedQuery(name = User.FIND_BY_ACCESS_TOKEN,
+                query = "SELECT u FROM User u WHERE u.accessToken = :accessToken"),
+        @NamedQuery(name = User.LEADERBOARD, query = "SELECT NEW me.moodcat.api.models.UserModel("
+                + "u.id, u.soundCloudUserId, u.name, u.avatarUrl, u.points)"
+                + " FROM User u ORDER BY u.points DESC", hints = {
+                @QueryHint(name = QueryHints.HINT_READONLY, value = "true"),
+                @QueryHint(name = QueryHints.HINT_FLUSH_MODE, value = "MANUAL")
+        })
+})
 @EqualsAndHashCode(of = {
         "id"
 })
 public class User {
 
+    /**
+     * Named query that finds a user by its {@code id}.
+     */
+    public static final String FIND_BY_ID = "User.findById";
+
+    /**
+     * Named query that finds a user by its SoundCloud {@code accessToken}.
+     */
+    public static final String FIND_BY_ACCESS_TOKEN = "User.findByAccessToken";
+
+    /**
+     * Named query that projects the users into models, ordered by their points.
+     */
+    public static final String LEADERBOARD = "User.leaderboard";
+
     private static final int AVATER_URL_MAX_LENGTH = 255;
 
     /**
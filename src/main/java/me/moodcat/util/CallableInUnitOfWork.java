@@ -9,8 +9,8 @@ import java.util.concurrent.Callable;
 
 /**
  * A Callable that is ran in a {@link UnitOfWork}. Used for database interaction in threads outside
- * the servlet and thus not filtered by the {@code PersistFilter}. Assumes the PersistService to
- * be started.
+ * the servlet and thus not filtered by the {@code LazyUnitOfWorkFilter}. Assumes the
+ * PersistService to be started.
  *
  * @param <V>
  *            return type of the unit of work.
@@ -0,0 +1,18 @@
+-- Classifications are unique per song and user, the room is no longer part of the key.
+-- The schema is maintained by hbm2ddl update, which neither removes the old constraint on
+-- (song_id, user_id, room_id) nor reports that the new one cannot be created while duplicates
+-- exist. Run this once against the production database, before deploying.
+BEGIN;
+
+-- Keep the first classification of a song by a user
+DELETE FROM classification c
+    USING classification kept
+    WHERE kept.song_id = c.song_id
+        AND kept.user_id = c.user_id
+        AND kept.id < c.id;
+
+ALTER TABLE classification DROP CONSTRAINT IF EXISTS unique_classification_song_user;
+ALTER TABLE classification
+    ADD CONSTRAINT unique_classification_song_user UNIQUE (song_id, user_id);
+
+COMMIT;
@@ -0,0 +1,194 @@
+package endtoend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.MediaType;
+
+import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.api.models.ClusterNodeModel;
+import me.moodcat.backend.SessionTokens;
+import me.moodcat.backend.cluster.ClusterConfiguration;
+import me.moodcat.backend.cluster.ClusterMembership;
+import me.moodcat.backend.cluster.ConsistentHashRing;
+import me.moodcat.backend.rooms.RoomBackend;
+import me.moodcat.core.App;
+import me.moodcat.database.bootstrapper.Bootstrapper;
+
+import org.hamcrest.Matchers;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.inject.AbstractModule;
+import com.google.inject.name.Names;
+
+/**
+ * Runs a cluster of several apps in this process, and lets a node join after the rooms are
+ * live, so that rooms are handed over.
+ */
+public class ClusterEndToEndTest {
+
+    private static final String SECRET = "secret";
+
+    private static final int SEED_PORT = 8181;
+
+    private static final int MEMBER_PORT = 8182;
+
+    private static final int FIRST_JOINER_PORT = 8183;
+
+    /**
+     * The ids of the rooms in the bootstrap.
+     */
+    private static final int[] ROOM_IDS = { 1, 2, 3 };
+
+    private static final List<App> apps = Lists.newArrayList();
+
+    private static App seed;
+
+    private static App member;
+
+    private static App joiner;
+
+    private static int handedOverRoomId;
+
+    private static ChatMessageModel message;
+
+    @BeforeClass
+    public static void startCluster() throws Exception {
+        final int joinerPort = findJoinerPort();
+
+        seed = startNode(SEED_PORT);
+        // The member is only configured with the seed
+        member = startNode(MEMBER_PORT, SEED_PORT);
+        // The joiner does not announce itself until the rooms are live
+        joiner = startNode(joinerPort);
+
+        final Bootstrapper bootstrapper = seed.getInjector().getInstance(Bootstrapper.class);
+        bootstrapper.parseFromResource("/bootstrap/rooms.json");
+        getRoomBackend(seed).initializeRooms().get();
+        getRoomBackend(member).initializeRooms().get();
+
+        final App owner = getMembership(seed).isLocal(handedOverRoomId) ? seed : member;
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Sent right before the handover");
+        message = getRoomBackend(owner).getRoomInstance(handedOverRoomId)
+                .sendMessage(model, bootstrapper.getUser(1));
+
+        announce(joiner, seed);
+        getRoomBackend(joiner).rebalance().get();
+    }
+
+    @AfterClass
+    public static void stopCluster() {
+        apps.forEach(App::stopServer);
+    }
+
+    @Test
+    public void nodesLearnAboutNodesThatJoinedThroughTheSeed() {
+        final Set<String> nodes = apps.stream()
+                .map(app -> url(app.getPort()))
+                .collect(Collectors.toSet());
+
+        for (final App app : apps) {
+            assertEquals(nodes, getMembership(app).getNodes());
+        }
+    }
+
+    @Test
+    public void handedOverRoomKeepsItsLatestMessages() {
+        assertNotNull(getRoomBackend(joiner).getRoomInstance(handedOverRoomId));
+        assertThat(getRoomBackend(joiner).getRoomInstance(handedOverRoomId).getMessages(),
+                Matchers.hasItem(message));
+    }
+
+    @Test
+    public void previousOwnerClosedHandedOverRoom() {
+        assertNull(getRoomBackend(seed).getRoomInstance(handedOverRoomId));
+        assertNull(getRoomBackend(member).getRoomInstance(handedOverRoomId));
+    }
+
+    /**
+     * Find a port for the joining node, such that it takes over one of the rooms.
+     */
+    private static int findJoinerPort() {
+        for (int port = FIRST_JOINER_PORT;; port++) {
+            final ConsistentHashRing<String> ring = new ConsistentHashRing<>();
+            ring.addAll(ImmutableSet.of(url(SEED_PORT), url(MEMBER_PORT), url(port)));
+
+            for (final int roomId : ROOM_IDS) {
+                if (url(port).equals(ring.get(roomId))) {
+                    handedOverRoomId = roomId;
+                    return port;
+                }
+            }
+        }
+    }
+
+    /**
+     * Announce a node to the seed in the same way as a starting node does.
+     */
+    private static void announce(final App node, final App seedNode) {
+        final Client client = ResteasyClientBuilder.newBuilder().build();
+        try {
+            final List<ClusterNodeModel> nodes = client.target(url(seedNode.getPort()))
+                    .path(ClusterMembership.NODES_PATH)
+                    .request(MediaType.APPLICATION_JSON)
+                    .header(ClusterMembership.SECRET_HEADER, SECRET)
+                    .post(Entity.json(new ClusterNodeModel(url(node.getPort()))),
+                            new GenericType<List<ClusterNodeModel>>() {
+                            });
+            getMembership(node).joinAll(nodes.stream()
+                    .map(ClusterNodeModel::getUrl)
+                    .collect(Collectors.toList()));
+        } finally {
+            client.close();
+        }
+    }
+
+    private static App startNode(final int port, final int... seeds) throws Exception {
+        final ImmutableSet.Builder<String> nodes = ImmutableSet.<String> builder().add(url(port));
+        IntStream.of(seeds).mapToObj(ClusterEndToEndTest::url).forEach(nodes::add);
+        final ClusterConfiguration configuration = new ClusterConfiguration(url(port),
+                nodes.build(), SECRET);
+
+        final App app = new App(port, new AbstractModule() {
+
+            @Override
+            protected void configure() {
+                bind(ClusterConfiguration.class).toInstance(configuration);
+                bindConstant().annotatedWith(Names.named(SessionTokens.SECRET_PROPERTY))
+                        .to(SECRET);
+            }
+        });
+        app.startServer();
+        apps.add(app);
+        return app;
+    }
+
+    private static ClusterMembership getMembership(final App app) {
+        return app.getInjector().getInstance(ClusterMembership.class);
+    }
+
+    private static RoomBackend getRoomBackend(final App app) {
+        return app.getInjector().getInstance(RoomBackend.class);
+    }
+
+    private static String url(final int port) {
+        return String.format("http://localhost:%d", port);
+    }
+
+}
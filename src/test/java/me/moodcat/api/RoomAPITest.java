@@ -2,23 +2,36 @@ package me.moodcat.api;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.ws.rs.NotFoundException;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
 
 import me.moodcat.api.models.ChatMessageModel;
 import me.moodcat.api.models.NowPlaying;
 import me.moodcat.api.models.RoomModel;
 import me.moodcat.api.models.SongModel;
 import me.moodcat.backend.Vote;
+import me.moodcat.backend.rooms.ChatSearchIndex;
 import me.moodcat.backend.rooms.RoomBackend;
 import me.moodcat.backend.rooms.RoomInstance;
-import me.moodcat.database.controllers.RoomDAO;
-import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.backend.rooms.RoomRankingCache;
+import me.moodcat.backend.rooms.RoomRankingCache.RankedRoom;
+import me.moodcat.database.controllers.ChatDAO;
+import me.moodcat.database.entities.ChatMessage;
 import me.moodcat.database.entities.Room;
 import me.moodcat.database.entities.Song;
 import me.moodcat.database.entities.User;
@@ -26,6 +39,8 @@ import me.moodcat.database.entities.User;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
@@ -45,7 +60,13 @@ public class RoomAPITest {
     private RoomBackend roomBackend;
 
     @Mock
-    private RoomDAO roomDAO;
+    private RoomRankingCache roomRankingCache;
+
+    @Mock
+    private ChatDAO chatDAO;
+
+    @Mock
+    private ChatSearchIndex chatSearchIndex;
 
     @Mock
     private Provider<User> currentUserProvider;
@@ -110,9 +131,10 @@ public class RoomAPITest {
         mockRoom(oneRoom, oneRoomInstance);
         mockRoom(otherRoom, otherRoomInstance);
 
-        when(roomDAO.listRooms()).thenReturn(Lists.newArrayList(oneRoom, otherRoom));
-        when(roomDAO.queryRooms(any(VAVector.class), eq(1))).thenReturn(Lists.newArrayList(oneRoom));
-        when(roomDAO.queryRooms(any(VAVector.class), eq(2))).thenReturn(Lists.newArrayList(oneRoom, otherRoom));
+        when(roomRankingCache.getRooms(anyListOf(String.class), eq(1))).thenReturn(
+                Lists.newArrayList(RankedRoom.of(oneRoom)));
+        when(roomRankingCache.getRooms(anyListOf(String.class), eq(2))).thenReturn(
+                Lists.newArrayList(RankedRoom.of(oneRoom), RankedRoom.of(otherRoom)));
     }
 
     private void mockRoom(Room room, RoomInstance roomInstance) {
@@ -147,7 +169,62 @@ public class RoomAPITest {
 
     @Test
     public void retrieveMessages() {
-        assertEquals(messagesList, this.roomAPI.getMessages(1));
+        assertEquals(messagesList, this.roomAPI.getMessages(1, null, 50));
+    }
+
+    @Test
+    public void retrieveMessagesBeforeChatMessage() {
+        when(oneRoomInstance.getMessagesBefore(2, 50)).thenReturn(Lists.newArrayList(message));
+
+        assertEquals(Lists.newArrayList(message), this.roomAPI.getMessages(1, 2, 50));
+    }
+
+    @Test
+    public void retrieveMessagesBeforeChatMessageFromArchive() {
+        final User author = new User();
+        author.setName("Cat");
+        final ChatMessage archived = new ChatMessage();
+        archived.setId(0);
+        archived.setMessage("Miauw");
+        archived.setUser(author);
+
+        when(oneRoomInstance.getMessagesBefore(2, 2)).thenReturn(Lists.newArrayList(message));
+        when(chatDAO.listBefore(1, 1, 1)).thenReturn(Lists.newArrayList(archived));
+
+        assertEquals(Lists.newArrayList(ChatMessageModel.transform(archived), message),
+                this.roomAPI.getMessages(1, 2, 2));
+    }
+
+    @Test
+    public void searchMessagesResolvesCachedAndPersistedMessages() {
+        final User author = new User();
+        author.setName("Cat");
+        final ChatMessage persisted = new ChatMessage();
+        persisted.setId(3);
+        persisted.setMessage("Miauw");
+        persisted.setUser(author);
+
+        when(chatSearchIndex.search(1, "miauw", 20)).thenReturn(Lists.newArrayList(3, 2));
+        when(chatDAO.listByIds(1, Lists.newArrayList(3))).thenReturn(
+                Lists.newArrayList(persisted));
+
+        assertEquals(Lists.newArrayList(ChatMessageModel.transform(persisted), anotherMessage),
+                this.roomAPI.searchMessages(1, "miauw", 20));
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void searchMessagesOfRoomOnOtherNodeIsNotFound() {
+        this.roomAPI.searchMessages(3, "miauw", 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchMessagesRejectsEmptyQuery() {
+        this.roomAPI.searchMessages(1, " ", 20);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void retrieveMessagesBeforeChatMessageRejectsLargeLimit() {
+        this.roomAPI.getMessages(1, 2, 1000);
     }
     
     @Test
@@ -155,6 +232,60 @@ public class RoomAPITest {
         assertEquals(Lists.newArrayList(anotherMessage), this.roomAPI.getMessages(1, 1));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void pollMessagesResumesWithNewMessages() {
+        final AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        final ArgumentCaptor<Consumer> callback = ArgumentCaptor.forClass(Consumer.class);
+
+        this.roomAPI.pollMessages(1, 1, 30, asyncResponse);
+
+        verify(asyncResponse).setTimeout(30, TimeUnit.SECONDS);
+        verify(oneRoomInstance).pollMessages(eq(1), callback.capture());
+
+        callback.getValue().accept(messagesList);
+        verify(asyncResponse).resume(messagesList);
+    }
+
+    @Test
+    public void pollMessagesRegistersTimeoutHandlerBeforeTimeout() {
+        final AsyncResponse asyncResponse = mock(AsyncResponse.class);
+
+        this.roomAPI.pollMessages(1, 1, 30, asyncResponse);
+
+        final InOrder inOrder = inOrder(asyncResponse, oneRoomInstance);
+        inOrder.verify(asyncResponse).setTimeoutHandler(any(TimeoutHandler.class));
+        inOrder.verify(asyncResponse).setTimeout(30, TimeUnit.SECONDS);
+        inOrder.verify(oneRoomInstance).pollMessages(eq(1), any(Consumer.class));
+    }
+
+    @Test
+    public void timeoutBeforePollerIsRegisteredResumesWithoutMessages() {
+        final AsyncResponse asyncResponse = mock(AsyncResponse.class);
+        final ArgumentCaptor<TimeoutHandler> handler = ArgumentCaptor
+                .forClass(TimeoutHandler.class);
+
+        this.roomAPI.pollMessages(1, 1, 30, asyncResponse);
+
+        verify(asyncResponse).setTimeoutHandler(handler.capture());
+        handler.getValue().handleTimeout(asyncResponse);
+        verify(asyncResponse).resume(Collections.emptyList());
+    }
+
+    @Test(expected = NotFoundException.class)
+    public void pollMessagesOfRoomOnOtherNodeIsNotFound() {
+        this.roomAPI.pollMessages(3, 1, 30, mock(AsyncResponse.class));
+    }
+
+    @Test
+    public void pollMessagesLimitsTimeout() {
+        final AsyncResponse asyncResponse = mock(AsyncResponse.class);
+
+        this.roomAPI.pollMessages(1, 1, Integer.MAX_VALUE, asyncResponse);
+
+        verify(asyncResponse).setTimeout(60, TimeUnit.SECONDS);
+    }
+
     @Test
     public void storeMessagePersistsDatabase() {
         message.setMessage("Hello World!");
@@ -0,0 +1,37 @@
+package me.moodcat.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+import me.moodcat.api.models.ConnectionStatisticsModel;
+
+import org.eclipse.jetty.server.ConnectorStatistics;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ServerAPITest {
+
+    @Mock
+    private ConnectorStatistics connectorStatistics;
+
+    @InjectMocks
+    private ServerAPI serverAPI;
+
+    @Test
+    public void reportsConnectionStatistics() {
+        when(connectorStatistics.getConnectionsOpen()).thenReturn(3);
+        when(connectorStatistics.getConnectionsOpenMax()).thenReturn(5);
+        when(connectorStatistics.getConnections()).thenReturn(10);
+        when(connectorStatistics.getMessagesIn()).thenReturn(120);
+        when(connectorStatistics.getMessagesInPerConnectionMean()).thenReturn(12.0);
+        when(connectorStatistics.getConnectionDurationMean()).thenReturn(4000.0);
+
+        assertEquals(new ConnectionStatisticsModel(3, 5, 10, 120, 12.0, 4000.0),
+                serverAPI.getConnections());
+    }
+
+}
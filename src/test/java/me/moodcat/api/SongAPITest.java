@@ -1,19 +1,37 @@
 package me.moodcat.api;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+import javax.persistence.PersistenceException;
+
 import me.moodcat.api.SongAPI.ClassificationRequest;
+import me.moodcat.api.SongAPI.ClassificationResult;
 import me.moodcat.api.SongAPI.InvalidClassificationException;
-import me.moodcat.database.controllers.ClassificationDAO;
+import me.moodcat.api.SongAPI.SongClassification;
+import me.moodcat.api.models.ConsensusModel;
+import me.moodcat.api.models.SongModel;
+import me.moodcat.backend.ClassificationBackend;
+import me.moodcat.backend.ClassificationIndex;
+import me.moodcat.backend.SongSearchIndex;
+import me.moodcat.backend.SongVectorUpdateQueue;
 import me.moodcat.database.controllers.SongDAO;
-import me.moodcat.database.controllers.UserDAO;
 import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Classification;
 import me.moodcat.database.entities.Song;
 import me.moodcat.database.entities.User;
 
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -21,12 +39,14 @@ import org.junit.rules.ExpectedException;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Matchers;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.google.common.collect.Lists;
 import com.google.inject.Provider;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -34,6 +54,8 @@ public class SongAPITest {
 
     private static final int SONG_ID = 1;
 
+    private static final int USER_ID = 2;
+
     private static final int SOUNCLOUD_ID = 25;
     
     @Rule
@@ -43,13 +65,19 @@ public class SongAPITest {
     private SongDAO songDAO;
 
     @Mock
-    private UserDAO userDAO;
+    private Provider<User> currentUserProvider;
 
     @Mock
-    private Provider<User> currentUserProvider;
+    private ClassificationBackend classificationBackend;
+
+    @Mock
+    private SongVectorUpdateQueue songVectorUpdateQueue;
 
     @Mock
-    private ClassificationDAO classificationDAO;
+    private ClassificationIndex classificationIndex;
+
+    @Mock
+    private SongSearchIndex songSearchIndex;
 
     @InjectMocks
     private SongAPI songAPI;
@@ -61,7 +89,10 @@ public class SongAPITest {
     private User user;
 
     @Captor
-    private ArgumentCaptor<VAVector> vectorCaptor;
+    private ArgumentCaptor<UnaryOperator<VAVector>> adjustmentCaptor;
+
+    @Captor
+    private ArgumentCaptor<List<Classification>> classificationsCaptor;
 
     @Before
     public void setUp() {
@@ -74,20 +105,23 @@ public class SongAPITest {
         when(songDAO.findById(Matchers.eq(SONG_ID))).thenReturn(song);
         when(songDAO.findBySoundCloudId(Matchers.eq(SOUNCLOUD_ID))).thenReturn(song);
 
+        when(user.getId()).thenReturn(USER_ID);
         when(currentUserProvider.get()).thenReturn(user);
+        when(classificationBackend.classify(eq(user),
+                Matchers.anyListOf(Classification.class),
+                eq(SongAPI.CLASSIFICATION_POINTS_AWARD)))
+                .thenAnswer(invocation -> invocation.getArguments()[1]);
     }
 
     @Test
     public void classificationUpdatesSong() throws InvalidClassificationException {
-        Mockito.doNothing().when(song).setValenceArousal(vectorCaptor.capture());
-
         final ClassificationRequest request = new ClassificationRequest(1.0, 0.0);
 
         songAPI.classifySong(SOUNCLOUD_ID, request);
 
-        verify(songDAO).merge(song);
-        assertTrue(vectorCaptor.getValue().getValence() > 0.5);
-        assertTrue(vectorCaptor.getValue().getArousal() < 0.5);
+        final VAVector vector = applyQueuedAdjustment();
+        assertTrue(vector.getValence() > 0.5);
+        assertTrue(vector.getArousal() < 0.5);
     }
 
     @Test(expected = InvalidClassificationException.class)
@@ -108,7 +142,7 @@ public class SongAPITest {
         expected.expect(IllegalArgumentException.class);
         expected.expectMessage("Already classified");
         
-        when(classificationDAO.exists(user, song)).thenReturn(true);
+        when(classificationIndex.isClassified(user, song)).thenReturn(true);
         
         songAPI.classifySong(SOUNCLOUD_ID, request);
     }
@@ -117,21 +151,21 @@ public class SongAPITest {
     public void canRetrieveAllSongs() {
         songAPI.getSongs();
 
-        verify(songDAO).listSongs();
+        verify(songDAO).listSongModels();
     }
 
     @Test
     public void canSupplyRandomVectorsForClassification() {
         songAPI.toClassify();
 
-        verify(songDAO).listRandomsongs(anyInt());
+        verify(songDAO).listRandomSongModels(anyInt());
     }
 
     @Test
     public void canRetrieveSongById() {
         songAPI.getSongById(SONG_ID);
 
-        verify(songDAO).findById(SONG_ID);
+        verify(songDAO).findModelById(SONG_ID);
     }
 
     @Test
@@ -140,8 +174,7 @@ public class SongAPITest {
 
         songAPI.approachSong(SOUNCLOUD_ID, request);
 
-        verify(songDAO).merge(song);
-        verify(song).setValenceArousal(eq(new VAVector(1.0, 0.0)));
+        assertEquals(new VAVector(1.0, 0.0), applyQueuedAdjustment());
     }
     
     @Test
@@ -152,8 +185,177 @@ public class SongAPITest {
 
         songAPI.classifySong(SOUNCLOUD_ID, request);
 
-        verify(songDAO).merge(song);
-        verify(song).setValenceArousal(eq(new VAVector(1.0, 0.0)));
+        assertEquals(new VAVector(1.0, 0.0), applyQueuedAdjustment());
+    }
+
+    @Test
+    public void classificationDoesNotMergeSong() throws InvalidClassificationException {
+        songAPI.classifySong(SOUNCLOUD_ID, new ClassificationRequest(1.0, 0.0));
+
+        verify(songDAO, Mockito.never()).merge(song);
+    }
+
+    @Test
+    public void classificationIsRecordedInIndex() throws InvalidClassificationException {
+        songAPI.classifySong(SOUNCLOUD_ID, new ClassificationRequest(1.0, 0.0));
+
+        verify(classificationIndex).record(USER_ID, SONG_ID, new VAVector(1.0, 0.0));
+    }
+
+    @Test
+    public void concurrentClassificationIsRejectedByDatabase()
+            throws InvalidClassificationException {
+        when(classificationBackend.classify(eq(user),
+                Matchers.anyListOf(Classification.class),
+                eq(SongAPI.CLASSIFICATION_POINTS_AWARD)))
+                .thenThrow(new PersistenceException(new ConstraintViolationException(
+                        "Duplicate", new SQLException(), "UNIQUE_CLASSIFICATION_SONG_USER")));
+
+        try {
+            songAPI.classifySong(SOUNCLOUD_ID, new ClassificationRequest(1.0, 0.0));
+            fail("Expected the classification to be rejected");
+        } catch (final IllegalArgumentException e) {
+            assertEquals("Already classified this song", e.getMessage());
+        }
+
+        verify(classificationIndex, Mockito.never()).record(anyInt(), anyInt(),
+                Matchers.any(VAVector.class));
+        verify(songVectorUpdateQueue, Mockito.never()).enqueue(anyInt(), Matchers.any());
+    }
+
+    @Test
+    public void classificationIsRecordedAfterCommit() throws InvalidClassificationException {
+        songAPI.classifySong(SOUNCLOUD_ID, new ClassificationRequest(1.0, 0.0));
+
+        final InOrder inOrder = Mockito.inOrder(classificationBackend, classificationIndex);
+        inOrder.verify(classificationBackend).classify(eq(user),
+                Matchers.anyListOf(Classification.class),
+                eq(SongAPI.CLASSIFICATION_POINTS_AWARD));
+        inOrder.verify(classificationIndex).record(USER_ID, SONG_ID, new VAVector(1.0, 0.0));
+    }
+
+    @Test
+    public void consensusIsReadFromIndex() {
+        final ClassificationIndex.SongAggregate aggregate = new ClassificationIndex.SongAggregate();
+        aggregate.add(1.0, 0.0);
+        aggregate.add(0.0, 1.0);
+        when(classificationIndex.getAggregate(SONG_ID)).thenReturn(aggregate);
+
+        final ConsensusModel consensus = songAPI.getConsensus(SONG_ID);
+
+        assertEquals(0.5, consensus.getValence(), 1e-9);
+        assertEquals(0.5, consensus.getArousal(), 1e-9);
+        assertEquals(2, consensus.getClassifications());
+    }
+
+    @Test
+    public void batchClassificationReportsResultPerItem() {
+        when(songDAO.findBySoundCloudIds(Matchers.anyCollectionOf(Integer.class)))
+                .thenReturn(Lists.newArrayList(song));
+
+        final List<ClassificationResult> results = songAPI.classifySongs(Lists.newArrayList(
+                new SongClassification(SOUNCLOUD_ID, 1.0, 0.0),
+                new SongClassification(SOUNCLOUD_ID + 1, 1.0, 0.0),
+                new SongClassification(SOUNCLOUD_ID, 0.3, 0.0)));
+
+        assertEquals(Lists.newArrayList(
+                new ClassificationResult(SOUNCLOUD_ID, true, null),
+                new ClassificationResult(SOUNCLOUD_ID + 1, false, "Unknown song"),
+                new ClassificationResult(SOUNCLOUD_ID, false, "Invalid classification")),
+                results);
+        verify(songDAO, Mockito.times(1)).findBySoundCloudIds(
+                Matchers.anyCollectionOf(Integer.class));
+    }
+
+    @Test
+    public void batchIsClassifiedInOneTransaction() {
+        final Song otherSong = Mockito.mock(Song.class);
+        when(otherSong.getSoundCloudId()).thenReturn(SOUNCLOUD_ID + 1);
+        when(otherSong.getValenceArousal()).thenReturn(VAVector.ZERO);
+        when(songDAO.findBySoundCloudIds(Matchers.anyCollectionOf(Integer.class)))
+                .thenReturn(Lists.newArrayList(song, otherSong));
+
+        songAPI.classifySongs(Lists.newArrayList(
+                new SongClassification(SOUNCLOUD_ID, 1.0, 0.0),
+                new SongClassification(SOUNCLOUD_ID + 1, 0.5, 0.5)));
+
+        verify(classificationBackend).classify(eq(user), classificationsCaptor.capture(),
+                eq(SongAPI.CLASSIFICATION_POINTS_AWARD));
+        assertEquals(2, classificationsCaptor.getValue().size());
+    }
+
+    @Test
+    public void batchWithoutAcceptedClassificationsRecordsNothing() {
+        when(classificationIndex.isClassified(user, song)).thenReturn(true);
+        when(songDAO.findBySoundCloudIds(Matchers.anyCollectionOf(Integer.class)))
+                .thenReturn(Lists.newArrayList(song));
+
+        final List<ClassificationResult> results = songAPI.classifySongs(Lists.newArrayList(
+                new SongClassification(SOUNCLOUD_ID, 1.0, 0.0)));
+
+        assertEquals("Already classified this song", results.get(0).getError());
+        verify(classificationIndex, Mockito.never()).record(anyInt(), anyInt(),
+                Matchers.any(VAVector.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchIsRequired() {
+        songAPI.classifySongs(null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchIsNotEmpty() {
+        songAPI.classifySongs(Collections.emptyList());
+    }
+
+    @Test
+    public void songIsClassifiedOncePerBatch() {
+        when(songDAO.findBySoundCloudIds(Matchers.anyCollectionOf(Integer.class)))
+                .thenReturn(Lists.newArrayList(song));
+        when(classificationBackend.classify(eq(user),
+                Matchers.anyListOf(Classification.class),
+                eq(SongAPI.CLASSIFICATION_POINTS_AWARD)))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArguments()[1]).subList(0, 1));
+
+        final List<ClassificationResult> results = songAPI.classifySongs(Lists.newArrayList(
+                new SongClassification(SOUNCLOUD_ID, 1.0, 0.0),
+                new SongClassification(SOUNCLOUD_ID, 0.5, 0.0)));
+
+        assertEquals(Lists.newArrayList(
+                new ClassificationResult(SOUNCLOUD_ID, true, null),
+                new ClassificationResult(SOUNCLOUD_ID, false, "Already classified this song")),
+                results);
+        verify(classificationIndex, Mockito.times(1)).record(USER_ID, SONG_ID,
+                new VAVector(1.0, 0.0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchIsLimited() {
+        songAPI.classifySongs(Collections.nCopies(51,
+                new SongClassification(SOUNCLOUD_ID, 1.0, 0.0)));
+    }
+
+    @Test
+    public void searchUsesIndex() {
+        final List<SongModel> songs = Lists.newArrayList(SongModel.transform(song));
+        when(songSearchIndex.search("bea", 10)).thenReturn(songs);
+
+        assertEquals(songs, songAPI.searchSongs("bea", 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchRequiresPrefix() {
+        songAPI.searchSongs(" ", 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void searchIsLimited() {
+        songAPI.searchSongs("bea", SongSearchIndex.MAXIMUM_RESULTS + 1);
+    }
+
+    private VAVector applyQueuedAdjustment() {
+        verify(songVectorUpdateQueue).enqueue(eq(SONG_ID), adjustmentCaptor.capture());
+        return adjustmentCaptor.getValue().apply(song.getValenceArousal());
     }
 
 }
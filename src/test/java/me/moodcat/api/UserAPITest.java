@@ -5,6 +5,7 @@ import static org.mockito.Mockito.when;
 
 import java.util.List;
 
+import me.moodcat.api.models.UserModel;
 import me.moodcat.database.controllers.UserDAO;
 import me.moodcat.database.entities.User;
 
@@ -31,32 +32,25 @@ public class UserAPITest {
     @InjectMocks
     private UserAPI userAPI;
 
-    private List<User> users;
-
-    @Mock
-    private User oneUser;
-
-    @Mock
-    private User anotherUser;
+    private List<UserModel> users;
 
     @Mock
     private User me;
 
     @Before
     public void setUp() {
-        users = Lists.newArrayList();
-        users.add(oneUser);
-        users.add(anotherUser);
-
-        when(oneUser.getId()).thenReturn(1);
+        final UserModel oneUser = new UserModel(1, null, "one", null, 0);
+        final UserModel anotherUser = new UserModel(2, null, "another", null, 0);
+        users = Lists.newArrayList(oneUser, anotherUser);
 
-        when(userDAO.getAll()).thenReturn(users);
-        when(userDAO.findById(1)).thenReturn(oneUser);
-        when(userDAO.getLeaderboard(Matchers.anyLong())).thenReturn(users);
+        when(userDAO.listUserModels()).thenReturn(users);
+        when(userDAO.findModelById(1)).thenReturn(oneUser);
+        when(userDAO.findModelById(4)).thenReturn(new UserModel(4, null, "me", null, 10));
+        when(userDAO.findPoints(4)).thenReturn(10);
+        when(userDAO.getLeaderboardModels(Matchers.anyLong())).thenReturn(users);
 
         when(currentUserProvider.get()).thenReturn(me);
         when(me.getId()).thenReturn(4);
-        when(me.getPoints()).thenReturn(10);
     }
 
     @Test
@@ -12,10 +12,12 @@ import java.io.IOException;
 
 import javax.ws.rs.NotAuthorizedException;
 import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 
+import me.moodcat.backend.SessionTokens;
 import me.moodcat.backend.UserBackend;
 import me.moodcat.core.mappers.NotAuthorizedExceptionMapper;
 import me.moodcat.database.entities.User;
@@ -23,6 +25,7 @@ import me.moodcat.database.entities.User;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -38,6 +41,9 @@ public class AuthorizationFilterTest {
     @Mock
     private UserBackend userBackend;
 
+    @Mock
+    private SessionTokens sessionTokens;
+
     @Mock
     private NotAuthorizedExceptionMapper notAuthorizedExceptionMapper;
 
@@ -91,4 +97,56 @@ public class AuthorizationFilterTest {
         verify(containerRequestContext, never()).setProperty(anyString(), any());
     }
 
+    @Test
+    public void issuesSessionTokenAfterSoundCloudLogin() throws IOException {
+        final User user = mock(User.class);
+        when(userBackend.loginUsingSoundCloud(TOKEN)).thenReturn(user);
+        when(sessionTokens.issue(user)).thenReturn(SessionTokens.PREFIX + "issued");
+
+        this.filter.filter(containerRequestContext);
+
+        final ArgumentCaptor<Object> issued = ArgumentCaptor.forClass(Object.class);
+        verify(containerRequestContext).setProperty(eq(AuthorizationFilter.ISSUED_TOKEN_PROPERTY),
+                issued.capture());
+        when(containerRequestContext.getProperty(AuthorizationFilter.ISSUED_TOKEN_PROPERTY))
+                .thenReturn(issued.getValue());
+
+        final ContainerResponseContext responseContext = mock(ContainerResponseContext.class);
+        @SuppressWarnings("unchecked")
+        final MultivaluedMap<String, Object> headers = mock(MultivaluedMap.class);
+        when(responseContext.getHeaders()).thenReturn(headers);
+
+        this.filter.filter(containerRequestContext, responseContext);
+
+        verify(headers).putSingle(AuthorizationFilter.SESSION_TOKEN_HEADER,
+                SessionTokens.PREFIX + "issued");
+    }
+
+    @Test
+    public void verifiesSessionTokenWithoutSoundCloud() throws IOException {
+        final String sessionToken = SessionTokens.PREFIX + "session";
+        final User user = mock(User.class);
+        when(multiValuedMap.getFirst(AuthorizationFilter.TOKEN_PARAMETER))
+                .thenReturn(sessionToken);
+        when(sessionTokens.verify(sessionToken)).thenReturn(user);
+
+        this.filter.filter(containerRequestContext);
+
+        verify(containerRequestContext).setProperty(anyString(), eq(user));
+        verify(userBackend, never()).loginUsingSoundCloud(anyString());
+    }
+
+    @Test
+    public void filtersInvalidSessionToken() throws IOException {
+        final String sessionToken = SessionTokens.PREFIX + "session";
+        when(multiValuedMap.getFirst(AuthorizationFilter.TOKEN_PARAMETER))
+                .thenReturn(sessionToken);
+        when(sessionTokens.verify(sessionToken))
+                .thenThrow(new NotAuthorizedException("Invalid session token"));
+
+        this.filter.filter(containerRequestContext);
+
+        verify(containerRequestContext).abortWith(response);
+    }
+
 }
@@ -0,0 +1,83 @@
+package me.moodcat.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import me.moodcat.database.DatabaseTestModule;
+import me.moodcat.database.bootstrapper.BootstrapRule;
+import me.moodcat.database.bootstrapper.TestBootstrap;
+import me.moodcat.database.controllers.ClassificationDAO;
+import me.moodcat.database.controllers.UserDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Classification;
+import me.moodcat.database.entities.Song;
+import me.moodcat.database.entities.User;
+
+import org.jukito.JukitoRunner;
+import org.jukito.UseModules;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+
+@RunWith(JukitoRunner.class)
+@UseModules(DatabaseTestModule.class)
+public class ClassificationBackendTest {
+
+    private static final int POINTS = 6;
+
+    @Rule
+    @Inject
+    public BootstrapRule bootstrapRule;
+
+    @Inject
+    private ClassificationBackend classificationBackend;
+
+    @Inject
+    private ClassificationDAO classificationDAO;
+
+    @Inject
+    private UserDAO userDAO;
+
+    @Test
+    @TestBootstrap("/bootstrap/fall-out-boy.json")
+    public void classificationsAndPointsAreStoredTogether() {
+        final User user = bootstrapRule.getUser(1);
+        final Song song = bootstrapRule.getSong(1);
+        final Song otherSong = bootstrapRule.getSong(2);
+        final int points = userDAO.findPoints(user.getId());
+
+        assertEquals(2, classificationBackend.classify(user, Lists.newArrayList(
+                createClassification(user, song), createClassification(user, otherSong)),
+                POINTS).size());
+
+        assertTrue(classificationDAO.exists(user, song));
+        assertTrue(classificationDAO.exists(user, otherSong));
+        assertEquals(points + 2 * POINTS, userDAO.findPoints(user.getId()).intValue());
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/fall-out-boy.json")
+    public void classifiedSongsAwardNoPoints() {
+        final User user = bootstrapRule.getUser(1);
+        final Song song = bootstrapRule.getSong(1);
+        classificationDAO.persist(createClassification(user, song));
+        final int points = userDAO.findPoints(user.getId());
+
+        assertTrue(classificationBackend.classify(user, Lists.newArrayList(
+                createClassification(user, song)), POINTS).isEmpty());
+
+        assertEquals(points, userDAO.findPoints(user.getId()).intValue());
+    }
+
+    private static Classification createClassification(final User user, final Song song) {
+        final Classification classification = new Classification();
+        classification.setUser(user);
+        classification.setSong(song);
+        classification.setValenceArousal(new VAVector(0.5, 0.5));
+        return classification;
+    }
+
+}
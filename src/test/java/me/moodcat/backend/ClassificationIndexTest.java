@@ -0,0 +1,141 @@
+package me.moodcat.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import me.moodcat.backend.ClassificationIndex.SongAggregate;
+import me.moodcat.database.controllers.ClassificationDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Song;
+import me.moodcat.database.entities.User;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.inject.Provider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClassificationIndexTest {
+
+    private static final int SONG_ID = 3;
+
+    private static final int USER_ID = 2;
+
+    @Mock
+    private Provider<ClassificationDAO> classificationDAOProvider;
+
+    @Mock
+    private ClassificationDAO classificationDAO;
+
+    @Mock
+    private UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    @Mock
+    private LifeCycle lifeCycle;
+
+    @Mock
+    private User user;
+
+    @Mock
+    private Song song;
+
+    private ClassificationIndex index;
+
+    @Before
+    public void setUp() {
+        when(classificationDAOProvider.get()).thenReturn(classificationDAO);
+        when(classificationDAO.listAfter(0, 1000)).thenReturn(Collections.emptyList());
+        when(user.getId()).thenReturn(USER_ID);
+        when(song.getId()).thenReturn(SONG_ID);
+
+        index = new ClassificationIndex(classificationDAOProvider, unitOfWorkSchedulingService,
+                lifeCycle);
+    }
+
+    @Test
+    public void recordedClassificationIsClassified() {
+        index.load();
+
+        assertFalse(index.isClassified(user, song));
+        index.record(USER_ID, SONG_ID, new VAVector(1.0, 1.0));
+        assertTrue(index.isClassified(user, song));
+    }
+
+    @Test
+    public void loadedIndexDoesNotQueryDatabase() {
+        index.load();
+
+        index.isClassified(user, song);
+
+        verify(classificationDAO, never()).exists(user, song);
+    }
+
+    @Test
+    public void unloadedIndexChecksDatabase() {
+        when(classificationDAO.exists(user, song)).thenReturn(true);
+
+        assertFalse(index.isLoaded());
+        assertTrue(index.isClassified(user, song));
+    }
+
+    @Test
+    public void loadStreamsUntilBatchIsIncomplete() {
+        index.load();
+
+        verify(classificationDAO).listAfter(0, 1000);
+        assertTrue(index.isLoaded());
+    }
+
+    @Test
+    public void recordedClassificationsAreAggregated() {
+        index.record(USER_ID, SONG_ID, new VAVector(1.0, 1.0));
+        index.record(USER_ID + 1, SONG_ID, new VAVector(0.0, 0.0));
+
+        final SongAggregate aggregate = index.getAggregate(SONG_ID);
+
+        assertEquals(2, aggregate.getCount());
+        assertEquals(new VAVector(0.5, 0.5), aggregate.getConsensus());
+        assertEquals(0.5, aggregate.getVariance(), 1e-9);
+    }
+
+    @Test
+    public void classificationIsRecordedOnce() {
+        index.record(USER_ID, SONG_ID, new VAVector(1.0, 1.0));
+        index.record(USER_ID, SONG_ID, new VAVector(1.0, 1.0));
+
+        assertEquals(1, index.getAggregate(SONG_ID).getCount());
+    }
+
+    @Test
+    public void agreementIncreasesConfidence() {
+        final SongAggregate agreeing = new SongAggregate();
+        final SongAggregate disagreeing = new SongAggregate();
+
+        for (int i = 0; i < 10; i++) {
+            agreeing.add(0.5, 0.5);
+            disagreeing.add(i % 2 == 0 ? 1.0 : -1.0, 0.5);
+        }
+
+        assertTrue(agreeing.getConfidence() > disagreeing.getConfidence());
+        assertEquals(0, new SongAggregate().getConfidence(), 0);
+    }
+
+    @Test
+    public void unknownSongHasEmptyAggregate() {
+        assertEquals(0, index.getAggregate(SONG_ID).getCount());
+        verify(classificationDAO, never()).listAfter(anyInt(), anyLong());
+    }
+
+}
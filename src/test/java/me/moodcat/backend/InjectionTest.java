@@ -1,6 +1,8 @@
 package me.moodcat.backend;
 
+import me.moodcat.backend.rooms.ChatScrollback;
 import me.moodcat.backend.rooms.RoomInstanceFactory;
+import me.moodcat.backend.rooms.RoomJournal;
 import me.moodcat.backend.rooms.SongInstanceFactory;
 import me.moodcat.database.DatabaseTestModule;
 
@@ -13,6 +15,7 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
@@ -50,6 +53,8 @@ public class InjectionTest {
             this.install(new DatabaseTestModule());
             this.bindConstant().annotatedWith(Names.named("thread.pool.size")).to(4);
             this.bind(LifeCycle.class).toInstance(lifeCycle);
+            this.bind(RoomJournal.class).toInstance(Mockito.mock(RoomJournal.class));
+            this.bind(ChatScrollback.class).toInstance(Mockito.mock(ChatScrollback.class));
 
             install(new FactoryModuleBuilder()
                     .build(SongInstanceFactory.class));
@@ -0,0 +1,93 @@
+package me.moodcat.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.ws.rs.NotAuthorizedException;
+
+import me.moodcat.backend.cluster.ClusterConfiguration;
+import me.moodcat.database.entities.User;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class SessionTokensTest {
+
+    private static final String SECRET = "secret";
+
+    private static final ClusterConfiguration STAND_ALONE = ClusterConfiguration.standAlone(8080);
+
+    private SessionTokens sessionTokens;
+
+    private User user;
+
+    @Before
+    public void setUp() {
+        sessionTokens = new SessionTokens(SECRET, STAND_ALONE);
+
+        user = new User();
+        user.setId(42);
+        user.setName("Some|cat");
+    }
+
+    @Test
+    public void verifiesIssuedToken() {
+        final String token = sessionTokens.issue(user);
+        assertTrue(SessionTokens.isSessionToken(token));
+
+        final User verified = sessionTokens.verify(token);
+        assertEquals(user.getId(), verified.getId());
+        assertEquals(user.getName(), verified.getName());
+    }
+
+    @Test
+    public void verifiesTokenOnOtherNodeWithSameSecret() {
+        final String token = sessionTokens.issue(user);
+
+        assertEquals(user.getId(), new SessionTokens(SECRET, STAND_ALONE).verify(token).getId());
+    }
+
+    @Test(expected = NotAuthorizedException.class)
+    public void rejectsTokenOfOtherSecret() {
+        final String token = new SessionTokens("", STAND_ALONE).issue(user);
+
+        sessionTokens.verify(token);
+    }
+
+    @Test(expected = NotAuthorizedException.class)
+    public void rejectsTamperedToken() {
+        final User other = new User();
+        other.setId(1);
+        other.setName(user.getName());
+        final String token = sessionTokens.issue(user);
+        final String forged = sessionTokens.issue(other);
+
+        sessionTokens.verify(forged.substring(0, forged.lastIndexOf('.'))
+                + token.substring(token.lastIndexOf('.')));
+    }
+
+    @Test(expected = NotAuthorizedException.class)
+    public void rejectsExpiredToken() {
+        sessionTokens.verify(sessionTokens.issue(user, System.currentTimeMillis() - 1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void clusteredNodeRequiresSecret() {
+        new SessionTokens("", new ClusterConfiguration("http://localhost:8080",
+                ImmutableSet.of("http://localhost:8080", "http://localhost:8081"), null));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void joinableNodeRequiresSecret() {
+        new SessionTokens("", new ClusterConfiguration("http://localhost:8080",
+                ImmutableSet.of("http://localhost:8080"), "cluster"));
+    }
+
+    @Test(expected = NotAuthorizedException.class)
+    public void rejectsMalformedToken() {
+        sessionTokens.verify(SessionTokens.PREFIX + "nonsense");
+    }
+
+}
@@ -0,0 +1,194 @@
+package me.moodcat.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import me.moodcat.api.models.SongModel;
+import me.moodcat.backend.SongVectorUpdateQueue.SongVectorListener;
+import me.moodcat.database.controllers.SongDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Artist;
+import me.moodcat.database.entities.Song;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.inject.Provider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SongSearchIndexTest {
+
+    @Mock
+    private Provider<SongDAO> songDAOProvider;
+
+    @Mock
+    private SongDAO songDAO;
+
+    @Mock
+    private UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    @Mock
+    private SongVectorUpdateQueue songVectorUpdateQueue;
+
+    @Mock
+    private LifeCycle lifeCycle;
+
+    private SongSearchIndex index;
+
+    @Before
+    public void setUp() {
+        when(songDAOProvider.get()).thenReturn(songDAO);
+        index = new SongSearchIndex(songDAOProvider, unitOfWorkSchedulingService,
+                songVectorUpdateQueue, lifeCycle);
+    }
+
+    @Test
+    public void foldsCaseAccentsAndPunctuation() {
+        assertEquals("beyonce dont hurt", SongSearchIndex.fold("  Beyonc\u00e9   Don't  Hurt! "));
+    }
+
+    @Test
+    public void findsSongByPrefixOfName() {
+        index.add(createSong(1, "Thanks for the Memories", "Fall Out Boy"));
+        index.add(createSong(2, "Thriller", "Michael Jackson"));
+
+        assertEquals(Lists.newArrayList(1), search("than"));
+    }
+
+    @Test
+    public void findsSongByWordOfName() {
+        index.add(createSong(1, "Thanks for the Memories", "Fall Out Boy"));
+
+        assertEquals(Lists.newArrayList(1), search("memo"));
+    }
+
+    @Test
+    public void findsSongByArtist() {
+        index.add(createSong(1, "Thanks for the Memories", "Fall Out Boy"));
+        index.add(createSong(2, "Thriller", "Michael Jackson"));
+
+        assertEquals(Lists.newArrayList(2), search("jack"));
+    }
+
+    @Test
+    public void ignoresAccents() {
+        index.add(createSong(1, "D\u00e9j\u00e0 Vu", "Beyonc\u00e9"));
+
+        assertEquals(Lists.newArrayList(1), search("deja"));
+        assertEquals(Lists.newArrayList(1), search("BEYON"));
+    }
+
+    @Test
+    public void ranksNamesBeforeArtists() {
+        index.add(createSong(1, "Thanks for the Memories", "The Killers"));
+        index.add(createSong(2, "Mr. Brightside", "The Killers"));
+        index.add(createSong(3, "Killer Queen", "Queen"));
+        index.add(createSong(4, "The Killing Moon", "Echo & the Bunnymen"));
+
+        assertEquals(Lists.newArrayList(3, 4, 2, 1), search("kill"));
+    }
+
+    @Test
+    public void ranksShorterNamesFirst() {
+        index.add(createSong(1, "Hello Goodbye", "The Beatles"));
+        index.add(createSong(2, "Hello", "Adele"));
+
+        assertEquals(Lists.newArrayList(2, 1), search("hel"));
+    }
+
+    @Test
+    public void limitsResults() {
+        for (int id = 1; id <= SongSearchIndex.MAXIMUM_RESULTS + 10; id++) {
+            index.add(createSong(id, "Song " + id, "Artist"));
+        }
+
+        assertEquals(5, index.search("song", 5).size());
+        assertEquals(SongSearchIndex.MAXIMUM_RESULTS,
+                index.search("artist", SongSearchIndex.MAXIMUM_RESULTS + 10).size());
+    }
+
+    @Test
+    public void filtersPrefixesLongerThanTrie() {
+        index.add(createSong(1, "Supercalifragilisticexpialidocious Remix", "Julie Andrews"));
+        index.add(createSong(2, "Supercalifragilisticexpialidocious", "Julie Andrews"));
+
+        assertEquals(Lists.newArrayList(1), search("supercalifragilisticexpialidocious r"));
+    }
+
+    @Test
+    public void songsAreIndexedOnce() {
+        final Song song = createSong(1, "Thriller", "Michael Jackson");
+        index.add(song);
+        index.add(song);
+
+        assertEquals(1, index.size());
+        assertEquals(Lists.newArrayList(1), search("thr"));
+    }
+
+    @Test
+    public void loadIndexesCatalogue() {
+        when(songDAO.listSongs()).thenReturn(Lists.newArrayList(
+                createSong(1, "Thriller", "Michael Jackson")));
+
+        index.load();
+
+        assertEquals(Lists.newArrayList(1), search("mich"));
+    }
+
+    @Test
+    public void flushedVectorsAreReturned() {
+        final ArgumentCaptor<SongVectorListener> listener = ArgumentCaptor
+                .forClass(SongVectorListener.class);
+        verify(songVectorUpdateQueue).addListener(listener.capture());
+        index.add(createSong(1, "Thriller", "Michael Jackson"));
+        final SongModel before = index.search("thr", 1).get(0);
+
+        listener.getValue().vectorsUpdated(ImmutableMap.of(1, new VAVector(0.5, -0.25),
+                2, new VAVector(0.1, 0.1)));
+
+        final SongModel after = index.search("thr", 1).get(0);
+        assertEquals(0.5, after.getValence(), 1e-9);
+        assertEquals(-0.25, after.getArousal(), 1e-9);
+        assertEquals("Thriller", after.getName());
+        assertEquals(0.0, before.getValence(), 1e-9);
+    }
+
+    @Test
+    public void unknownPrefixFindsNothing() {
+        index.add(createSong(1, "Thriller", "Michael Jackson"));
+
+        assertTrue(search("xyz").isEmpty());
+        assertTrue(search("!!").isEmpty());
+    }
+
+    private List<Integer> search(final String prefix) {
+        return index.search(prefix, SongSearchIndex.MAXIMUM_RESULTS).stream()
+                .map(SongModel::getId)
+                .collect(Collectors.toList());
+    }
+
+    private static Song createSong(final int id, final String name, final String artistName) {
+        final Artist artist = new Artist();
+        artist.setName(artistName);
+
+        final Song song = new Song();
+        song.setId(id);
+        song.setName(name);
+        song.setArtist(artist);
+        song.setValenceArousal(VAVector.ZERO);
+        return song;
+    }
+
+}
@@ -0,0 +1,154 @@
+package me.moodcat.backend;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.moodcat.database.controllers.SongDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Song;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.inject.Provider;
+import com.google.inject.persist.UnitOfWork;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SongVectorUpdateQueueTest {
+
+    private static final int SONG_ID = 1;
+
+    private static final int MISSING_SONG_ID = 2;
+
+    @Mock
+    private UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    @Mock
+    private Provider<UnitOfWork> unitOfWorkProvider;
+
+    @Mock
+    private UnitOfWork unitOfWork;
+
+    @Mock
+    private Provider<SongDAO> songDAOProvider;
+
+    @Mock
+    private SongDAO songDAO;
+
+    @Mock
+    private LifeCycle lifeCycle;
+
+    private SongVectorUpdateQueue queue;
+
+    private Song song;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        song = new Song();
+        song.setId(SONG_ID);
+        song.setValenceArousal(new VAVector(0.0, 0.0));
+
+        when(unitOfWorkProvider.get()).thenReturn(unitOfWork);
+        when(songDAOProvider.get()).thenReturn(songDAO);
+        when(songDAO.findByIds(any(Collection.class))).thenReturn(Lists.newArrayList(song));
+
+        queue = new SongVectorUpdateQueue(unitOfWorkSchedulingService, unitOfWorkProvider,
+                songDAOProvider, lifeCycle);
+    }
+
+    @Test
+    public void adjustmentsAreCoalescedPerSong() {
+        queue.enqueue(SONG_ID, vector -> vector.add(new VAVector(0.5, 0.0)));
+        queue.enqueue(SONG_ID, vector -> vector.add(new VAVector(0.0, 0.25)));
+
+        assertEquals(1, queue.size());
+
+        final Map<Integer, VAVector> updated = queue.flush();
+
+        verify(songDAO, times(1)).updateVectors(ImmutableMap.of(SONG_ID, new VAVector(0.5, 0.25)));
+        assertEquals(ImmutableMap.of(SONG_ID, new VAVector(0.5, 0.25)), updated);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void adjustmentsForMissingSongsAreDropped() {
+        queue.enqueue(MISSING_SONG_ID, vector -> VAVector.ZERO);
+
+        queue.flush();
+
+        verify(songDAO, never()).updateVectors(anyMapOf(Integer.class, VAVector.class));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void emptyQueueDoesNotQuery() {
+        queue.flush();
+
+        verify(songDAO, never()).updateVectors(anyMapOf(Integer.class, VAVector.class));
+    }
+
+    @Test
+    public void listenersAreNotified() {
+        final AtomicReference<Map<Integer, VAVector>> notified = new AtomicReference<>();
+        queue.addListener(notified::set);
+        queue.enqueue(SONG_ID, vector -> VAVector.ZERO);
+
+        queue.flush();
+
+        assertEquals(ImmutableMap.of(SONG_ID, VAVector.ZERO), notified.get());
+    }
+
+    @Test
+    public void failedFlushQueuesAdjustmentsAgain() {
+        final AtomicReference<Map<Integer, VAVector>> notified = new AtomicReference<>();
+        queue.addListener(notified::set);
+        queue.enqueue(SONG_ID, vector -> vector.add(new VAVector(0.5, 0.0)));
+        doThrow(new IllegalStateException("Rolled back")).when(songDAO)
+                .updateVectors(anyMapOf(Integer.class, VAVector.class));
+
+        try {
+            queue.flush();
+        } catch (final IllegalStateException e) {
+            // Expected, the scheduler logs it
+        }
+        queue.enqueue(SONG_ID, vector -> vector.add(new VAVector(0.0, 0.25)));
+
+        assertNull(notified.get());
+        assertEquals(1, queue.size());
+
+        doNothing().when(songDAO).updateVectors(anyMapOf(Integer.class, VAVector.class));
+        assertEquals(ImmutableMap.of(SONG_ID, new VAVector(0.5, 0.25)), queue.flush());
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void pendingAdjustmentsAreFlushedOnStop() {
+        queue.enqueue(SONG_ID, vector -> VAVector.ZERO);
+
+        queue.lifeCycleStopping(lifeCycle);
+
+        verify(unitOfWork).begin();
+        verify(songDAO).updateVectors(ImmutableMap.of(SONG_ID, VAVector.ZERO));
+        verify(unitOfWork).end();
+    }
+
+}
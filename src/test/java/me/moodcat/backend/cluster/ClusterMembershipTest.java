@@ -0,0 +1,92 @@
+package me.moodcat.backend.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableSet;
+
+public class ClusterMembershipTest {
+
+    private static final String SELF = "http://localhost:8080";
+
+    private static final String OTHER = "http://localhost:8081";
+
+    private ClusterMembership membership;
+
+    private ClusterMembership.MembershipListener listener;
+
+    @Before
+    public void setUp() {
+        membership = new ClusterMembership(new ClusterConfiguration(SELF,
+                ImmutableSet.of(SELF), "secret"));
+        listener = mock(ClusterMembership.MembershipListener.class);
+        when(listener.membershipChanged()).thenReturn(CompletableFuture.completedFuture(null));
+        membership.addListener(listener);
+    }
+
+    @Test
+    public void standAloneOwnsAllRooms() {
+        IntStream.range(0, 100).forEach(id -> assertTrue(membership.isLocal(id)));
+    }
+
+    @Test
+    public void joiningNodeNotifiesListeners() {
+        membership.join(OTHER);
+        membership.join(OTHER);
+
+        verify(listener, times(1)).membershipChanged();
+        assertEquals(ImmutableSet.of(SELF, OTHER), membership.getNodes());
+    }
+
+    @Test
+    public void joinCompletesWhenListenersHandledIt() {
+        final CompletableFuture<Void> rebalanced = new CompletableFuture<>();
+        when(listener.membershipChanged()).thenReturn(rebalanced);
+
+        final CompletableFuture<Void> joined = membership.join(OTHER);
+
+        assertFalse(joined.isDone());
+        rebalanced.complete(null);
+        assertTrue(joined.isDone());
+    }
+
+    @Test
+    public void joiningNodeTakesRooms() {
+        membership.join(OTHER);
+
+        assertTrue(IntStream.range(0, 100).anyMatch(id -> !membership.isLocal(id)));
+        assertTrue(IntStream.range(0, 100).anyMatch(id -> membership.isLocal(id)));
+    }
+
+    @Test
+    public void leavingUnknownNodeDoesNotNotify() {
+        membership.leave(OTHER);
+
+        verify(listener, never()).membershipChanged();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void canNotRemoveSelf() {
+        membership.leave(SELF);
+    }
+
+    @Test
+    public void acceptsOnlyConfiguredSecret() {
+        assertTrue(membership.acceptsSecret("secret"));
+        assertFalse(membership.acceptsSecret("other"));
+        assertFalse(membership.acceptsSecret(null));
+    }
+
+}
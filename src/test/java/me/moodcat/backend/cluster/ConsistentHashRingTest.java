@@ -0,0 +1,127 @@
+package me.moodcat.backend.cluster;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+public class ConsistentHashRingTest {
+
+    private static final int NUMBER_OF_KEYS = 10000;
+
+    private ConsistentHashRing<String> ring;
+
+    @Before
+    public void setUp() {
+        ring = new ConsistentHashRing<>();
+    }
+
+    @Test
+    public void emptyRingHasNoOwner() {
+        assertNull(ring.get(1));
+    }
+
+    @Test
+    public void singleNodeOwnsEverything() {
+        ring.add("a");
+
+        IntStream.range(0, NUMBER_OF_KEYS)
+                .forEach(key -> assertEquals("a", ring.get(key)));
+    }
+
+    @Test
+    public void addingExistingNodeIsNoop() {
+        assertTrue(ring.add("a"));
+        assertFalse(ring.add("a"));
+        assertEquals(1, ring.getNodes().size());
+    }
+
+    @Test
+    public void keysAreSpreadOverNodes() {
+        ring.add("a");
+        ring.add("b");
+        ring.add("c");
+
+        final long ownedByA = IntStream.range(0, NUMBER_OF_KEYS)
+                .filter(key -> "a".equals(ring.get(key)))
+                .count();
+
+        assertTrue(ownedByA > NUMBER_OF_KEYS / 6);
+        assertTrue(ownedByA < NUMBER_OF_KEYS / 2);
+    }
+
+    @Test
+    public void joiningNodeOnlyTakesKeys() {
+        ring.add("a");
+        ring.add("b");
+
+        final Map<Integer, String> before = Maps.newHashMap();
+        IntStream.range(0, NUMBER_OF_KEYS).forEach(key -> before.put(key, ring.get(key)));
+
+        ring.add("c");
+
+        IntStream.range(0, NUMBER_OF_KEYS)
+                .forEach(key -> {
+                    final String owner = ring.get(key);
+                    assertTrue(owner.equals(before.get(key)) || owner.equals("c"));
+                });
+    }
+
+    @Test
+    public void removingNodeReturnsItsKeys() {
+        ring.add("a");
+
+        final Map<Integer, String> before = Maps.newHashMap();
+        IntStream.range(0, NUMBER_OF_KEYS).forEach(key -> before.put(key, ring.get(key)));
+
+        ring.add("b");
+        ring.remove("b");
+
+        IntStream.range(0, NUMBER_OF_KEYS)
+                .forEach(key -> assertEquals(before.get(key), ring.get(key)));
+    }
+
+    @Test
+    public void ownersDoNotDependOnJoinOrder() {
+        final ConsistentHashRing<String> reversed = new ConsistentHashRing<>();
+        ImmutableList.of("a", "b", "c").forEach(ring::add);
+        ImmutableList.of("c", "b", "a").forEach(reversed::add);
+
+        IntStream.range(0, NUMBER_OF_KEYS)
+                .forEach(key -> assertEquals(ring.get(key), reversed.get(key)));
+    }
+
+    @Test
+    public void removingNodeKeepsCollidingPointsOfOtherNode() {
+        final ConsistentHashRing<Object> colliding = new ConsistentHashRing<>();
+        // Both nodes hash onto the same points
+        final Object first = new CollidingNode();
+        final Object second = new CollidingNode();
+        colliding.add(first);
+        colliding.add(second);
+
+        colliding.remove(first);
+
+        IntStream.range(0, NUMBER_OF_KEYS)
+                .forEach(key -> assertEquals(second, colliding.get(key)));
+    }
+
+    private static final class CollidingNode {
+
+        @Override
+        public String toString() {
+            return "node";
+        }
+
+    }
+
+}
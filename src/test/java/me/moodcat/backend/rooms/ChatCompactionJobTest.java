@@ -0,0 +1,134 @@
+package me.moodcat.backend.rooms;
+
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import me.moodcat.backend.UnitOfWorkSchedulingService;
+import me.moodcat.database.controllers.ChatDAO;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.inject.Provider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChatCompactionJobTest {
+
+    private static final int BATCH_SIZE = 10;
+
+    @Mock
+    private UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    @Mock
+    private Provider<ChatDAO> chatDAOProvider;
+
+    @Mock
+    private ChatDAO chatDAO;
+
+    @Mock
+    private RoomBackend roomBackend;
+
+    @Mock
+    private ChatSearchIndex chatSearchIndex;
+
+    @Mock
+    private LifeCycle lifeCycle;
+
+    private ChatCompactionJob job;
+
+    @Before
+    public void setUp() {
+        when(chatDAOProvider.get()).thenReturn(chatDAO);
+        when(roomBackend.getRoomIds()).thenReturn(ImmutableSet.of(1, 2));
+        // Run every unit of work immediately
+        when(unitOfWorkSchedulingService.performInUnitOfWork(any(Runnable.class)))
+                .thenAnswer(invocation -> {
+                    ((Runnable) invocation.getArguments()[0]).run();
+                    return null;
+                });
+
+        job = new ChatCompactionJob(new ChatRetentionConfiguration(TimeUnit.DAYS.toMillis(90),
+                24, BATCH_SIZE, TimeUnit.HOURS.toMillis(1)), unitOfWorkSchedulingService,
+                chatDAOProvider, roomBackend, chatSearchIndex, lifeCycle);
+    }
+
+    @Test
+    public void archivesInBatchesUntilRoomIsCompacted() {
+        when(chatDAO.archive(eq(1), anyLong(), eq(BATCH_SIZE))).thenReturn(ids(1, BATCH_SIZE),
+                ids(BATCH_SIZE + 1, 3));
+
+        job.compact();
+
+        verify(chatDAO, times(2)).archive(eq(1), anyLong(), eq(BATCH_SIZE));
+        verify(chatDAO, times(1)).archive(eq(2), anyLong(), eq(BATCH_SIZE));
+        verify(chatDAO, times(3)).deleteArchived(anyInt(), anyInt(), eq(BATCH_SIZE));
+    }
+
+    @Test
+    public void continuesWithNextRoomWhenBatchFails() {
+        when(chatDAO.archive(eq(1), anyLong(), eq(BATCH_SIZE)))
+                .thenThrow(new IllegalStateException("Lock timeout"));
+
+        job.compact();
+
+        verify(chatDAO).archive(eq(2), anyLong(), eq(BATCH_SIZE));
+    }
+
+    @Test
+    public void compactsAgainAfterPreviousRunFinished() {
+        job.compact();
+        job.compact();
+
+        verify(chatDAO, times(2)).archive(eq(2), anyLong(), eq(BATCH_SIZE));
+    }
+
+    @Test
+    public void compactsAgainAfterErrorEscapedBatch() {
+        when(chatDAO.archive(eq(1), anyLong(), eq(BATCH_SIZE)))
+                .thenThrow(new StackOverflowError())
+                .thenReturn(Lists.newArrayList());
+
+        try {
+            job.compact();
+            fail("The error should escape the batch");
+        } catch (final StackOverflowError e) {
+            // Expected, the scheduler logs it
+        }
+        job.compact();
+
+        verify(chatDAO).archive(eq(2), anyLong(), eq(BATCH_SIZE));
+    }
+
+    @Test
+    public void removesArchivedMessagesFromSearchIndex() {
+        when(chatDAO.archive(eq(1), anyLong(), eq(BATCH_SIZE))).thenReturn(ids(1, 3));
+
+        job.compact();
+
+        verify(chatSearchIndex).removeUpTo(1, 3);
+        verify(chatSearchIndex, never()).removeUpTo(eq(2), anyInt());
+    }
+
+    private static List<Integer> ids(final int first, final int count) {
+        return IntStream.range(first, first + count).boxed().collect(Collectors.toList());
+    }
+
+}
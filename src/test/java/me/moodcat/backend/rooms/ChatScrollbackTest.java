@@ -0,0 +1,132 @@
+package me.moodcat.backend.rooms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.backend.UnitOfWorkSchedulingService;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.google.common.collect.ImmutableList;
+
+public class ChatScrollbackTest {
+
+    private static final int ROOM_ID = 7;
+
+    /**
+     * Small enough that every few messages start a new segment.
+     */
+    private static final int SEGMENT_SIZE = 128;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LifeCycle lifeCycle = Mockito.mock(LifeCycle.class);
+
+    private final UnitOfWorkSchedulingService unitOfWorkSchedulingService = Mockito
+            .mock(UnitOfWorkSchedulingService.class);
+
+    private ChatScrollbackConfiguration configuration;
+
+    private ChatScrollback scrollback;
+
+    @Before
+    public void setUp() {
+        configuration = new ChatScrollbackConfiguration(new File(folder.getRoot(), "chat"),
+                SEGMENT_SIZE, TimeUnit.DAYS.toMillis(1));
+        scrollback = new ChatScrollback(configuration, unitOfWorkSchedulingService, lifeCycle);
+    }
+
+    @After
+    public void tearDown() {
+        scrollback.lifeCycleStopped(lifeCycle);
+    }
+
+    private static ChatMessageInstance createMessage(final int id, final long timestamp) {
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setId(id);
+        model.setTimestamp(timestamp);
+        model.setAuthor("Cat");
+        model.setMessage("Miauw " + id);
+        return new ChatMessageInstance(5, model);
+    }
+
+    private void appendMessages(final int from, final int to, final long timestamp) {
+        for (int id = from; id <= to; id++) {
+            scrollback.append(ROOM_ID, createMessage(id, timestamp));
+        }
+    }
+
+    private static List<Integer> ids(final List<ChatMessageModel> messages) {
+        return messages.stream().map(ChatMessageModel::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void readsMessagesBeforeAcrossSegments() {
+        appendMessages(1, 20, System.currentTimeMillis());
+
+        assertEquals(ImmutableList.of(12, 13, 14, 15, 16, 17, 18, 19),
+                ids(scrollback.getMessagesBefore(ROOM_ID, 20, 8)));
+        assertTrue(folder.getRoot().toPath().resolve("chat").resolve(Integer.toString(ROOM_ID))
+                .toFile().list().length > 1);
+    }
+
+    @Test
+    public void readsRemainingMessagesAtStartOfHistory() {
+        appendMessages(1, 5, System.currentTimeMillis());
+
+        assertEquals(ImmutableList.of(1, 2), ids(scrollback.getMessagesBefore(ROOM_ID, 3, 10)));
+    }
+
+    @Test
+    public void readsMessagesOfUnknownRoomAsEmpty() {
+        assertTrue(scrollback.getMessagesBefore(ROOM_ID + 1, 10, 10).isEmpty());
+    }
+
+    @Test
+    public void readsMessagesAfterRestart() {
+        appendMessages(1, 20, System.currentTimeMillis());
+        scrollback.lifeCycleStopped(lifeCycle);
+
+        scrollback = new ChatScrollback(configuration, unitOfWorkSchedulingService, lifeCycle);
+
+        final List<ChatMessageModel> messages = scrollback.getMessagesBefore(ROOM_ID, 21, 20);
+        assertEquals(20, messages.size());
+        assertEquals(createMessage(20, messages.get(19).getTimestamp()).getModel(),
+                messages.get(19));
+    }
+
+    @Test
+    public void ignoresMessagesThatAreAlreadyAppended() {
+        appendMessages(1, 5, System.currentTimeMillis());
+        appendMessages(3, 6, System.currentTimeMillis());
+
+        assertEquals(ImmutableList.of(1, 2, 3, 4, 5, 6),
+                ids(scrollback.getMessagesBefore(ROOM_ID, 7, 10)));
+    }
+
+    @Test
+    public void expiresSegmentsOlderThanRetention() {
+        appendMessages(1, 10, System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2));
+        appendMessages(11, 12, System.currentTimeMillis());
+
+        scrollback.expire();
+
+        final List<Integer> remaining = ids(scrollback.getMessagesBefore(ROOM_ID, 13, 20));
+        assertTrue(remaining.contains(12));
+        assertTrue(remaining.size() < 12);
+    }
+
+}
@@ -0,0 +1,167 @@
+package me.moodcat.backend.rooms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import me.moodcat.database.controllers.ChatDAO;
+import me.moodcat.database.controllers.ChatDAO.MessageVisitor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.inject.Provider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ChatSearchIndexTest {
+
+    private static final int ROOM_ID = 7;
+
+    private static final int CAPACITY = 8;
+
+    @Mock
+    private Provider<ChatDAO> chatDAOProvider;
+
+    @Mock
+    private ChatDAO chatDAO;
+
+    private ChatSearchIndex index;
+
+    @Before
+    public void setUp() {
+        when(chatDAOProvider.get()).thenReturn(chatDAO);
+        index = new ChatSearchIndex(chatDAOProvider);
+    }
+
+    @Test
+    public void findsMessagesContainingAllWords() {
+        index.add(ROOM_ID, 1, "Hello cat");
+        index.add(ROOM_ID, 2, "Hello dog");
+        index.add(ROOM_ID, 3, "Hello, Cat!");
+
+        assertEquals(ImmutableList.of(3, 1), index.search(ROOM_ID, "cat hello", 10));
+        assertEquals(ImmutableList.of(3, 2, 1), index.search(ROOM_ID, "HELLO", 10));
+        assertTrue(index.search(ROOM_ID, "cat dog", 10).isEmpty());
+        assertTrue(index.search(ROOM_ID, "bird", 10).isEmpty());
+    }
+
+    @Test
+    public void returnsNewestMessagesUpToLimit() {
+        for (int id = 1; id <= 10; id++) {
+            index.add(ROOM_ID, id, "meow");
+        }
+
+        assertEquals(ImmutableList.of(10, 9), index.search(ROOM_ID, "meow", 2));
+    }
+
+    @Test
+    public void searchesRoomsSeparately() {
+        index.add(ROOM_ID, 1, "meow");
+
+        assertTrue(index.search(ROOM_ID + 1, "meow", 10).isEmpty());
+    }
+
+    @Test
+    public void rebuildKeepsMessagesAddedAfterScan() {
+        index.add(ROOM_ID, 5, "meow");
+        when(chatDAO.scanMessages(eq(ROOM_ID), eq(0), anyInt(), any(MessageVisitor.class)))
+                .thenAnswer(invocation -> {
+                    final MessageVisitor visitor = (MessageVisitor) invocation.getArguments()[3];
+                    visitor.visit(1, "meow");
+                    visitor.visit(2, "purr");
+                    return 2;
+                });
+
+        index.rebuild(ROOM_ID);
+
+        assertEquals(ImmutableList.of(5, 1), index.search(ROOM_ID, "meow", 10));
+        assertEquals(ImmutableList.of(2), index.search(ROOM_ID, "purr", 10));
+    }
+
+    @Test
+    public void rebuildOnlyReadsMessagesWithinCapacity() {
+        index = new ChatSearchIndex(chatDAOProvider, CAPACITY);
+        when(chatDAO.findLastId(ROOM_ID)).thenReturn(CAPACITY + 2);
+
+        index.rebuild(ROOM_ID);
+
+        verify(chatDAO).scanMessages(eq(ROOM_ID), eq(2), anyInt(), any(MessageVisitor.class));
+    }
+
+    @Test
+    public void dropsMessagesBeyondCapacity() {
+        index = new ChatSearchIndex(chatDAOProvider, CAPACITY);
+        for (int id = 1; id <= CAPACITY * 2; id++) {
+            index.add(ROOM_ID, id, "meow");
+        }
+        index.add(ROOM_ID, 1, "purr");
+
+        assertEquals(CAPACITY, index.search(ROOM_ID, "meow", CAPACITY * 2).size());
+        assertEquals(Integer.valueOf(CAPACITY + 1),
+                Iterables.getLast(index.search(ROOM_ID, "meow", CAPACITY * 2)));
+        assertTrue(index.search(ROOM_ID, "purr", 10).isEmpty());
+    }
+
+    @Test
+    public void removesArchivedMessages() {
+        index.add(ROOM_ID, 1, "meow");
+        index.add(ROOM_ID, 2, "purr");
+        index.add(ROOM_ID, 3, "meow");
+
+        index.removeUpTo(ROOM_ID, 2);
+
+        assertEquals(ImmutableList.of(3), index.search(ROOM_ID, "meow", 10));
+        assertTrue(index.search(ROOM_ID, "purr", 10).isEmpty());
+    }
+
+    @Test
+    public void postingListRoundTripsLargeGaps() {
+        final PostingList list = new PostingList();
+        final int[] ids = {1, 2, 130, 20000, Integer.MAX_VALUE };
+        for (final int id : ids) {
+            list.add(id);
+        }
+
+        assertArrayEquals(ids, list.toArray());
+        assertTrue(list.getSize() < ids.length * 4);
+    }
+
+    @Test
+    public void postingListIgnoresDuplicateIds() {
+        final PostingList list = new PostingList();
+        list.add(3);
+        list.add(5);
+
+        assertTrue(!list.add(5) && !list.add(3));
+        assertArrayEquals(new int[] {3, 5 }, list.toArray());
+    }
+
+    @Test
+    public void postingListInsertsLateIds() {
+        final PostingList list = new PostingList();
+        list.add(2);
+        list.add(300);
+
+        assertTrue(list.add(1) && list.add(200));
+        assertArrayEquals(new int[] {1, 2, 200, 300 }, list.toArray());
+    }
+
+    @Test
+    public void findsMessageThatWasAddedLate() {
+        index.add(ROOM_ID, 2, "meow");
+        index.add(ROOM_ID, 1, "meow");
+
+        assertEquals(ImmutableList.of(2, 1), index.search(ROOM_ID, "meow", 10));
+    }
+
+}
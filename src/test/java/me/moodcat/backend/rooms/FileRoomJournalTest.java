@@ -0,0 +1,143 @@
+package me.moodcat.backend.rooms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.backend.Vote;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class FileRoomJournalTest {
+
+    private static final int ROOM_ID = 7;
+
+    private static final int SONG_ID = 11;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final LifeCycle lifeCycle = Mockito.mock(LifeCycle.class);
+
+    private RoomSnapshotConfiguration configuration;
+
+    private FileRoomJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        configuration = new RoomSnapshotConfiguration(new File(folder.getRoot(), "rooms.snapshot"),
+                1000, 1000, new File(folder.getRoot(), "rooms.wal"), 1);
+        journal = new FileRoomJournal(configuration, lifeCycle);
+    }
+
+    @After
+    public void tearDown() {
+        journal.lifeCycleStopped(lifeCycle);
+    }
+
+    private static ChatMessageInstance createMessage(final int id) {
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setId(id);
+        model.setTimestamp(1234L);
+        model.setAuthor("Cat");
+        model.setMessage("Miauw " + id);
+        return new ChatMessageInstance(5, model);
+    }
+
+    @Test
+    public void replaysAppendedEntries() throws IOException {
+        journal.append(JournalEntry.song(ROOM_ID, SONG_ID));
+        journal.append(JournalEntry.message(ROOM_ID, createMessage(1)));
+        journal.append(JournalEntry.vote(ROOM_ID, SONG_ID, 5, Vote.DISLIKE));
+        journal.lifeCycleStopped(lifeCycle);
+
+        journal = new FileRoomJournal(configuration, lifeCycle);
+        final List<JournalEntry> entries = journal.replay();
+
+        assertEquals(3, entries.size());
+        assertEquals(SONG_ID, entries.get(0).getSongId());
+        assertEquals(createMessage(1), entries.get(1).getMessage());
+        assertEquals(Vote.DISLIKE, entries.get(2).getVote());
+        assertEquals(ROOM_ID, entries.get(2).getRoomId());
+    }
+
+    @Test
+    public void replaysRotatedJournalUntilDiscarded() throws IOException {
+        journal.append(JournalEntry.song(ROOM_ID, SONG_ID));
+        journal.rotate();
+        journal.append(JournalEntry.song(ROOM_ID, SONG_ID + 1));
+
+        assertEquals(2, journal.replay().size());
+
+        journal.discardRotated();
+        final List<JournalEntry> entries = journal.replay();
+
+        assertEquals(1, entries.size());
+        assertEquals(SONG_ID + 1, entries.get(0).getSongId());
+    }
+
+    @Test
+    public void tornRecordEndsReplay() throws IOException {
+        journal.append(JournalEntry.song(ROOM_ID, SONG_ID));
+        journal.lifeCycleStopped(lifeCycle);
+        Files.write(configuration.getJournalFile().toPath(), new byte[] { 0, 0, 1, 0, 42 },
+                StandardOpenOption.APPEND);
+
+        journal = new FileRoomJournal(configuration, lifeCycle);
+
+        assertEquals(1, journal.replay().size());
+    }
+
+    @Test
+    public void appliesEntriesOnce() {
+        final RoomState state = new RoomState(ROOM_ID, 0, SONG_ID, 1000, 1,
+                ImmutableList.of(createMessage(1)), ImmutableMap.of());
+
+        final RoomState voted = JournalEntry.vote(ROOM_ID, SONG_ID, 5, Vote.LIKE).applyTo(state);
+        assertEquals(ImmutableMap.of(5, Vote.LIKE), voted.getVotes());
+        assertEquals(voted.getVotes(),
+                JournalEntry.vote(ROOM_ID, SONG_ID, 5, Vote.DISLIKE).applyTo(voted).getVotes());
+
+        final RoomState messaged = JournalEntry.message(ROOM_ID, createMessage(2))
+                .applyTo(JournalEntry.message(ROOM_ID, createMessage(1)).applyTo(voted));
+        assertEquals(ImmutableList.of(createMessage(1), createMessage(2)), messaged.getMessages());
+        assertEquals(2, messaged.getLastMessageId());
+
+        final RoomState next = JournalEntry.song(ROOM_ID, SONG_ID + 1).applyTo(messaged);
+        assertEquals(SONG_ID + 1, next.getSongId());
+        assertEquals(0, next.getSongTime());
+        assertTrue(next.getVotes().isEmpty());
+        assertTrue(JournalEntry.vote(ROOM_ID, SONG_ID, 6, Vote.LIKE).applyTo(next).getVotes()
+                .isEmpty());
+    }
+
+    @Test
+    public void appliesMessageThatWasGeneratedButNotCachedInSnapshot() {
+        final RoomState state = new RoomState(ROOM_ID, 0, SONG_ID, 1000, 3,
+                ImmutableList.of(createMessage(1), createMessage(3)), ImmutableMap.of());
+
+        final RoomState replayed = JournalEntry.message(ROOM_ID, createMessage(2)).applyTo(state);
+
+        assertEquals(ImmutableList.of(createMessage(1), createMessage(2), createMessage(3)),
+                replayed.getMessages());
+        assertEquals(3, replayed.getLastMessageId());
+        assertEquals(replayed.getMessages(), JournalEntry.message(ROOM_ID, createMessage(3))
+                .applyTo(replayed).getMessages());
+    }
+
+}
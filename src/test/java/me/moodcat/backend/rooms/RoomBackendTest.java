@@ -1,19 +1,24 @@
 package me.moodcat.backend.rooms;
 
-import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
-import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import com.google.common.collect.Lists;
@@ -23,6 +28,8 @@ import me.moodcat.api.models.ChatMessageModel;
 import me.moodcat.backend.BackendTest;
 import me.moodcat.backend.UnitOfWorkSchedulingService;
 import me.moodcat.backend.Vote;
+import me.moodcat.backend.cluster.ClusterConfiguration;
+import me.moodcat.database.controllers.ChatDAO;
 import me.moodcat.database.controllers.RoomDAO;
 import me.moodcat.database.controllers.SongDAO;
 import me.moodcat.database.controllers.UserDAO;
@@ -57,6 +64,20 @@ public class RoomBackendTest extends BackendTest {
 
     private static SongDAO songDAO = mock(SongDAO.class);
 
+    private static ChatDAO chatDAO = mock(ChatDAO.class);
+
+    private static RoomJournal roomJournal = mock(RoomJournal.class);
+
+    private static ChatScrollback chatScrollback = mock(ChatScrollback.class);
+
+    private static ChatSearchIndex chatSearchIndex = mock(ChatSearchIndex.class);
+
+    private static final File SNAPSHOT_FILE = new File("target/rooms-test.snapshot");
+
+    private static final File JOURNAL_FILE = new File("target/rooms-test.wal");
+
+    private static final long SNAPSHOT_INTERVAL = 60000;
+
     public static class RoomBackendTestModule extends AbstractModule {
 
         @Override
@@ -65,7 +86,14 @@ public class RoomBackendTest extends BackendTest {
             bind(SongDAO.class).toInstance(songDAO);
             bind(RoomDAO.class).toInstance(roomDAO);
             bind(UserDAO.class).toInstance(userDAO);
+            bind(ChatDAO.class).toInstance(chatDAO);
             bind(UnitOfWorkSchedulingService.class).to(MockedUnitOfWorkSchedulingService.class);
+            bind(RoomJournal.class).toInstance(roomJournal);
+            bind(ChatScrollback.class).toInstance(chatScrollback);
+            bind(ChatSearchIndex.class).toInstance(chatSearchIndex);
+            bind(ClusterConfiguration.class).toInstance(ClusterConfiguration.standAlone(8080));
+            bind(RoomSnapshotConfiguration.class).toInstance(new RoomSnapshotConfiguration(
+                    SNAPSHOT_FILE, SNAPSHOT_INTERVAL, SNAPSHOT_INTERVAL, JOURNAL_FILE, 1));
         }
     }
 
@@ -86,6 +114,9 @@ public class RoomBackendTest extends BackendTest {
     @Inject
     private RoomBackend roomBackend;
 
+    @Inject
+    private RoomSnapshotStore roomSnapshotStore;
+
     private ArrayList<ChatMessageModel> messages;
 
     private List<Song> songHistory;
@@ -126,6 +157,7 @@ public class RoomBackendTest extends BackendTest {
 
         when(userDAO.findById(user.getId())).thenReturn(user);
         when(roomDAO.listRooms()).thenReturn(rooms);
+        reset(chatDAO);
         when(roomDAO.findById(room.getId())).thenReturn(room);
 
         when(songDAO.findForDistance(eq(roomVector), Matchers.anyLong())).thenReturn(songFuture);
@@ -136,6 +168,7 @@ public class RoomBackendTest extends BackendTest {
     @After
     public void tearDown() {
         unitOfWorkSchedulingService.shutdownNow();
+        SNAPSHOT_FILE.delete();
     }
 
     @Test
@@ -143,6 +176,16 @@ public class RoomBackendTest extends BackendTest {
         assertNotNull(roomBackend);
     }
 
+    @Test
+    public void initializingAgainKeepsRoomInstance() throws ExecutionException,
+            InterruptedException {
+        final RoomInstance instance = roomBackend.getRoomInstance(1);
+
+        CompletableFuture.allOf(roomBackend.initializeRooms(), roomBackend.rebalance()).get();
+
+        assertSame(instance, roomBackend.getRoomInstance(1));
+    }
+
     @Test
     public void canSendMessage() {
         final RoomInstance instance = roomBackend.getRoomInstance(1);
@@ -183,8 +226,7 @@ public class RoomBackendTest extends BackendTest {
         chatMessage.setCompoundId(new ChatMessageEmbeddable(room.getId(), model.getId()));
         chatMessage.setUser(user);
 
-        verify(roomDAO, atLeast(1)).merge(eq(room));
-        assertThat(room.getChatMessages(), contains(chatMessage));
+        verify(chatDAO).persist(eq(chatMessage));
     }
 
     @Test
@@ -223,4 +265,49 @@ public class RoomBackendTest extends BackendTest {
         verify(song1, never()).addExclusionRoom(room);
     }
 
+    @Test
+    public void writesSnapshotOfRooms() {
+        final RoomInstance instance = roomBackend.getRoomInstance(1);
+        instance.sendMessage(chatMessage, user);
+        instance.addVote(user, Vote.LIKE);
+
+        roomBackend.writeSnapshot();
+        final Map<Integer, RoomState> snapshot = roomSnapshotStore.read();
+
+        assertEquals(song1.getId().intValue(), snapshot.get(1).getSongId());
+        assertEquals(chatMessage.getId().intValue(), snapshot.get(1).getLastMessageId());
+        assertEquals(Vote.LIKE, snapshot.get(1).getVotes().get(user.getId()));
+    }
+
+    @Test
+    public void replaysJournalWithoutSnapshot() {
+        final ChatMessageModel model = createChatMessage(user);
+        model.setId(5);
+        final ChatMessageInstance message = new ChatMessageInstance(user.getId(), model);
+        when(roomJournal.replay()).thenReturn(Lists.newArrayList(
+                JournalEntry.message(room.getId(), message)));
+
+        try {
+            final RoomState state = roomBackend.readSnapshot().get(room.getId());
+
+            assertNotNull(state);
+            assertEquals(Lists.newArrayList(message), state.getMessages());
+            assertEquals(5, state.getLastMessageId());
+        } finally {
+            reset(roomJournal);
+        }
+    }
+
+    @Test
+    public void failedSnapshotDoesNotThrow() throws IOException {
+        doThrow(new IllegalStateException("Journal closed")).when(roomJournal).rotate();
+
+        try {
+            roomBackend.writeSnapshot();
+            verify(roomJournal, never()).discardRotated();
+        } finally {
+            reset(roomJournal);
+        }
+    }
+
 }
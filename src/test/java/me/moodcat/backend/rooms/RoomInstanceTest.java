@@ -1,14 +1,28 @@
 package me.moodcat.backend.rooms;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import me.moodcat.api.ProfanityChecker;
@@ -16,9 +30,11 @@ import me.moodcat.api.models.ChatMessageModel;
 import me.moodcat.backend.BackendTest;
 import me.moodcat.backend.UnitOfWorkSchedulingService;
 import me.moodcat.backend.Vote;
+import me.moodcat.database.controllers.ChatDAO;
 import me.moodcat.database.controllers.RoomDAO;
 import me.moodcat.database.controllers.SongDAO;
 import me.moodcat.database.controllers.UserDAO;
+import me.moodcat.database.entities.ChatMessage;
 import me.moodcat.database.entities.Room;
 import me.moodcat.database.entities.Song;
 import me.moodcat.database.entities.User;
@@ -31,9 +47,12 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
@@ -48,6 +67,16 @@ public class RoomInstanceTest extends BackendTest {
 
     private static SongDAO songDAO = Mockito.mock(SongDAO.class);
 
+    private static ChatDAO chatDAO = Mockito.mock(ChatDAO.class);
+
+    private static RoomJournal roomJournal = Mockito.mock(RoomJournal.class);
+
+    private static ChatScrollback chatScrollback = Mockito.mock(ChatScrollback.class);
+
+    private static ChatSearchIndex chatSearchIndex = Mockito.mock(ChatSearchIndex.class);
+
+    private static RoomRankingCache roomRankingCache = Mockito.mock(RoomRankingCache.class);
+
     public static class RoomInstanceTestModule extends AbstractModule {
 
         @Override
@@ -56,8 +85,13 @@ public class RoomInstanceTest extends BackendTest {
             bind(SongDAO.class).toInstance(songDAO);
             bind(RoomDAO.class).toInstance(roomDAO);
             bind(UserDAO.class).toInstance(userDAO);
+            bind(ChatDAO.class).toInstance(chatDAO);
             bind(ProfanityChecker.class).toInstance(Mockito.mock(ProfanityChecker.class));
             bind(UnitOfWorkSchedulingService.class).to(MockedUnitOfWorkSchedulingService.class);
+            bind(RoomJournal.class).toInstance(roomJournal);
+            bind(ChatScrollback.class).toInstance(chatScrollback);
+            bind(ChatSearchIndex.class).toInstance(chatSearchIndex);
+            bind(RoomRankingCache.class).toInstance(roomRankingCache);
         }
     }
 
@@ -69,6 +103,9 @@ public class RoomInstanceTest extends BackendTest {
     @Inject
     private MockedUnitOfWorkSchedulingService unitOfWorkSchedulingService;
 
+    @Inject
+    private RoomInstanceInUnitOfWorkFactory roomInstanceInUnitOfWorkFactory;
+
     private Song song;
 
     private Room room;
@@ -83,6 +120,7 @@ public class RoomInstanceTest extends BackendTest {
 
         when(roomDAO.findById(room.getId())).thenReturn(room);
         when(userDAO.findById(user.getId())).thenReturn(user);
+        Mockito.reset(chatScrollback, roomRankingCache);
 
         instance = roomInstanceFactory.create(room);
     }
@@ -103,6 +141,81 @@ public class RoomInstanceTest extends BackendTest {
 
         assertThat(instance.getMessages(),
                 Matchers.iterableWithSize(RoomInstance.MAXIMAL_NUMBER_OF_CHAT_MESSAGES));
+        verify(chatScrollback).append(eq(room.getId()), any(ChatMessageInstance.class));
+    }
+
+    @Test
+    public void messageThatIsNotDurableIsNotSent() {
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Lost");
+        Mockito.doThrow(new UncheckedIOException(new IOException("Disk full")))
+                .when(roomJournal).append(any(JournalEntry.class));
+
+        try {
+            instance.sendMessage(model, createUser());
+            fail("Expected the message to fail");
+        } catch (final UncheckedIOException e) {
+            assertTrue(instance.getMessages().isEmpty());
+        } finally {
+            Mockito.reset(roomJournal);
+        }
+    }
+
+    @Test
+    public void concurrentMessagesAreAddedInIdOrder() throws InterruptedException {
+        // Messages with an odd id become durable after the next message
+        Mockito.doAnswer(invocation -> {
+            final JournalEntry entry = (JournalEntry) invocation.getArguments()[0];
+            if (entry.getMessage() != null && entry.getMessage().getId() % 2 == 1) {
+                Thread.sleep(5);
+            }
+            return null;
+        }).when(roomJournal).append(any(JournalEntry.class));
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            IntStream.range(0, 80).forEach(i -> executor.execute(() -> {
+                final ChatMessageModel model = new ChatMessageModel();
+                model.setMessage(String.valueOf(i));
+                instance.sendMessage(model, createUser());
+            }));
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+            final List<Integer> ids = instance.getMessages().stream()
+                    .map(ChatMessageModel::getId)
+                    .collect(Collectors.toList());
+            assertEquals(IntStream.rangeClosed(1, 80).boxed().collect(Collectors.toList()), ids);
+        } finally {
+            Mockito.reset(roomJournal);
+        }
+    }
+
+    @Test
+    public void sentMessagesAreIndexed() {
+        ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Hello moodcat");
+
+        instance.sendMessage(model, createUser());
+
+        verify(chatSearchIndex).add(room.getId(), model.getId(), "Hello moodcat");
+    }
+
+    @Test
+    public void getMessagesBeforeReadsOlderMessagesFromScrollback() {
+        final List<ChatMessageModel> sent = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            ChatMessageModel model = new ChatMessageModel();
+            model.setMessage(String.valueOf(i));
+            sent.add(instance.sendMessage(model, createUser()));
+        }
+
+        final ChatMessageModel older = new ChatMessageModel();
+        when(chatScrollback.getMessagesBefore(room.getId(), sent.get(0).getId(), 2))
+                .thenReturn(Lists.newArrayList(older));
+
+        assertEquals(Lists.newArrayList(older, sent.get(0), sent.get(1)),
+                instance.getMessagesBefore(sent.get(2).getId(), 4));
     }
 
     @Test(expected = IllegalArgumentException.class)
@@ -151,6 +264,35 @@ public class RoomInstanceTest extends BackendTest {
         assertEquals(newSong, room.getCurrentSong());
     }
 
+    @Test
+    public void songChangeUpdatesRoomRanking() throws ExecutionException, InterruptedException {
+        stubFindForDistance(room, createSong());
+
+        instance.playNext().get();
+
+        verify(roomRankingCache).roomChanged(room);
+    }
+
+    @Test
+    public void lateMessageIsPersistedAfterNewerMessage() {
+        Mockito.reset(chatDAO);
+        final List<ChatMessageInstance> messages = Stream.of(1, 3, 2)
+                .map(id -> {
+                    final ChatMessageModel model = createChatMessage(user);
+                    model.setId(id);
+                    return new ChatMessageInstance(user.getId(), model);
+                })
+                .collect(Collectors.toList());
+        when(chatDAO.findPersistedIds(room.getId(), ImmutableList.of(1, 3, 2)))
+                .thenReturn(ImmutableSet.of(1, 3));
+
+        roomInstanceInUnitOfWorkFactory.create(room.getId()).persistMessages(messages);
+
+        final ArgumentCaptor<ChatMessage> persisted = ArgumentCaptor.forClass(ChatMessage.class);
+        verify(chatDAO).persist(persisted.capture());
+        assertEquals(2, persisted.getValue().getId());
+    }
+
     @Test
     public void testScheduleResults() throws ExecutionException, InterruptedException {
         Song newSong = createSong(2);
@@ -175,7 +317,7 @@ public class RoomInstanceTest extends BackendTest {
                 .limit(RoomInstance.NUMBER_OF_SELECTED_SONGS)
                 .iterator());
 
-        room.setPlayHistory(history);
+        room.setPlayHistory(Lists.newArrayList(history));
 
         Song newSong = createSong();
         stubFindForDistance(room, newSong);
@@ -190,26 +332,167 @@ public class RoomInstanceTest extends BackendTest {
                 .concat(history.stream().skip(1), Stream.of(song))
                 .collect(Collectors.toList());
 
-        assertEquals(expectedHistory, room.getPlayHistory());
+        assertEquals(expectedHistory, room.getOrderedPlayHistory());
         assertThat(room.getPlayQueue(), Matchers.empty());
         assertEquals(newSong, room.getCurrentSong());
     }
 
+    @Test
+    public void testPrefetchFillsQueue() throws ExecutionException, InterruptedException {
+        Song newSong = createSong(2);
+        stubFindForDistance(room, newSong);
+
+        instance.prefetchNextSong().get();
+
+        assertThat(room.getPlayQueue(), Matchers.contains(newSong));
+        assertEquals(song, room.getCurrentSong());
+    }
+
+    @Test
+    public void testPlayPrefetchedSong() throws ExecutionException, InterruptedException {
+        Song newSong = createSong(2);
+        stubFindForDistance(room, newSong);
+        when(songDAO.findById(newSong.getId())).thenReturn(newSong);
+
+        instance.prefetchNextSong().get();
+        final Future<?> persisted = instance.playNext();
+
+        // The prefetched song plays before the switch is persisted
+        assertEquals(newSong, instance.getCurrentSong());
+
+        persisted.get();
+        instance.merge().get();
+
+        assertThat(room.getPlayHistory(), Matchers.contains(song));
+        assertThat(room.getPlayQueue(), Matchers.empty());
+        assertEquals(newSong, room.getCurrentSong());
+    }
+
+    @Test
+    public void testVotesAreResetForPrefetchedSong() throws ExecutionException,
+            InterruptedException {
+        Song newSong = createSong(2);
+        stubFindForDistance(room, newSong);
+        when(songDAO.findById(newSong.getId())).thenReturn(newSong);
+
+        instance.prefetchNextSong().get();
+        instance.addVote(user, Vote.LIKE);
+        instance.playNext().get();
+
+        assertEquals(0, instance.getLikes());
+    }
+
     private void stubFindForDistance(Room room, Song... songs) {
         when(songDAO.findNewSongsFor(room)).thenReturn(Lists.newArrayList(songs));
     }
 
     @Test
     public void testVote() {
-        User user = Mockito.mock(User.class);
         instance.addVote(user, Vote.LIKE);
+        instance.addVote(createUser(), Vote.DISLIKE);
+        instance.addVote(createUser(), Vote.LIKE);
+
+        assertEquals(2, instance.getLikes());
+        assertEquals(1, instance.getDislikes());
     }
 
     @Test(expected = IllegalArgumentException.class)
     public void testDuplicateVote() {
-        User user = Mockito.mock(User.class);
         instance.addVote(user, Vote.LIKE);
         instance.addVote(user, Vote.DISLIKE);
     }
 
+    @Test
+    public void testVotesAreResetForNextSong() throws ExecutionException, InterruptedException {
+        stubFindForDistance(room, createSong());
+        instance.addVote(user, Vote.LIKE);
+
+        instance.playNext().get();
+
+        assertEquals(0, instance.getLikes());
+    }
+
+    @Test
+    public void pollerReceivesNewMessage() throws Exception {
+        final CompletableFuture<List<ChatMessageModel>> future = new CompletableFuture<>();
+        instance.pollMessages(0, future::complete);
+
+        assertFalse(future.isDone());
+
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Hello");
+        instance.sendMessage(model, user);
+
+        assertEquals(Lists.newArrayList(model), future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void pollerReceivesExistingNewerMessages() throws Exception {
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Hello");
+        instance.sendMessage(model, user);
+
+        final CompletableFuture<List<ChatMessageModel>> future = new CompletableFuture<>();
+        instance.pollMessages(model.getId() - 1, future::complete);
+
+        assertEquals(Lists.newArrayList(model), future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledPollerIsNotNotified() throws Exception {
+        final CompletableFuture<List<ChatMessageModel>> future = new CompletableFuture<>();
+        assertTrue(instance.pollMessages(0, future::complete).cancel());
+
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Hello");
+        instance.sendMessage(model, user);
+
+        assertFalse(future.isDone());
+    }
+
+    @Test
+    public void pollerIsNotifiedWithoutUnitOfWork() throws Exception {
+        final CompletableFuture<List<ChatMessageModel>> future = new CompletableFuture<>();
+        instance.pollMessages(0, future::complete);
+        unitOfWorkSchedulingService.shutdownNow();
+
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Hello");
+        instance.sendMessage(model, user);
+
+        assertEquals(Lists.newArrayList(model), future.getNow(null));
+    }
+
+    @Test
+    public void restoresStateFromSnapshot() {
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setMessage("Hello");
+        instance.sendMessage(model, user);
+        instance.addVote(user, Vote.LIKE);
+
+        final RoomState state = instance.snapshot();
+        final RoomInstance restored = roomInstanceFactory.create(room, state);
+
+        assertEquals(instance.getMessages(), restored.getMessages());
+        assertEquals(1, restored.getLikes());
+        assertThat(restored.getCurrentTime(), Matchers.greaterThanOrEqualTo(state.getSongTime()));
+
+        final ChatMessageModel next = new ChatMessageModel();
+        next.setMessage("Again");
+        restored.sendMessage(next, user);
+        assertEquals(model.getId() + 1, next.getId().intValue());
+    }
+
+    @Test
+    public void doesNotRestoreVotesForAnotherSong() {
+        final RoomState state = new RoomState(room.getId(), System.currentTimeMillis(),
+                song.getId() + 1, TimeUnit.SECONDS.toMillis(10), 0, ImmutableList.of(),
+                ImmutableMap.of(user.getId(), Vote.LIKE));
+
+        final RoomInstance restored = roomInstanceFactory.create(room, state);
+
+        assertEquals(0, restored.getLikes());
+        assertEquals(0, restored.getCurrentTime());
+    }
+
 }
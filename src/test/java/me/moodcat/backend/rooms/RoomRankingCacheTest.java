@@ -0,0 +1,117 @@
+package me.moodcat.backend.rooms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import me.moodcat.api.Mood;
+import me.moodcat.backend.UnitOfWorkSchedulingService;
+import me.moodcat.backend.rooms.RoomRankingCache.RankedRoom;
+import me.moodcat.database.controllers.RoomDAO;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Room;
+
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Provider;
+
+@RunWith(MockitoJUnitRunner.class)
+public class RoomRankingCacheTest {
+
+    @Mock
+    private Provider<RoomDAO> roomDAOProvider;
+
+    @Mock
+    private RoomDAO roomDAO;
+
+    @Mock
+    private UnitOfWorkSchedulingService unitOfWorkSchedulingService;
+
+    @Mock
+    private LifeCycle lifeCycle;
+
+    private RoomRankingCache cache;
+
+    private Room happyRoom;
+
+    private Room angryRoom;
+
+    @Before
+    public void setUp() {
+        happyRoom = createRoom(1, Mood.HAPPY.getVector());
+        angryRoom = createRoom(2, Mood.ANGRY.getVector());
+
+        when(roomDAOProvider.get()).thenReturn(roomDAO);
+        when(roomDAO.listRooms()).thenReturn(Lists.newArrayList(happyRoom, angryRoom));
+
+        cache = new RoomRankingCache(roomDAOProvider, unitOfWorkSchedulingService, lifeCycle);
+    }
+
+    private static Room createRoom(final int id, final VAVector vector) {
+        final Room room = new Room();
+        room.setId(id);
+        room.setName("Room " + id);
+        room.setVaVector(vector);
+        return room;
+    }
+
+    private static List<Integer> ids(final List<RankedRoom> rooms) {
+        return rooms.stream().map(RankedRoom::getId).collect(Collectors.toList());
+    }
+
+    @Test
+    public void roomsAreSortedByDistance() {
+        assertEquals(Arrays.asList(1, 2), ids(cache.getRooms(Arrays.asList("Happy"), 2)));
+        assertEquals(Arrays.asList(2, 1), ids(cache.getRooms(Arrays.asList("Angry"), 2)));
+    }
+
+    @Test
+    public void resultIsLimited() {
+        assertEquals(Arrays.asList(1), ids(cache.getRooms(Arrays.asList("Happy"), 1)));
+        assertEquals(Collections.emptyList(), cache.getRooms(Arrays.asList("Happy"), 0));
+    }
+
+    @Test
+    public void rankingsAreMemoizedPerMoodSet() {
+        final List<RankedRoom> first = cache.getRooms(Arrays.asList("Happy", "Calm"), 2);
+        final List<RankedRoom> second = cache.getRooms(Arrays.asList("Calm", "Happy"), 2);
+
+        assertSame(first.get(0), second.get(0));
+        verify(roomDAO, times(1)).listRooms();
+    }
+
+    @Test
+    public void changedRoomInvalidatesRankings() {
+        assertEquals(Arrays.asList(1, 2), ids(cache.getRooms(Arrays.asList("Happy"), 2)));
+
+        cache.roomChanged(createRoom(2, Mood.HAPPY.getVector()));
+        cache.roomChanged(createRoom(1, Mood.ANGRY.getVector()));
+
+        assertEquals(Arrays.asList(2, 1), ids(cache.getRooms(Arrays.asList("Happy"), 2)));
+    }
+
+    @Test
+    public void reloadPicksUpNewRooms() {
+        cache.getRooms(Arrays.asList("Happy"), 5);
+        when(roomDAO.listRooms()).thenReturn(Lists.newArrayList(happyRoom, angryRoom,
+                createRoom(3, Mood.HAPPY.getVector())));
+
+        cache.reload();
+
+        assertEquals(3, cache.getRooms(Arrays.asList("Happy"), 5).size());
+    }
+
+}
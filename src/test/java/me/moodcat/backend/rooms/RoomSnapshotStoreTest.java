@@ -0,0 +1,99 @@
+package me.moodcat.backend.rooms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Map;
+
+import me.moodcat.api.models.ChatMessageModel;
+import me.moodcat.backend.Vote;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class RoomSnapshotStoreTest {
+
+    private static final long MAX_AGE = 60000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    private RoomSnapshotStore store;
+
+    private RoomState state;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "rooms.snapshot");
+        store = new RoomSnapshotStore(new RoomSnapshotConfiguration(file, MAX_AGE, MAX_AGE,
+                new File(folder.getRoot(), "rooms.wal"), 1));
+
+        final ChatMessageModel model = new ChatMessageModel();
+        model.setId(3);
+        model.setTimestamp(1234L);
+        model.setAuthor("Cat");
+        model.setMessage("Miauw é");
+
+        state = new RoomState(7, System.currentTimeMillis(), 11, 42000, 3,
+                ImmutableList.of(new ChatMessageInstance(5, model)),
+                ImmutableMap.of(5, Vote.LIKE, 6, Vote.DISLIKE));
+    }
+
+    @Test
+    public void restoresWrittenSnapshot() throws IOException {
+        store.write(ImmutableList.of(state));
+
+        final RoomState restored = store.read().get(7);
+
+        assertEquals(state.getSongId(), restored.getSongId());
+        assertEquals(state.getSongTime(), restored.getSongTime());
+        assertEquals(state.getLastMessageId(), restored.getLastMessageId());
+        assertEquals(state.getMessages(), restored.getMessages());
+        assertEquals(state.getVotes(), restored.getVotes());
+    }
+
+    @Test
+    public void restoresMessageWithoutAuthor() throws IOException {
+        state.getMessages().get(0).getModel().setAuthor(null);
+        store.write(ImmutableList.of(state));
+
+        assertNull(store.read().get(7).getMessages().get(0).getModel().getAuthor());
+    }
+
+    @Test
+    public void ignoresStaleSnapshot() throws IOException {
+        final byte[] snapshot = RoomSnapshotStore.encode(0, ImmutableList.of(state));
+
+        assertTrue(RoomSnapshotStore.decode(ByteBuffer.wrap(snapshot), MAX_AGE).isEmpty());
+    }
+
+    @Test
+    public void ignoresCorruptSnapshot() throws IOException {
+        final byte[] snapshot = RoomSnapshotStore.encode(System.currentTimeMillis(),
+                ImmutableList.of(state));
+        snapshot[snapshot.length / 2]++;
+        Files.write(file.toPath(), snapshot);
+
+        assertTrue(store.read().isEmpty());
+    }
+
+    @Test
+    public void ignoresMissingSnapshot() {
+        final Map<Integer, RoomState> states = store.read();
+
+        assertTrue(states.isEmpty());
+    }
+
+}
@@ -0,0 +1,57 @@
+package me.moodcat.backend.rooms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import me.moodcat.backend.Vote;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class VoteAggregatorTest {
+
+    private VoteAggregator aggregator;
+
+    @Before
+    public void setUp() {
+        aggregator = new VoteAggregator();
+    }
+
+    @Test
+    public void countsLikesAndDislikes() {
+        aggregator.addVote(1, Vote.LIKE);
+        aggregator.addVote(2, Vote.LIKE);
+        aggregator.addVote(3, Vote.DISLIKE);
+
+        assertEquals(2, aggregator.getLikes());
+        assertEquals(1, aggregator.getDislikes());
+        assertEquals(1, aggregator.getNetScore());
+    }
+
+    @Test
+    public void userCanOnlyVoteOnce() {
+        assertTrue(aggregator.addVote(1, Vote.LIKE));
+        assertFalse(aggregator.addVote(1, Vote.DISLIKE));
+
+        assertEquals(1, aggregator.getNetScore());
+    }
+
+    @Test
+    public void concurrentVotesForSameUserCountOnce() throws InterruptedException {
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        IntStream.range(0, 1000).forEach(i ->
+                executor.execute(() -> aggregator.addVote(i % 10, Vote.LIKE)));
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(10, aggregator.getLikes());
+    }
+
+}
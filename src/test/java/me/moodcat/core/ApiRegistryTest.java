@@ -0,0 +1,42 @@
+package me.moodcat.core;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import javax.ws.rs.Path;
+import javax.ws.rs.ext.Provider;
+
+import org.junit.Test;
+import org.reflections.Reflections;
+
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Verifies that the registry lists the same classes as a scan of the classpath would find.
+ */
+public class ApiRegistryTest {
+
+    private static void assertRegistered(final List<Class<?>> registered,
+            final String packageName, final Class<? extends Annotation> annotation) {
+        assertEquals(new Reflections(packageName).getTypesAnnotatedWith(annotation),
+                ImmutableSet.copyOf(registered));
+    }
+
+    @Test
+    public void registersAllResources() {
+        assertRegistered(ApiRegistry.RESOURCES, "me.moodcat.api", Path.class);
+    }
+
+    @Test
+    public void registersAllMappers() {
+        assertRegistered(ApiRegistry.MAPPERS, "me.moodcat.core.mappers", Provider.class);
+    }
+
+    @Test
+    public void registersAllFilters() {
+        assertRegistered(ApiRegistry.FILTERS, "me.moodcat.api.filters", Provider.class);
+    }
+
+}
@@ -3,9 +3,9 @@ package me.moodcat.core;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import org.eclipse.jetty.server.Connector;
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
-import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -54,16 +54,23 @@ public class AppTest {
     }
 
     @Test
-    public void bindsResourceHandler() {
+    public void bindsStaticResourceHandler() {
         final ContextHandlerCollection handlers = (ContextHandlerCollection) app.getServer()
                 .getHandler();
         
         for (final Handler handler : handlers.getChildHandlers()) {
-            if (handler.getClass().equals(ResourceHandler.class)) {
+            if (handler.getClass().equals(StaticResourceHandler.class)) {
                 return;
             }
         }
         fail();
     }
 
+    @Test
+    public void collectsConnectorStatistics() {
+        final Connector connector = app.getServer().getConnectors()[0];
+
+        assertTrue(connector.getBeans().contains(app.getConnectorStatistics()));
+    }
+
 }
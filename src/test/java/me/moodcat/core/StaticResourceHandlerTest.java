@@ -0,0 +1,204 @@
+package me.moodcat.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpOutput;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class StaticResourceHandlerTest {
+
+    private static final String CONTENT = "console.log('moodcat');";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Mock
+    private Request baseRequest;
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    private ByteArrayOutputStream body;
+
+    private StaticResourceHandler handler;
+
+    @Before
+    public void setUp() throws IOException {
+        write("app.js", CONTENT);
+        write("app.js.gz", "gzip");
+        write("app.js.br", "brotli");
+        write("app.0123abcd.js", CONTENT);
+        write("index.html", "<html></html>");
+
+        body = new ByteArrayOutputStream();
+        when(request.getMethod()).thenReturn("GET");
+        when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+
+            @Override
+            public void write(final int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+                // Blocking writes only
+            }
+
+        });
+
+        handler = new StaticResourceHandler(folder.getRoot());
+    }
+
+    private void write(final String name, final String content) throws IOException {
+        Files.write(new File(folder.getRoot(), name).toPath(),
+                content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String getBody() {
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void servesFile() throws IOException {
+        handler.handle("/app.js", baseRequest, request, response);
+
+        verify(baseRequest).setHandled(true);
+        verify(response, never()).setHeader(eq("Content-Encoding"), anyString());
+        verify(response).setHeader("Cache-Control",
+                StaticResourceHandler.REVALIDATE_CACHE_CONTROL);
+        assertEquals(CONTENT, getBody());
+    }
+
+    @Test
+    public void servesWelcomeFileForFolder() throws IOException {
+        handler.handle("/", baseRequest, request, response);
+
+        assertEquals("<html></html>", getBody());
+    }
+
+    @Test
+    public void servesBrotliWhenAccepted() throws IOException {
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip, deflate, br");
+
+        handler.handle("/app.js", baseRequest, request, response);
+
+        verify(response).setHeader("Content-Encoding", "br");
+        assertEquals("brotli", getBody());
+    }
+
+    @Test
+    public void servesGzipWhenBrotliIsNotAccepted() throws IOException {
+        when(request.getHeader("Accept-Encoding")).thenReturn("gzip;q=1.0, br;q=0");
+
+        handler.handle("/app.js", baseRequest, request, response);
+
+        verify(response).setHeader("Content-Encoding", "gzip");
+        assertEquals("gzip", getBody());
+    }
+
+    @Test
+    public void hashedFilesAreImmutable() throws IOException {
+        handler.handle("/app.0123abcd.js", baseRequest, request, response);
+
+        verify(response).setHeader("Cache-Control",
+                StaticResourceHandler.IMMUTABLE_CACHE_CONTROL);
+    }
+
+    @Test
+    public void notModifiedForMatchingETag() throws IOException {
+        handler.handle("/app.js", baseRequest, request, response);
+        final ArgumentCaptor<String> etag = ArgumentCaptor.forClass(String.class);
+        verify(response).setHeader(eq("ETag"), etag.capture());
+
+        final HttpServletResponse second = mock(HttpServletResponse.class);
+        when(request.getHeader("If-None-Match")).thenReturn(etag.getValue());
+        handler.handle("/app.js", baseRequest, request, second);
+
+        verify(second).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        verify(second, never()).getOutputStream();
+    }
+
+    @Test
+    public void leavesMissingFilesUnhandled() throws IOException {
+        handler.handle("/api/rooms", baseRequest, request, response);
+
+        verify(baseRequest, never()).setHandled(true);
+    }
+
+    @Test
+    public void leavesPostUnhandled() throws IOException {
+        when(request.getMethod()).thenReturn("POST");
+
+        handler.handle("/app.js", baseRequest, request, response);
+
+        verify(baseRequest, never()).setHandled(true);
+    }
+
+    @Test
+    public void doesNotResolveOutsideRoot() {
+        assertNull(handler.resolve("/../" + folder.getRoot().getName() + "/../etc/passwd"));
+    }
+
+    @Test
+    public void sendsLargeFilesFromMapping() throws IOException {
+        final Response jettyResponse = mock(Response.class);
+        final HttpOutput output = mock(HttpOutput.class);
+        when(baseRequest.getResponse()).thenReturn(jettyResponse);
+        when(jettyResponse.getHttpOutput()).thenReturn(output);
+
+        new StaticResourceHandler(folder.getRoot(), 1)
+                .handle("/app.js", baseRequest, request, response);
+
+        verify(output).sendContent(any(ByteBuffer.class));
+        assertEquals("", getBody());
+    }
+
+    @Test
+    public void acceptsEncodings() {
+        assertTrue(StaticResourceHandler.accepts("gzip, br", "br"));
+        assertTrue(StaticResourceHandler.accepts("GZIP;q=0.5", "gzip"));
+        assertFalse(StaticResourceHandler.accepts("gzip;q=0", "gzip"));
+        assertFalse(StaticResourceHandler.accepts("deflate", "gzip"));
+    }
+
+}
@@ -0,0 +1,88 @@
+package me.moodcat.database;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import com.google.inject.persist.PersistService;
+import com.google.inject.persist.UnitOfWork;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LazyUnitOfWorkFilterTest {
+
+    @InjectMocks
+    private LazyUnitOfWorkFilter filter;
+
+    @Mock
+    private UnitOfWork unitOfWork;
+
+    @Mock
+    private PersistService persistService;
+
+    @Mock
+    private ServletRequest request;
+
+    @Mock
+    private ServletResponse response;
+
+    @Mock
+    private FilterChain chain;
+
+    @Mock
+    private FilterConfig filterConfig;
+
+    @Test
+    public void requestDoesNotBeginUnitOfWork() throws IOException, ServletException {
+        filter.doFilter(request, response, chain);
+
+        verify(unitOfWork, never()).begin();
+    }
+
+    @Test
+    public void unitOfWorkIsEndedAfterRequest() throws IOException, ServletException {
+        filter.doFilter(request, response, chain);
+
+        final InOrder inOrder = inOrder(chain, unitOfWork);
+        inOrder.verify(chain).doFilter(request, response);
+        inOrder.verify(unitOfWork).end();
+    }
+
+    @Test
+    public void unitOfWorkIsEndedAfterFailedRequest() throws IOException, ServletException {
+        doThrow(new ServletException()).when(chain).doFilter(request, response);
+
+        try {
+            filter.doFilter(request, response, chain);
+        } catch (final ServletException e) {
+            verify(unitOfWork).end();
+            return;
+        }
+        throw new AssertionError("Exception was not propagated");
+    }
+
+    @Test
+    public void persistServiceFollowsFilterLifeCycle() throws ServletException {
+        filter.init(filterConfig);
+        verify(persistService).start();
+
+        filter.destroy();
+        verify(persistService).stop();
+    }
+
+}
@@ -0,0 +1,103 @@
+package me.moodcat.database;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import me.moodcat.database.controllers.ChatDAO;
+import me.moodcat.database.controllers.SongDAO;
+import me.moodcat.database.controllers.UserDAO;
+import me.moodcat.database.entities.User;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.jukito.JukitoRunner;
+import org.jukito.UseModules;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mockito;
+
+import com.google.inject.Inject;
+
+@RunWith(JukitoRunner.class)
+@UseModules(DatabaseTestModule.class)
+public class RequestEntityManagerTest {
+
+    @Inject
+    private LazyUnitOfWorkFilter filter;
+
+    @Inject
+    private EntityManagerFactory entityManagerFactory;
+
+    @Inject
+    private SongDAO songDAO;
+
+    @Inject
+    private UserDAO userDAO;
+
+    @Inject
+    private ChatDAO chatDAO;
+
+    private final ServletRequest request = Mockito.mock(ServletRequest.class);
+
+    private final ServletResponse response = Mockito.mock(ServletResponse.class);
+
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        // Every entity manager opens a session
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @Test
+    public void requestUsesOneEntityManager() throws IOException, ServletException {
+        final long opened = statistics.getSessionOpenCount();
+
+        filter.doFilter(request, response, this::useDatabase);
+
+        assertEquals(1, statistics.getSessionOpenCount() - opened);
+    }
+
+    @Test
+    public void requestsDoNotShareEntityManager() throws IOException, ServletException {
+        final long opened = statistics.getSessionOpenCount();
+
+        filter.doFilter(request, response, this::useDatabase);
+        filter.doFilter(request, response, this::useDatabase);
+
+        assertEquals(2, statistics.getSessionOpenCount() - opened);
+    }
+
+    @Test
+    public void requestWithoutDatabaseCreatesNoEntityManager()
+            throws IOException, ServletException {
+        final long opened = statistics.getSessionOpenCount();
+
+        filter.doFilter(request, response, Mockito.mock(FilterChain.class));
+
+        assertEquals(0, statistics.getSessionOpenCount() - opened);
+    }
+
+    /**
+     * Reads, writes in a transaction and reads again, as a resource would.
+     */
+    private void useDatabase(final ServletRequest request, final ServletResponse response) {
+        final User user = new User();
+        user.setId(1);
+
+        songDAO.listSongs();
+        userDAO.getAll();
+        userDAO.incrementPoints(user, 1);
+        chatDAO.listLatest(1, 10);
+    }
+
+}
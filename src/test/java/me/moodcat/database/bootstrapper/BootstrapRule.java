@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import me.moodcat.database.entities.Artist;
 import me.moodcat.database.entities.Room;
 import me.moodcat.database.entities.Song;
+import me.moodcat.database.entities.User;
 import org.hibernate.Session;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.jpa.internal.EntityManagerImpl;
@@ -103,4 +104,8 @@ public class BootstrapRule implements TestRule {
         return bootstrapper.getSong(id);
     }
 
+    public User getUser(Integer id) {
+        return bootstrapper.getUser(id);
+    }
+
 }
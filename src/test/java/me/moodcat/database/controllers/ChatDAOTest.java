@@ -0,0 +1,118 @@
+package me.moodcat.database.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import me.moodcat.database.DatabaseTestModule;
+import me.moodcat.database.bootstrapper.BootstrapRule;
+import me.moodcat.database.bootstrapper.TestBootstrap;
+import me.moodcat.database.entities.ArchivedChatMessage;
+
+import org.jukito.JukitoRunner;
+import org.jukito.UseModules;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.inject.Inject;
+
+@RunWith(JukitoRunner.class)
+@UseModules(DatabaseTestModule.class)
+public class ChatDAOTest {
+
+    @Rule
+    @Inject
+    public BootstrapRule bootstrapRule;
+
+    @Inject
+    private ChatDAO chatDAO;
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void canRetrieveLatestMessages() {
+        assertEquals(1, chatDAO.listLatest(1, 10).size());
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void canRetrieveMessagesBefore() {
+        assertEquals(1, chatDAO.listBefore(1, 2, 10).get(0).getId());
+        assertTrue(chatDAO.listBefore(1, 1, 10).isEmpty());
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void canRetrieveLastId() {
+        assertEquals(1, chatDAO.findLastId(1));
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void lastIdOfRoomWithoutMessagesIsZero() {
+        assertEquals(0, chatDAO.findLastId(Integer.MAX_VALUE));
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void canArchiveMessages() {
+        assertEquals(Lists.newArrayList(1), chatDAO.archive(1, System.currentTimeMillis(), 10));
+
+        assertTrue(chatDAO.listLatest(1, 10).isEmpty());
+        assertEquals(1, chatDAO.findLastId(1));
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void doesNotArchiveRecentMessages() {
+        assertTrue(chatDAO.archive(1, 0, 10).isEmpty());
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void canDeleteArchivedMessages() {
+        final long now = System.currentTimeMillis();
+        chatDAO.archive(1, now, 10);
+
+        assertEquals(1, chatDAO.deleteArchived(1, ArchivedChatMessage.monthOf(now) + 1, 10));
+        assertEquals(0, chatDAO.findLastId(1));
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void canScanMessages() {
+        final List<String> messages = Lists.newArrayList();
+
+        assertEquals(1, chatDAO.scanMessages(1, 0, 10, (id, message) -> messages.add(message)));
+        assertEquals(Lists.newArrayList("Welcome to Moodcat!"), messages);
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void scanSkipsMessagesBeforeId() {
+        final List<String> messages = Lists.newArrayList();
+
+        assertEquals(1, chatDAO.scanMessages(1, 1, 10, (id, message) -> messages.add(message)));
+        assertTrue(messages.isEmpty());
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void findsPersistedAndArchivedIds() {
+        assertEquals(Sets.newHashSet(1), chatDAO.findPersistedIds(1, Lists.newArrayList(1, 2)));
+
+        chatDAO.archive(1, System.currentTimeMillis(), 10);
+
+        assertEquals(Sets.newHashSet(1), chatDAO.findPersistedIds(1, Lists.newArrayList(1, 2)));
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void canRetrieveMessagesByIds() {
+        assertEquals(1, chatDAO.listByIds(1, Lists.newArrayList(1, 2)).size());
+    }
+
+}
@@ -0,0 +1,67 @@
+package me.moodcat.database.controllers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import javax.persistence.PersistenceException;
+
+import me.moodcat.database.DatabaseTestModule;
+import me.moodcat.database.bootstrapper.BootstrapRule;
+import me.moodcat.database.bootstrapper.TestBootstrap;
+import me.moodcat.database.embeddables.VAVector;
+import me.moodcat.database.entities.Classification;
+import me.moodcat.database.entities.Song;
+import me.moodcat.database.entities.User;
+
+import org.jukito.JukitoRunner;
+import org.jukito.UseModules;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+
+@RunWith(JukitoRunner.class)
+@UseModules(DatabaseTestModule.class)
+public class ClassificationDAOTest {
+
+    @Rule
+    @Inject
+    public BootstrapRule bootstrapRule;
+
+    @Inject
+    private ClassificationDAO classificationDAO;
+
+    @Test
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void songIsClassifiedOncePerUser() {
+        final User user = bootstrapRule.getUser(1);
+        final Song song = bootstrapRule.getSong(1);
+
+        assertEquals(1, classificationDAO.persistUnclassified(user, Lists.newArrayList(
+                createClassification(user, song), createClassification(user, song))).size());
+        assertTrue(classificationDAO.persistUnclassified(user, Lists.newArrayList(
+                createClassification(user, song))).isEmpty());
+        assertTrue(classificationDAO.exists(user, song));
+    }
+
+    @Test(expected = PersistenceException.class)
+    @TestBootstrap("/bootstrap/rooms.json")
+    public void databaseRejectsSecondClassificationOfSong() {
+        final User user = bootstrapRule.getUser(1);
+        final Song song = bootstrapRule.getSong(1);
+
+        classificationDAO.persist(createClassification(user, song));
+        classificationDAO.persist(createClassification(user, song));
+    }
+
+    private static Classification createClassification(final User user, final Song song) {
+        final Classification classification = new Classification();
+        classification.setUser(user);
+        classification.setSong(song);
+        classification.setValenceArousal(new VAVector(0.5, 0.5));
+        return classification;
+    }
+
+}
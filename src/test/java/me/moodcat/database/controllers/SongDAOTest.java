@@ -1,6 +1,7 @@
 package me.moodcat.database.controllers;
 
 import com.google.inject.Inject;
+import me.moodcat.api.models.SongModel;
 import me.moodcat.database.DatabaseTestModule;
 import me.moodcat.database.bootstrapper.BootstrapRule;
 import me.moodcat.database.bootstrapper.TestBootstrap;
@@ -120,4 +121,40 @@ public class SongDAOTest {
         assertEquals(song, actual);
     }
 
+    /**
+     * Project a song into a model, with its artist.
+     */
+    @Test
+    @TestBootstrap("/bootstrap/fall-out-boy.json")
+    public void findModelById() {
+        final Song expected = songDAO.findById(EXISTING_SONG_ID);
+        final SongModel actual = songDAO.findModelById(EXISTING_SONG_ID);
+
+        assertEquals(SongModel.transform(expected), actual);
+        assertEquals(artist.getName(), actual.getArtist().getName());
+    }
+
+    /**
+     * Project all songs into models.
+     */
+    @Test
+    @TestBootstrap("/bootstrap/fall-out-boy.json")
+    public void listSongModels() {
+        final List<SongModel> models = songDAO.listSongModels();
+
+        assertEquals(songDAO.listSongs().size(), models.size());
+        assertThat(models, hasItem(SongModel.transform(songDAO.findById(EXISTING_SONG_ID))));
+    }
+
+    /**
+     * Songs that are not excluded from a room are found through the named query.
+     */
+    @Test
+    @TestBootstrap("/bootstrap/fall-out-boy.json")
+    public void findNewSongsForRoom() {
+        final List<Song> songs = songDAO.findNewSongsFor(bootstrapRule.getRoom(1));
+
+        assertEquals(songDAO.listSongs().size(), songs.size());
+    }
+
 }
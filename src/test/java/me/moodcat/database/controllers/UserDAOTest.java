@@ -4,7 +4,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.List;
 
+import me.moodcat.api.models.UserModel;
 import me.moodcat.database.DatabaseTestModule;
 import me.moodcat.database.bootstrapper.BootstrapRule;
 import me.moodcat.database.bootstrapper.TestBootstrap;
@@ -113,4 +115,29 @@ public class UserDAOTest {
         assertEquals(expectedNumberOfUsers, userDAO.getAll().size());
     }
 
+    @Test
+    @TestBootstrap("/bootstrap/users.json")
+    public void canGetLeaderboardModels() {
+        final List<UserModel> bestUsers = userDAO.getLeaderboardModels(2);
+
+        assertEquals(2, bestUsers.size());
+        assertEquals("Gijs", bestUsers.get(0).getName());
+        assertTrue(bestUsers.get(0).getPoints() > bestUsers.get(1).getPoints());
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/users.json")
+    public void canFindModelById() {
+        final User user = userDAO.findBySoundcloudId(1);
+
+        assertEquals(UserModel.transform(user), userDAO.findModelById(user.getId()));
+        assertEquals(user.getPoints(), userDAO.findPoints(user.getId()).intValue());
+    }
+
+    @Test
+    @TestBootstrap("/bootstrap/fall-out-boy.json")
+    public void canRetrieveByAccessToken() {
+        assertEquals("System", userDAO.findByAccessToken("asdf").getName());
+    }
+
 }
@@ -1,10 +1,13 @@
 package me.moodcat.database.entities;
 
+import java.util.List;
 import java.util.Set;
 import me.moodcat.api.Mood;
 
 import junitx.extensions.EqualsHashCodeTestCase;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 /**
@@ -50,4 +53,51 @@ public class RoomTest extends EqualsHashCodeTestCase {
         return room;
     }
 
+    public void testPlayHistoryIsAppendedUntilFull() {
+        Room room = new Room();
+        room.setPlayHistory(Lists.newArrayList());
+        Song first = createSong(1);
+        Song second = createSong(2);
+
+        room.addToPlayHistory(first, 3);
+        room.addToPlayHistory(second, 3);
+
+        assertEquals(ImmutableList.of(first, second), room.getPlayHistory());
+        assertEquals(ImmutableList.of(first, second), room.getOrderedPlayHistory());
+    }
+
+    public void testPlayHistoryOverwritesOldestSlot() {
+        Room room = new Room();
+        room.setPlayHistory(Lists.newArrayList());
+        List<Song> songs = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            songs.add(createSong(i));
+            room.addToPlayHistory(songs.get(i), 3);
+        }
+
+        assertEquals(ImmutableList.of(songs.get(3), songs.get(4), songs.get(2)),
+                room.getPlayHistory());
+        assertEquals(songs.subList(2, 5), room.getOrderedPlayHistory());
+    }
+
+    public void testClearPlayHistoryResetsPosition() {
+        Room room = new Room();
+        room.setPlayHistory(Lists.newArrayList());
+        for (int i = 0; i < 4; i++) {
+            room.addToPlayHistory(createSong(i), 3);
+        }
+
+        room.clearPlayHistory();
+        Song song = createSong(5);
+        room.addToPlayHistory(song, 3);
+
+        assertEquals(ImmutableList.of(song), room.getOrderedPlayHistory());
+    }
+
+    private static Song createSong(int id) {
+        Song song = new Song();
+        song.setId(id);
+        return song;
+    }
+
 }